@@ -0,0 +1,106 @@
+#!/bin/bash
+# =========================================================
+# This script will build and run the JMH micro-benchmarks
+# of the Mapper<> and Reducer<> hot paths (bench/src).
+#
+# Each benchmark is run twice: once for the throughput in
+# records per second and once for the average latency of a
+# single record, both with the GC profiler so that the
+# allocation rate per record is reported as well.
+#
+# The JMH jars (jmh-core, jmh-generator-annprocess,
+# jopt-simple and commons-math3) are expected within the
+# JMH_LIB directory, and the Hadoop jars are taken from the
+# "hadoop classpath" command.
+#
+# USAGE:  NEISS_Bench.sh [benchmark_regex]
+#
+# =========================================================
+
+# =========================================================
+#
+# Define & Initialize any Environment Variables
+#
+# =========================================================
+
+# ---------------------------------------------------------
+# Define Global Variables
+# ---------------------------------------------------------
+SCRIPT_NAME=`(basename ${0} .sh)`
+HADOOP="$( which hadoop )"
+PROJECT_PATH="$( cd "$( dirname ${0} )/../.." && pwd )"
+LOCAL_PATH="/home/training/Project"
+JMH_LIB="${JMH_LIB:-${LOCAL_PATH}/Lib/jmh}"
+BUILD_DIRECTORY="${LOCAL_PATH}/Bench/classes"
+RESULT_DIRECTORY="${LOCAL_PATH}/Bench/results"
+LOG_FILE="${LOCAL_PATH}/Logs/${SCRIPT_NAME}_`date +%s`.log"
+BENCHMARKS="${1:-.*Benchmark.*}"
+
+# ---------------------------------------------------------
+# Define the Class Paths for the build and the run.
+# ---------------------------------------------------------
+JMH_CLASSPATH="$( ls ${JMH_LIB}/*.jar | tr '\n' ':' )"
+HADOOP_CLASSPATH="$( ${HADOOP} classpath )"
+BENCH_CLASSPATH="${BUILD_DIRECTORY}:${JMH_CLASSPATH}${HADOOP_CLASSPATH}"
+
+# ---------------------------------------------------------
+# Define the Execution Commands for each step.
+# ---------------------------------------------------------
+BUILD_CMD="javac -d ${BUILD_DIRECTORY} -cp ${JMH_CLASSPATH}${HADOOP_CLASSPATH} -processor org.openjdk.jmh.generators.BenchmarkProcessor"
+THROUGHPUT_CMD="java -Dneiss.bench.data=${PROJECT_PATH}/Data/Local -cp ${BENCH_CLASSPATH} org.openjdk.jmh.Main ${BENCHMARKS} -bm thrpt -tu s -prof gc -rf json -rff ${RESULT_DIRECTORY}/throughput.json"
+LATENCY_CMD="java -Dneiss.bench.data=${PROJECT_PATH}/Data/Local -cp ${BENCH_CLASSPATH} org.openjdk.jmh.Main ${BENCHMARKS} -bm avgt -tu us -prof gc -rf json -rff ${RESULT_DIRECTORY}/latency.json"
+
+CLEANUP_CMD="rm -rf ${BUILD_DIRECTORY} ${RESULT_DIRECTORY}"
+
+# =========================================================
+#
+#  Start of the Main Body
+#
+# =========================================================
+{
+	# ---------------------------------------------------------
+	# Clean-up the Environment before building the benchmarks.
+	# ---------------------------------------------------------
+	echo "+  ${CLEANUP_CMD}"
+	${CLEANUP_CMD}
+	mkdir -p ${BUILD_DIRECTORY} ${RESULT_DIRECTORY}
+
+	# ---------------------------------------------------------
+	# Build the project and the benchmarks together (the JMH
+	# annotation processor generates the benchmark harness).
+	# ---------------------------------------------------------
+	echo "+  ${BUILD_CMD} <sources>"
+	${BUILD_CMD} $( find ${PROJECT_PATH}/src ${PROJECT_PATH}/bench/src -name '*.java' )
+	if [ $? -ne 0 ]; then
+		echo "ERROR OCCURRED DURING THE BUILD OF THE BENCHMARKS. SEE ${LOG_FILE}"
+		exit 1
+	fi
+
+	# ---------------------------------------------------------
+	# Measure the throughput (records per second).
+	# ---------------------------------------------------------
+	echo "+  ${THROUGHPUT_CMD}"
+	${THROUGHPUT_CMD}
+	if [ $? -ne 0 ]; then
+		echo "ERROR OCCURRED DURING THE THROUGHPUT BENCHMARKS. SEE ${LOG_FILE}"
+		exit 1
+	fi
+
+	# ---------------------------------------------------------
+	# Measure the latency (microseconds per record).
+	# ---------------------------------------------------------
+	echo "+  ${LATENCY_CMD}"
+	${LATENCY_CMD}
+	if [ $? -ne 0 ]; then
+		echo "ERROR OCCURRED DURING THE LATENCY BENCHMARKS. SEE ${LOG_FILE}"
+		exit 1
+	fi
+
+	# ---------------------------------------------------------
+	# Exit this script with no errors!
+	# ---------------------------------------------------------
+	echo "BENCHMARK RESULTS STORED IN ${RESULT_DIRECTORY}"
+	echo "SEE ${LOG_FILE} FOR MORE DETAILS ABOUT THE BENCHMARKS"
+	exit 0
+
+} 2>&1 | tee ${LOG_FILE}
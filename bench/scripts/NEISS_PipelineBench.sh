@@ -0,0 +1,100 @@
+#!/bin/bash
+# =========================================================
+# This script will run the end-to-end throughput benchmark
+# of the complete NEISS pipeline (PipelineBenchmark) over
+# generated datasets of increasing size, within the local
+# job runner.
+#
+# The results of each stage are stored within the results
+# file and compared with the baseline file, so that the
+# script fails (with an exit code of 2) whenever a stage
+# has regressed. Pass "-saveBaseline" as the first argument
+# to store the results as the new baseline instead.
+#
+# USAGE:  NEISS_PipelineBench.sh [-saveBaseline] [PipelineBenchmark arguments]
+#
+# =========================================================
+
+# =========================================================
+#
+# Define & Initialize any Environment Variables
+#
+# =========================================================
+
+# ---------------------------------------------------------
+# Define Global Variables
+# ---------------------------------------------------------
+SCRIPT_NAME=`(basename ${0} .sh)`
+HADOOP="$( which hadoop )"
+PROJECT_PATH="$( cd "$( dirname ${0} )/../.." && pwd )"
+LOCAL_PATH="/home/training/Project"
+BUILD_DIRECTORY="${LOCAL_PATH}/Bench/pipeline-classes"
+WORK_DIRECTORY="${LOCAL_PATH}/Bench/pipeline"
+RESULT_FILE="${LOCAL_PATH}/Bench/results/pipeline.tsv"
+BASELINE_FILE="${BASELINE_FILE:-${PROJECT_PATH}/bench/baseline/pipeline.tsv}"
+SIZES="${SIZES:-50000,200000,800000}"
+PARALLELISM="${PARALLELISM:-1,4}"
+LOG_FILE="${LOCAL_PATH}/Logs/${SCRIPT_NAME}_`date +%s`.log"
+
+# ---------------------------------------------------------
+# Define the Class Paths for the build and the run.
+# ---------------------------------------------------------
+HADOOP_CLASSPATH="$( ${HADOOP} classpath )"
+BENCH_CLASSPATH="${BUILD_DIRECTORY}:${HADOOP_CLASSPATH}"
+
+# ---------------------------------------------------------
+# Define the Execution Commands for each step.
+# ---------------------------------------------------------
+BUILD_CMD="javac -d ${BUILD_DIRECTORY} -cp ${HADOOP_CLASSPATH}"
+BENCHMARK_CMD="java -Xmx2g -cp ${BENCH_CLASSPATH} edu.stthomas.gps.project.PipelineBenchmark ${WORK_DIRECTORY} -sizes ${SIZES} -parallelism ${PARALLELISM} -lookupDir ${PROJECT_PATH}/Data/Local -results ${RESULT_FILE} -baseline ${BASELINE_FILE} $@"
+
+CLEANUP_CMD="rm -rf ${BUILD_DIRECTORY}"
+
+# =========================================================
+#
+#  Start of the Main Body
+#
+# =========================================================
+{
+	# ---------------------------------------------------------
+	# Clean-up the Environment before building the benchmark
+	# (the generated datasets are kept for the next run).
+	# ---------------------------------------------------------
+	echo "+  ${CLEANUP_CMD}"
+	${CLEANUP_CMD}
+	mkdir -p ${BUILD_DIRECTORY} ${WORK_DIRECTORY} $( dirname ${RESULT_FILE} ) $( dirname ${BASELINE_FILE} )
+
+	# ---------------------------------------------------------
+	# Build the project together with the pipeline benchmark.
+	# ---------------------------------------------------------
+	echo "+  ${BUILD_CMD} <sources>"
+	${BUILD_CMD} $( find ${PROJECT_PATH}/src -name '*.java' ) ${PROJECT_PATH}/bench/src/edu/stthomas/gps/project/PipelineBenchmark.java
+	if [ $? -ne 0 ]; then
+		echo "ERROR OCCURRED DURING THE BUILD OF THE BENCHMARK. SEE ${LOG_FILE}"
+		exit 1
+	fi
+
+	# ---------------------------------------------------------
+	# Run the pipeline over every dataset and compare the
+	# results with the baseline.
+	# ---------------------------------------------------------
+	echo "+  ${BENCHMARK_CMD}"
+	${BENCHMARK_CMD}
+	BENCHMARK_RC=$?
+	if [ ${BENCHMARK_RC} -eq 2 ]; then
+		echo "REGRESSIONS FOUND AGAINST THE BASELINE ${BASELINE_FILE}. SEE ${LOG_FILE}"
+		exit 2
+	elif [ ${BENCHMARK_RC} -ne 0 ]; then
+		echo "ERROR OCCURRED DURING THE PIPELINE BENCHMARK. SEE ${LOG_FILE}"
+		exit 1
+	fi
+
+	# ---------------------------------------------------------
+	# Exit this script with no errors!
+	# ---------------------------------------------------------
+	echo "BENCHMARK RESULTS STORED IN ${RESULT_FILE}"
+	echo "SEE ${LOG_FILE} FOR MORE DETAILS ABOUT THE BENCHMARK"
+	exit 0
+
+} 2>&1 | tee ${LOG_FILE}
+exit ${PIPESTATUS[0]}
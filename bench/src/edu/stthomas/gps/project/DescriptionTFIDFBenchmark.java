@@ -0,0 +1,221 @@
+package edu.stthomas.gps.project;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.stthomas.gps.project.MapReduceHarness.BlackholeWriter;
+import edu.stthomas.gps.project.MapReduceHarness.CollectingWriter;
+
+/**
+ * Benchmarks the three jobs of the TF-IDF chain over the incident Descriptions: the DescriptionWordFrequency, the
+ * DescriptionWordCount and the DescriptionTFIDF. Every stage is fed with what the stage before it produced from the
+ * same batch of filtered incidents, so the numbers reflect the real fan-out of the words.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(MapReduceHarness.INCIDENTS_PER_INVOCATION)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DescriptionTFIDFBenchmark {
+	private List<Text> xCaseNbrs;
+	private List<Text> xFilteredIncidents;
+	private Map<Text, List<IntWritable>> xWordGroups;
+	private List<Text> xWordFrequencyKeys;
+	private List<IntWritable> xWordFrequencies;
+	private Map<Text, List<Text>> xCaseNbrGroups;
+	private List<Text> xWordCountKeys;
+	private List<Text> xWordCounts;
+	private Map<Text, List<Text>> xDescriptionWordGroups;
+
+	private BlackholeWriter<Object, Object> xWriter = new BlackholeWriter<Object, Object>();
+	private DescriptionWordFrequency.DescriptionWordFrequencyMapper xFrequencyMapper = new DescriptionWordFrequency.DescriptionWordFrequencyMapper();
+	private Mapper<Text, Text, Text, IntWritable>.Context xFrequencyMapContext;
+	private DescriptionWordFrequency.SumFrequencyReducer xFrequencyReducer = new DescriptionWordFrequency.SumFrequencyReducer();
+	private Reducer<Text, IntWritable, Text, IntWritable>.Context xFrequencyReduceContext;
+	private DescriptionWordCount.DescriptionWordCountMapper xCountMapper = new DescriptionWordCount.DescriptionWordCountMapper();
+	private Mapper<Text, IntWritable, Text, Text>.Context xCountMapContext;
+	private DescriptionWordCount.SumDescriptionWordCountReducer xCountReducer = new DescriptionWordCount.SumDescriptionWordCountReducer();
+	private Reducer<Text, Text, Text, Text>.Context xCountReduceContext;
+	private DescriptionTFIDF.DescriptionTFIDFMapper xTFIDFMapper = new DescriptionTFIDF.DescriptionTFIDFMapper();
+	private Mapper<Text, Text, Text, Text>.Context xTFIDFMapContext;
+	private DescriptionTFIDF.DescriptionWordTFIDFReducer xTFIDFReducer = new DescriptionTFIDF.DescriptionWordTFIDFReducer();
+	private Reducer<Text, Text, Text, Text>.Context xTFIDFReduceContext;
+
+	/**
+	 * Build the input of every stage by running the stages before it, and set up the tasks being measured.
+	 **/
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void setup() throws IOException, InterruptedException {
+		Configuration conf = MapReduceHarness.newConfiguration();
+		List<Text> allRawIncidents = MapReduceHarness.rawIncidents(MapReduceHarness.INCIDENTS_PER_INVOCATION, 736L);
+
+		/*
+		 * The filtered incidents of the ProductFilter are the input of the chain.
+		 */
+		CollectingWriter<Text, Text> productOutput = new CollectingWriter<Text, Text>(conf);
+		ProductFilter.ProductMapper productMapper = new ProductFilter.ProductMapper();
+		Mapper<LongWritable, Text, Text, Text>.Context productContext = MapReduceHarness.mapContext(conf,
+				productOutput);
+		MapReduceHarness.setup(productMapper, productContext);
+		LongWritable offset = new LongWritable();
+		for (int i = 0; i < allRawIncidents.size(); i++) {
+			offset.set(i);
+			productMapper.map(offset, allRawIncidents.get(i), productContext);
+		}
+		xCaseNbrs = productOutput.getKeys();
+		xFilteredIncidents = productOutput.getValues();
+		conf.setLong("wordcount.total.documents", xCaseNbrs.size());
+
+		/*
+		 * DescriptionWordFrequency: [word \t CaseNbr@FileName, 1] -> [word \t CaseNbr@FileName, count]
+		 */
+		CollectingWriter<Text, IntWritable> frequencyMapOutput = new CollectingWriter<Text, IntWritable>(conf);
+		DescriptionWordFrequency.DescriptionWordFrequencyMapper frequencyMapper = new DescriptionWordFrequency.DescriptionWordFrequencyMapper();
+		Mapper<Text, Text, Text, IntWritable>.Context frequencyMapContext = MapReduceHarness.mapContext(conf,
+				frequencyMapOutput);
+		MapReduceHarness.setup(frequencyMapper, frequencyMapContext);
+		for (int i = 0; i < xCaseNbrs.size(); i++) {
+			frequencyMapper.map(xCaseNbrs.get(i), xFilteredIncidents.get(i), frequencyMapContext);
+		}
+		xWordGroups = MapReduceHarness.shuffle(frequencyMapOutput);
+
+		CollectingWriter<Text, IntWritable> frequencyOutput = new CollectingWriter<Text, IntWritable>(conf);
+		DescriptionWordFrequency.SumFrequencyReducer frequencyReducer = new DescriptionWordFrequency.SumFrequencyReducer();
+		Reducer<Text, IntWritable, Text, IntWritable>.Context frequencyReduceContext = MapReduceHarness
+				.reduceContext(conf, Text.class, IntWritable.class, frequencyOutput);
+		MapReduceHarness.setup(frequencyReducer, frequencyReduceContext);
+		for (Map.Entry<Text, List<IntWritable>> myGroup : xWordGroups.entrySet()) {
+			frequencyReducer.reduce(myGroup.getKey(), myGroup.getValue(), frequencyReduceContext);
+		}
+		xWordFrequencyKeys = frequencyOutput.getKeys();
+		xWordFrequencies = frequencyOutput.getValues();
+
+		/*
+		 * DescriptionWordCount: [CaseNbr@FileName, word=count] -> [word=CaseNbr@FileName, count/total]
+		 */
+		CollectingWriter<Text, Text> countMapOutput = new CollectingWriter<Text, Text>(conf);
+		DescriptionWordCount.DescriptionWordCountMapper countMapper = new DescriptionWordCount.DescriptionWordCountMapper();
+		Mapper<Text, IntWritable, Text, Text>.Context countMapContext = MapReduceHarness.mapContext(conf,
+				countMapOutput);
+		MapReduceHarness.setup(countMapper, countMapContext);
+		for (int i = 0; i < xWordFrequencyKeys.size(); i++) {
+			countMapper.map(xWordFrequencyKeys.get(i), xWordFrequencies.get(i), countMapContext);
+		}
+		xCaseNbrGroups = MapReduceHarness.shuffle(countMapOutput);
+
+		CollectingWriter<Text, Text> countOutput = new CollectingWriter<Text, Text>(conf);
+		DescriptionWordCount.SumDescriptionWordCountReducer countReducer = new DescriptionWordCount.SumDescriptionWordCountReducer();
+		Reducer<Text, Text, Text, Text>.Context countReduceContext = MapReduceHarness.reduceContext(conf, Text.class,
+				Text.class, countOutput);
+		MapReduceHarness.setup(countReducer, countReduceContext);
+		for (Map.Entry<Text, List<Text>> myGroup : xCaseNbrGroups.entrySet()) {
+			countReducer.reduce(myGroup.getKey(), myGroup.getValue(), countReduceContext);
+		}
+		xWordCountKeys = countOutput.getKeys();
+		xWordCounts = countOutput.getValues();
+
+		/*
+		 * DescriptionTFIDF: [word, CaseNbr@FileName=count/total] -> [word=CaseNbr@FileName, TF-IDF]
+		 */
+		CollectingWriter<Text, Text> tfidfMapOutput = new CollectingWriter<Text, Text>(conf);
+		DescriptionTFIDF.DescriptionTFIDFMapper tfidfMapper = new DescriptionTFIDF.DescriptionTFIDFMapper();
+		Mapper<Text, Text, Text, Text>.Context tfidfMapContext = MapReduceHarness.mapContext(conf, tfidfMapOutput);
+		MapReduceHarness.setup(tfidfMapper, tfidfMapContext);
+		for (int i = 0; i < xWordCountKeys.size(); i++) {
+			tfidfMapper.map(xWordCountKeys.get(i), xWordCounts.get(i), tfidfMapContext);
+		}
+		xDescriptionWordGroups = MapReduceHarness.shuffle(tfidfMapOutput);
+
+		/*
+		 * The tasks being measured write into the Blackhole.
+		 */
+		xFrequencyMapContext = MapReduceHarness.mapContext(conf, xWriter);
+		MapReduceHarness.setup(xFrequencyMapper, xFrequencyMapContext);
+		xFrequencyReduceContext = MapReduceHarness.reduceContext(conf, Text.class, IntWritable.class, xWriter);
+		MapReduceHarness.setup(xFrequencyReducer, xFrequencyReduceContext);
+		xCountMapContext = MapReduceHarness.mapContext(conf, xWriter);
+		MapReduceHarness.setup(xCountMapper, xCountMapContext);
+		xCountReduceContext = MapReduceHarness.reduceContext(conf, Text.class, Text.class, xWriter);
+		MapReduceHarness.setup(xCountReducer, xCountReduceContext);
+		xTFIDFMapContext = MapReduceHarness.mapContext(conf, xWriter);
+		MapReduceHarness.setup(xTFIDFMapper, xTFIDFMapContext);
+		xTFIDFReduceContext = MapReduceHarness.reduceContext(conf, Text.class, Text.class, xWriter);
+		MapReduceHarness.setup(xTFIDFReducer, xTFIDFReduceContext);
+	}
+
+	@Benchmark
+	public void wordFrequencyMap(Blackhole aBlackhole) throws IOException, InterruptedException {
+		xWriter.setBlackhole(aBlackhole);
+		for (int i = 0; i < xCaseNbrs.size(); i++) {
+			xFrequencyMapper.map(xCaseNbrs.get(i), xFilteredIncidents.get(i), xFrequencyMapContext);
+		}
+	}
+
+	@Benchmark
+	public void wordFrequencyReduce(Blackhole aBlackhole) throws IOException, InterruptedException {
+		xWriter.setBlackhole(aBlackhole);
+		for (Map.Entry<Text, List<IntWritable>> myGroup : xWordGroups.entrySet()) {
+			xFrequencyReducer.reduce(myGroup.getKey(), myGroup.getValue(), xFrequencyReduceContext);
+		}
+	}
+
+	@Benchmark
+	public void wordCountMap(Blackhole aBlackhole) throws IOException, InterruptedException {
+		xWriter.setBlackhole(aBlackhole);
+		for (int i = 0; i < xWordFrequencyKeys.size(); i++) {
+			xCountMapper.map(xWordFrequencyKeys.get(i), xWordFrequencies.get(i), xCountMapContext);
+		}
+	}
+
+	@Benchmark
+	public void wordCountReduce(Blackhole aBlackhole) throws IOException, InterruptedException {
+		xWriter.setBlackhole(aBlackhole);
+		for (Map.Entry<Text, List<Text>> myGroup : xCaseNbrGroups.entrySet()) {
+			xCountReducer.reduce(myGroup.getKey(), myGroup.getValue(), xCountReduceContext);
+		}
+	}
+
+	@Benchmark
+	public void tfidfMap(Blackhole aBlackhole) throws IOException, InterruptedException {
+		xWriter.setBlackhole(aBlackhole);
+		for (int i = 0; i < xWordCountKeys.size(); i++) {
+			xTFIDFMapper.map(xWordCountKeys.get(i), xWordCounts.get(i), xTFIDFMapContext);
+		}
+	}
+
+	@Benchmark
+	public void tfidfReduce(Blackhole aBlackhole) throws IOException, InterruptedException {
+		xWriter.setBlackhole(aBlackhole);
+		for (Map.Entry<Text, List<Text>> myGroup : xDescriptionWordGroups.entrySet()) {
+			xTFIDFReducer.reduce(myGroup.getKey(), myGroup.getValue(), xTFIDFReduceContext);
+		}
+	}
+}
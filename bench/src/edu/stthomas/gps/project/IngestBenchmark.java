@@ -0,0 +1,154 @@
+package edu.stthomas.gps.project;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.stthomas.gps.project.MapReduceHarness.BlackholeWriter;
+import edu.stthomas.gps.project.MapReduceHarness.CollectingWriter;
+
+/**
+ * Benchmarks the tasks that ingest the raw NEISS data: the ProductFilter, the SortByYearCaseNbr and the
+ * KeywordFilterSortByYearCaseNbr. Every invocation pushes the same batch of raw incidents (or what the stage before it
+ * made of them) through a single Mapper<> or Reducer<>.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(MapReduceHarness.INCIDENTS_PER_INVOCATION)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IngestBenchmark {
+	private LongWritable xOffset = new LongWritable();
+	private List<Text> xRawIncidents;
+	private List<Text> xCaseNbrs;
+	private List<Text> xFilteredIncidents;
+	private Map<Text, List<Text>> xCaseNbrGroups;
+	private Map<Text, List<Text>> xKeywordGroups;
+
+	private BlackholeWriter<Object, Object> xWriter = new BlackholeWriter<Object, Object>();
+	private ProductFilter.ProductMapper xProductMapper = new ProductFilter.ProductMapper();
+	private Mapper<LongWritable, Text, Text, Text>.Context xProductContext;
+	private SortByYearCaseNbr.SimpleMapper xSortMapper = new SortByYearCaseNbr.SimpleMapper();
+	private Mapper<Text, Text, Text, Text>.Context xSortMapContext;
+	private SortByYearCaseNbr.SimpleReducer xSortReducer = new SortByYearCaseNbr.SimpleReducer();
+	private Reducer<Text, Text, Text, Text>.Context xSortReduceContext;
+	private KeywordFilterSortByYearCaseNbr.KeywordFilterMapper xKeywordMapper = new KeywordFilterSortByYearCaseNbr.KeywordFilterMapper();
+	private Mapper<Text, Text, Text, Text>.Context xKeywordMapContext;
+	private KeywordFilterSortByYearCaseNbr.SortByYearCaseNbrReducer xKeywordReducer = new KeywordFilterSortByYearCaseNbr.SortByYearCaseNbrReducer();
+	private Reducer<Text, Text, Text, Text>.Context xKeywordReduceContext;
+
+	/**
+	 * Build the input of every stage by running the stages before it, and set up the tasks being measured.
+	 **/
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void setup() throws IOException, InterruptedException {
+		Configuration conf = MapReduceHarness.newConfiguration();
+		xRawIncidents = MapReduceHarness.rawIncidents(MapReduceHarness.INCIDENTS_PER_INVOCATION, 736L);
+
+		/*
+		 * The filtered incidents of the ProductFilter are the input of both of the sorts.
+		 */
+		CollectingWriter<Text, Text> productOutput = new CollectingWriter<Text, Text>(conf);
+		ProductFilter.ProductMapper productMapper = new ProductFilter.ProductMapper();
+		Mapper<LongWritable, Text, Text, Text>.Context productContext = MapReduceHarness.mapContext(conf,
+				productOutput);
+		MapReduceHarness.setup(productMapper, productContext);
+		for (int i = 0; i < xRawIncidents.size(); i++) {
+			xOffset.set(i);
+			productMapper.map(xOffset, xRawIncidents.get(i), productContext);
+		}
+		xCaseNbrs = productOutput.getKeys();
+		xFilteredIncidents = productOutput.getValues();
+		xCaseNbrGroups = MapReduceHarness.shuffle(productOutput);
+
+		CollectingWriter<Text, Text> keywordOutput = new CollectingWriter<Text, Text>(conf);
+		KeywordFilterSortByYearCaseNbr.KeywordFilterMapper keywordMapper = new KeywordFilterSortByYearCaseNbr.KeywordFilterMapper();
+		Mapper<Text, Text, Text, Text>.Context keywordContext = MapReduceHarness.mapContext(conf, keywordOutput);
+		MapReduceHarness.setup(keywordMapper, keywordContext);
+		for (int i = 0; i < xCaseNbrs.size(); i++) {
+			keywordMapper.map(xCaseNbrs.get(i), xFilteredIncidents.get(i), keywordContext);
+		}
+		xKeywordGroups = MapReduceHarness.shuffle(keywordOutput);
+
+		/*
+		 * The tasks being measured write into the Blackhole.
+		 */
+		xProductContext = MapReduceHarness.mapContext(conf, xWriter);
+		MapReduceHarness.setup(xProductMapper, xProductContext);
+		xSortMapContext = MapReduceHarness.mapContext(conf, xWriter);
+		MapReduceHarness.setup(xSortMapper, xSortMapContext);
+		xSortReduceContext = MapReduceHarness.reduceContext(conf, Text.class, Text.class, xWriter);
+		MapReduceHarness.setup(xSortReducer, xSortReduceContext);
+		xKeywordMapContext = MapReduceHarness.mapContext(conf, xWriter);
+		MapReduceHarness.setup(xKeywordMapper, xKeywordMapContext);
+		xKeywordReduceContext = MapReduceHarness.reduceContext(conf, Text.class, Text.class, xWriter);
+		MapReduceHarness.setup(xKeywordReducer, xKeywordReduceContext);
+	}
+
+	@Benchmark
+	public void productFilterMap(Blackhole aBlackhole) throws IOException, InterruptedException {
+		xWriter.setBlackhole(aBlackhole);
+		for (int i = 0; i < xRawIncidents.size(); i++) {
+			xOffset.set(i);
+			xProductMapper.map(xOffset, xRawIncidents.get(i), xProductContext);
+		}
+	}
+
+	@Benchmark
+	public void sortByYearCaseNbrMap(Blackhole aBlackhole) throws IOException, InterruptedException {
+		xWriter.setBlackhole(aBlackhole);
+		for (int i = 0; i < xCaseNbrs.size(); i++) {
+			xSortMapper.map(xCaseNbrs.get(i), xFilteredIncidents.get(i), xSortMapContext);
+		}
+	}
+
+	@Benchmark
+	public void sortByYearCaseNbrReduce(Blackhole aBlackhole) throws IOException, InterruptedException {
+		xWriter.setBlackhole(aBlackhole);
+		for (Map.Entry<Text, List<Text>> myGroup : xCaseNbrGroups.entrySet()) {
+			xSortReducer.reduce(myGroup.getKey(), myGroup.getValue(), xSortReduceContext);
+		}
+	}
+
+	@Benchmark
+	public void keywordFilterMap(Blackhole aBlackhole) throws IOException, InterruptedException {
+		xWriter.setBlackhole(aBlackhole);
+		for (int i = 0; i < xCaseNbrs.size(); i++) {
+			xKeywordMapper.map(xCaseNbrs.get(i), xFilteredIncidents.get(i), xKeywordMapContext);
+		}
+	}
+
+	@Benchmark
+	public void keywordFilterReduce(Blackhole aBlackhole) throws IOException, InterruptedException {
+		xWriter.setBlackhole(aBlackhole);
+		for (Map.Entry<Text, List<Text>> myGroup : xKeywordGroups.entrySet()) {
+			xKeywordReducer.reduce(myGroup.getKey(), myGroup.getValue(), xKeywordReduceContext);
+		}
+	}
+}
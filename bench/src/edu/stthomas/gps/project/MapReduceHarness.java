@@ -0,0 +1,320 @@
+package edu.stthomas.gps.project;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapred.RawKeyValueIterator;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.map.WrappedMapper;
+import org.apache.hadoop.mapreduce.lib.reduce.WrappedReducer;
+import org.apache.hadoop.mapreduce.task.MapContextImpl;
+import org.apache.hadoop.mapreduce.task.ReduceContextImpl;
+import org.apache.hadoop.util.Progress;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Drives the Mapper<> and Reducer<> classes of the project outside of the framework for the JMH benchmarks. Each task
+ * gets a real (but in-memory) Context whose output either goes into a Blackhole or is collected as the input of the
+ * next stage, so that every stage is measured on the records that the stage before it really produces. The shuffle is
+ * simulated by grouping the collected records by key in sorted order.
+ * <p>
+ * 
+ * The benchmarks live within the same package as the tasks so that they can call map() and reduce() directly, without
+ * the record reader or the value iterator of the framework getting in the way of the measurement.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class MapReduceHarness {
+
+	/*
+	 * The number of raw NEISS incidents that each benchmark invocation pushes through a stage (the per-record numbers
+	 * reported by JMH are per raw incident).
+	 */
+	public static final int INCIDENTS_PER_INVOCATION = 1000;
+
+	private static final String DATA_DIR_PROPERTY = new String("neiss.bench.data");
+	private static final String CACHE_FILES_KEY = new String("mapreduce.job.cache.local.files");
+	private static final String SPLIT_NAME = new String("part-r-00000");
+
+	/**
+	 * Collects a copy of every record written by a task, to be used as the input of the next stage.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class CollectingWriter<K extends Writable, V extends Writable> extends RecordWriter<K, V> {
+		private final Configuration xConf;
+		private final List<K> xKeys = new ArrayList<K>();
+		private final List<V> xValues = new ArrayList<V>();
+
+		public CollectingWriter(Configuration aConf) {
+			xConf = aConf;
+		}
+
+		@Override
+		public void write(K aKey, V aValue) {
+			xKeys.add(WritableUtils.clone(aKey, xConf));
+			xValues.add(WritableUtils.clone(aValue, xConf));
+		}
+
+		@Override
+		public void close(TaskAttemptContext aContext) {
+		}
+
+		public List<K> getKeys() {
+			return xKeys;
+		}
+
+		public List<V> getValues() {
+			return xValues;
+		}
+	}
+
+	/**
+	 * Hands every record written by a task to the Blackhole of the running benchmark so that none of the work is
+	 * optimized away.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class BlackholeWriter<K, V> extends RecordWriter<K, V> {
+		private Blackhole xBlackhole;
+
+		public void setBlackhole(Blackhole aBlackhole) {
+			xBlackhole = aBlackhole;
+		}
+
+		@Override
+		public void write(K aKey, V aValue) {
+			xBlackhole.consume(aKey);
+			xBlackhole.consume(aValue);
+		}
+
+		@Override
+		public void close(TaskAttemptContext aContext) {
+		}
+	}
+
+	/**
+	 * A StatusReporter that keeps the counters of the task in memory.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	private static class CountingReporter extends StatusReporter {
+		private final Counters xCounters = new Counters();
+
+		@Override
+		public Counter getCounter(Enum<?> aName) {
+			return xCounters.findCounter(aName);
+		}
+
+		@Override
+		public Counter getCounter(String aGroup, String aName) {
+			return xCounters.findCounter(aGroup, aName);
+		}
+
+		@Override
+		public void progress() {
+		}
+
+		@Override
+		public float getProgress() {
+			return 0.0f;
+		}
+
+		@Override
+		public void setStatus(String aStatus) {
+		}
+	}
+
+	/**
+	 * An empty input for the reduce Context, as the benchmarks call reduce() directly.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	private static class EmptyIterator implements RawKeyValueIterator {
+
+		@Override
+		public DataInputBuffer getKey() {
+			return null;
+		}
+
+		@Override
+		public DataInputBuffer getValue() {
+			return null;
+		}
+
+		@Override
+		public boolean next() {
+			return false;
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public Progress getProgress() {
+			return new Progress();
+		}
+	}
+
+	/**
+	 * Static methods only.
+	 **/
+	private MapReduceHarness() {
+	}
+
+	/**
+	 * @return a configuration whose distributed cache holds the lookup tables of Data/Local (or of the directory
+	 *         named by -Dneiss.bench.data)
+	 **/
+	public static Configuration newConfiguration() {
+		Configuration conf = new Configuration();
+		File dataDir = dataDirectory();
+		File[] allDataFiles = dataDir.listFiles();
+		if (allDataFiles == null) {
+			throw new IllegalStateException("Unable to find the lookup tables in " + dataDir.getAbsolutePath());
+		}
+		StringBuilder cacheFilesBuilder = new StringBuilder();
+		for (File myDataFile : allDataFiles) {
+			if (cacheFilesBuilder.length() > 0) {
+				cacheFilesBuilder.append(",");
+			}
+			cacheFilesBuilder.append(myDataFile.getAbsolutePath());
+		}
+		conf.set(CACHE_FILES_KEY, cacheFilesBuilder.toString());
+		return conf;
+	}
+
+	/**
+	 * Build the Context of a map task around a writer.
+	 **/
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static Mapper.Context mapContext(Configuration aConf, RecordWriter aWriter) {
+		MapContextImpl mapContext = new MapContextImpl(aConf, new TaskAttemptID("bench", 0, TaskType.MAP, 0, 0),
+				null, aWriter, null, new CountingReporter(), new FileSplit(new Path(SPLIT_NAME), 0, 0, null));
+		return new WrappedMapper().getMapContext(mapContext);
+	}
+
+	/**
+	 * Build the Context of a reduce task around a writer.
+	 **/
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static Reducer.Context reduceContext(Configuration aConf, Class<?> aKeyClass, Class<?> aValueClass,
+			RecordWriter aWriter) throws IOException, InterruptedException {
+		CountingReporter reporter = new CountingReporter();
+		ReduceContextImpl reduceContext = new ReduceContextImpl(aConf, new TaskAttemptID("bench", 0, TaskType.REDUCE,
+				0, 0), new EmptyIterator(), reporter.getCounter("bench", "groups"), reporter.getCounter("bench",
+				"records"), aWriter, null, reporter, null, aKeyClass, aValueClass);
+		return new WrappedReducer().getReducerContext(reduceContext);
+	}
+
+	/**
+	 * Call the setup() of a task (which may only be declared by the framework class).
+	 **/
+	public static void setup(Object aTask, Object aContext) throws IOException, InterruptedException {
+		invoke(aTask, "setup", aContext);
+	}
+
+	/**
+	 * Call the cleanup() of a task (which may only be declared by the framework class).
+	 **/
+	public static void cleanup(Object aTask, Object aContext) throws IOException, InterruptedException {
+		invoke(aTask, "cleanup", aContext);
+	}
+
+	/**
+	 * Group the records collected from the map tasks by key, in the sorted order that a Reducer<> receives them.
+	 **/
+	public static <K extends WritableComparable<? super K>, V> Map<K, List<V>> shuffle(
+			CollectingWriter<K, ? extends V> aMapOutput) {
+		Map<K, List<V>> allGroups = new TreeMap<K, List<V>>();
+		for (int i = 0; i < aMapOutput.getKeys().size(); i++) {
+			List<V> myValues = allGroups.get(aMapOutput.getKeys().get(i));
+			if (myValues == null) {
+				myValues = new ArrayList<V>();
+				allGroups.put(aMapOutput.getKeys().get(i), myValues);
+			}
+			myValues.add(aMapOutput.getValues().get(i));
+		}
+		return allGroups;
+	}
+
+	/**
+	 * Build raw NEISS incidents (the 19 column input of the ProductFilter) with the NEISSDataGenerator, with half of
+	 * them coded with the amusement product codes so that every stage after the ProductFilter has enough to work on.
+	 * 
+	 * @param aCount the number of incidents
+	 * @param aSeed the seed of the random values
+	 * @return the tab delimited incidents
+	 **/
+	public static List<Text> rawIncidents(int aCount, long aSeed) throws IOException {
+		NEISSDataGenerator generator = NEISSDataGenerator.fromDirectory(dataDirectory());
+		generator.setAmusementRate(0.5);
+		generator.setMalformedRate(0.0);
+		Random random = new Random(aSeed);
+		StringBuilder rowBuilder = new StringBuilder(512);
+		List<Text> allIncidents = new ArrayList<Text>(aCount);
+		for (int i = 0; i < aCount; i++) {
+			rowBuilder.setLength(0);
+			generator.appendIncident(rowBuilder, random, 1997 + random.nextInt(17), i);
+			allIncidents.add(new Text(rowBuilder.toString()));
+		}
+		return allIncidents;
+	}
+
+	private static File dataDirectory() {
+		return new File(System.getProperty(DATA_DIR_PROPERTY, "Data/Local"));
+	}
+
+	private static void invoke(Object aTask, String aMethod, Object aContext) throws IOException,
+			InterruptedException {
+		Class<?> taskClass = aTask.getClass();
+		while (taskClass != null) {
+			for (Method myMethod : taskClass.getDeclaredMethods()) {
+				if (myMethod.getName().equals(aMethod) && myMethod.getParameterTypes().length == 1
+						&& myMethod.getParameterTypes()[0].isInstance(aContext)) {
+					try {
+						myMethod.setAccessible(true);
+						myMethod.invoke(aTask, aContext);
+						return;
+					} catch (IllegalAccessException iae) {
+						throw new IllegalStateException(iae);
+					} catch (InvocationTargetException ite) {
+						if (ite.getCause() instanceof IOException) {
+							throw (IOException) ite.getCause();
+						} else if (ite.getCause() instanceof InterruptedException) {
+							throw (InterruptedException) ite.getCause();
+						}
+						throw new IllegalStateException(ite.getCause());
+					}
+				}
+			}
+			taskClass = taskClass.getSuperclass();
+		}
+		throw new IllegalArgumentException("No " + aMethod + "() within " + aTask.getClass());
+	}
+}
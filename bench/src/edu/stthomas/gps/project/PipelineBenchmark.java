@@ -0,0 +1,430 @@
+package edu.stthomas.gps.project;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.apache.hadoop.mapreduce.lib.jobcontrol.ControlledJob;
+import org.apache.hadoop.util.StringUtils;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+import edu.stthomas.gps.project.NEISSPipeline.Stage;
+
+/**
+ * Measures how the complete NEISS pipeline (the filters, the reports and the TF-IDF chain, as declared by the
+ * NEISSPipeline) scales with the size of its input and with the parallelism of the local engine. For every dataset
+ * size the raw data is generated once with the NEISSDataGenerator, and then the pipeline is run for every level of
+ * parallelism, one stage at a time so that each stage is measured on its own:
+ * 
+ * <pre>
+ * 		PipelineBenchmark /tmp/NEISS_Bench -sizes 50000,200000,800000 -parallelism 1,4 -baseline bench/baseline.tsv
+ * </pre>
+ * 
+ * The wall time, the input records per second, the bytes shuffled (the materialized map output), the spilled records
+ * and the peak heap of every stage are written into a tab delimited results file. When a baseline (an earlier results
+ * file) is given, every stage is compared with it and the run fails with an exit code of 2 when the throughput drops,
+ * or the bytes shuffled, the spilled records or the peak heap grow, by more than the tolerance.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class PipelineBenchmark extends Configured implements Tool {
+	private static final Logger LOG = Logger.getLogger(PipelineBenchmark.class);
+
+	private static final String TAB_DELIMITER = new String("\t");
+	private static final String COMMENT_PREFIX = new String("#");
+	private static final String RESULTS_HEADER = new String("#rows\tparallelism\tstage\twall_ms\trecords_per_sec"
+			+ "\tinput_records\tshuffle_bytes\tspilled_records\tpeak_heap_bytes");
+	private static final int REGRESSION_EXIT_CODE = 2;
+	private static final long HEAP_SAMPLE_INTERVAL = 10; // milliseconds
+
+	/**
+	 * The measurements of a single stage of a single run of the pipeline.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	private static class StageResult {
+		long xRows;
+		int xParallelism;
+		String xStage;
+		long xWallMillis;
+		long xInputRecords;
+		long xShuffleBytes;
+		long xSpilledRecords;
+		long xPeakHeapBytes;
+
+		String key() {
+			return xRows + TAB_DELIMITER + xParallelism + TAB_DELIMITER + xStage;
+		}
+
+		long recordsPerSecond() {
+			return xInputRecords * 1000 / Math.max(1, xWallMillis);
+		}
+
+		String format() {
+			return key() + TAB_DELIMITER + xWallMillis + TAB_DELIMITER + recordsPerSecond() + TAB_DELIMITER
+					+ xInputRecords + TAB_DELIMITER + xShuffleBytes + TAB_DELIMITER + xSpilledRecords + TAB_DELIMITER
+					+ xPeakHeapBytes;
+		}
+
+		static StageResult parse(String aLine) {
+			String[] allFields = aLine.split(TAB_DELIMITER);
+			StageResult result = new StageResult();
+			result.xRows = Long.parseLong(allFields[0]);
+			result.xParallelism = Integer.parseInt(allFields[1]);
+			result.xStage = allFields[2];
+			result.xWallMillis = Long.parseLong(allFields[3]);
+			result.xInputRecords = Long.parseLong(allFields[5]);
+			result.xShuffleBytes = Long.parseLong(allFields[6]);
+			result.xSpilledRecords = Long.parseLong(allFields[7]);
+			result.xPeakHeapBytes = Long.parseLong(allFields[8]);
+			return result;
+		}
+	}
+
+	/**
+	 * Samples the used heap from a background thread to find its peak while a stage is running.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	private static class HeapSampler implements Runnable {
+		private final MemoryMXBean xMemory = ManagementFactory.getMemoryMXBean();
+		private volatile long xPeakBytes;
+
+		void reset() {
+			xPeakBytes = xMemory.getHeapMemoryUsage().getUsed();
+		}
+
+		long getPeakBytes() {
+			sample();
+			return xPeakBytes;
+		}
+
+		private void sample() {
+			long usedBytes = xMemory.getHeapMemoryUsage().getUsed();
+			if (usedBytes > xPeakBytes) {
+				xPeakBytes = usedBytes;
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					sample();
+					Thread.sleep(HEAP_SAMPLE_INTERVAL);
+				}
+			} catch (InterruptedException e) {
+				// Stopped at the end of the benchmark.
+			}
+		}
+	}
+
+	private HeapSampler xHeapSampler = new HeapSampler();
+
+	/**
+	 * Run every stage of the pipeline once over the generated data, one after the other.
+	 * 
+	 * @return the measurements of every stage, or null when a stage failed
+	 **/
+	private List<StageResult> runPipeline(Configuration aConf, File aDataDir, File aBaseDir, long aRows,
+			int aParallelism, boolean aEmbedded) throws IOException {
+		FileUtil.fullyDelete(aBaseDir);
+		NEISSPipeline pipeline = new NEISSPipeline();
+		pipeline.setConf(aConf);
+		List<Stage> allStages = pipeline.buildStages(new Path(aDataDir.getAbsolutePath()),
+				new Path(aBaseDir.getAbsolutePath()));
+
+		List<StageResult> allResults = new ArrayList<StageResult>();
+		for (Stage myStage : allStages) {
+			System.gc();
+			xHeapSampler.reset();
+			long startTime = System.nanoTime();
+			if (aEmbedded) {
+				myStage.runEmbedded();
+			} else {
+				myStage.runLocal();
+			}
+			long wallMillis = (System.nanoTime() - startTime) / 1000000;
+			if (myStage.getJobState() != ControlledJob.State.SUCCESS) {
+				System.err.println("ERROR: Stage " + myStage.getName() + " failed : " + myStage.getMessage());
+				return null;
+			}
+			myStage.saveCounters();
+
+			Counters allCounters = myStage.getCounters();
+			StageResult result = new StageResult();
+			result.xRows = aRows;
+			result.xParallelism = aParallelism;
+			result.xStage = myStage.getName().replace(' ', '_');
+			result.xWallMillis = wallMillis;
+			result.xInputRecords = allCounters.findCounter(TaskCounter.MAP_INPUT_RECORDS).getValue();
+			result.xShuffleBytes = allCounters.findCounter(TaskCounter.MAP_OUTPUT_MATERIALIZED_BYTES).getValue();
+			result.xSpilledRecords = allCounters.findCounter(TaskCounter.SPILLED_RECORDS).getValue();
+			result.xPeakHeapBytes = xHeapSampler.getPeakBytes();
+			allResults.add(result);
+			LOG.info(result.format());
+		}
+		return allResults;
+	}
+
+	/**
+	 * Read the results of an earlier run, keyed by the size, the parallelism and the stage.
+	 **/
+	private static Map<String, StageResult> readResults(File aFile) throws IOException {
+		Map<String, StageResult> allResults = new LinkedHashMap<String, StageResult>();
+		BufferedReader bufferedRdr = new BufferedReader(new FileReader(aFile));
+		try {
+			String line;
+			while ((line = bufferedRdr.readLine()) != null) {
+				if (!line.isEmpty() && !line.startsWith(COMMENT_PREFIX)) {
+					StageResult myResult = StageResult.parse(line);
+					allResults.put(myResult.key(), myResult);
+				}
+			}
+		} finally {
+			bufferedRdr.close();
+		}
+		return allResults;
+	}
+
+	/**
+	 * Write the results in the tab delimited format that is read back as the baseline.
+	 **/
+	private static void writeResults(List<StageResult> aResults, File aFile) throws IOException {
+		PrintWriter resultsWriter = new PrintWriter(new FileWriter(aFile));
+		try {
+			resultsWriter.println(RESULTS_HEADER);
+			for (StageResult myResult : aResults) {
+				resultsWriter.println(myResult.format());
+			}
+		} finally {
+			resultsWriter.close();
+		}
+	}
+
+	/**
+	 * Compare the results with the baseline and report every regression beyond the tolerances.
+	 * 
+	 * @return the number of regressions found
+	 **/
+	private static int compare(List<StageResult> aResults, Map<String, StageResult> aBaseline, double aTolerance,
+			double aHeapTolerance) {
+		int regressions = 0;
+		for (StageResult myResult : aResults) {
+			StageResult myBaseline = aBaseline.get(myResult.key());
+			String stage = myResult.key().replace(TAB_DELIMITER, " ");
+			if (myBaseline == null) {
+				LOG.info("No baseline for " + stage);
+				continue;
+			}
+			List<String> allProblems = new ArrayList<String>();
+			if (myResult.recordsPerSecond() < myBaseline.recordsPerSecond() * (1.0 - aTolerance)) {
+				allProblems.add("records/sec " + myBaseline.recordsPerSecond() + " -> " + myResult.recordsPerSecond());
+			}
+			if (myResult.xShuffleBytes > myBaseline.xShuffleBytes * (1.0 + aTolerance)) {
+				allProblems.add("shuffle bytes " + myBaseline.xShuffleBytes + " -> " + myResult.xShuffleBytes);
+			}
+			if (myResult.xSpilledRecords > myBaseline.xSpilledRecords * (1.0 + aTolerance)) {
+				allProblems.add("spilled records " + myBaseline.xSpilledRecords + " -> " + myResult.xSpilledRecords);
+			}
+			if (myResult.xPeakHeapBytes > myBaseline.xPeakHeapBytes * (1.0 + aHeapTolerance)) {
+				allProblems.add("peak heap " + StringUtils.byteDesc(myBaseline.xPeakHeapBytes) + " -> "
+						+ StringUtils.byteDesc(myResult.xPeakHeapBytes));
+			}
+			for (String myProblem : allProblems) {
+				System.err.println("REGRESSION: " + stage + " : " + myProblem);
+				regressions++;
+			}
+		}
+		return regressions;
+	}
+
+	/**
+	 * Generate the datasets, run the pipeline over each of them and compare the results with the baseline.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		final String usageText = "Usage: PipelineBenchmark <local_work_dir> [-sizes n,n,...] [-parallelism n,n,...]"
+				+ " [-repeat n] [-seed n] [-embedded] [-lookupDir dir] [-results file] [-baseline file]"
+				+ " [-saveBaseline] [-tolerance f] [-heapTolerance f]";
+
+		if (aArguments.length < 1) {
+			LOG.info(usageText);
+			return -1;
+		}
+
+		File workDir = new File(aArguments[0]);
+		String[] allSizes = new String[] { "50000", "200000", "800000" };
+		String[] allParallelism = new String[] { "1", String.valueOf(Runtime.getRuntime().availableProcessors()) };
+		int repeat = 1;
+		long seed = 736L;
+		boolean embedded = false;
+		boolean saveBaseline = false;
+		File lookupDir = new File("Data/Local");
+		File resultsFile = new File(workDir, "results.tsv");
+		File baselineFile = null;
+		double tolerance = 0.25;
+		double heapTolerance = 0.5;
+
+		/*
+		 * Process any additional arguments passed in...
+		 */
+		for (int i = 1; i < aArguments.length; i++) {
+			if ("-sizes".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				allSizes = aArguments[i].split(",");
+			} else if ("-parallelism".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				allParallelism = aArguments[i].split(",");
+			} else if ("-repeat".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				repeat = Integer.parseInt(aArguments[i]);
+			} else if ("-seed".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				seed = Long.parseLong(aArguments[i]);
+			} else if ("-embedded".equals(aArguments[i])) {
+				embedded = true;
+			} else if ("-lookupDir".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				lookupDir = new File(aArguments[i]);
+			} else if ("-results".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				resultsFile = new File(aArguments[i]);
+			} else if ("-baseline".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				baselineFile = new File(aArguments[i]);
+			} else if ("-saveBaseline".equals(aArguments[i])) {
+				saveBaseline = true;
+			} else if ("-tolerance".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				tolerance = Double.parseDouble(aArguments[i]);
+			} else if ("-heapTolerance".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				heapTolerance = Double.parseDouble(aArguments[i]);
+			} else {
+				System.err.println("ERROR: Invalid argument : '" + aArguments[i] + "'");
+				LOG.info(usageText);
+				return -1;
+			}
+		}
+		if (saveBaseline && baselineFile == null) {
+			System.err.println("ERROR: The -saveBaseline argument needs the -baseline file to write");
+			LOG.info(usageText);
+			return -1;
+		}
+
+		Thread samplerThread = new Thread(xHeapSampler, "PipelineBenchmark HeapSampler");
+		samplerThread.setDaemon(true);
+		samplerThread.start();
+
+		List<StageResult> allResults = new ArrayList<StageResult>();
+		try {
+			for (String mySize : allSizes) {
+				long rows = Long.parseLong(mySize.trim());
+
+				/*
+				 * The data is seeded, so the dataset of a size is only generated the first time it is needed.
+				 */
+				File dataDir = new File(workDir, "data-" + rows + "-" + seed);
+				if (!dataDir.isDirectory()) {
+					int exitCode = ToolRunner.run(new Configuration(getConf()), new NEISSDataGenerator(), new String[] {
+							dataDir.getPath(), "-rows", String.valueOf(rows), "-seed", String.valueOf(seed),
+							"-lookupDir", lookupDir.getPath() });
+					if (exitCode != 0) {
+						FileUtil.fullyDelete(dataDir);
+						System.err.println("ERROR: Unable to generate the dataset of " + rows + " rows");
+						return 1;
+					}
+				}
+
+				for (String myParallelism : allParallelism) {
+					int parallelism = Integer.parseInt(myParallelism.trim());
+					Configuration conf = new Configuration(getConf());
+					conf.set("mapreduce.framework.name", "local");
+					conf.set("fs.defaultFS", "file:///");
+					conf.setInt("mapreduce.client.completion.pollinterval", 50); // Not the 5 second default
+					conf.setInt("mapreduce.local.map.tasks.maximum", parallelism);
+					conf.setInt("mapreduce.local.reduce.tasks.maximum", parallelism);
+					conf.setInt(EmbeddedJobEngine.THREADS_KEY, parallelism);
+					conf.set(EmbeddedJobEngine.CACHE_DIR_KEY, lookupDir.getAbsolutePath());
+
+					/*
+					 * Keep the fastest run of every stage, as the slower ones only add the noise of the machine.
+					 */
+					Map<String, StageResult> allBest = new LinkedHashMap<String, StageResult>();
+					for (int r = 0; r < repeat; r++) {
+						List<StageResult> allRunResults = runPipeline(conf, dataDir, new File(workDir, "run-" + rows
+								+ "-" + parallelism), rows, parallelism, embedded);
+						if (allRunResults == null) {
+							return 1;
+						}
+						for (StageResult myResult : allRunResults) {
+							StageResult myBest = allBest.get(myResult.key());
+							if (myBest == null || myResult.xWallMillis < myBest.xWallMillis) {
+								allBest.put(myResult.key(), myResult);
+							}
+						}
+					}
+					allResults.addAll(allBest.values());
+				}
+			}
+		} finally {
+			samplerThread.interrupt();
+		}
+
+		/*
+		 * Write the results and compare them with the baseline (or make them the new baseline).
+		 */
+		File resultsDir = resultsFile.getAbsoluteFile().getParentFile();
+		if (!resultsDir.isDirectory() && !resultsDir.mkdirs()) {
+			System.err.println("ERROR: Unable to create the directory of " + resultsFile);
+			return 1;
+		}
+		writeResults(allResults, resultsFile);
+		LOG.info("Wrote the results of " + allResults.size() + " stages to " + resultsFile);
+
+		if (baselineFile != null && saveBaseline) {
+			writeResults(allResults, baselineFile);
+			LOG.info("Saved the results as the baseline " + baselineFile);
+		} else if (baselineFile != null) {
+			int regressions = compare(allResults, readResults(baselineFile), tolerance, heapTolerance);
+			if (regressions > 0) {
+				System.err.println("ERROR: Found " + regressions + " regressions against the baseline " + baselineFile);
+				return REGRESSION_EXIT_CODE;
+			}
+			LOG.info("No regressions against the baseline " + baselineFile);
+		}
+		return 0;
+	}
+
+	/**
+	 * The main method calls the ToolRunner.run method, which in turn calls an options parser that interprets Hadoop
+	 * command-line options and puts them into a Configuration object.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	public static void main(String[] aArguments) throws Exception {
+		int exitCode = ToolRunner.run(new Configuration(), new PipelineBenchmark(), aArguments);
+		System.exit(exitCode);
+	}
+}
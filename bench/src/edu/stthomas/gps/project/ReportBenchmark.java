@@ -0,0 +1,225 @@
+package edu.stthomas.gps.project;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.stthomas.gps.project.MapReduceHarness.BlackholeWriter;
+import edu.stthomas.gps.project.MapReduceHarness.CollectingWriter;
+
+/**
+ * Benchmarks the report jobs (SimpleYearCount, SimpleMonthCount, SimpleGenderCount and SimpleAgeCount) over the same
+ * batch of filtered incidents. The reducers are fed with the aggregates that their own mappers produced, grouped by the
+ * report dimension.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(MapReduceHarness.INCIDENTS_PER_INVOCATION)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReportBenchmark {
+	private List<Text> xCaseNbrs;
+	private List<Text> xFilteredIncidents;
+	private Map<Text, List<IncidentAggregateWritable>> xYearGroups;
+	private Map<Text, List<IncidentAggregateWritable>> xMonthGroups;
+	private Map<Text, List<IncidentAggregateWritable>> xGenderGroups;
+	private Map<IntWritable, List<IncidentAggregateWritable>> xAgeGroups;
+
+	private BlackholeWriter<Object, Object> xWriter = new BlackholeWriter<Object, Object>();
+	private SimpleYearCount.SimpleYearCountMapper xYearMapper = new SimpleYearCount.SimpleYearCountMapper();
+	private Mapper<Text, Text, Text, IncidentAggregateWritable>.Context xYearMapContext;
+	private SimpleYearCount.SimpleYearSumReducer xYearReducer = new SimpleYearCount.SimpleYearSumReducer();
+	private Reducer<Text, IncidentAggregateWritable, Text, Text>.Context xYearReduceContext;
+	private SimpleMonthCount.SimpleMonthCountMapper xMonthMapper = new SimpleMonthCount.SimpleMonthCountMapper();
+	private Mapper<Text, Text, Text, IncidentAggregateWritable>.Context xMonthMapContext;
+	private SimpleMonthCount.SimpleMonthSumReducer xMonthReducer = new SimpleMonthCount.SimpleMonthSumReducer();
+	private Reducer<Text, IncidentAggregateWritable, Text, Text>.Context xMonthReduceContext;
+	private SimpleGenderCount.SimpleGenderCountMapper xGenderMapper = new SimpleGenderCount.SimpleGenderCountMapper();
+	private Mapper<Text, Text, Text, IncidentAggregateWritable>.Context xGenderMapContext;
+	private SimpleGenderCount.SimpleGenderSumReducer xGenderReducer = new SimpleGenderCount.SimpleGenderSumReducer();
+	private Reducer<Text, IncidentAggregateWritable, Text, Text>.Context xGenderReduceContext;
+	private SimpleAgeCount.SimpleAgeCountMapper xAgeMapper = new SimpleAgeCount.SimpleAgeCountMapper();
+	private Mapper<Text, Text, IntWritable, IncidentAggregateWritable>.Context xAgeMapContext;
+	private SimpleAgeCount.SimpleAgeSumReducer xAgeReducer = new SimpleAgeCount.SimpleAgeSumReducer();
+	private Reducer<IntWritable, IncidentAggregateWritable, Text, Text>.Context xAgeReduceContext;
+
+	/**
+	 * Build the filtered incidents and the grouped aggregates of every report, and set up the tasks being measured.
+	 **/
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void setup() throws IOException, InterruptedException {
+		Configuration conf = MapReduceHarness.newConfiguration();
+		List<Text> allRawIncidents = MapReduceHarness.rawIncidents(MapReduceHarness.INCIDENTS_PER_INVOCATION, 736L);
+
+		CollectingWriter<Text, Text> productOutput = new CollectingWriter<Text, Text>(conf);
+		ProductFilter.ProductMapper productMapper = new ProductFilter.ProductMapper();
+		Mapper<LongWritable, Text, Text, Text>.Context productContext = MapReduceHarness.mapContext(conf,
+				productOutput);
+		MapReduceHarness.setup(productMapper, productContext);
+		LongWritable offset = new LongWritable();
+		for (int i = 0; i < allRawIncidents.size(); i++) {
+			offset.set(i);
+			productMapper.map(offset, allRawIncidents.get(i), productContext);
+		}
+		xCaseNbrs = productOutput.getKeys();
+		xFilteredIncidents = productOutput.getValues();
+		conf.setLong("wordcount.total.incidents", xCaseNbrs.size());
+
+		/*
+		 * Run every report mapper once to collect the input of its reducer.
+		 */
+		CollectingWriter<Text, IncidentAggregateWritable> yearOutput = new CollectingWriter<Text, IncidentAggregateWritable>(
+				conf);
+		SimpleYearCount.SimpleYearCountMapper yearMapper = new SimpleYearCount.SimpleYearCountMapper();
+		Mapper<Text, Text, Text, IncidentAggregateWritable>.Context yearContext = MapReduceHarness.mapContext(conf,
+				yearOutput);
+		MapReduceHarness.setup(yearMapper, yearContext);
+
+		CollectingWriter<Text, IncidentAggregateWritable> monthOutput = new CollectingWriter<Text, IncidentAggregateWritable>(
+				conf);
+		SimpleMonthCount.SimpleMonthCountMapper monthMapper = new SimpleMonthCount.SimpleMonthCountMapper();
+		Mapper<Text, Text, Text, IncidentAggregateWritable>.Context monthContext = MapReduceHarness.mapContext(conf,
+				monthOutput);
+		MapReduceHarness.setup(monthMapper, monthContext);
+
+		CollectingWriter<Text, IncidentAggregateWritable> genderOutput = new CollectingWriter<Text, IncidentAggregateWritable>(
+				conf);
+		SimpleGenderCount.SimpleGenderCountMapper genderMapper = new SimpleGenderCount.SimpleGenderCountMapper();
+		Mapper<Text, Text, Text, IncidentAggregateWritable>.Context genderContext = MapReduceHarness.mapContext(conf,
+				genderOutput);
+		MapReduceHarness.setup(genderMapper, genderContext);
+
+		CollectingWriter<IntWritable, IncidentAggregateWritable> ageOutput = new CollectingWriter<IntWritable, IncidentAggregateWritable>(
+				conf);
+		SimpleAgeCount.SimpleAgeCountMapper ageMapper = new SimpleAgeCount.SimpleAgeCountMapper();
+		Mapper<Text, Text, IntWritable, IncidentAggregateWritable>.Context ageContext = MapReduceHarness.mapContext(
+				conf, ageOutput);
+		MapReduceHarness.setup(ageMapper, ageContext);
+
+		for (int i = 0; i < xCaseNbrs.size(); i++) {
+			yearMapper.map(xCaseNbrs.get(i), xFilteredIncidents.get(i), yearContext);
+			monthMapper.map(xCaseNbrs.get(i), xFilteredIncidents.get(i), monthContext);
+			genderMapper.map(xCaseNbrs.get(i), xFilteredIncidents.get(i), genderContext);
+			ageMapper.map(xCaseNbrs.get(i), xFilteredIncidents.get(i), ageContext);
+		}
+		xYearGroups = MapReduceHarness.shuffle(yearOutput);
+		xMonthGroups = MapReduceHarness.shuffle(monthOutput);
+		xGenderGroups = MapReduceHarness.shuffle(genderOutput);
+		xAgeGroups = MapReduceHarness.shuffle(ageOutput);
+
+		/*
+		 * The tasks being measured write into the Blackhole.
+		 */
+		xYearMapContext = MapReduceHarness.mapContext(conf, xWriter);
+		MapReduceHarness.setup(xYearMapper, xYearMapContext);
+		xYearReduceContext = MapReduceHarness.reduceContext(conf, Text.class, IncidentAggregateWritable.class,
+				xWriter);
+		MapReduceHarness.setup(xYearReducer, xYearReduceContext);
+		xMonthMapContext = MapReduceHarness.mapContext(conf, xWriter);
+		MapReduceHarness.setup(xMonthMapper, xMonthMapContext);
+		xMonthReduceContext = MapReduceHarness.reduceContext(conf, Text.class, IncidentAggregateWritable.class,
+				xWriter);
+		MapReduceHarness.setup(xMonthReducer, xMonthReduceContext);
+		xGenderMapContext = MapReduceHarness.mapContext(conf, xWriter);
+		MapReduceHarness.setup(xGenderMapper, xGenderMapContext);
+		xGenderReduceContext = MapReduceHarness.reduceContext(conf, Text.class, IncidentAggregateWritable.class,
+				xWriter);
+		MapReduceHarness.setup(xGenderReducer, xGenderReduceContext);
+		xAgeMapContext = MapReduceHarness.mapContext(conf, xWriter);
+		MapReduceHarness.setup(xAgeMapper, xAgeMapContext);
+		xAgeReduceContext = MapReduceHarness.reduceContext(conf, IntWritable.class, IncidentAggregateWritable.class,
+				xWriter);
+		MapReduceHarness.setup(xAgeReducer, xAgeReduceContext);
+	}
+
+	@Benchmark
+	public void yearCountMap(Blackhole aBlackhole) throws IOException, InterruptedException {
+		xWriter.setBlackhole(aBlackhole);
+		for (int i = 0; i < xCaseNbrs.size(); i++) {
+			xYearMapper.map(xCaseNbrs.get(i), xFilteredIncidents.get(i), xYearMapContext);
+		}
+	}
+
+	@Benchmark
+	public void yearSumReduce(Blackhole aBlackhole) throws IOException, InterruptedException {
+		xWriter.setBlackhole(aBlackhole);
+		for (Map.Entry<Text, List<IncidentAggregateWritable>> myGroup : xYearGroups.entrySet()) {
+			xYearReducer.reduce(myGroup.getKey(), myGroup.getValue(), xYearReduceContext);
+		}
+	}
+
+	@Benchmark
+	public void monthCountMap(Blackhole aBlackhole) throws IOException, InterruptedException {
+		xWriter.setBlackhole(aBlackhole);
+		for (int i = 0; i < xCaseNbrs.size(); i++) {
+			xMonthMapper.map(xCaseNbrs.get(i), xFilteredIncidents.get(i), xMonthMapContext);
+		}
+	}
+
+	@Benchmark
+	public void monthSumReduce(Blackhole aBlackhole) throws IOException, InterruptedException {
+		xWriter.setBlackhole(aBlackhole);
+		for (Map.Entry<Text, List<IncidentAggregateWritable>> myGroup : xMonthGroups.entrySet()) {
+			xMonthReducer.reduce(myGroup.getKey(), myGroup.getValue(), xMonthReduceContext);
+		}
+	}
+
+	@Benchmark
+	public void genderCountMap(Blackhole aBlackhole) throws IOException, InterruptedException {
+		xWriter.setBlackhole(aBlackhole);
+		for (int i = 0; i < xCaseNbrs.size(); i++) {
+			xGenderMapper.map(xCaseNbrs.get(i), xFilteredIncidents.get(i), xGenderMapContext);
+		}
+	}
+
+	@Benchmark
+	public void genderSumReduce(Blackhole aBlackhole) throws IOException, InterruptedException {
+		xWriter.setBlackhole(aBlackhole);
+		for (Map.Entry<Text, List<IncidentAggregateWritable>> myGroup : xGenderGroups.entrySet()) {
+			xGenderReducer.reduce(myGroup.getKey(), myGroup.getValue(), xGenderReduceContext);
+		}
+	}
+
+	@Benchmark
+	public void ageCountMap(Blackhole aBlackhole) throws IOException, InterruptedException {
+		xWriter.setBlackhole(aBlackhole);
+		for (int i = 0; i < xCaseNbrs.size(); i++) {
+			xAgeMapper.map(xCaseNbrs.get(i), xFilteredIncidents.get(i), xAgeMapContext);
+		}
+	}
+
+	@Benchmark
+	public void ageSumReduce(Blackhole aBlackhole) throws IOException, InterruptedException {
+		xWriter.setBlackhole(aBlackhole);
+		for (Map.Entry<IntWritable, List<IncidentAggregateWritable>> myGroup : xAgeGroups.entrySet()) {
+			xAgeReducer.reduce(myGroup.getKey(), myGroup.getValue(), xAgeReduceContext);
+		}
+	}
+}
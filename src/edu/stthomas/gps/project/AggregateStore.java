@@ -0,0 +1,366 @@
+package edu.stthomas.gps.project;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.text.NumberFormat;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.chain.ChainMapper;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * A store of the partial (per input year) incident summaries of a report, kept as small SequenceFile segments of
+ * <dimension, IncidentAggregateWritable> pairs under one directory per year (year=YYYY). When the filtered NEISS data
+ * changes only the years that changed are scanned again and their segments replaced, and the text report is then
+ * rebuilt from the segments by simply adding the summaries of every year together. The percentage of the total is
+ * calculated while the report is being rebuilt from the totals within the store, so -totalIncidents is not needed.
+ * <p>
+ * 
+ * The report job is turned into the store job by chaining a TagMapper after the Mapper<> of the report (to tag each
+ * summary with the year directory it came from) and replacing the Reducer<> with the SegmentReducer:
+ * 
+ * <pre>
+ * 		<store_dir>/_MANIFEST			=	the input files that have already been summarized
+ * 		<store_dir>/year=YYYY/part-r-00000	=	the summaries of the incidents of the year
+ * 		<output_dir>/part-r-00000		=	the text report rebuilt from all of the segments
+ * </pre>
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class AggregateStore {
+	private static final Logger LOG = Logger.getLogger(AggregateStore.class);
+
+	private static final String REPORT_OUTPUT_KEY = new String("neiss.aggregate.report.output");
+	private static final String STORE_KEY = new String("neiss.aggregate.store");
+	private static final String FORMATTER_KEY = new String("neiss.aggregate.formatter");
+
+	private static final String TAB_DELIMITER = new String("\t");
+	private static final String SPACE_DELIMITER = new String(" ");
+	private static final String REPORT_FILE = new String("part-r-00000");
+	private static final String SUCCESS_FILE = new String("_SUCCESS");
+
+	/**
+	 * Formats the dimension keys and the summaries of a report. The default keeps the keys exactly as they were
+	 * produced by the Mapper<> of the report and orders them as text.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class ReportFormatter extends Configured {
+
+		/**
+		 * @param aKey the dimension key as it was produced by the Mapper<> of the report
+		 * @return the key as it should appear within the report
+		 **/
+		public String formatKey(String aKey) {
+			return aKey;
+		}
+
+		/**
+		 * @return the order of the dimension keys within the report
+		 **/
+		public Comparator<String> getKeyOrder() {
+			return new Comparator<String>() {
+				@Override
+				public int compare(String aFirst, String aSecond) {
+					return aFirst.compareTo(aSecond);
+				}
+			};
+		}
+	}
+
+	/**
+	 * Build the text value for one line of a report from the summary of the incidents for a dimension.
+	 * 
+	 * @param aSum the summary of the incidents for the dimension
+	 * @param aTotalIncidents the total number of incidents across every dimension of the report
+	 * @return the text of the summary
+	 **/
+	public static String formatSummary(IncidentAggregateWritable aSum, long aTotalIncidents) {
+		NumberFormat percentFormat = NumberFormat.getPercentInstance();
+		NumberFormat estimateFormat = NumberFormat.getIntegerInstance();
+
+		/*
+		 * Calculate the percentage of incidents that occurred for this dimension across the entire population of years.
+		 */
+		double percentOfTotalIncidents = (double) aSum.getCount() / (double) Math.max(aTotalIncidents, 1);
+
+		/*
+		 * Build up the Format of the New Value:
+		 * "[ Total=SUM(IncidentCount)  PercentTotalAllYears=(SUM(IncidentCount)/TotalIncidents)
+		 *   NationalEstimate=SUM(Weight)  StdError=SQRT(VAR(SUM(Weight)))  [Distinct=COUNT(DISTINCT(Field))] ]"
+		 */
+		StringBuilder textValueBuilder = new StringBuilder();
+		textValueBuilder.append("[");
+		textValueBuilder.append(SPACE_DELIMITER);
+		textValueBuilder.append("Total=");
+		textValueBuilder.append(String.valueOf(aSum.getCount()));
+		textValueBuilder.append(SPACE_DELIMITER);
+		textValueBuilder.append(SPACE_DELIMITER);
+		textValueBuilder.append("PercentTotalAllYears=");
+		textValueBuilder.append(percentFormat.format(percentOfTotalIncidents));
+		textValueBuilder.append(SPACE_DELIMITER);
+		textValueBuilder.append(SPACE_DELIMITER);
+		textValueBuilder.append("NationalEstimate=");
+		textValueBuilder.append(estimateFormat.format(aSum.getWeightedSum()));
+		textValueBuilder.append(SPACE_DELIMITER);
+		textValueBuilder.append(SPACE_DELIMITER);
+		textValueBuilder.append("StdError=");
+		textValueBuilder.append(estimateFormat.format(aSum.getStandardError()));
+		if (aSum.hasDistinct()) {
+			textValueBuilder.append(SPACE_DELIMITER);
+			textValueBuilder.append(SPACE_DELIMITER);
+			textValueBuilder.append("Distinct=");
+			textValueBuilder.append(estimateFormat.format(aSum.getDistinctEstimate()));
+		}
+		textValueBuilder.append(SPACE_DELIMITER);
+		textValueBuilder.append("]");
+		return textValueBuilder.toString();
+	}
+
+	/**
+	 * Turn a fully setup report job into a job that only summarizes the new or changed years of its input into the
+	 * store, and have the text report rebuilt from the store once the job has been committed.
+	 * 
+	 * @param aJob the report job (with its Mapper<> and map output classes already set)
+	 * @param aInput the input directory of the report (the filtered NEISS data)
+	 * @param aStoreDir the directory of the store
+	 * @param aOutput the output directory of the text report
+	 * @param aFormatterClass the formatter for the keys of the report
+	 * @return false if there is nothing to be summarized (the report has already been rebuilt from the store)
+	 **/
+	public static boolean configure(Job aJob, Path aInput, Path aStoreDir, Path aOutput,
+			Class<? extends ReportFormatter> aFormatterClass) throws IOException, ClassNotFoundException {
+		Configuration conf = aJob.getConfiguration();
+		conf.set(STORE_KEY, aStoreDir.toString());
+		conf.set(REPORT_OUTPUT_KEY, aOutput.toString());
+		conf.setClass(FORMATTER_KEY, aFormatterClass, ReportFormatter.class);
+
+		if (!IncrementalOutputFormat.configure(aJob, aInput, aStoreDir, IncrementalOutputFormat.Mode.BY_YEAR)) {
+			writeReport(conf);
+			return false;
+		}
+
+		/*
+		 * Chain the TagMapper after the Mapper<> of the report so that each summary carries its year through the
+		 * shuffle, and write the merged summaries of each year into its own segment.
+		 */
+		Class<? extends Mapper<?, ?, ?, ?>> reportMapperClass = aJob.getMapperClass();
+		Class<?> reportKeyClass = aJob.getMapOutputKeyClass();
+		ChainMapper.addMapper(aJob, reportMapperClass, Text.class, Text.class, reportKeyClass,
+				IncidentAggregateWritable.class, new Configuration(false));
+		ChainMapper.addMapper(aJob, TagMapper.class, reportKeyClass, IncidentAggregateWritable.class, Text.class,
+				IncidentAggregateWritable.class, new Configuration(false));
+
+		aJob.setMapOutputKeyClass(Text.class);
+		aJob.setMapOutputValueClass(IncidentAggregateWritable.class);
+		aJob.setCombinerClass(IncidentAggregateWritable.SumCombiner.class);
+		aJob.setReducerClass(SegmentReducer.class);
+		aJob.setOutputKeyClass(Text.class);
+		aJob.setOutputValueClass(IncidentAggregateWritable.class);
+		LazyOutputFormat.setOutputFormatClass(aJob, SegmentOutputFormat.class);
+		aJob.setNumReduceTasks(1);
+		return true;
+	}
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class TagMapper extends InstrumentedMapper<Object, IncidentAggregateWritable, Text, IncidentAggregateWritable> {
+
+		/*
+		 * Local Cache Variables for the <key, value> for reuse for each input record being processed.
+		 */
+		private Text xTaggedKey = new Text();
+		private String xTag;
+
+		/**
+		 * Determine the year directory (unit of replacement) of the input file being summarized by this task.
+		 * 
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void setup(Context aContext) throws IOException, InterruptedException {
+			xTag = IncrementalOutputFormat.unitOf(aContext.getConfiguration(),
+					((FileSplit) aContext.getInputSplit()).getPath());
+		}
+
+		/**
+		 * Prefix the dimension key of the summary with the year directory that the incident came from.
+		 * 
+		 * @param aKey the dimension key produced by the Mapper<> of the report
+		 * @param aValue the summary of the incident
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void map(Object aKey, IncidentAggregateWritable aValue, Context aContext) throws IOException,
+				InterruptedException {
+
+			// @formatter:off
+			/*
+			 * Write the output record in the following format: 
+			 * 		[KEY(Text(Tag\tDimension))  VALUE(IncidentAggregateWritable(1, Weight, Stratum))]
+			 */
+			// @formatter:on
+			xTaggedKey.set(xTag + TAB_DELIMITER + aKey.toString());
+			aContext.write(xTaggedKey, aValue);
+		}
+	}
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class SegmentReducer extends InstrumentedReducer<Text, IncidentAggregateWritable, Text, IncidentAggregateWritable> {
+
+		/*
+		 * Local Cache Variables for the <key, value> for reuse for each output reduce record being processed.
+		 */
+		private Text xDimensionKey = new Text();
+		private IncidentAggregateWritable xSumValue = new IncidentAggregateWritable();
+		private MultipleOutputs<Text, IncidentAggregateWritable> xSegmentOutputs;
+
+		@Override
+		protected void setup(Context aContext) throws IOException, InterruptedException {
+			xSegmentOutputs = new MultipleOutputs<Text, IncidentAggregateWritable>(aContext);
+		}
+
+		/**
+		 * Merge all of the summaries of a dimension within a year and write the result into the segment of the year.
+		 * 
+		 * @param aKey the year directory and the dimension key separated by a tab
+		 * @param aValues an iterable array of partial incident summaries found across the values for the key
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void reduce(Text aKey, Iterable<IncidentAggregateWritable> aValues, Context aContext)
+				throws IOException, InterruptedException {
+			xSumValue.clear();
+			for (IncidentAggregateWritable myValue : aValues) {
+				xSumValue.merge(myValue);
+			}
+
+			String taggedKey = aKey.toString();
+			int endOfTag = taggedKey.indexOf(TAB_DELIMITER);
+			xDimensionKey.set(taggedKey.substring(endOfTag + 1));
+			xSegmentOutputs.write(xDimensionKey, xSumValue, taggedKey.substring(0, endOfTag) + "/part");
+		}
+
+		@Override
+		protected void cleanup(Context aContext) throws IOException, InterruptedException {
+			xSegmentOutputs.close();
+		}
+	}
+
+	/**
+	 * Writes the segments as SequenceFiles and rebuilds the text report once the segments have been moved into the
+	 * store.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class SegmentOutputFormat extends SequenceFileOutputFormat<Text, IncidentAggregateWritable> {
+		private OutputCommitter xCommitter;
+
+		@Override
+		public synchronized OutputCommitter getOutputCommitter(TaskAttemptContext aContext) throws IOException {
+			if (xCommitter == null) {
+				xCommitter = new IncrementalOutputFormat.IncrementalCommitter(getOutputPath(aContext), aContext) {
+					@Override
+					public void commitJob(JobContext aJobContext) throws IOException {
+						super.commitJob(aJobContext);
+						writeReport(aJobContext.getConfiguration());
+					}
+				};
+			}
+			return xCommitter;
+		}
+	}
+
+	/**
+	 * Read and merge the segments of every year within the store.
+	 * 
+	 * @param aConf the configuration holding the file systems
+	 * @param aStoreDir the directory of the store
+	 * @param aKeyOrder the order of the dimension keys
+	 * @return the merged summary of each dimension
+	 **/
+	public static Map<String, IncidentAggregateWritable> read(Configuration aConf, Path aStoreDir,
+			Comparator<String> aKeyOrder) throws IOException {
+		Map<String, IncidentAggregateWritable> allSums = new TreeMap<String, IncidentAggregateWritable>(aKeyOrder);
+		FileSystem fs = aStoreDir.getFileSystem(aConf);
+		FileStatus[] allSegments = fs.globStatus(new Path(aStoreDir, "[^_.]*/part-*"));
+		Text segmentKey = new Text();
+		IncidentAggregateWritable segmentValue = new IncidentAggregateWritable();
+		for (FileStatus mySegment : (allSegments != null) ? allSegments : new FileStatus[0]) {
+			SequenceFile.Reader segmentRdr = new SequenceFile.Reader(aConf, SequenceFile.Reader.file(mySegment
+					.getPath()));
+			try {
+				while (segmentRdr.next(segmentKey, segmentValue)) {
+					IncidentAggregateWritable mySum = allSums.get(segmentKey.toString());
+					if (mySum == null) {
+						mySum = new IncidentAggregateWritable();
+						allSums.put(segmentKey.toString(), mySum);
+					}
+					mySum.merge(segmentValue);
+				}
+			} finally {
+				segmentRdr.close();
+			}
+		}
+		return allSums;
+	}
+
+	/**
+	 * Rebuild the text report from the merged segments of the store, using the total of all of the incidents within the
+	 * store for the percentages.
+	 * 
+	 * @param aConf the configuration of the report job
+	 **/
+	private static void writeReport(Configuration aConf) throws IOException {
+		Path storeDir = new Path(aConf.get(STORE_KEY));
+		Path outputDir = new Path(aConf.get(REPORT_OUTPUT_KEY));
+		ReportFormatter formatter = ReflectionUtils.newInstance(
+				aConf.getClass(FORMATTER_KEY, ReportFormatter.class, ReportFormatter.class), aConf);
+
+		Map<String, IncidentAggregateWritable> allSums = read(aConf, storeDir, formatter.getKeyOrder());
+		long totalIncidents = 0;
+		for (IncidentAggregateWritable mySum : allSums.values()) {
+			totalIncidents += mySum.getCount();
+		}
+
+		FileSystem fs = outputDir.getFileSystem(aConf);
+		fs.delete(outputDir, true);
+		PrintWriter writer = new PrintWriter(new OutputStreamWriter(fs.create(new Path(outputDir, REPORT_FILE)),
+				"UTF-8"));
+		try {
+			for (Map.Entry<String, IncidentAggregateWritable> myEntry : allSums.entrySet()) {
+				writer.print(formatter.formatKey(myEntry.getKey()) + TAB_DELIMITER
+						+ formatSummary(myEntry.getValue(), totalIncidents) + "\n");
+			}
+		} finally {
+			writer.close();
+		}
+		fs.create(new Path(outputDir, SUCCESS_FILE), true).close();
+		LOG.info("Rebuilt the report " + outputDir + " from " + allSums.size() + " summaries covering "
+				+ totalIncidents + " incidents within " + storeDir);
+	}
+}
@@ -0,0 +1,32 @@
+package edu.stthomas.gps.project;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+/**
+ * Routes every record to a Reduce Task by the hash of its CaseNbr key alone. Any two jobs that use this partitioner
+ * with the same number of Reduce Tasks write each CaseNbr into the same numbered part file, sorted the same way, which
+ * is what allows IncidentTopTermsJoin to zip their outputs together on the map side.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class CaseNbrPartitioner extends Partitioner<Text, Text> {
+
+	/**
+	 * @param aKey a simple text key that represents the CaseNbr
+	 * @param aValue the value of the record (unused)
+	 * @param aNumReduceTasks the number of Reduce Tasks allocated for this process
+	 **/
+	@Override
+	public int getPartition(Text aKey, Text aValue, int aNumReduceTasks) {
+		/*
+		 * Perform a sanity test to avoid any divide by zero exceptions (modulus with zero) when the number of reducers
+		 * is set to zero for some reason.
+		 */
+		if (aNumReduceTasks == 0) {
+			return 0;
+		}
+		return (aKey.hashCode() & Integer.MAX_VALUE) % aNumReduceTasks;
+	}
+}
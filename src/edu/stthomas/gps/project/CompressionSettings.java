@@ -0,0 +1,333 @@
+package edu.stthomas.gps.project;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.compress.BZip2Codec;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.io.compress.Lz4Codec;
+import org.apache.hadoop.io.compress.SnappyCodec;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.util.NativeCodeLoader;
+import org.apache.log4j.Logger;
+
+/**
+ * Configures the compression of the map output (the shuffle) and of the job output of each stage, and reports how well
+ * it worked once the job has completed, so that the codec of each stage can be picked from its numbers:
+ * 
+ * <pre>
+ * 		neiss.compress.map.codec		=	codec of the map output (default snappy, or zlib without the native library)
+ * 		neiss.compress.output.codec		=	codec of the job output (default zlib for SequenceFiles, none for text)
+ * 		neiss.compress.sequence.type		=	RECORD or BLOCK compression of SequenceFile output (default BLOCK)
+ * 		neiss.compress.measure			=	decompress compressed output to report its ratio (default true)
+ * </pre>
+ * 
+ * Each setting may also be given for a single stage by inserting the simple name of its driver, e.g. "-D
+ * neiss.compress.DescriptionTFIDF.output.codec=bzip2". A codec is one of none, zlib, gzip, bzip2, snappy or lz4 (or the
+ * name of a CompressionCodec class). Compressed text output should use a splittable codec (bzip2), otherwise the next
+ * stage reads each of its files within a single map task.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class CompressionSettings {
+	private static final Logger LOG = Logger.getLogger(CompressionSettings.class);
+
+	private static final String KEY_PREFIX = new String("neiss.compress.");
+	static final String STAGE_KEY = new String("neiss.compress.stage");
+	private static final String MAP_CODEC = new String("map.codec");
+	private static final String OUTPUT_CODEC = new String("output.codec");
+	private static final String SEQUENCE_TYPE = new String("sequence.type");
+	private static final String MEASURE = new String("measure");
+
+	private static final String MAP_COMPRESS_KEY = new String("mapreduce.map.output.compress");
+	private static final String MAP_COMPRESS_CODEC_KEY = new String("mapreduce.map.output.compress.codec");
+	private static final String NO_CODEC = new String("none");
+
+	private static final Map<String, Class<? extends CompressionCodec>> CODECS = new HashMap<String, Class<? extends CompressionCodec>>();
+	static {
+		CODECS.put("zlib", DefaultCodec.class);
+		CODECS.put("gzip", GzipCodec.class);
+		CODECS.put("bzip2", BZip2Codec.class);
+		CODECS.put("snappy", SnappyCodec.class);
+		CODECS.put("lz4", Lz4Codec.class);
+	}
+
+	/**
+	 * Static methods only.
+	 **/
+	private CompressionSettings() {
+	}
+
+	/**
+	 * Set the compression of the map output and of the job output of a stage from its settings. This must be called
+	 * after the output format of the job has been set.
+	 * 
+	 * @param aJob the job of the stage
+	 * @param aDriver the driver of the stage, whose simple name selects the settings of the stage
+	 **/
+	public static void configure(Job aJob, Class<?> aDriver) throws IOException {
+		Configuration conf = aJob.getConfiguration();
+		String stage = aDriver.getSimpleName();
+		conf.set(STAGE_KEY, stage);
+
+		/*
+		 * The shuffle is written and read once, so it wants the fastest codec rather than the smallest output.
+		 */
+		String mapCodec = setting(conf, stage, MAP_CODEC, NativeCodeLoader.isNativeCodeLoaded()
+				&& NativeCodeLoader.buildSupportsSnappy() ? "snappy" : "zlib");
+		if (!NO_CODEC.equals(mapCodec)) {
+			conf.setBoolean(MAP_COMPRESS_KEY, true);
+			conf.setClass(MAP_COMPRESS_CODEC_KEY, codecClass(mapCodec), CompressionCodec.class);
+		}
+
+		/*
+		 * SequenceFiles are only read by the next stage, so they are block compressed by default. Text output is
+		 * left uncompressed unless asked for, as it is also read by people (and scripts).
+		 */
+		Class<?> outputFormat;
+		try {
+			outputFormat = aJob.getOutputFormatClass();
+		} catch (ClassNotFoundException cnfe) {
+			throw new IOException(cnfe);
+		}
+		if (LazyOutputFormat.class.equals(outputFormat)) {
+			outputFormat = conf.getClass(LazyOutputFormat.OUTPUT_FORMAT, outputFormat);
+		}
+		boolean sequenceOutput = SequenceFileOutputFormat.class.isAssignableFrom(outputFormat);
+		String outputCodec = setting(conf, stage, OUTPUT_CODEC, sequenceOutput ? "zlib" : NO_CODEC);
+		if (!NO_CODEC.equals(outputCodec)) {
+			Class<? extends CompressionCodec> codecClass = codecClass(outputCodec);
+			FileOutputFormat.setCompressOutput(aJob, true);
+			FileOutputFormat.setOutputCompressorClass(aJob, codecClass);
+			if (sequenceOutput) {
+				SequenceFileOutputFormat.setOutputCompressionType(aJob, SequenceFile.CompressionType.valueOf(setting(
+						conf, stage, SEQUENCE_TYPE, SequenceFile.CompressionType.BLOCK.name())));
+			} else if (!SplittableCompressionCodec.class.isAssignableFrom(codecClass)) {
+				LOG.warn("The " + outputCodec + " text output of " + stage
+						+ " is not splittable, so each of its files is read by a single map task.");
+			}
+		}
+		LOG.info("Compressing the map output of " + stage + " with " + mapCodec + " and its output with "
+				+ outputCodec + ".");
+	}
+
+	/**
+	 * Report the compression of a completed job.
+	 * 
+	 * @param aJob the completed job of a stage that was configured by configure()
+	 **/
+	public static void report(Job aJob) throws IOException {
+		report(aJob.getConfiguration(), aJob.getCounters(), aJob.getConfiguration().get(STAGE_KEY, aJob.getJobName()));
+	}
+
+	/**
+	 * Report the compression ratio of the shuffle and of the output of a completed job along with the CPU time that it
+	 * took (which includes the time spent compressing). The report is only informational, so a failure to measure the
+	 * output is logged rather than thrown.
+	 * <p>
+	 * 
+	 * The map output is counted before the combiner runs while the shuffle is counted after it, so for a job with a
+	 * combiner the bytes the codec was given are estimated from the share of the records kept by the combiner, and
+	 * the reduction made by the combiner is reported on its own.
+	 * 
+	 * @param aConf the configuration of the job
+	 * @param aCounters the counters of the job
+	 * @param aStage the name of the stage to report
+	 **/
+	public static void report(Configuration aConf, Counters aCounters, String aStage) throws IOException {
+		if (aCounters == null) {
+			return;
+		}
+		StringBuilder reportBuilder = new StringBuilder(aStage);
+
+		long mapOutputBytes = valueOf(aCounters, TaskCounter.MAP_OUTPUT_BYTES);
+		long materializedBytes = valueOf(aCounters, TaskCounter.MAP_OUTPUT_MATERIALIZED_BYTES);
+		long combineInputRecords = valueOf(aCounters, TaskCounter.COMBINE_INPUT_RECORDS);
+		long combineOutputRecords = valueOf(aCounters, TaskCounter.COMBINE_OUTPUT_RECORDS);
+		if (mapOutputBytes > 0 && materializedBytes > 0 && combineInputRecords > 0) {
+			long combinedBytes = (long) ((double) mapOutputBytes * combineOutputRecords / combineInputRecords);
+			reportBuilder.append(" : combiner " + combineInputRecords + " -> " + combineOutputRecords
+					+ " records : shuffle ~" + combinedBytes + " -> " + materializedBytes + " bytes (codec ~"
+					+ ratioOf(combinedBytes, materializedBytes) + ")");
+		} else if (mapOutputBytes > 0 && materializedBytes > 0) {
+			reportBuilder.append(" : shuffle " + mapOutputBytes + " -> " + materializedBytes + " bytes (codec "
+					+ ratioOf(mapOutputBytes, materializedBytes) + ")");
+		}
+
+		if (aConf.getBoolean(FileOutputFormat.COMPRESS, false) && aConf.getBoolean(KEY_PREFIX + MEASURE, true)) {
+			try {
+				long[] allSizes = measureOutput(aConf, committedPaths(aConf));
+				reportBuilder.append(" : output " + allSizes[0] + " -> " + allSizes[1] + " bytes ("
+						+ ratioOf(allSizes[0], allSizes[1]) + ")");
+			} catch (IOException ioe) {
+				LOG.warn("Unable to measure the output of " + aStage + " : " + ioe.getMessage());
+			}
+		}
+
+		/*
+		 * The local job runner (and the embedded engine) do not keep the CPU_MILLISECONDS counter, so fall back to the
+		 * CPU time measured within the threads of the instrumented tasks.
+		 */
+		long cpuMillis = valueOf(aCounters, TaskCounter.CPU_MILLISECONDS);
+		long taskCpuMillis = JobInstrumentation.cpuNanosOf(aCounters) / 1000000;
+		if (cpuMillis > 0) {
+			reportBuilder.append(" : CPU " + cpuMillis + " ms");
+		} else if (taskCpuMillis > 0) {
+			reportBuilder.append(" : CPU " + taskCpuMillis + " ms (task threads only, excluding the spills)");
+		} else {
+			reportBuilder.append(" : CPU not available");
+		}
+		LOG.info(reportBuilder.toString());
+	}
+
+	/**
+	 * Open a (possibly compressed) text output file for reading, decompressing it by the codec of its extension.
+	 * 
+	 * @param aConf the configuration to use
+	 * @param aFile the text output file
+	 * @return the uncompressed content of the file
+	 **/
+	public static InputStream openText(Configuration aConf, Path aFile) throws IOException {
+		InputStream fileStream = aFile.getFileSystem(aConf).open(aFile);
+		CompressionCodec codec = new CompressionCodecFactory(aConf).getCodec(aFile);
+		return (codec == null) ? fileStream : codec.createInputStream(fileStream);
+	}
+
+	/**
+	 * @return the setting of a stage, the setting of all stages, or the default
+	 **/
+	private static String setting(Configuration aConf, String aStage, String aName, String aDefault) {
+		return aConf.get(KEY_PREFIX + aStage + "." + aName, aConf.get(KEY_PREFIX + aName, aDefault)).trim();
+	}
+
+	private static Class<? extends CompressionCodec> codecClass(String aName) throws IOException {
+		Class<? extends CompressionCodec> codecClass = CODECS.get(aName.toLowerCase());
+		if (codecClass != null) {
+			return codecClass;
+		}
+		try {
+			return Class.forName(aName).asSubclass(CompressionCodec.class);
+		} catch (ClassNotFoundException cnfe) {
+			throw new IOException("Unknown compression codec '" + aName + "'", cnfe);
+		} catch (ClassCastException cce) {
+			throw new IOException("'" + aName + "' is not a compression codec", cce);
+		}
+	}
+
+	/**
+	 * @return where the output of a completed job was committed to (an incremental job promotes its output out of the
+	 *         output directory of the job, which is its staging directory)
+	 **/
+	private static List<Path> committedPaths(Configuration aConf) throws IOException {
+		if (IncrementalOutputFormat.isIncremental(aConf)) {
+			return IncrementalOutputFormat.committedPaths(aConf);
+		}
+		String outputDir = aConf.get(FileOutputFormat.OUTDIR);
+		return (outputDir == null) ? Collections.<Path> emptyList() : Collections.singletonList(new Path(outputDir));
+	}
+
+	/**
+	 * Total up the uncompressed and the stored size of the output files of a job, by decompressing the text files and
+	 * reading the raw records of the SequenceFiles. A path that no longer exists is skipped.
+	 * 
+	 * @param aOutputPaths the output directories or files of the job
+	 * @return the uncompressed and the stored number of bytes
+	 **/
+	private static long[] measureOutput(Configuration aConf, List<Path> aOutputPaths) throws IOException {
+		long[] allSizes = new long[2];
+		for (Path myOutputPath : aOutputPaths) {
+			FileSystem fs = myOutputPath.getFileSystem(aConf);
+			if (!fs.exists(myOutputPath)) {
+				continue;
+			}
+			RemoteIterator<LocatedFileStatus> allFiles = fs.listFiles(myOutputPath, true);
+			while (allFiles.hasNext()) {
+				measureFile(aConf, fs, allFiles.next(), allSizes);
+			}
+		}
+		return allSizes;
+	}
+
+	/**
+	 * Add the uncompressed and the stored size of an output file to the totals.
+	 **/
+	private static void measureFile(Configuration aConf, FileSystem aFs, LocatedFileStatus aFile, long[] aSizes)
+			throws IOException {
+		String fileName = aFile.getPath().getName();
+		if (fileName.startsWith("_") || fileName.startsWith(".")) {
+			return;
+		}
+		aSizes[1] += aFile.getLen();
+
+		if (isSequenceFile(aFs, aFile.getPath())) {
+			SequenceFile.Reader sequenceRdr = new SequenceFile.Reader(aConf, SequenceFile.Reader.file(aFile.getPath()));
+			try {
+				DataOutputBuffer keyBuffer = new DataOutputBuffer();
+				SequenceFile.ValueBytes valueBytes = sequenceRdr.createValueBytes();
+				while (sequenceRdr.nextRaw(keyBuffer, valueBytes) >= 0) {
+					aSizes[0] += keyBuffer.getLength() + valueBytes.getSize();
+					keyBuffer.reset();
+				}
+			} finally {
+				sequenceRdr.close();
+			}
+		} else {
+			InputStream textStream = openText(aConf, aFile.getPath());
+			try {
+				byte[] buffer = new byte[64 * 1024];
+				for (int length = textStream.read(buffer); length >= 0; length = textStream.read(buffer)) {
+					aSizes[0] += length;
+				}
+			} finally {
+				textStream.close();
+			}
+		}
+	}
+
+	private static boolean isSequenceFile(FileSystem aFs, Path aFile) throws IOException {
+		FSDataInputStream fileStream = aFs.open(aFile);
+		try {
+			byte[] header = new byte[3];
+			new DataInputStream(fileStream).readFully(header);
+			return header[0] == 'S' && header[1] == 'E' && header[2] == 'Q';
+		} catch (EOFException eofe) {
+			return false; // Too short to be a SequenceFile
+		} finally {
+			fileStream.close();
+		}
+	}
+
+	private static long valueOf(Counters aCounters, Enum<?> aName) {
+		Counter counter = aCounters.findCounter(aName);
+		return (counter == null) ? 0 : counter.getValue();
+	}
+
+	private static String ratioOf(long aUncompressed, long aCompressed) {
+		return (aCompressed == 0) ? "-" : String.format("%.2f:1", (double) aUncompressed / aCompressed);
+	}
+}
@@ -0,0 +1,434 @@
+package edu.stthomas.gps.project;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.MapFile;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+/**
+ * Removes the filtered NEISS incidents (the output of the ProductFilter) whose CaseNbr has already been ingested by an
+ * earlier run, e.g. when the same year is delivered again within a new file. The case numbers of every run are kept
+ * within a store, both exactly (as sorted MapFile segments) and as a ScalableBloomFilter:
+ * 
+ * <pre>
+ * 		<store_dir>/_BLOOM			=	the Bloom filter of every CaseNbr that has been ingested
+ * 		<store_dir>/segment-NNNNN		=	a MapFile of the case numbers ingested by each run
+ * </pre>
+ * 
+ * Each mapper loads the Bloom filter and writes the incidents whose CaseNbr is definitely new straight into the output
+ * from the map side, so only the probable duplicates are sent through the shuffle. The reducer looks each of them up
+ * within the MapFile segments and only writes the ones that turn out to be false positives. Once the job commits, the
+ * case numbers of the output are added into the store.
+ * <p>
+ * 
+ * The Bloom filter may hold more case numbers than the segments (they are only false positives that the reducer
+ * looks up) but never fewer, so the new filter is put into place before the new segment is written, and the old
+ * filter is kept as _BLOOM.prev until the new one has been renamed into place.
+ * <p>
+ * 
+ * Duplicates within the same run (the same CaseNbr within two of the new input files) are removed by running
+ * SortByYearCaseNbr with -dedup, which already brings every record of a CaseNbr together within its reducer.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class DeduplicateCaseNbr extends Configured implements Tool, JobFactory {
+	private static final Logger LOG = Logger.getLogger(DeduplicateCaseNbr.class);
+
+	public static enum NEISS_DATA {
+		TOAL_RECORDS_PROCESSED, NUM_DEFINITELY_NEW, NUM_PROBABLE_DUPLICATES, NUM_FALSE_POSITIVES, NUM_DUPLICATES_REMOVED
+	}
+
+	private static final String STORE_KEY = new String("neiss.dedup.store");
+	private static final String CAPACITY_KEY = new String("neiss.dedup.capacity");
+	private static final String RATE_KEY = new String("neiss.dedup.rate");
+
+	private static final String BLOOM_FILE = new String("_BLOOM");
+	private static final String PREVIOUS_SUFFIX = new String(".prev");
+	private static final String TEMPORARY_SUFFIX = new String(".tmp");
+	private static final String SEGMENT_PREFIX = new String("segment-");
+	private static final String NEW_OUTPUT_FILE = new String("new"); // map side output, as "part" is reserved
+	private static final String OUTPUT_FILES = new String("{part,new}-*");
+	private static final String TAB_DELIMITER = new String("\t");
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class BloomCheckMapper extends InstrumentedMapper<Text, Text, Text, Text> {
+		private ScalableBloomFilter xSeenCaseNbrs;
+		private MultipleOutputs<Text, Text> xNewOutputs;
+
+		/**
+		 * Load the Bloom filter of the case numbers that have already been ingested.
+		 * 
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void setup(Context aContext) throws IOException, InterruptedException {
+			xSeenCaseNbrs = readBloomFilter(aContext.getConfiguration());
+			xNewOutputs = new MultipleOutputs<Text, Text>(aContext);
+		}
+
+		/**
+		 * Write the incidents with a CaseNbr that is definitely new straight into the output, and send the others on
+		 * to the exact check of the reducer.
+		 * 
+		 * @param aKey a simple text key that represents the CaseNbr
+		 * @param aValue a tab delimited text string with the first field as the TreatmentDate
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void map(Text aKey, Text aValue, Context aContext) throws IOException, InterruptedException {
+			aContext.getCounter(NEISS_DATA.TOAL_RECORDS_PROCESSED).increment(1);
+			if (!xSeenCaseNbrs.mightContain(aKey.toString())) {
+				aContext.getCounter(NEISS_DATA.NUM_DEFINITELY_NEW).increment(1);
+				xNewOutputs.write(aKey, aValue, NEW_OUTPUT_FILE);
+			} else {
+				aContext.getCounter(NEISS_DATA.NUM_PROBABLE_DUPLICATES).increment(1);
+				aContext.write(aKey, aValue);
+			}
+		}
+
+		@Override
+		protected void cleanup(Context aContext) throws IOException, InterruptedException {
+			xNewOutputs.close();
+		}
+	}
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class ExactCheckReducer extends InstrumentedReducer<Text, Text, Text, Text> {
+		private List<MapFile.Reader> xSegments = new ArrayList<MapFile.Reader>();
+
+		/**
+		 * Open the MapFile segments holding the case numbers that have already been ingested.
+		 * 
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void setup(Context aContext) throws IOException, InterruptedException {
+			Configuration conf = aContext.getConfiguration();
+			for (Path mySegment : listSegments(conf, new Path(conf.get(STORE_KEY)))) {
+				xSegments.add(new MapFile.Reader(mySegment, conf));
+			}
+		}
+
+		/**
+		 * Drop every incident of a CaseNbr that has already been ingested, otherwise write the first one (the Bloom
+		 * filter gave a false positive).
+		 * 
+		 * @param aKey a simple text key that represents the CaseNbr
+		 * @param aValues the incidents of the new input with the CaseNbr
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void reduce(Text aKey, Iterable<Text> aValues, Context aContext) throws IOException,
+				InterruptedException {
+			boolean seen = false;
+			for (MapFile.Reader mySegment : xSegments) {
+				if (mySegment.get(aKey, NullWritable.get()) != null) {
+					seen = true;
+					break;
+				}
+			}
+
+			for (Text myValue : aValues) {
+				if (seen) {
+					aContext.getCounter(NEISS_DATA.NUM_DUPLICATES_REMOVED).increment(1);
+				} else {
+					aContext.getCounter(NEISS_DATA.NUM_FALSE_POSITIVES).increment(1);
+					aContext.write(aKey, myValue);
+					seen = true; // Any other incident with the CaseNbr is a duplicate of this one
+				}
+			}
+		}
+
+		@Override
+		protected void cleanup(Context aContext) throws IOException, InterruptedException {
+			for (MapFile.Reader mySegment : xSegments) {
+				mySegment.close();
+			}
+		}
+	}
+
+	/**
+	 * Adds the case numbers of the output into the store once the job has been committed.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class DedupOutputFormat extends TextOutputFormat<Text, Text> {
+		private OutputCommitter xCommitter;
+
+		@Override
+		public synchronized OutputCommitter getOutputCommitter(TaskAttemptContext aContext) throws IOException {
+			if (xCommitter == null) {
+				xCommitter = new FileOutputCommitter(getOutputPath(aContext), aContext) {
+					@Override
+					public void commitJob(JobContext aJobContext) throws IOException {
+						super.commitJob(aJobContext);
+						updateStore(aJobContext.getConfiguration(), getOutputPath(aJobContext));
+					}
+				};
+			}
+			return xCommitter;
+		}
+	}
+
+	/**
+	 * Read the Bloom filter of the store, or create an empty one when nothing has been ingested yet. When the filter
+	 * was being replaced the previous filter is read instead, which still holds every CaseNbr of the segments.
+	 * 
+	 * @param aConf the configuration of the job
+	 * @return the Bloom filter
+	 * @throws IOException when the store holds segments but no Bloom filter
+	 **/
+	static ScalableBloomFilter readBloomFilter(Configuration aConf) throws IOException {
+		ScalableBloomFilter bloomFilter = new ScalableBloomFilter(aConf.getInt(CAPACITY_KEY, 1000000), aConf.getFloat(
+				RATE_KEY, 0.01f));
+		Path storeDir = new Path(aConf.get(STORE_KEY));
+		Path bloomFile = new Path(storeDir, BLOOM_FILE);
+		FileSystem fs = bloomFile.getFileSystem(aConf);
+		if (!fs.exists(bloomFile)) {
+			Path previousBloomFile = new Path(storeDir, BLOOM_FILE + PREVIOUS_SUFFIX);
+			if (fs.exists(previousBloomFile)) {
+				LOG.warn("Reading the previous Bloom filter " + previousBloomFile + " as " + bloomFile
+						+ " is missing.");
+				bloomFile = previousBloomFile;
+			} else if (!listSegments(aConf, storeDir).isEmpty()) {
+				throw new IOException("The store " + storeDir + " holds segments but no Bloom filter " + bloomFile);
+			}
+		}
+		if (fs.exists(bloomFile)) {
+			FSDataInputStream bloomStream = fs.open(bloomFile);
+			try {
+				bloomFilter.readFields(bloomStream);
+			} finally {
+				bloomStream.close();
+			}
+		}
+		return bloomFilter;
+	}
+
+	/**
+	 * @return the MapFile segments of the store in the order they were written
+	 **/
+	private static List<Path> listSegments(Configuration aConf, Path aStoreDir) throws IOException {
+		List<Path> allSegments = new ArrayList<Path>();
+		FileStatus[] allStatus = aStoreDir.getFileSystem(aConf).globStatus(new Path(aStoreDir, SEGMENT_PREFIX + "*"));
+		for (FileStatus myStatus : (allStatus != null) ? allStatus : new FileStatus[0]) {
+			allSegments.add(myStatus.getPath());
+		}
+		return allSegments;
+	}
+
+	/**
+	 * Add the case numbers written into the output into a new MapFile segment and into the Bloom filter of the store.
+	 * 
+	 * @param aConf the configuration of the job
+	 * @param aOutputDir the committed output directory of the job
+	 **/
+	private static void updateStore(Configuration aConf, Path aOutputDir) throws IOException {
+		Path storeDir = new Path(aConf.get(STORE_KEY));
+		FileSystem fs = storeDir.getFileSystem(aConf);
+		FileSystem outputFs = aOutputDir.getFileSystem(aConf);
+
+		/*
+		 * Collect the case numbers of the new incidents in order, as a MapFile must be written sorted.
+		 */
+		Set<String> allCaseNbrs = new TreeSet<String>();
+		FileStatus[] allParts = outputFs.globStatus(new Path(aOutputDir, OUTPUT_FILES));
+		for (FileStatus myPart : (allParts != null) ? allParts : new FileStatus[0]) {
+			BufferedReader partRdr = new BufferedReader(new InputStreamReader(CompressionSettings.openText(aConf,
+					myPart.getPath()), "UTF-8"));
+			try {
+				String inputLine = partRdr.readLine();
+				while (inputLine != null) {
+					int endOfKey = inputLine.indexOf(TAB_DELIMITER);
+					allCaseNbrs.add((endOfKey < 0) ? inputLine : inputLine.substring(0, endOfKey));
+					inputLine = partRdr.readLine();
+				}
+			} finally {
+				partRdr.close();
+			}
+		}
+		if (allCaseNbrs.isEmpty()) {
+			LOG.info("No new case numbers to add into " + storeDir);
+			return;
+		}
+
+		/*
+		 * Put the Bloom filter holding the new case numbers into place before writing the segment that holds them, so
+		 * the filter never misses a CaseNbr of the segments. The old filter is only removed once the new one has been
+		 * renamed into place, so there is always a complete filter to fall back upon.
+		 */
+		ScalableBloomFilter bloomFilter = readBloomFilter(aConf);
+		for (String myCaseNbr : allCaseNbrs) {
+			bloomFilter.add(myCaseNbr);
+		}
+		Path bloomFile = new Path(storeDir, BLOOM_FILE);
+		Path newBloomFile = new Path(storeDir, BLOOM_FILE + TEMPORARY_SUFFIX);
+		Path previousBloomFile = new Path(storeDir, BLOOM_FILE + PREVIOUS_SUFFIX);
+		FSDataOutputStream bloomStream = fs.create(newBloomFile, true);
+		try {
+			bloomFilter.write(bloomStream);
+		} finally {
+			bloomStream.close();
+		}
+		if (fs.exists(bloomFile)) {
+			fs.delete(previousBloomFile, false);
+			if (!fs.rename(bloomFile, previousBloomFile)) {
+				throw new IOException("Unable to keep the previous Bloom filter " + previousBloomFile);
+			}
+		}
+		if (!fs.rename(newBloomFile, bloomFile)) {
+			throw new IOException("Unable to replace the Bloom filter " + bloomFile);
+		}
+		fs.delete(previousBloomFile, false);
+
+		Path segmentDir = new Path(storeDir, String.format("%s%05d", SEGMENT_PREFIX, listSegments(aConf, storeDir)
+				.size()));
+		Text segmentKey = new Text();
+		MapFile.Writer segmentWriter = new MapFile.Writer(aConf, segmentDir, MapFile.Writer.keyClass(Text.class),
+				MapFile.Writer.valueClass(NullWritable.class));
+		try {
+			for (String myCaseNbr : allCaseNbrs) {
+				segmentKey.set(myCaseNbr);
+				segmentWriter.append(segmentKey, NullWritable.get());
+			}
+		} finally {
+			segmentWriter.close();
+		}
+		LOG.info("Added " + allCaseNbrs.size() + " case numbers into " + segmentDir + " (" + bloomFilter.getCount()
+				+ " within " + bloomFilter.getStageCount() + " Bloom filter stages).");
+	}
+
+	/**
+	 * Setup the environment so that we can remove the incidents that have already been ingested from the filtered
+	 * NEISS data.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public Job createJob(String[] aArguments) throws Exception {
+		final String usageText = "Usage: DeduplicateCaseNbr <input_dir> <output_dir> -seenCaseNbrs store_dir"
+				+ " [-expectedCaseNbrs n] [-falsePositiveRate p] [-reducers n]";
+
+		if (aArguments.length < 2) {
+			LOG.info(usageText);
+			return null;
+		}
+
+		Job job = new Job(getConf());
+		int numReduceTasks = 1;
+
+		/*
+		 * Process any additional arguments passed in...
+		 */
+		for (int i = 2; i < aArguments.length; i++) {
+			if ("-seenCaseNbrs".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				job.getConfiguration().set(STORE_KEY, aArguments[i]);
+			} else if ("-expectedCaseNbrs".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				job.getConfiguration().setInt(CAPACITY_KEY, Integer.parseInt(aArguments[i]));
+			} else if ("-falsePositiveRate".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				job.getConfiguration().setFloat(RATE_KEY, Float.parseFloat(aArguments[i]));
+			} else if ("-reducers".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				numReduceTasks = Integer.parseInt(aArguments[i]);
+			} else {
+				System.err.println("ERROR: Invalid argument : '" + aArguments[i] + "'");
+				LOG.info(usageText);
+				return null;
+			}
+		}
+		if (job.getConfiguration().get(STORE_KEY) == null) {
+			System.err.println("ERROR: The -seenCaseNbrs store directory is required");
+			LOG.info(usageText);
+			return null;
+		}
+
+		job.setJarByClass(DeduplicateCaseNbr.class);
+		job.setJobName("Remove Previously Ingested NEISS Case Numbers");
+
+		FileInputFormat.setInputPaths(job, new Path(aArguments[0]));
+		FileOutputFormat.setOutputPath(job, new Path(aArguments[1]));
+
+		job.setMapperClass(BloomCheckMapper.class);
+		job.setReducerClass(ExactCheckReducer.class);
+
+		job.setOutputKeyClass(Text.class);
+		job.setOutputValueClass(Text.class);
+
+		job.setInputFormatClass(KeyValueTextInputFormat.class);
+		job.setOutputFormatClass(DedupOutputFormat.class);
+
+		job.setNumReduceTasks(numReduceTasks);
+
+		CompressionSettings.configure(job, DeduplicateCaseNbr.class);
+
+		return job;
+	}
+
+	/**
+	 * Build the job from the arguments that were passed in and run it, waiting for it to be completed.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		Job job = createJob(aArguments);
+		if (job == null) {
+			return -1;
+		}
+
+		/*
+		 * Run the job and wait for it to be completed.
+		 */
+		boolean success = job.waitForCompletion(true);
+		CompressionSettings.report(job);
+		JobInstrumentation.report(job);
+
+		return success ? 0 : 1;
+	}
+
+	/**
+	 * The main method calls the ToolRunner.run method, which in turn calls an options parser that interprets Hadoop
+	 * command-line options and puts them into a Configuration object.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	public static void main(String[] aArguments) throws Exception {
+		int exitCode = ToolRunner.run(new Configuration(), new DeduplicateCaseNbr(), aArguments);
+		System.exit(exitCode);
+	}
+}
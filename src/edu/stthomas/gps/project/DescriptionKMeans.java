@@ -0,0 +1,956 @@
+package edu.stthomas.gps.project;
+
+import java.io.BufferedReader;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+/**
+ * Groups the incidents into clusters of similar Descriptions (e.g. the falls, the collisions and the collapses of the
+ * equipment) with a spherical k-means over the TF-IDF scores of DescriptionTFIDF, so that the groups do not have to be
+ * maintained by hand as keywords:
+ * 
+ * <pre>
+ * 		<output_dir>/vectors-<dimensions>	=	the unit length TF-IDF vector of each incident (SequenceFile)
+ * 		<output_dir>/centroids-NN		=	the centroid of each cluster after iteration NN (SequenceFile)
+ * 		<output_dir>/assignments		=	CaseNbr@FileName \t Cluster \t Similarity
+ * 		<output_dir>/clusters			=	Cluster \t Size \t MeanSimilarity \t the top terms of the centroid
+ * </pre>
+ * 
+ * The TF-IDF scores are first gathered into a sparse vector for each incident, with each term hashed into one of a
+ * fixed number of dimensions (so that no dictionary has to be agreed upon between the tasks). The vectors are cached
+ * as a SequenceFile and read by every iteration (and by later runs) instead of parsing the text of the scores again.
+ * The cached vectors are only reused when they were gathered from the same input directory (recorded within their
+ * _SOURCE file) and its files have not changed since (according to the IngestManifest saved along with them).
+ * <p>
+ * 
+ * The initial centroids are a seeded sample of the incidents. Every iteration is a job whose Mapper<> loads the
+ * centroids of the previous iteration into dense primitive arrays, assigns each incident to the centroid with the
+ * largest dot product (the cosine similarity, as both are of unit length) and adds the incident into the partial sum
+ * of that cluster, which is only written once the task completes. The combiner and the Reducer<> merge the partial
+ * sums, and the Reducer<> writes the normalized mean of each cluster as its new centroid. The iterations stop once no
+ * centroid moved by more than the given distance (one less the cosine of the old and new centroids), or after the
+ * maximum number of iterations.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class DescriptionKMeans extends Configured implements Tool {
+	private static final Logger LOG = Logger.getLogger(DescriptionKMeans.class);
+
+	public static enum NEISS_DATA {
+		TOAL_RECORDS_PROCESSED, NUM_MALFORMED_SCORES, NUM_VECTORS, NUM_EMPTY_VECTORS, NUM_ASSIGNED
+	}
+
+	private static final String CLUSTERS_KEY = new String("neiss.kmeans.clusters");
+	private static final String DIMENSIONS_KEY = new String("neiss.kmeans.dimensions");
+	private static final String CENTROIDS_KEY = new String("neiss.kmeans.centroids");
+
+	private static final String VECTORS_DIR = new String("vectors-");
+	private static final String CENTROIDS_DIR = new String("centroids-");
+	private static final String ASSIGNMENTS_DIR = new String("assignments");
+	private static final String CLUSTERS_FILE = new String("clusters");
+	private static final String TERMS_OUTPUT = new String("terms");
+	private static final String TERMS_FILE = new String("_terms/terms");
+	private static final String TERMS_DIR = new String("_terms");
+	private static final String SUCCESS_FILE = new String("_SUCCESS");
+	private static final String SOURCE_FILE = new String("_SOURCE");
+	private static final String OUTPUT_FILES = new String("part-*");
+	private static final String TAB_DELIMITER = new String("\t");
+	private static final String SPACE_DELIMITER = new String(" ");
+	private static final String SIMILARITY_PATTERN = new String("0.0000");
+	private static final int TOP_TERMS = 10;
+
+	private boolean xEmbedded = false;
+
+	/**
+	 * The partial sum of the vectors of the incidents assigned to a cluster, or (once they are all merged) its
+	 * centroid: the number of incidents, the sum of their similarity to the centroid they were assigned to and the sum
+	 * (or the normalized mean) of their vectors.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class ClusterSumWritable implements Writable {
+		private long xCount;
+		private double xSimilarity;
+		private SparseVectorWritable xVector = new SparseVectorWritable();
+
+		public long getCount() {
+			return xCount;
+		}
+
+		public double getSimilarity() {
+			return xSimilarity;
+		}
+
+		public SparseVectorWritable getVector() {
+			return xVector;
+		}
+
+		/**
+		 * @param aCount the number of incidents
+		 * @param aSimilarity the sum of the similarity of the incidents to their centroid
+		 * @param aSum the sum of the vectors of the incidents (as a dense vector)
+		 **/
+		public void set(long aCount, double aSimilarity, double[] aSum) {
+			xCount = aCount;
+			xSimilarity = aSimilarity;
+			xVector.set(aSum);
+		}
+
+		@Override
+		public void write(DataOutput aOut) throws IOException {
+			WritableUtils.writeVLong(aOut, xCount);
+			aOut.writeDouble(xSimilarity);
+			xVector.write(aOut);
+		}
+
+		@Override
+		public void readFields(DataInput aIn) throws IOException {
+			xCount = WritableUtils.readVLong(aIn);
+			xSimilarity = aIn.readDouble();
+			xVector.readFields(aIn);
+		}
+	}
+
+	/**
+	 * The centroids of an iteration as dense primitive arrays, along with the size and the total similarity of each
+	 * cluster.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	static class Centroids {
+		final int[] xClusters;
+		final float[][] xDense;
+		final long[] xCounts;
+		final double[] xSimilarities;
+
+		private Centroids(SortedMap<Integer, ClusterSumWritable> aSums, int aDimensions) {
+			xClusters = new int[aSums.size()];
+			xDense = new float[aSums.size()][aDimensions];
+			xCounts = new long[aSums.size()];
+			xSimilarities = new double[aSums.size()];
+			int i = 0;
+			for (Map.Entry<Integer, ClusterSumWritable> myEntry : aSums.entrySet()) {
+				xClusters[i] = myEntry.getKey();
+				xCounts[i] = myEntry.getValue().getCount();
+				xSimilarities[i] = myEntry.getValue().getSimilarity();
+				SparseVectorWritable myVector = myEntry.getValue().getVector();
+				for (int j = 0; j < myVector.getSize(); j++) {
+					xDense[i][myVector.getId(j)] = myVector.getWeight(j);
+				}
+				i++;
+			}
+		}
+
+		/**
+		 * Read the centroids written by an iteration (in the order of their cluster numbers).
+		 * 
+		 * @param aConf the configuration holding the file systems
+		 * @param aDir the directory of the centroids of the iteration
+		 * @param aDimensions the number of dimensions of the vectors
+		 * @return the centroids
+		 **/
+		static Centroids read(Configuration aConf, Path aDir, int aDimensions) throws IOException {
+			SortedMap<Integer, ClusterSumWritable> allSums = new TreeMap<Integer, ClusterSumWritable>();
+			FileSystem fs = aDir.getFileSystem(aConf);
+			FileStatus[] allParts = fs.globStatus(new Path(aDir, OUTPUT_FILES));
+			for (FileStatus myPart : (allParts != null) ? allParts : new FileStatus[0]) {
+				SequenceFile.Reader centroidRdr = new SequenceFile.Reader(aConf, SequenceFile.Reader.file(myPart
+						.getPath()));
+				try {
+					IntWritable myCluster = new IntWritable();
+					ClusterSumWritable mySum = new ClusterSumWritable();
+					while (centroidRdr.next(myCluster, mySum)) {
+						allSums.put(myCluster.get(), mySum);
+						mySum = new ClusterSumWritable();
+					}
+				} finally {
+					centroidRdr.close();
+				}
+			}
+			return new Centroids(allSums, aDimensions);
+		}
+
+		/**
+		 * Find the centroid with the largest dot product with a vector.
+		 * 
+		 * @param aVector the (unit length) vector of an incident
+		 * @param aSimilarity filled with the similarity of the vector to the centroid that was found
+		 * @return the index (not the cluster number) of the centroid
+		 **/
+		int nearest(SparseVectorWritable aVector, double[] aSimilarity) {
+			int nearest = 0;
+			double best = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < xDense.length; i++) {
+				double myProduct = aVector.dot(xDense[i]);
+				if (myProduct > best) {
+					best = myProduct;
+					nearest = i;
+				}
+			}
+			aSimilarity[0] = best;
+			return nearest;
+		}
+	}
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class VectorMapper extends InstrumentedMapper<Text, Text, Text, SparseVectorWritable> {
+		/*
+		 * Local Cache Variables for the <key,value> for reuse for each input record being processed.
+		 */
+		private Text xDocumentKey = new Text();
+		private SparseVectorWritable xScoreValue = new SparseVectorWritable();
+		private IntWritable xTermId = new IntWritable();
+		private Text xTerm = new Text();
+
+		private int xDimensionMask;
+		private Set<Integer> xWrittenTerms = new HashSet<Integer>();
+		private MultipleOutputs<Text, SparseVectorWritable> xTermOutputs;
+
+		/**
+		 * Read a TF-IDF score and write it as a single entry vector of its incident. The first term of each term id
+		 * seen by this task is also written into the terms, so that the centroids can be described by their terms.
+		 * 
+		 * @param aKey a composite text key of the Description_Word=CaseNbr@FileName
+		 * @param aValue the text of the scores: "[ DocumentsWithWord/TotalDocuments WordCount/AllWordCounts TF-IDF ]"
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void map(Text aKey, Text aValue, Context aContext) throws IOException, InterruptedException {
+			aContext.getCounter(NEISS_DATA.TOAL_RECORDS_PROCESSED).increment(1);
+			String myKey = aKey.toString();
+			int endOfTerm = myKey.indexOf('=');
+			String[] scoreVals = aValue.toString().split(SPACE_DELIMITER);
+			if (endOfTerm < 0 || scoreVals.length < 5) {
+				aContext.getCounter(NEISS_DATA.NUM_MALFORMED_SCORES).increment(1);
+				return;
+			}
+
+			String myTerm = myKey.substring(0, endOfTerm);
+			int termId = (int) (DescriptionNGrams.hashOf(myTerm) & xDimensionMask);
+			if (xWrittenTerms.add(termId)) {
+				xTermId.set(termId);
+				xTerm.set(myTerm);
+				xTermOutputs.write(TERMS_OUTPUT, xTermId, xTerm, TERMS_FILE);
+			}
+
+			// @formatter:off
+			/*
+			 * Write the output record in the following format: 
+			 * 		[KEY(Text(CaseNbr@FileName))  VALUE(SparseVectorWritable(<TermId:TF-IDF>))]
+			 */
+			// @formatter:on
+			xDocumentKey.set(myKey.substring(endOfTerm + 1));
+			xScoreValue.clear();
+			xScoreValue.add(termId, Float.parseFloat(scoreVals[3]));
+			aContext.write(xDocumentKey, xScoreValue);
+		}
+
+		@Override
+		protected void setup(Context aContext) throws IOException, InterruptedException {
+			xDimensionMask = aContext.getConfiguration().getInt(DIMENSIONS_KEY, 1 << 18) - 1;
+			xTermOutputs = new MultipleOutputs<Text, SparseVectorWritable>(aContext);
+		}
+
+		@Override
+		protected void cleanup(Context aContext) throws IOException, InterruptedException {
+			xTermOutputs.close();
+		}
+	}
+
+	/**
+	 * Gathers the scores of an incident into a single vector, which the VectorReducer also scales to a unit length.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class VectorCombiner extends
+			InstrumentedReducer<Text, SparseVectorWritable, Text, SparseVectorWritable> {
+		protected SparseVectorWritable xVectorValue = new SparseVectorWritable();
+
+		@Override
+		protected void reduce(Text aKey, Iterable<SparseVectorWritable> aValues, Context aContext) throws IOException,
+				InterruptedException {
+			xVectorValue.clear();
+			for (SparseVectorWritable myValue : aValues) {
+				xVectorValue.addAll(myValue);
+			}
+			xVectorValue.compact();
+			write(aKey, aContext);
+		}
+
+		protected void write(Text aKey, Context aContext) throws IOException, InterruptedException {
+			aContext.write(aKey, xVectorValue);
+		}
+	}
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class VectorReducer extends VectorCombiner {
+		@Override
+		protected void write(Text aKey, Context aContext) throws IOException, InterruptedException {
+			if (xVectorValue.getSize() == 0) {
+				aContext.getCounter(NEISS_DATA.NUM_EMPTY_VECTORS).increment(1);
+				return;
+			}
+			aContext.getCounter(NEISS_DATA.NUM_VECTORS).increment(1);
+			xVectorValue.normalize();
+			aContext.write(aKey, xVectorValue);
+		}
+	}
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class ClusterMapper extends
+			InstrumentedMapper<Text, SparseVectorWritable, IntWritable, ClusterSumWritable> {
+		private Centroids xCentroids;
+		private double[][] xSums;
+		private long[] xCounts;
+		private double[] xSimilarities;
+		private double[] xSimilarity = new double[1];
+
+		/**
+		 * Assign an incident to its nearest centroid and add it into the partial sum of that cluster.
+		 * 
+		 * @param aKey the CaseNbr@FileName of the incident
+		 * @param aValue the unit length vector of the incident
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void map(Text aKey, SparseVectorWritable aValue, Context aContext) throws IOException,
+				InterruptedException {
+			int nearest = xCentroids.nearest(aValue, xSimilarity);
+			aValue.addTo(xSums[nearest]);
+			xCounts[nearest]++;
+			xSimilarities[nearest] += xSimilarity[0];
+		}
+
+		@Override
+		protected void setup(Context aContext) throws IOException, InterruptedException {
+			Configuration conf = aContext.getConfiguration();
+			int dimensions = conf.getInt(DIMENSIONS_KEY, 1 << 18);
+			xCentroids = Centroids.read(conf, new Path(conf.get(CENTROIDS_KEY)), dimensions);
+			xSums = new double[xCentroids.xClusters.length][dimensions];
+			xCounts = new long[xCentroids.xClusters.length];
+			xSimilarities = new double[xCentroids.xClusters.length];
+		}
+
+		/**
+		 * Write the partial sum of each cluster that was assigned an incident by this task.
+		 * 
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void cleanup(Context aContext) throws IOException, InterruptedException {
+			IntWritable myCluster = new IntWritable();
+			ClusterSumWritable mySum = new ClusterSumWritable();
+			for (int i = 0; i < xSums.length; i++) {
+				if (xCounts[i] > 0) {
+					myCluster.set(xCentroids.xClusters[i]);
+					mySum.set(xCounts[i], xSimilarities[i], xSums[i]);
+					aContext.write(myCluster, mySum);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Merges the partial sums of a cluster, which the CentroidReducer also turns into the centroid of the cluster.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class ClusterSumCombiner extends
+			InstrumentedReducer<IntWritable, ClusterSumWritable, IntWritable, ClusterSumWritable> {
+		protected ClusterSumWritable xSumValue = new ClusterSumWritable();
+		private double[] xSum;
+
+		@Override
+		protected void reduce(IntWritable aKey, Iterable<ClusterSumWritable> aValues, Context aContext)
+				throws IOException, InterruptedException {
+			long count = 0;
+			double similarity = 0.0;
+			for (ClusterSumWritable myValue : aValues) {
+				count += myValue.getCount();
+				similarity += myValue.getSimilarity();
+				myValue.getVector().addTo(xSum);
+			}
+			xSumValue.set(count, similarity, xSum);
+			Arrays.fill(xSum, 0.0);
+			write(aKey, aContext);
+		}
+
+		protected void write(IntWritable aKey, Context aContext) throws IOException, InterruptedException {
+			aContext.write(aKey, xSumValue);
+		}
+
+		@Override
+		protected void setup(Context aContext) throws IOException, InterruptedException {
+			xSum = new double[aContext.getConfiguration().getInt(DIMENSIONS_KEY, 1 << 18)];
+		}
+	}
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class CentroidReducer extends ClusterSumCombiner {
+		@Override
+		protected void write(IntWritable aKey, Context aContext) throws IOException, InterruptedException {
+			xSumValue.getVector().normalize();
+			aContext.write(aKey, xSumValue);
+		}
+	}
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class AssignmentMapper extends InstrumentedMapper<Text, SparseVectorWritable, Text, Text> {
+		private Text xAssignmentValue = new Text();
+		private DecimalFormat xSimilarityFormat = new DecimalFormat(SIMILARITY_PATTERN);
+		private Centroids xCentroids;
+		private double[] xSimilarity = new double[1];
+
+		/**
+		 * Write the cluster of an incident (the cluster of its nearest centroid).
+		 * 
+		 * @param aKey the CaseNbr@FileName of the incident
+		 * @param aValue the unit length vector of the incident
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void map(Text aKey, SparseVectorWritable aValue, Context aContext) throws IOException,
+				InterruptedException {
+			int nearest = xCentroids.nearest(aValue, xSimilarity);
+			aContext.getCounter(NEISS_DATA.NUM_ASSIGNED).increment(1);
+
+			// @formatter:off
+			/*
+			 * Write the output record in the following format: 
+			 * 		[KEY(Text(CaseNbr@FileName))  VALUE(Text(<Cluster \t Similarity>))]
+			 */
+			// @formatter:on
+			xAssignmentValue.set(xCentroids.xClusters[nearest] + TAB_DELIMITER
+					+ xSimilarityFormat.format(xSimilarity[0]));
+			aContext.write(aKey, xAssignmentValue);
+		}
+
+		@Override
+		protected void setup(Context aContext) throws IOException, InterruptedException {
+			Configuration conf = aContext.getConfiguration();
+			xCentroids = Centroids.read(conf, new Path(conf.get(CENTROIDS_KEY)),
+					conf.getInt(DIMENSIONS_KEY, 1 << 18));
+		}
+	}
+
+	/**
+	 * Build the job that gathers the TF-IDF scores into the cached vectors of the incidents.
+	 **/
+	private Job createVectorJob(Path aInput, Path aVectorsDir) throws IOException {
+		Job job = new Job(getConf());
+		job.setJarByClass(DescriptionKMeans.class);
+		job.setJobName("Gather the TF-IDF Vectors of the Incident Descriptions");
+
+		FileInputFormat.setInputPaths(job, aInput);
+		FileOutputFormat.setOutputPath(job, aVectorsDir);
+
+		job.setMapperClass(VectorMapper.class);
+		job.setCombinerClass(VectorCombiner.class);
+		job.setReducerClass(VectorReducer.class);
+
+		job.setOutputKeyClass(Text.class);
+		job.setOutputValueClass(SparseVectorWritable.class);
+
+		job.setInputFormatClass(KeyValueTextInputFormat.class);
+		job.setOutputFormatClass(SequenceFileOutputFormat.class);
+		MultipleOutputs.addNamedOutput(job, TERMS_OUTPUT, SequenceFileOutputFormat.class, IntWritable.class,
+				Text.class);
+
+		job.setNumReduceTasks(8);
+
+		CompressionSettings.configure(job, DescriptionKMeans.class);
+		return job;
+	}
+
+	/**
+	 * Build the job of an iteration, which writes the new centroids from those of the previous iteration.
+	 **/
+	private Job createIterationJob(Path aVectorsDir, Path aCentroidsDir, Path aNewCentroidsDir, int aClusters)
+			throws IOException {
+		Job job = new Job(getConf());
+		job.getConfiguration().set(CENTROIDS_KEY, aCentroidsDir.toString());
+		job.setJarByClass(DescriptionKMeans.class);
+		job.setJobName("Cluster the Incident Descriptions (" + aNewCentroidsDir.getName() + ")");
+
+		FileInputFormat.setInputPaths(job, aVectorsDir);
+		FileOutputFormat.setOutputPath(job, aNewCentroidsDir);
+
+		job.setMapperClass(ClusterMapper.class);
+		job.setCombinerClass(ClusterSumCombiner.class);
+		job.setReducerClass(CentroidReducer.class);
+
+		job.setOutputKeyClass(IntWritable.class);
+		job.setOutputValueClass(ClusterSumWritable.class);
+
+		job.setInputFormatClass(SequenceFileInputFormat.class);
+		job.setOutputFormatClass(SequenceFileOutputFormat.class);
+
+		job.setNumReduceTasks(Math.min(aClusters, 8));
+
+		CompressionSettings.configure(job, DescriptionKMeans.class);
+		return job;
+	}
+
+	/**
+	 * Build the map-only job that writes the cluster of each incident.
+	 **/
+	private Job createAssignmentJob(Path aVectorsDir, Path aCentroidsDir, Path aAssignmentsDir) throws IOException {
+		Job job = new Job(getConf());
+		job.getConfiguration().set(CENTROIDS_KEY, aCentroidsDir.toString());
+		job.setJarByClass(DescriptionKMeans.class);
+		job.setJobName("Assign the Incident Descriptions to their Clusters");
+
+		FileInputFormat.setInputPaths(job, aVectorsDir);
+		FileOutputFormat.setOutputPath(job, aAssignmentsDir);
+
+		job.setMapperClass(AssignmentMapper.class);
+
+		job.setOutputKeyClass(Text.class);
+		job.setOutputValueClass(Text.class);
+
+		job.setInputFormatClass(SequenceFileInputFormat.class);
+		job.setOutputFormatClass(TextOutputFormat.class);
+
+		job.setNumReduceTasks(0);
+
+		CompressionSettings.configure(job, DescriptionKMeans.class);
+		return job;
+	}
+
+	/**
+	 * Run a job (within the embedded engine when requested) and wait for it to be completed.
+	 **/
+	private boolean runJob(Job aJob) throws Exception {
+		boolean success;
+		if (xEmbedded) {
+			EmbeddedJobEngine engine = new EmbeddedJobEngine(aJob.getConfiguration());
+			success = engine.runJob(aJob);
+			CompressionSettings.report(aJob.getConfiguration(), engine.getCounters(), aJob.getJobName());
+			JobInstrumentation.report(aJob.getConfiguration(), engine.getCounters(), aJob.getJobName());
+		} else {
+			success = aJob.waitForCompletion(true);
+			CompressionSettings.report(aJob);
+			JobInstrumentation.report(aJob);
+		}
+		if (!success) {
+			System.err.println("ERROR: The job '" + aJob.getJobName() + "' failed");
+		}
+		return success;
+	}
+
+	/**
+	 * @return true if the vectors were completely gathered from the same input directory holding the same files
+	 **/
+	private static boolean isCached(FileSystem aFs, Path aVectorsDir, String aInputSource, IngestManifest aInputFiles)
+			throws IOException {
+		Path sourceFile = new Path(aVectorsDir, SOURCE_FILE);
+		if (!aFs.exists(new Path(aVectorsDir, SUCCESS_FILE)) || !aFs.exists(sourceFile)) {
+			return false;
+		}
+		String cachedSource;
+		BufferedReader bufferedRdr = new BufferedReader(new InputStreamReader(aFs.open(sourceFile), "UTF-8"));
+		try {
+			cachedSource = bufferedRdr.readLine();
+		} finally {
+			bufferedRdr.close();
+		}
+		if (!aInputSource.equals(cachedSource)) {
+			LOG.info("The cached vectors of " + aVectorsDir + " were gathered from " + cachedSource);
+			return false;
+		}
+		return aInputFiles.equals(IngestManifest.load(aFs, aVectorsDir));
+	}
+
+	/**
+	 * Record the input directory and the manifest of its files along with the vectors gathered from them.
+	 **/
+	private static void saveSource(FileSystem aFs, Path aVectorsDir, String aInputSource, IngestManifest aInputFiles)
+			throws IOException {
+		aInputFiles.save(aFs, aVectorsDir);
+		Writer sourceWriter = new OutputStreamWriter(aFs.create(new Path(aVectorsDir, SOURCE_FILE), true), "UTF-8");
+		try {
+			sourceWriter.write(aInputSource);
+			sourceWriter.write('\n');
+		} finally {
+			sourceWriter.close();
+		}
+	}
+
+	/**
+	 * Pick the initial centroids as a (seeded) uniform sample of the distinct vectors of the incidents.
+	 **/
+	private int writeInitialCentroids(Path aVectorsDir, Path aCentroidsDir, int aClusters, long aSeed)
+			throws IOException {
+		Configuration conf = getConf();
+		FileSystem fs = aVectorsDir.getFileSystem(conf);
+		Random random = new Random(aSeed);
+		List<SparseVectorWritable> allSamples = new ArrayList<SparseVectorWritable>();
+		Set<String> allSampled = new HashSet<String>();
+		long seen = 0;
+
+		FileStatus[] allParts = fs.globStatus(new Path(aVectorsDir, OUTPUT_FILES));
+		for (FileStatus myPart : (allParts != null) ? allParts : new FileStatus[0]) {
+			SequenceFile.Reader vectorRdr = new SequenceFile.Reader(conf, SequenceFile.Reader.file(myPart.getPath()));
+			try {
+				Text myDocument = new Text();
+				SparseVectorWritable myVector = new SparseVectorWritable();
+				while (vectorRdr.next(myDocument, myVector)) {
+					/*
+					 * Leave out the vectors that were already sampled, as two identical centroids split one cluster.
+					 */
+					String myKey = keyOf(myVector);
+					if (allSampled.contains(myKey)) {
+						continue;
+					}
+					seen++;
+					int slot = (allSamples.size() < aClusters) ? allSamples.size() : (int) (random.nextDouble() * seen);
+					if (slot < aClusters) {
+						if (slot == allSamples.size()) {
+							allSamples.add(myVector);
+						} else {
+							allSampled.remove(keyOf(allSamples.get(slot)));
+							allSamples.set(slot, myVector);
+						}
+						allSampled.add(myKey);
+						myVector = new SparseVectorWritable();
+					}
+				}
+			} finally {
+				vectorRdr.close();
+			}
+		}
+
+		SequenceFile.Writer centroidWriter = SequenceFile.createWriter(conf, SequenceFile.Writer.file(new Path(
+				aCentroidsDir, "part-r-00000")), SequenceFile.Writer.keyClass(IntWritable.class),
+				SequenceFile.Writer.valueClass(ClusterSumWritable.class));
+		try {
+			double[] myDense = new double[conf.getInt(DIMENSIONS_KEY, 1 << 18)];
+			ClusterSumWritable myCentroid = new ClusterSumWritable();
+			for (int i = 0; i < allSamples.size(); i++) {
+				allSamples.get(i).addTo(myDense);
+				myCentroid.set(0, 0.0, myDense);
+				Arrays.fill(myDense, 0.0);
+				centroidWriter.append(new IntWritable(i + 1), myCentroid);
+			}
+		} finally {
+			centroidWriter.close();
+		}
+		return allSamples.size();
+	}
+
+	private static String keyOf(SparseVectorWritable aVector) {
+		StringBuilder keyBuilder = new StringBuilder();
+		for (int i = 0; i < aVector.getSize(); i++) {
+			keyBuilder.append(aVector.getId(i)).append(':').append(aVector.getWeight(i)).append(' ');
+		}
+		return keyBuilder.toString();
+	}
+
+	/**
+	 * @return the largest distance (one less the cosine similarity) that any centroid moved by, or 1.0 when a
+	 *         centroid was added or lost
+	 **/
+	private static double movementOf(Centroids aOld, Centroids aNew) {
+		Map<Integer, Integer> allOld = new HashMap<Integer, Integer>();
+		for (int i = 0; i < aOld.xClusters.length; i++) {
+			allOld.put(aOld.xClusters[i], i);
+		}
+		double movement = (aOld.xClusters.length == aNew.xClusters.length) ? 0.0 : 1.0;
+		for (int i = 0; i < aNew.xClusters.length; i++) {
+			Integer myOld = allOld.get(aNew.xClusters[i]);
+			if (myOld == null) {
+				return 1.0;
+			}
+			double product = 0.0;
+			float[] oldDense = aOld.xDense[myOld];
+			float[] newDense = aNew.xDense[i];
+			for (int j = 0; j < newDense.length; j++) {
+				product += oldDense[j] * newDense[j];
+			}
+			movement = Math.max(movement, 1.0 - product);
+		}
+		return movement;
+	}
+
+	/**
+	 * Write the size, the mean similarity and the top terms of each cluster. The size and the mean similarity are
+	 * tallied from the assignments to the final centroids (rather than taken from the partial sums of the last
+	 * iteration, which were assigned to the centroids before it), so that both outputs agree even when the iterations
+	 * stopped before converging.
+	 **/
+	private void writeClusters(Centroids aCentroids, Path aVectorsDir, Path aAssignmentsDir, Path aClustersFile)
+			throws IOException {
+		Configuration conf = getConf();
+		FileSystem fs = aClustersFile.getFileSystem(conf);
+
+		Map<Integer, Integer> allIndexes = new HashMap<Integer, Integer>();
+		for (int i = 0; i < aCentroids.xClusters.length; i++) {
+			allIndexes.put(aCentroids.xClusters[i], i);
+		}
+		long[] allCounts = new long[aCentroids.xClusters.length];
+		double[] allSimilarities = new double[aCentroids.xClusters.length];
+		FileStatus[] allAssignments = fs.globStatus(new Path(aAssignmentsDir, OUTPUT_FILES));
+		for (FileStatus myPart : (allAssignments != null) ? allAssignments : new FileStatus[0]) {
+			BufferedReader assignmentRdr = new BufferedReader(new InputStreamReader(fs.open(myPart.getPath()),
+					"UTF-8"));
+			try {
+				String assignmentLine = assignmentRdr.readLine();
+				while (assignmentLine != null) {
+					/*
+					 * Expects a line of the form: CaseNbr@FileName \t Cluster \t Similarity
+					 */
+					String[] assignmentVals = assignmentLine.split(TAB_DELIMITER);
+					Integer myIndex = (assignmentVals.length == 3) ? allIndexes.get(Integer
+							.valueOf(assignmentVals[1])) : null;
+					if (myIndex != null) {
+						allCounts[myIndex]++;
+						allSimilarities[myIndex] += Double.parseDouble(assignmentVals[2]);
+					}
+					assignmentLine = assignmentRdr.readLine();
+				}
+			} finally {
+				assignmentRdr.close();
+			}
+		}
+
+		Map<Integer, String> allTerms = new HashMap<Integer, String>();
+		FileStatus[] allParts = fs.globStatus(new Path(new Path(aVectorsDir, TERMS_DIR), TERMS_OUTPUT + "-*"));
+		for (FileStatus myPart : (allParts != null) ? allParts : new FileStatus[0]) {
+			SequenceFile.Reader termRdr = new SequenceFile.Reader(conf, SequenceFile.Reader.file(myPart.getPath()));
+			try {
+				IntWritable myId = new IntWritable();
+				Text myTerm = new Text();
+				while (termRdr.next(myId, myTerm)) {
+					allTerms.put(myId.get(), myTerm.toString());
+				}
+			} finally {
+				termRdr.close();
+			}
+		}
+
+		DecimalFormat similarityFormat = new DecimalFormat(SIMILARITY_PATTERN);
+		Writer clusterWriter = new OutputStreamWriter(fs.create(aClustersFile, true), "UTF-8");
+		try {
+			for (int i = 0; i < aCentroids.xClusters.length; i++) {
+				StringBuilder lineBuilder = new StringBuilder();
+				lineBuilder.append(aCentroids.xClusters[i]).append(TAB_DELIMITER);
+				lineBuilder.append(allCounts[i]).append(TAB_DELIMITER);
+				lineBuilder.append(similarityFormat.format((allCounts[i] > 0) ? allSimilarities[i] / allCounts[i]
+						: 0.0));
+
+				/*
+				 * Select the heaviest terms of the centroid by repeatedly taking the largest remaining weight.
+				 */
+				float[] myDense = aCentroids.xDense[i].clone();
+				for (int j = 0; j < TOP_TERMS; j++) {
+					int heaviest = 0;
+					for (int k = 1; k < myDense.length; k++) {
+						if (myDense[k] > myDense[heaviest]) {
+							heaviest = k;
+						}
+					}
+					if (myDense[heaviest] <= 0.0f) {
+						break;
+					}
+					String myTerm = allTerms.get(heaviest);
+					lineBuilder.append((j == 0) ? TAB_DELIMITER : SPACE_DELIMITER);
+					lineBuilder.append((myTerm != null) ? myTerm : "#" + heaviest);
+					myDense[heaviest] = 0.0f;
+				}
+				lineBuilder.append('\n');
+				clusterWriter.write(lineBuilder.toString());
+			}
+		} finally {
+			clusterWriter.close();
+		}
+	}
+
+	/**
+	 * Cluster the incidents of the TF-IDF scores.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		final String usageText = "Usage: DescriptionKMeans <tfidf_dir> <output_dir> [-clusters n] [-iterations n]"
+				+ " [-delta d] [-dimensions n] [-seed n] [-embedded]";
+
+		if (aArguments.length < 2) {
+			LOG.info(usageText);
+			return -1;
+		}
+
+		int clusters = 8;
+		int maxIterations = 20;
+		double delta = 0.0001;
+		int dimensions = 1 << 18;
+		long seed = 736;
+		for (int i = 2; i < aArguments.length; i++) {
+			if ("-clusters".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				clusters = Integer.parseInt(aArguments[i]);
+			} else if ("-iterations".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				maxIterations = Integer.parseInt(aArguments[i]);
+			} else if ("-delta".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				delta = Double.parseDouble(aArguments[i]);
+			} else if ("-dimensions".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				dimensions = Integer.parseInt(aArguments[i]);
+			} else if ("-seed".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				seed = Long.parseLong(aArguments[i]);
+			} else if ("-embedded".equals(aArguments[i])) {
+				xEmbedded = true;
+			} else {
+				System.err.println("ERROR: Invalid argument : '" + aArguments[i] + "'");
+				LOG.info(usageText);
+				return -1;
+			}
+		}
+		if (clusters < 1 || Integer.bitCount(dimensions) != 1) {
+			System.err.println("ERROR: The -clusters must be at least 1 and the -dimensions must be a power of two");
+			LOG.info(usageText);
+			return -1;
+		}
+		getConf().setInt(CLUSTERS_KEY, clusters);
+		getConf().setInt(DIMENSIONS_KEY, dimensions);
+
+		Path input = new Path(aArguments[0]);
+		Path outputDir = new Path(aArguments[1]);
+		FileSystem fs = outputDir.getFileSystem(getConf());
+
+		/*
+		 * Gather the vectors unless they were already cached (with the same number of dimensions) by an earlier run
+		 * over the same input that has not changed since.
+		 */
+		Path vectorsDir = new Path(outputDir, VECTORS_DIR + dimensions);
+		FileSystem inputFs = input.getFileSystem(getConf());
+		String inputSource = inputFs.makeQualified(input).toString();
+		IngestManifest inputFiles = IngestManifest.scan(inputFs, input);
+		if (isCached(fs, vectorsDir, inputSource, inputFiles)) {
+			LOG.info("Reusing the cached vectors of " + vectorsDir);
+		} else {
+			fs.delete(vectorsDir, true);
+			if (!runJob(createVectorJob(input, vectorsDir))) {
+				return 1;
+			}
+			saveSource(fs, vectorsDir, inputSource, inputFiles);
+		}
+
+		/*
+		 * Remove the centroids of an earlier run and start from a sample of the incidents.
+		 */
+		FileStatus[] allOldCentroids = fs.globStatus(new Path(outputDir, CENTROIDS_DIR + "*"));
+		for (FileStatus myOld : (allOldCentroids != null) ? allOldCentroids : new FileStatus[0]) {
+			fs.delete(myOld.getPath(), true);
+		}
+		Path centroidsDir = new Path(outputDir, String.format("%s%02d", CENTROIDS_DIR, 0));
+		int sampled = writeInitialCentroids(vectorsDir, centroidsDir, clusters, seed);
+		if (sampled < clusters) {
+			LOG.info("Only found " + sampled + " distinct incidents for the " + clusters + " clusters.");
+		}
+		if (sampled == 0) {
+			System.err.println("ERROR: There are no incident vectors within " + vectorsDir);
+			return 1;
+		}
+
+		Centroids centroids = Centroids.read(getConf(), centroidsDir, dimensions);
+		DecimalFormat movementFormat = new DecimalFormat("0.000000");
+		for (int iteration = 1; iteration <= maxIterations; iteration++) {
+			Path newCentroidsDir = new Path(outputDir, String.format("%s%02d", CENTROIDS_DIR, iteration));
+			if (!runJob(createIterationJob(vectorsDir, centroidsDir, newCentroidsDir, clusters))) {
+				return 1;
+			}
+			Centroids newCentroids = Centroids.read(getConf(), newCentroidsDir, dimensions);
+			double movement = movementOf(centroids, newCentroids);
+			double similarity = 0.0;
+			long assigned = 0;
+			for (int i = 0; i < newCentroids.xClusters.length; i++) {
+				similarity += newCentroids.xSimilarities[i];
+				assigned += newCentroids.xCounts[i];
+			}
+			LOG.info("Iteration " + iteration + " : " + newCentroids.xClusters.length + " clusters, mean similarity "
+					+ movementFormat.format((assigned > 0) ? similarity / assigned : 0.0) + ", largest movement "
+					+ movementFormat.format(movement));
+
+			centroids = newCentroids;
+			centroidsDir = newCentroidsDir;
+			if (movement <= delta) {
+				LOG.info("Converged after " + iteration + " iterations.");
+				break;
+			}
+		}
+
+		/*
+		 * Assign every incident to the final centroids and describe each of the clusters.
+		 */
+		Path assignmentsDir = new Path(outputDir, ASSIGNMENTS_DIR);
+		fs.delete(assignmentsDir, true);
+		if (!runJob(createAssignmentJob(vectorsDir, centroidsDir, assignmentsDir))) {
+			return 1;
+		}
+		writeClusters(centroids, vectorsDir, assignmentsDir, new Path(outputDir, CLUSTERS_FILE));
+		return 0;
+	}
+
+	/**
+	 * The main method calls the ToolRunner.run method, which in turn calls an options parser that interprets Hadoop
+	 * command-line options and puts them into a Configuration object.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	public static void main(String[] aArguments) throws Exception {
+		int exitCode = ToolRunner.run(new Configuration(), new DescriptionKMeans(), aArguments);
+		System.exit(exitCode);
+	}
+}
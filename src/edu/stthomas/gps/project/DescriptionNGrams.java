@@ -0,0 +1,276 @@
+package edu.stthomas.gps.project;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+
+/**
+ * The n-grams (phrases of consecutive words) of the incident Descriptions, such as "inflatable slide" or "bounce
+ * house", which are lost when a Description is only counted one word at a time. The words of an n-gram must be next to
+ * each other within the Description itself, so no n-gram spans a stop word, a number or a punctuation mark.
+ * 
+ * Each n-gram is identified by a 64-bit hash of its words (rather than by the concatenation of the words) and is
+ * carried through the TF-IDF chain as a term of the form "#" followed by the 16 hex digits of its id. The phrase of each
+ * id is written once into a dictionary beside the word frequencies so that the final TF-IDF output can be rendered with
+ * the phrases again (with the words joined by an underscore, as the terms may not contain spaces).
+ * 
+ * Most of the n-grams of short clinical phrases appear only once, so each Mapper holds back the occurrences of an
+ * n-gram until it has been seen a minimum number of times within the task (the Pruner) and drops the rest, which keeps
+ * the volume of the shuffle manageable for trigrams.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class DescriptionNGrams {
+	public static final String ORDER_KEY = new String("wordcount.ngram.order");
+	public static final String MIN_COUNT_KEY = new String("wordcount.ngram.min.count");
+	public static final String DICTIONARY_KEY = new String("wordcount.ngram.dictionary");
+	public static final String DICTIONARY_OUTPUT = new String("ngrams");
+	public static final String DICTIONARY_DIR = new String("_ngrams");
+	public static final String DICTIONARY_FILE = new String("_ngrams/dictionary");
+	public static final int MAX_ORDER = 3;
+
+	private static final char TERM_PREFIX = '#';
+	private static final char PHRASE_DELIMITER = '_';
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	private static final long GOLDEN_RATIO = 0x9e3779b97f4a7c15L;
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	/**
+	 * Static methods only (other than the Pruner).
+	 **/
+	private DescriptionNGrams() {
+	}
+
+	/**
+	 * @return the 64-bit (FNV-1a) hash of a single word
+	 **/
+	public static long hashOf(CharSequence aWord) {
+		long hash = FNV_OFFSET;
+		for (int i = 0; i < aWord.length(); i++) {
+			hash ^= aWord.charAt(i);
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+
+	/**
+	 * Extend the id of an n-gram by the next word, giving the id of the (n+1)-gram.
+	 * 
+	 * @param aId the id of the n-gram (or the hash of its only word)
+	 * @param aWordHash the hash of the next word
+	 * @return the id of the (n+1)-gram
+	 **/
+	public static long extend(long aId, long aWordHash) {
+		long id = aId * GOLDEN_RATIO + aWordHash;
+		id ^= id >>> 33; // The finalizer of MurmurHash3
+		id *= 0xff51afd7ed558ccdL;
+		id ^= id >>> 33;
+		id *= 0xc4ceb9fe1a85ec53L;
+		return id ^ (id >>> 33);
+	}
+
+	/**
+	 * @return the term of an n-gram id: "#" followed by its 16 hex digits
+	 **/
+	public static String termOf(long aId) {
+		char[] allChars = new char[17];
+		allChars[0] = TERM_PREFIX;
+		for (int i = 16; i > 0; i--) {
+			allChars[i] = HEX_DIGITS[(int) (aId & 0xf)];
+			aId >>>= 4;
+		}
+		return new String(allChars);
+	}
+
+	/**
+	 * @return whether the term is the id of an n-gram rather than a single word
+	 **/
+	public static boolean isNGram(String aTerm) {
+		return aTerm.length() == 17 && aTerm.charAt(0) == TERM_PREFIX;
+	}
+
+	/**
+	 * @return the phrase of the consecutive words, joined by underscores
+	 **/
+	public static String phraseOf(List<String> aWords, int aStart, int aOrder) {
+		StringBuilder phraseBuilder = new StringBuilder();
+		for (int i = aStart; i < aStart + aOrder; i++) {
+			if (i > aStart) {
+				phraseBuilder.append(PHRASE_DELIMITER);
+			}
+			phraseBuilder.append(aWords.get(i));
+		}
+		return phraseBuilder.toString();
+	}
+
+	/**
+	 * Read the dictionary of the n-gram phrases written beside the word frequencies.
+	 * 
+	 * @param aConf the configuration to use
+	 * @param aDictionaryDir the directory of the dictionary (the _ngrams directory of the word frequencies)
+	 * @return the phrase of each n-gram term
+	 **/
+	public static Map<String, String> readDictionary(Configuration aConf, Path aDictionaryDir) throws IOException {
+		Map<String, String> allPhrases = new HashMap<String, String>();
+		FileSystem fs = aDictionaryDir.getFileSystem(aConf);
+		if (!fs.exists(aDictionaryDir)) {
+			return allPhrases;
+		}
+		Text myTerm = new Text();
+		Text myPhrase = new Text();
+		for (FileStatus myStatus : fs.listStatus(aDictionaryDir)) {
+			if (myStatus.isDirectory() || myStatus.getPath().getName().startsWith("_")
+					|| myStatus.getPath().getName().startsWith(".")) {
+				continue;
+			}
+			SequenceFile.Reader dictionaryRdr = new SequenceFile.Reader(aConf,
+					SequenceFile.Reader.file(myStatus.getPath()));
+			try {
+				while (dictionaryRdr.next(myTerm, myPhrase)) {
+					allPhrases.put(myTerm.toString(), myPhrase.toString());
+				}
+			} finally {
+				dictionaryRdr.close();
+			}
+		}
+		return allPhrases;
+	}
+
+	/**
+	 * Holds back the occurrences (documents) of each n-gram of a task until the n-gram has been seen the minimum number
+	 * of times, after which all of its occurrences are released. The occurrences of the n-grams that never reach the
+	 * minimum are dropped when the task ends.
+	 * 
+	 * The n-grams are kept within an open addressing table of primitive arrays (the id, its count and the head of its
+	 * list of held back occurrences), so that the millions of rare trigrams of a task do not become millions of boxed
+	 * map entries.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class Pruner {
+		private static final int RELEASED = -2;
+		private static final int NONE = -1;
+
+		private final int xMinCount;
+		private long[] xIds;
+		private int[] xCounts;
+		private int[] xHeads;
+		private int xSize = 0;
+
+		private String[] xHeldDocuments = new String[1024];
+		private int[] xHeldNext = new int[1024];
+		private int xHeld = 0;
+		private long xReleasedHeld = 0;
+
+		/**
+		 * @param aMinCount the number of times an n-gram must be seen before its occurrences are released
+		 **/
+		public Pruner(int aMinCount) {
+			xMinCount = Math.max(1, aMinCount);
+			allocate(1 << 16);
+		}
+
+		private void allocate(int aCapacity) {
+			xIds = new long[aCapacity];
+			xCounts = new int[aCapacity];
+			xHeads = new int[aCapacity];
+		}
+
+		/**
+		 * Add an occurrence of an n-gram within a document.
+		 * 
+		 * @param aId the id of the n-gram
+		 * @param aDocument the document (CaseNbr@FileName) the n-gram occurs within
+		 * @param aReleased cleared and filled with the documents of the occurrences that are released by this call
+		 * @return whether this call released the n-gram for the first time
+		 **/
+		public boolean add(long aId, String aDocument, List<String> aReleased) {
+			aReleased.clear();
+			if ((xSize + 1) * 2 > xIds.length) {
+				grow();
+			}
+			int slot = slotOf(aId);
+			if (xCounts[slot] == 0) {
+				xIds[slot] = aId;
+				xHeads[slot] = NONE;
+				xSize++;
+			}
+			xCounts[slot]++;
+
+			if (xHeads[slot] == RELEASED) {
+				aReleased.add(aDocument);
+				return false;
+			}
+			if (xCounts[slot] < xMinCount) {
+				hold(slot, aDocument);
+				return false;
+			}
+			for (int held = xHeads[slot]; held != NONE; held = xHeldNext[held]) {
+				aReleased.add(xHeldDocuments[held]);
+				xHeldDocuments[held] = null;
+				xReleasedHeld++;
+			}
+			aReleased.add(aDocument);
+			xHeads[slot] = RELEASED;
+			return true;
+		}
+
+		/**
+		 * @return the number of occurrences that are still held back (and are dropped when the task ends)
+		 **/
+		public long getHeldCount() {
+			return xHeld - xReleasedHeld;
+		}
+
+		private void hold(int aSlot, String aDocument) {
+			if (xHeld == xHeldDocuments.length) {
+				String[] allDocuments = new String[xHeld * 2];
+				System.arraycopy(xHeldDocuments, 0, allDocuments, 0, xHeld);
+				xHeldDocuments = allDocuments;
+				int[] allNext = new int[xHeld * 2];
+				System.arraycopy(xHeldNext, 0, allNext, 0, xHeld);
+				xHeldNext = allNext;
+			}
+			xHeldDocuments[xHeld] = aDocument;
+			xHeldNext[xHeld] = xHeads[aSlot];
+			xHeads[aSlot] = xHeld++;
+		}
+
+		/**
+		 * @return the slot of the id within the table (which has a count of zero when the id is not yet present)
+		 **/
+		private int slotOf(long aId) {
+			int mask = xIds.length - 1;
+			int slot = (int) (aId ^ (aId >>> 32)) & mask;
+			while (xCounts[slot] != 0 && xIds[slot] != aId) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		private void grow() {
+			long[] allIds = xIds;
+			int[] allCounts = xCounts;
+			int[] allHeads = xHeads;
+			allocate(allIds.length * 2);
+			for (int i = 0; i < allIds.length; i++) {
+				if (allCounts[i] != 0) {
+					int slot = slotOf(allIds[i]);
+					xIds[slot] = allIds[i];
+					xCounts[slot] = allCounts[i];
+					xHeads[slot] = allHeads[i];
+				}
+			}
+		}
+	}
+}
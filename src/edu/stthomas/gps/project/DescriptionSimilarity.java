@@ -0,0 +1,717 @@
+package edu.stthomas.gps.project;
+
+import java.io.BufferedReader;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+/**
+ * Finds the incidents of the filtered NEISS data whose Descriptions are near-duplicates of (or very similar to) each
+ * other, both to catch the cases that were reported twice and to group the incidents that share an injury pattern,
+ * without comparing every pair of Descriptions.
+ * <p>
+ * 
+ * The Mapper<> tokenizes each Description the same way as the DescriptionWordFrequency, hashes its words (or its
+ * n-grams of words with -shingleSize) into a set of shingles and builds the MinHash signature of the set: the minimum
+ * of each of bands x rows hash functions over the shingles. The probability that two signatures agree on any one of
+ * those minimums is the Jaccard similarity of the two sets. The signature is cut into bands of rows, and the incident
+ * is sent to the bucket of the hash of each of its bands, so two incidents only meet within a Reducer<> when all of the
+ * rows of at least one of their bands agree. With the default 16 bands of 4 rows that happens for 99% of the pairs with
+ * a similarity of 0.75, 64% of the pairs with a similarity of 0.5 and about 6% of the pairs with a similarity of 0.25.
+ * <p>
+ * 
+ * Only the shingles of an incident travel to its buckets (the signature is far larger and is cheaply rebuilt by the
+ * Reducer<>). Each Reducer<> verifies the candidate pairs of a bucket with their exact Jaccard similarity and writes
+ * the pairs that reach the threshold, but only from the first band the pair shares so that each pair is written once.
+ * Incidents with identical Descriptions are chained to the first of them rather than compared with each other pair by
+ * pair. Once the job commits, the similar pairs are joined into clusters (the connected components of the pairs):
+ * 
+ * <pre>
+ * 		<output_dir>/part-r-NNNNN		=	CaseNbr@FileName \t CaseNbr@FileName \t Similarity
+ * 		<output_dir>/clusters			=	ClusterNbr \t Size \t CaseNbr@FileName ...	(largest first)
+ * </pre>
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class DescriptionSimilarity extends Configured implements Tool, JobFactory {
+	private static final Logger LOG = Logger.getLogger(DescriptionSimilarity.class);
+
+	public static enum NEISS_DATA {
+		TOAL_RECORDS_PROCESSED, NUM_EMPTY_DESCRIPTIONS, NUM_BUCKETS, NUM_OVERSIZED_BUCKETS, NUM_IDENTICAL_DESCRIPTIONS,
+		NUM_CANDIDATE_PAIRS, NUM_REPEATED_CANDIDATES, NUM_SIMILAR_PAIRS
+	}
+
+	private static final String BANDS_KEY = new String("neiss.similarity.bands");
+	private static final String ROWS_KEY = new String("neiss.similarity.rows");
+	private static final String SHINGLE_SIZE_KEY = new String("neiss.similarity.shingle.size");
+	private static final String THRESHOLD_KEY = new String("neiss.similarity.threshold");
+	private static final String MAX_BUCKET_KEY = new String("neiss.similarity.max.bucket");
+
+	private static final String CLUSTERS_FILE = new String("clusters");
+	private static final String OUTPUT_FILES = new String("part-*");
+	private static final String TAB_DELIMITER = new String("\t");
+	private static final String SPACE_DELIMITER = new String(" ");
+	private static final String SIMILARITY_PATTERN = new String("0.0000");
+	private static final long MINHASH_SEED = 0x2545f4914f6cdd1dL;
+
+	/**
+	 * The shingles (the sorted distinct hashes of the words) of the Description of an incident.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class ShinglesWritable implements Writable {
+		private Text xDocument = new Text();
+		private long[] xShingles = new long[16];
+		private int xSize = 0;
+
+		/**
+		 * @param aDocument the CaseNbr@FileName of the incident
+		 * @param aShingles the shingles of the Description (sorted and distinct)
+		 * @param aSize the number of shingles
+		 **/
+		public void set(String aDocument, long[] aShingles, int aSize) {
+			xDocument.set(aDocument);
+			if (xShingles.length < aSize) {
+				xShingles = new long[aSize];
+			}
+			System.arraycopy(aShingles, 0, xShingles, 0, aSize);
+			xSize = aSize;
+		}
+
+		public String getDocument() {
+			return xDocument.toString();
+		}
+
+		/**
+		 * @return a copy of the shingles (as the framework reuses this object for every value)
+		 **/
+		public long[] copyShingles() {
+			return Arrays.copyOf(xShingles, xSize);
+		}
+
+		@Override
+		public void write(DataOutput aOut) throws IOException {
+			xDocument.write(aOut);
+			WritableUtils.writeVInt(aOut, xSize);
+			for (int i = 0; i < xSize; i++) {
+				aOut.writeLong(xShingles[i]);
+			}
+		}
+
+		@Override
+		public void readFields(DataInput aIn) throws IOException {
+			xDocument.readFields(aIn);
+			xSize = WritableUtils.readVInt(aIn);
+			if (xShingles.length < xSize) {
+				xShingles = new long[xSize];
+			}
+			for (int i = 0; i < xSize; i++) {
+				xShingles[i] = aIn.readLong();
+			}
+		}
+	}
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class SignatureMapper extends InstrumentedMapper<Text, Text, LongWritable, ShinglesWritable> {
+		/*
+		 * Local Cache Variables for the <key,value> for reuse for each input record being processed.
+		 */
+		private LongWritable xBucketKey = new LongWritable();
+		private ShinglesWritable xShinglesValue = new ShinglesWritable();
+
+		private DescriptionTokenizer xTokenizer;
+		private int xBands;
+		private int xRows;
+		private int xShingleSize;
+		private long[] xSeeds;
+		private int[] xSignature;
+		private long[] xShingles = new long[64];
+
+		/**
+		 * Build the MinHash signature of the Description of an incident and write its shingles into the bucket of each
+		 * of the bands of the signature.
+		 * 
+		 * @param aKey a simple text key that represents the CaseNbr
+		 * @param aValue the tab delimited fields of the incident, with the Description as the last field
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void map(Text aKey, Text aValue, Context aContext) throws IOException, InterruptedException {
+			aContext.getCounter(NEISS_DATA.TOAL_RECORDS_PROCESSED).increment(1);
+			List<String> allWords = xTokenizer.tokenize(xTokenizer.descriptionOf(aValue.toString()), null);
+			if (xShingles.length < allWords.size()) {
+				xShingles = new long[allWords.size() * 2];
+			}
+			int size = shinglesOf(allWords, xShingleSize, xShingles);
+			if (size == 0) {
+				aContext.getCounter(NEISS_DATA.NUM_EMPTY_DESCRIPTIONS).increment(1);
+				return;
+			}
+			String fileName = ((FileSplit) aContext.getInputSplit()).getPath().getName();
+			signatureOf(xShingles, size, xSeeds, xSignature);
+
+			// @formatter:off
+			/*
+			 * Write an output record in the following format for each of the bands of the signature:
+			 * 		[KEY(LongWritable(<BandHash>))  VALUE(ShinglesWritable(<CaseNbr@FileName, Shingles>))]
+			 */
+			// @formatter:on
+			xShinglesValue.set(aKey.toString() + "@" + fileName, xShingles, size);
+			for (int band = 0; band < xBands; band++) {
+				xBucketKey.set(bandOf(xSignature, band, xRows));
+				aContext.write(xBucketKey, xShinglesValue);
+			}
+		}
+
+		/**
+		 * Setup the tokenizer and the hash functions of the signatures.
+		 * 
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void setup(Context aContext) throws IOException, InterruptedException {
+			Configuration conf = aContext.getConfiguration();
+			xTokenizer = DescriptionTokenizer.fromConfiguration(conf);
+			xBands = conf.getInt(BANDS_KEY, 16);
+			xRows = conf.getInt(ROWS_KEY, 4);
+			xShingleSize = conf.getInt(SHINGLE_SIZE_KEY, 1);
+			xSeeds = seedsOf(xBands * xRows);
+			xSignature = new int[xBands * xRows];
+		}
+	}
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class CandidateReducer extends InstrumentedReducer<LongWritable, ShinglesWritable, Text, Text> {
+		/*
+		 * Local Cache Variables for the <key, value> for reuse for each output reduce record being processed.
+		 */
+		private Text xTextKey = new Text();
+		private Text xTextValue = new Text();
+		private DecimalFormat xSimilarityFormat = new DecimalFormat(SIMILARITY_PATTERN);
+
+		private int xBands;
+		private int xRows;
+		private long[] xSeeds;
+		private float xThreshold;
+		private int xMaxBucket;
+
+		/*
+		 * The members of the current bucket (kept between the buckets to avoid reallocating the lists).
+		 */
+		private List<String> xDocuments = new ArrayList<String>();
+		private List<long[]> xShingles = new ArrayList<long[]>();
+		private List<int[]> xSignatures = new ArrayList<int[]>();
+		private Map<Integer, Integer> xFirstOfShingles = new HashMap<Integer, Integer>();
+
+		/**
+		 * Verify the candidate pairs of a bucket, writing the pairs that are similar enough.
+		 * 
+		 * @param aKey the hash of the band shared by the incidents of the bucket
+		 * @param aValues the shingles of the incidents of the bucket
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void reduce(LongWritable aKey, Iterable<ShinglesWritable> aValues, Context aContext)
+				throws IOException, InterruptedException {
+			xDocuments.clear();
+			xShingles.clear();
+			xSignatures.clear();
+			xFirstOfShingles.clear();
+
+			aContext.getCounter(NEISS_DATA.NUM_BUCKETS).increment(1);
+			for (ShinglesWritable myValue : aValues) {
+				if (xDocuments.size() == xMaxBucket) {
+					aContext.getCounter(NEISS_DATA.NUM_OVERSIZED_BUCKETS).increment(1);
+					break;
+				}
+				xDocuments.add(myValue.getDocument());
+				xShingles.add(myValue.copyShingles());
+			}
+			if (xDocuments.size() < 2) {
+				return;
+			}
+
+			/*
+			 * Chain every incident with the same shingles as an earlier one to the earlier one (which is only done
+			 * within the first band, as identical incidents share all of them). The rest of the incidents are compared
+			 * with each other pair by pair.
+			 */
+			List<Integer> allDistinct = new ArrayList<Integer>();
+			for (int i = 0; i < xDocuments.size(); i++) {
+				int[] mySignature = new int[xSeeds.length];
+				signatureOf(xShingles.get(i), xShingles.get(i).length, xSeeds, mySignature);
+				xSignatures.add(mySignature);
+
+				Integer shinglesHash = Integer.valueOf(Arrays.hashCode(xShingles.get(i)));
+				Integer first = xFirstOfShingles.get(shinglesHash);
+				if (first == null) {
+					xFirstOfShingles.put(shinglesHash, Integer.valueOf(i));
+					allDistinct.add(Integer.valueOf(i));
+				} else if (Arrays.equals(xShingles.get(first.intValue()), xShingles.get(i))) {
+					if (aKey.get() == bandOf(mySignature, 0, xRows)) {
+						aContext.getCounter(NEISS_DATA.NUM_IDENTICAL_DESCRIPTIONS).increment(1);
+						writePair(xDocuments.get(first.intValue()), xDocuments.get(i), 1.0, aContext);
+					}
+				} else {
+					allDistinct.add(Integer.valueOf(i));
+				}
+			}
+
+			for (int i = 0; i < allDistinct.size(); i++) {
+				int first = allDistinct.get(i).intValue();
+				for (int j = i + 1; j < allDistinct.size(); j++) {
+					int second = allDistinct.get(j).intValue();
+					if (aKey.get() != firstSharedBand(xSignatures.get(first), xSignatures.get(second))) {
+						aContext.getCounter(NEISS_DATA.NUM_REPEATED_CANDIDATES).increment(1);
+						continue;
+					}
+					aContext.getCounter(NEISS_DATA.NUM_CANDIDATE_PAIRS).increment(1);
+					double similarity = jaccardOf(xShingles.get(first), xShingles.get(second));
+					if (similarity >= xThreshold) {
+						writePair(xDocuments.get(first), xDocuments.get(second), similarity, aContext);
+					}
+				}
+			}
+		}
+
+		/**
+		 * @return the hash of the first band in which the two signatures agree on every row
+		 **/
+		private long firstSharedBand(int[] aFirst, int[] aSecond) {
+			for (int band = 0; band < xBands; band++) {
+				boolean shared = true;
+				for (int i = band * xRows; i < (band + 1) * xRows && shared; i++) {
+					shared = aFirst[i] == aSecond[i];
+				}
+				if (shared) {
+					return bandOf(aFirst, band, xRows);
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * Write a similar pair of incidents (in the order of their names, so each pair always reads the same way).
+		 **/
+		private void writePair(String aFirst, String aSecond, double aSimilarity, Context aContext)
+				throws IOException, InterruptedException {
+			aContext.getCounter(NEISS_DATA.NUM_SIMILAR_PAIRS).increment(1);
+
+			// @formatter:off
+			/*
+			 * Write the output record in the following format: 
+			 * 		[KEY(Text(CaseNbr@FileName))  VALUE(Text(<CaseNbr@FileName \t Similarity>))]
+			 */
+			// @formatter:on
+			boolean inOrder = aFirst.compareTo(aSecond) <= 0;
+			xTextKey.set(inOrder ? aFirst : aSecond);
+			xTextValue.set((inOrder ? aSecond : aFirst) + TAB_DELIMITER + xSimilarityFormat.format(aSimilarity));
+			aContext.write(xTextKey, xTextValue);
+		}
+
+		/**
+		 * Setup the hash functions of the signatures and the limits of the verification.
+		 * 
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void setup(Context aContext) throws IOException, InterruptedException {
+			Configuration conf = aContext.getConfiguration();
+			xBands = conf.getInt(BANDS_KEY, 16);
+			xRows = conf.getInt(ROWS_KEY, 4);
+			xSeeds = seedsOf(xBands * xRows);
+			xThreshold = conf.getFloat(THRESHOLD_KEY, 0.5f);
+			xMaxBucket = conf.getInt(MAX_BUCKET_KEY, 1000);
+		}
+	}
+
+	/**
+	 * Joins the similar pairs into clusters once the job has been committed.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class ClusterOutputFormat extends TextOutputFormat<Text, Text> {
+		private OutputCommitter xCommitter;
+
+		@Override
+		public synchronized OutputCommitter getOutputCommitter(TaskAttemptContext aContext) throws IOException {
+			if (xCommitter == null) {
+				xCommitter = new FileOutputCommitter(getOutputPath(aContext), aContext) {
+					@Override
+					public void commitJob(JobContext aJobContext) throws IOException {
+						super.commitJob(aJobContext);
+						writeClusters(aJobContext.getConfiguration(), getOutputPath(aJobContext));
+					}
+				};
+			}
+			return xCommitter;
+		}
+	}
+
+	/**
+	 * @return the seeds of the hash functions of a signature (the same within every task)
+	 **/
+	static long[] seedsOf(int aLength) {
+		long[] allSeeds = new long[aLength];
+		for (int i = 0; i < aLength; i++) {
+			allSeeds[i] = DescriptionNGrams.extend(MINHASH_SEED, i);
+		}
+		return allSeeds;
+	}
+
+	/**
+	 * Hash the words (or the n-grams of the words) of a Description into its sorted and distinct shingles.
+	 * 
+	 * @param aWords the accepted words of the Description
+	 * @param aShingleSize the number of consecutive words within each shingle
+	 * @param aShingles filled with the shingles (and must hold at least as many as there are words)
+	 * @return the number of shingles
+	 **/
+	static int shinglesOf(List<String> aWords, int aShingleSize, long[] aShingles) {
+		int wordCount = aWords.size();
+		if (wordCount == 0) {
+			return 0;
+		}
+
+		/*
+		 * A Description with fewer words than a shingle is a single shingle of all of its words.
+		 */
+		int size = 0;
+		int lastWord = Math.min(aShingleSize, wordCount);
+		for (int start = 0; start <= wordCount - lastWord; start++) {
+			long shingle = DescriptionNGrams.hashOf(aWords.get(start));
+			for (int i = start + 1; i < start + lastWord; i++) {
+				shingle = DescriptionNGrams.extend(shingle, DescriptionNGrams.hashOf(aWords.get(i)));
+			}
+			aShingles[size++] = shingle;
+		}
+
+		Arrays.sort(aShingles, 0, size);
+		int distinct = 0;
+		for (int i = 0; i < size; i++) {
+			if (distinct == 0 || aShingles[i] != aShingles[distinct - 1]) {
+				aShingles[distinct++] = aShingles[i];
+			}
+		}
+		return distinct;
+	}
+
+	/**
+	 * Build the MinHash signature of a set of shingles: the minimum of each of the hash functions over the shingles.
+	 * 
+	 * @param aShingles the shingles
+	 * @param aSize the number of shingles
+	 * @param aSeeds the seeds of the hash functions
+	 * @param aSignature filled with the signature
+	 **/
+	static void signatureOf(long[] aShingles, int aSize, long[] aSeeds, int[] aSignature) {
+		Arrays.fill(aSignature, Integer.MAX_VALUE);
+		for (int i = 0; i < aSize; i++) {
+			for (int j = 0; j < aSeeds.length; j++) {
+				int hash = (int) (DescriptionNGrams.extend(aSeeds[j], aShingles[i]) >>> 32);
+				if (hash < aSignature[j]) {
+					aSignature[j] = hash;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the hash of a band of a signature (which includes the band itself, so the bands never share a bucket)
+	 **/
+	static long bandOf(int[] aSignature, int aBand, int aRows) {
+		long hash = aBand;
+		for (int i = aBand * aRows; i < (aBand + 1) * aRows; i++) {
+			hash = DescriptionNGrams.extend(hash, aSignature[i]);
+		}
+		return hash;
+	}
+
+	/**
+	 * @return the exact Jaccard similarity of two sorted and distinct sets of shingles
+	 **/
+	static double jaccardOf(long[] aFirst, long[] aSecond) {
+		int shared = 0;
+		int i = 0;
+		int j = 0;
+		while (i < aFirst.length && j < aSecond.length) {
+			if (aFirst[i] == aSecond[j]) {
+				shared++;
+				i++;
+				j++;
+			} else if (aFirst[i] < aSecond[j]) {
+				i++;
+			} else {
+				j++;
+			}
+		}
+		return (double) shared / (double) (aFirst.length + aSecond.length - shared);
+	}
+
+	/**
+	 * Join the similar pairs written by the job into clusters (with a union-find over the incidents of the pairs) and
+	 * write the clusters, largest first, into the output directory.
+	 * 
+	 * @param aConf the configuration of the job
+	 * @param aOutputDir the committed output directory of the job
+	 **/
+	static void writeClusters(Configuration aConf, Path aOutputDir) throws IOException {
+		FileSystem fs = aOutputDir.getFileSystem(aConf);
+		Map<String, Integer> allIndexes = new HashMap<String, Integer>();
+		List<String> allDocuments = new ArrayList<String>();
+		int[] parents = new int[1024];
+
+		FileStatus[] allParts = fs.globStatus(new Path(aOutputDir, OUTPUT_FILES));
+		for (FileStatus myPart : (allParts != null) ? allParts : new FileStatus[0]) {
+			BufferedReader partRdr = new BufferedReader(new InputStreamReader(CompressionSettings.openText(aConf,
+					myPart.getPath()), "UTF-8"));
+			try {
+				String inputLine = partRdr.readLine();
+				while (inputLine != null) {
+					String[] myPair = inputLine.split(TAB_DELIMITER);
+					int[] myIndexes = new int[2];
+					for (int i = 0; i < 2; i++) {
+						Integer index = allIndexes.get(myPair[i]);
+						if (index == null) {
+							index = Integer.valueOf(allDocuments.size());
+							allIndexes.put(myPair[i], index);
+							allDocuments.add(myPair[i]);
+							if (index.intValue() == parents.length) {
+								parents = Arrays.copyOf(parents, parents.length * 2);
+							}
+							parents[index.intValue()] = index.intValue();
+						}
+						myIndexes[i] = index.intValue();
+					}
+					int firstRoot = rootOf(parents, myIndexes[0]);
+					int secondRoot = rootOf(parents, myIndexes[1]);
+					parents[Math.max(firstRoot, secondRoot)] = Math.min(firstRoot, secondRoot);
+					inputLine = partRdr.readLine();
+				}
+			} finally {
+				partRdr.close();
+			}
+		}
+
+		/*
+		 * Gather the incidents of each cluster (in the order of their names) and order the clusters by their size.
+		 */
+		Map<Integer, List<String>> allMembers = new HashMap<Integer, List<String>>();
+		for (int i = 0; i < allDocuments.size(); i++) {
+			Integer root = Integer.valueOf(rootOf(parents, i));
+			List<String> myMembers = allMembers.get(root);
+			if (myMembers == null) {
+				myMembers = new ArrayList<String>();
+				allMembers.put(root, myMembers);
+			}
+			myMembers.add(allDocuments.get(i));
+		}
+		List<List<String>> allClusters = new ArrayList<List<String>>(allMembers.values());
+		for (List<String> myMembers : allClusters) {
+			Collections.sort(myMembers);
+		}
+		Collections.sort(allClusters, new Comparator<List<String>>() {
+			@Override
+			public int compare(List<String> aFirst, List<String> aSecond) {
+				if (aFirst.size() != aSecond.size()) {
+					return (aFirst.size() > aSecond.size()) ? -1 : 1;
+				}
+				return aFirst.get(0).compareTo(aSecond.get(0));
+			}
+		});
+
+		Writer clusterWriter = new OutputStreamWriter(fs.create(new Path(aOutputDir, CLUSTERS_FILE), true), "UTF-8");
+		try {
+			for (int i = 0; i < allClusters.size(); i++) {
+				List<String> myMembers = allClusters.get(i);
+				StringBuilder lineBuilder = new StringBuilder();
+				lineBuilder.append(i + 1).append(TAB_DELIMITER).append(myMembers.size()).append(TAB_DELIMITER);
+				for (int j = 0; j < myMembers.size(); j++) {
+					if (j > 0) {
+						lineBuilder.append(SPACE_DELIMITER);
+					}
+					lineBuilder.append(myMembers.get(j));
+				}
+				lineBuilder.append('\n');
+				clusterWriter.write(lineBuilder.toString());
+			}
+		} finally {
+			clusterWriter.close();
+		}
+		LOG.info("Joined " + allDocuments.size() + " similar incidents into " + allClusters.size() + " clusters.");
+	}
+
+	/**
+	 * @return the root of the cluster of an incident (halving the path to it along the way)
+	 **/
+	private static int rootOf(int[] aParents, int aIndex) {
+		while (aParents[aIndex] != aIndex) {
+			aParents[aIndex] = aParents[aParents[aIndex]];
+			aIndex = aParents[aIndex];
+		}
+		return aIndex;
+	}
+
+	/**
+	 * Setup the environment so that we can find the similar incident Descriptions within the filtered NEISS data.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public Job createJob(String[] aArguments) throws Exception {
+		final String usageText = "Usage: DescriptionSimilarity <input_dir> <output_dir> [-stopWords -caseSensitive]"
+				+ " [-normalize] [-bands n] [-rows n] [-shingleSize n] [-threshold s] [-maxBucket n] [-reducers n]";
+
+		if (aArguments.length < 2) {
+			LOG.info(usageText);
+			return null;
+		}
+
+		Job job = new Job(getConf());
+		int numReduceTasks = 8;
+
+		/*
+		 * Process any additional arguments passed in...
+		 */
+		for (int i = 2; i < aArguments.length; i++) {
+			if ("-stopWords".equals(aArguments[i])) {
+				DescriptionTokenizer.addStopWords(job.getConfiguration());
+			} else if ("-caseSensitive".equals(aArguments[i])) {
+				job.getConfiguration().setBoolean("wordcount.case.sensitive", true);
+			} else if ("-normalize".equals(aArguments[i])) {
+				DescriptionTokenizer.addNormalizers(job.getConfiguration());
+			} else if ("-bands".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				job.getConfiguration().setInt(BANDS_KEY, Integer.parseInt(aArguments[i]));
+			} else if ("-rows".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				job.getConfiguration().setInt(ROWS_KEY, Integer.parseInt(aArguments[i]));
+			} else if ("-shingleSize".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				job.getConfiguration().setInt(SHINGLE_SIZE_KEY, Integer.parseInt(aArguments[i]));
+			} else if ("-threshold".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				job.getConfiguration().setFloat(THRESHOLD_KEY, Float.parseFloat(aArguments[i]));
+			} else if ("-maxBucket".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				job.getConfiguration().setInt(MAX_BUCKET_KEY, Integer.parseInt(aArguments[i]));
+			} else if ("-reducers".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				numReduceTasks = Integer.parseInt(aArguments[i]);
+			} else {
+				System.err.println("ERROR: Invalid argument : '" + aArguments[i] + "'");
+				LOG.info(usageText);
+				return null;
+			}
+		}
+
+		int bands = job.getConfiguration().getInt(BANDS_KEY, 16);
+		int rows = job.getConfiguration().getInt(ROWS_KEY, 4);
+		if (bands < 1 || rows < 1 || job.getConfiguration().getInt(SHINGLE_SIZE_KEY, 1) < 1) {
+			System.err.println("ERROR: The -bands, -rows and -shingleSize must each be at least 1");
+			LOG.info(usageText);
+			return null;
+		}
+		LOG.info("Finding the incidents with a similarity of at least "
+				+ job.getConfiguration().getFloat(THRESHOLD_KEY, 0.5f) + " using " + bands + " bands of " + rows
+				+ " rows (half of the pairs with a similarity of "
+				+ new DecimalFormat("0.00").format(Math.pow(1.0 - Math.pow(0.5, 1.0 / bands), 1.0 / rows))
+				+ " become candidates).");
+
+		job.setJarByClass(DescriptionSimilarity.class);
+		job.setJobName("Find the Similar Incident Descriptions");
+
+		FileInputFormat.setInputPaths(job, new Path(aArguments[0]));
+		FileOutputFormat.setOutputPath(job, new Path(aArguments[1]));
+
+		job.setMapperClass(SignatureMapper.class);
+		job.setReducerClass(CandidateReducer.class);
+
+		job.setMapOutputKeyClass(LongWritable.class);
+		job.setMapOutputValueClass(ShinglesWritable.class);
+
+		job.setOutputKeyClass(Text.class);
+		job.setOutputValueClass(Text.class);
+
+		job.setInputFormatClass(KeyValueTextInputFormat.class);
+		job.setOutputFormatClass(ClusterOutputFormat.class);
+
+		job.setNumReduceTasks(numReduceTasks);
+
+		CompressionSettings.configure(job, DescriptionSimilarity.class);
+
+		return job;
+	}
+
+	/**
+	 * Build the job from the arguments that were passed in and run it, waiting for it to be completed.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		Job job = createJob(aArguments);
+		if (job == null) {
+			return -1;
+		}
+
+		/*
+		 * Run the job and wait for it to be completed.
+		 */
+		boolean success = job.waitForCompletion(true);
+		CompressionSettings.report(job);
+		JobInstrumentation.report(job);
+
+		return success ? 0 : 1;
+	}
+
+	/**
+	 * The main method calls the ToolRunner.run method, which in turn calls an options parser that interprets Hadoop
+	 * command-line options and puts them into a Configuration object.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	public static void main(String[] aArguments) throws Exception {
+		int exitCode = ToolRunner.run(new Configuration(), new DescriptionSimilarity(), aArguments);
+		System.exit(exitCode);
+	}
+}
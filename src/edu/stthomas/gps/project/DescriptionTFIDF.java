@@ -2,16 +2,19 @@ package edu.stthomas.gps.project;
 
 import java.io.IOException;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
-import org.apache.hadoop.mapreduce.Mapper;
-import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
@@ -25,16 +28,18 @@ import org.apache.log4j.Logger;
  * @author Robert Driesch - UST Id# 101058113
  * @version 1.0, December 1, 2014
  **/
-public class DescriptionTFIDF extends Configured implements Tool {
+public class DescriptionTFIDF extends Configured implements Tool, JobFactory {
 	private static final Logger LOG = Logger.getLogger(DescriptionTFIDF.class);
 
 	private static final String SPACE_DELIMITER = new String(" ");
 	private static final String EQUALS_DELIMITER = new String("=");
+	private static final String SLASH_DELIMITER = new String("/");
+	static final String SCORE_PATTERN = new String("###.############");
 
 	/**
 	 * @version 1.0, December 1, 2014
 	 **/
-	public static class DescriptionTFIDFMapper extends Mapper<Text, Text, Text, Text> {
+	public static class DescriptionTFIDFMapper extends InstrumentedMapper<Text, Text, Text, Text> {
 
 		/*
 		 * Local Cache Variables for the <key,value> for reuse for each input record being processed.
@@ -84,18 +89,17 @@ public class DescriptionTFIDF extends Configured implements Tool {
 	/**
 	 * @version 1.0, December 1, 2014
 	 **/
-	public static class DescriptionWordTFIDFReducer extends Reducer<Text, Text, Text, Text> {
-		private static final DecimalFormat DF = new DecimalFormat("###.############");
-		private static final String SLASH_DELIMITER = new String("/");
-
+	public static class DescriptionWordTFIDFReducer extends InstrumentedReducer<Text, Text, Text, Text> {
 		/*
 		 * Local Cache Variables for the <key, value> for reuse for each output reduce record being processed.
 		 */
+		private DecimalFormat xScoreFormat = new DecimalFormat(SCORE_PATTERN);
 		private Text xTextKey = new Text();
 		private Text xTextValues = new Text();
 
 		private long xTotalDocuments;
 		private Map<String, String> xAllCaseNbrWordFrequencies = new HashMap<String, String>();
+		private Map<String, String> xAllNGramPhrases;
 
 		/**
 		 * Read all of the <key, List(values)> pairs generated by the Mapper<> and determine the number of times that we
@@ -122,6 +126,16 @@ public class DescriptionTFIDF extends Configured implements Tool {
 			 */
 			String myOriginalKey = aKey.toString();
 
+			/*
+			 * Render the id of an n-gram as its phrase again (when the dictionary of the phrases was provided).
+			 */
+			if (xAllNGramPhrases != null && DescriptionNGrams.isNGram(myOriginalKey)) {
+				String myPhrase = xAllNGramPhrases.get(myOriginalKey);
+				if (myPhrase != null) {
+					myOriginalKey = myPhrase;
+				}
+			}
+
 			/**
 			 * Loop through all of the values collected for each key (DescriptionWord) from the Mapper<> that have the
 			 * pattern list like this: List[Text(<CaseNbr@FileName=WordCount/AllWordCounts>)]
@@ -148,7 +162,6 @@ public class DescriptionTFIDF extends Configured implements Tool {
 			 * this word in the different incidents, we can start to unload all of the data that we have saved away in
 			 * the temporary data structure and write the formatted records back out to the context.
 			 */
-			StringBuilder textValueBuilder = new StringBuilder();
 			for (String caseNbrKey : xAllCaseNbrWordFrequencies.keySet()) {
 
 				/*
@@ -157,46 +170,12 @@ public class DescriptionTFIDF extends Configured implements Tool {
 				String[] wordFrequenciesAndTotalWords = xAllCaseNbrWordFrequencies.get(caseNbrKey).split(
 						SLASH_DELIMITER);
 
-				/*
-				 * Calculate the TermFrequency (TF) quotient from the number of times this term occurs within the
-				 * Incident Description (e.g. document) and the total number of terms associated with the Incident
-				 * Description.
-				 */
-				double termFrequency = Double.valueOf(Double.valueOf(wordFrequenciesAndTotalWords[0])
-						/ Double.valueOf(wordFrequenciesAndTotalWords[1]));
-
-				/*
-				 * Calculate the InverseDocumentFrequency (IDF) quotient from the total number of Incident Descriptions
-				 * (e.g. document) and the number of times the word occurs in those documents.
-				 */
-				double inverseDocumentFrequency = (double) xTotalDocuments / (double) countOfDocumentsWhereWordAppears;
-
-				/*
-				 * Calculate the TF-IDF for the DescriptionWord, but give special attention for the cases where the word
-				 * appears in all of the documents.
-				 */
-				double tfIdf = termFrequency * Math.log10(inverseDocumentFrequency);
-//				double tfIdf = (xTotalDocuments == countOfDocumentsWhereWordAppears) ? termFrequency : termFrequency
-//						* Math.log10(inverseDocumentFrequency);
-
 				/*
 				 * Build up the Format of the New Value:
 				 * "[ DocumentsWithWord/TotalDocuments WordCount/AllWordCounts TF-IDF ]"
 				 */
-				textValueBuilder.delete(0, textValueBuilder.length());// Clear first
-				textValueBuilder.append("[");
-				textValueBuilder.append(SPACE_DELIMITER);
-				textValueBuilder.append(String.valueOf(countOfDocumentsWhereWordAppears));
-				textValueBuilder.append(SLASH_DELIMITER);
-				textValueBuilder.append(String.valueOf(xTotalDocuments));
-				textValueBuilder.append(SPACE_DELIMITER);
-				textValueBuilder.append(wordFrequenciesAndTotalWords[0]);
-				textValueBuilder.append(SLASH_DELIMITER);
-				textValueBuilder.append(wordFrequenciesAndTotalWords[1]);
-				textValueBuilder.append(SPACE_DELIMITER);
-				textValueBuilder.append(DF.format(tfIdf));
-				textValueBuilder.append(SPACE_DELIMITER);
-				textValueBuilder.append("]");
+				String textValue = formatScore(xScoreFormat, countOfDocumentsWhereWordAppears, xTotalDocuments,
+						wordFrequenciesAndTotalWords[0], wordFrequenciesAndTotalWords[1]);
 
 				// @formatter:off
 				/*
@@ -206,7 +185,7 @@ public class DescriptionTFIDF extends Configured implements Tool {
 				 */
 				// @formatter:on
 				xTextKey.set(myOriginalKey + EQUALS_DELIMITER + caseNbrKey);
-				xTextValues.set(textValueBuilder.toString());
+				xTextValues.set(textValue);
 				aContext.write(xTextKey, xTextValues);
 			}
 		}
@@ -224,9 +203,169 @@ public class DescriptionTFIDF extends Configured implements Tool {
 			 * the incident Description words.
 			 */
 			xTotalDocuments = aContext.getConfiguration().getLong("wordcount.total.documents", 1);
+
+			/*
+			 * Load the dictionary of the n-gram phrases when the word frequencies also counted the n-grams.
+			 */
+			String dictionaryDir = aContext.getConfiguration().get(DescriptionNGrams.DICTIONARY_KEY);
+			if (dictionaryDir != null) {
+				xAllNGramPhrases = DescriptionNGrams.readDictionary(aContext.getConfiguration(), new Path(
+						dictionaryDir));
+			}
+		}
+	}
+
+	/**
+	 * Re-swizzles the word counts that were counted by the ids of the words (DescriptionWordCount -termIds) so that
+	 * they are grouped by the id of the DescriptionWord.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class TermIdTFIDFMapper extends
+			InstrumentedMapper<TermPostingWritable, NullWritable, IntWritable, TermPostingWritable> {
+		private IntWritable xTermIdKey = new IntWritable();
+
+		/**
+		 * @param aKey the id of the DescriptionWord, the CaseNbr/FileName where the word originates, the number of
+		 *            times the word occurs within the incident description and the total number of its words
+		 * @param aValue nothing
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void map(TermPostingWritable aKey, NullWritable aValue, Context aContext) throws IOException,
+				InterruptedException {
+			// @formatter:off
+			/*
+			 * Write the output record in the following format: 
+			 * 		[KEY(IntWritable(TermId))
+			 * 			VALUE(TermPostingWritable(<TermId, CaseNbr@FileName, WordCount, AllWordCounts>))]
+			 */
+			// @formatter:on
+			xTermIdKey.set(aKey.getTermId());
+			aContext.write(xTermIdKey, aKey);
+		}
+	}
+
+	/**
+	 * Calculates the TF-IDF of the words by their ids, and writes them with the words of the dictionary (in the same
+	 * format as the DescriptionWordTFIDFReducer).
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class TermIdTFIDFReducer extends InstrumentedReducer<IntWritable, TermPostingWritable, Text, Text> {
+		private DecimalFormat xScoreFormat = new DecimalFormat(SCORE_PATTERN);
+		private Text xTextKey = new Text();
+		private Text xTextValues = new Text();
+
+		private long xTotalDocuments;
+		private DescriptionTermDictionary.Dictionary xDictionary;
+
+		/*
+		 * The CaseNbr@FileName and counts of each incident the word appears within, held until the number of those
+		 * incidents is known.
+		 */
+		private List<String> xDocuments = new ArrayList<String>();
+		private int[] xCounts = new int[64];
+		private int[] xTotals = new int[64];
+
+		/**
+		 * @param aKey the id of the DescriptionWord
+		 * @param aValues the CaseNbr/FileName of each incident the word appears within, along with its counts
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void reduce(IntWritable aKey, Iterable<TermPostingWritable> aValues, Context aContext)
+				throws IOException, InterruptedException {
+			xDocuments.clear();
+			for (TermPostingWritable myValue : aValues) {
+				int index = xDocuments.size();
+				if (index == xCounts.length) {
+					xCounts = Arrays.copyOf(xCounts, index * 2);
+					xTotals = Arrays.copyOf(xTotals, index * 2);
+				}
+				xDocuments.add(myValue.getDocument().toString());
+				xCounts[index] = myValue.getCount();
+				xTotals[index] = myValue.getTotal();
+			}
+
+			/*
+			 * Only now is the id of the word turned back into the word itself.
+			 */
+			String descriptionWord = xDictionary.termOf(aKey.get());
+			int countOfDocumentsWhereWordAppears = xDocuments.size();
+			for (int i = 0; i < countOfDocumentsWhereWordAppears; i++) {
+				// @formatter:off
+				/*
+				 * Write the output record in the following format: 
+				 * 		[KEY(Text(<Description_Word = CaseNbr@FileName>))  
+				 * 		 	VALUE(Text(<[ DocumentsWithWord/TotalDocuments WordCount/AllWordCounts TF-IDF ]>))]
+				 */
+				// @formatter:on
+				xTextKey.set(descriptionWord + EQUALS_DELIMITER + xDocuments.get(i));
+				xTextValues.set(formatScore(xScoreFormat, countOfDocumentsWhereWordAppears, xTotalDocuments,
+						String.valueOf(xCounts[i]), String.valueOf(xTotals[i])));
+				aContext.write(xTextKey, xTextValues);
+			}
+		}
+
+		@Override
+		protected void setup(Context aContext) throws IOException, InterruptedException {
+			xTotalDocuments = aContext.getConfiguration().getLong("wordcount.total.documents", 1);
+			xDictionary = DescriptionTermDictionary.Dictionary.fromConfiguration(aContext.getConfiguration());
 		}
 	}
 
+	/**
+	 * Calculate the TF-IDF of a DescriptionWord within an Incident Description and build up the text of its value:
+	 * "[ DocumentsWithWord/TotalDocuments WordCount/AllWordCounts TF-IDF ]"
+	 * 
+	 * @param aScoreFormat the format of the TF-IDF (owned by the caller as it is not thread safe)
+	 * @param aDocumentsWithWord the number of Incident Descriptions (documents) in which the word appears
+	 * @param aTotalDocuments the total number of Incident Descriptions (documents)
+	 * @param aWordCount the number of times the word appears within the Incident Description
+	 * @param aAllWordCounts the total number of words within the Incident Description
+	 * @return the text of the value
+	 **/
+	public static String formatScore(DecimalFormat aScoreFormat, long aDocumentsWithWord, long aTotalDocuments,
+			String aWordCount, String aAllWordCounts) {
+
+		/*
+		 * Calculate the TermFrequency (TF) quotient from the number of times this term occurs within the Incident
+		 * Description (e.g. document) and the total number of terms associated with the Incident Description.
+		 */
+		double termFrequency = Double.valueOf(Double.valueOf(aWordCount) / Double.valueOf(aAllWordCounts));
+
+		/*
+		 * Calculate the InverseDocumentFrequency (IDF) quotient from the total number of Incident Descriptions (e.g.
+		 * document) and the number of times the word occurs in those documents.
+		 */
+		double inverseDocumentFrequency = (double) aTotalDocuments / (double) aDocumentsWithWord;
+
+		/*
+		 * Calculate the TF-IDF for the DescriptionWord, but give special attention for the cases where the word appears
+		 * in all of the documents.
+		 */
+		double tfIdf = termFrequency * Math.log10(inverseDocumentFrequency);
+//		double tfIdf = (aTotalDocuments == aDocumentsWithWord) ? termFrequency : termFrequency
+//				* Math.log10(inverseDocumentFrequency);
+
+		StringBuilder textValueBuilder = new StringBuilder();
+		textValueBuilder.append("[");
+		textValueBuilder.append(SPACE_DELIMITER);
+		textValueBuilder.append(String.valueOf(aDocumentsWithWord));
+		textValueBuilder.append(SLASH_DELIMITER);
+		textValueBuilder.append(String.valueOf(aTotalDocuments));
+		textValueBuilder.append(SPACE_DELIMITER);
+		textValueBuilder.append(aWordCount);
+		textValueBuilder.append(SLASH_DELIMITER);
+		textValueBuilder.append(aAllWordCounts);
+		textValueBuilder.append(SPACE_DELIMITER);
+		textValueBuilder.append(aScoreFormat.format(tfIdf));
+		textValueBuilder.append(SPACE_DELIMITER);
+		textValueBuilder.append("]");
+		return textValueBuilder.toString();
+	}
+
 	/**
 	 * Setup the environment so that we can invoke the Mapper as a mapper-only job to perform the simple filtering of
 	 * the initial data.
@@ -234,10 +373,12 @@ public class DescriptionTFIDF extends Configured implements Tool {
 	 * @param aArguments the arguments that were passed into the program
 	 **/
 	@Override
-	public int run(String[] aArguments) throws Exception {
-		final String usageText = "Usage: DescriptionTFIDF <input_dir> <output_dir> -totalIncidents n";
+	public Job createJob(String[] aArguments) throws Exception {
+		final String usageText = "Usage: DescriptionTFIDF <input_dir> <output_dir> -totalIncidents n"
+				+ " [-ngramDictionary dir] [-dictionary dir]";
 
 		Job job = new Job(getConf());
+		boolean termIds = false;
 
 		/*
 		 * Process any arguments passed in...
@@ -252,10 +393,19 @@ public class DescriptionTFIDF extends Configured implements Tool {
 					i += 1; // Bump to the value
 					job.getConfiguration().setLong("wordcount.total.documents", Long.parseLong(aArguments[i]));
 					LOG.info("Added " + aArguments[i] + " total incidents (documents) for use in TF-IDF calculations.");
+				} else if ("-ngramDictionary".equals(aArguments[i])) {
+					i += 1; // Bump to the value
+					job.getConfiguration().set(DescriptionNGrams.DICTIONARY_KEY, aArguments[i]);
+					LOG.info("Rendering the n-grams with the phrases of the dictionary within " + aArguments[i]);
+				} else if ("-dictionary".equals(aArguments[i])) {
+					i += 1; // Bump to the value
+					DescriptionTermDictionary.addDictionary(job.getConfiguration(), new Path(aArguments[i]));
+					termIds = true;
+					LOG.info("Rendering the ids of the words with the dictionary within " + aArguments[i]);
 				} else {
 					System.err.println("ERROR: Invalid argument : '" + aArguments[i] + "'");
 					LOG.info(usageText);
-					return -1;
+					return null;
 				}
 			}
 		}
@@ -263,11 +413,19 @@ public class DescriptionTFIDF extends Configured implements Tool {
 		job.setJarByClass(DescriptionTFIDF.class);
 		job.setJobName("Calculate TF-IDF against the Incident Description Words");
 
-		job.setMapperClass(DescriptionTFIDFMapper.class);
-		job.setReducerClass(DescriptionWordTFIDFReducer.class);
+		if (termIds) {
+			job.setMapperClass(TermIdTFIDFMapper.class);
+			job.setReducerClass(TermIdTFIDFReducer.class);
+
+			job.setMapOutputKeyClass(IntWritable.class);
+			job.setMapOutputValueClass(TermPostingWritable.class);
+		} else {
+			job.setMapperClass(DescriptionTFIDFMapper.class);
+			job.setReducerClass(DescriptionWordTFIDFReducer.class);
 
-		job.setMapOutputKeyClass(Text.class);
-		job.setMapOutputValueClass(Text.class);
+			job.setMapOutputKeyClass(Text.class);
+			job.setMapOutputValueClass(Text.class);
+		}
 
 		job.setOutputKeyClass(Text.class);
 		job.setOutputValueClass(Text.class);
@@ -278,10 +436,30 @@ public class DescriptionTFIDF extends Configured implements Tool {
 
 		job.setNumReduceTasks(24);
 
+		CompressionSettings.configure(job, DescriptionTFIDF.class);
+
+		return job;
+	}
+
+	/**
+	 * Build the job from the arguments that were passed in and run it, waiting for it to be completed.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		Job job = createJob(aArguments);
+		if (job == null) {
+			return -1;
+		}
+
 		/*
 		 * Run the job and wait for it to be completed.
 		 */
 		boolean success = job.waitForCompletion(true);
+		CompressionSettings.report(job);
+		JobInstrumentation.report(job);
+
 		return success ? 0 : 1;
 	}
 
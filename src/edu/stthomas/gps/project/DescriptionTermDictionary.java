@@ -0,0 +1,511 @@
+package edu.stthomas.gps.project;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+/**
+ * Assigns every word of the incident Descriptions (as accepted by the DescriptionTokenizer) a dense integer id, so
+ * that the TF-IDF chain (DescriptionWordFrequency -dictionary, DescriptionWordCount -termIds and DescriptionTFIDF
+ * -dictionary) can carry the ids of the words through its shuffles and intermediate files instead of the words
+ * themselves, and only turn the ids back into words as the final TF-IDF output is written.
+ * <p>
+ * 
+ * The job counts the occurrences of each word, and once it commits the words are numbered from the most to the least
+ * frequent (so that the most common words have the shortest variable length ids) and written into a single file that
+ * is shipped to the tasks of the chain through the distributed cache and memory-mapped by each of them:
+ * 
+ * <pre>
+ * 		<output_dir>/part-r-NNNNN		=	Description_Word \t Occurrences	(SequenceFile)
+ * 		<output_dir>/_dictionary		=	the mapped dictionary of the words
+ * </pre>
+ * 
+ * The dictionary holds the number of words, the offset of each word within the characters of all of the words (in
+ * the order of their ids), an open addressing table from the hash of a word to its id and then the characters of the
+ * words. Looking up a word reads the mapped file directly, so the tasks neither parse the dictionary nor hold a map of
+ * boxed entries.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class DescriptionTermDictionary extends Configured implements Tool, JobFactory {
+	private static final Logger LOG = Logger.getLogger(DescriptionTermDictionary.class);
+
+	public static enum NEISS_DATA {
+		TOAL_RECORDS_PROCESSED, NUM_DISTINCT_TERMS
+	}
+
+	public static final String DICTIONARY_KEY = new String("wordcount.term.dictionary");
+	public static final String DICTIONARY_FILE = new String("_dictionary");
+
+	private static final String OUTPUT_FILES = new String("part-*");
+	private static final int MAGIC = 0x4e455444; // "NETD"
+	private static final int HEADER_INTS = 3;
+
+	/**
+	 * The memory-mapped dictionary of the words, shared (read only) by all of the lookups of a task.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class Dictionary {
+		private final int xSize;
+		private final int xMask;
+		private final IntBuffer xOffsets;
+		private final IntBuffer xTable;
+		private final CharBuffer xChars;
+
+		private Dictionary(MappedByteBuffer aBuffer) throws IOException {
+			if (aBuffer.getInt(0) != MAGIC) {
+				throw new IOException("The file is not a dictionary of the Description words.");
+			}
+			xSize = aBuffer.getInt(4);
+			int tableSize = aBuffer.getInt(8);
+			xMask = tableSize - 1;
+			int offsetsStart = HEADER_INTS * 4;
+			int tableStart = offsetsStart + (xSize + 1) * 4;
+			int charsStart = tableStart + tableSize * 4;
+			xOffsets = slice(aBuffer, offsetsStart).asIntBuffer();
+			xTable = slice(aBuffer, tableStart).asIntBuffer();
+			xChars = slice(aBuffer, charsStart).asCharBuffer();
+		}
+
+		/**
+		 * Map the dictionary from a local file.
+		 * 
+		 * @param aFile the local copy of the dictionary
+		 * @return the dictionary
+		 **/
+		public static Dictionary open(File aFile) throws IOException {
+			RandomAccessFile dictionaryFile = new RandomAccessFile(aFile, "r");
+			try {
+				return new Dictionary(dictionaryFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+						dictionaryFile.length()));
+			} finally {
+				dictionaryFile.close();
+			}
+		}
+
+		/**
+		 * Map the dictionary that was added to the distributed cache of the job by addDictionary().
+		 * 
+		 * @param aConfig the configuration associated with this process
+		 * @return the dictionary
+		 **/
+		public static Dictionary fromConfiguration(Configuration aConfig) throws IOException {
+			Path[] allCachedFiles = DistributedCache.getLocalCacheFiles(aConfig);
+			for (Path cachedFile : (allCachedFiles != null) ? allCachedFiles : new Path[0]) {
+				if (cachedFile.getName().equals(DICTIONARY_FILE)) {
+					LOG.info("Mapped the dictionary \"" + cachedFile + "\" from the distributed cache.");
+					return open(new File(cachedFile.toUri().getPath()));
+				}
+			}
+			throw new IOException("Unable to load the dictionary of the Description words [" + DICTIONARY_FILE + "].");
+		}
+
+		/**
+		 * @return the number of words within the dictionary
+		 **/
+		public int size() {
+			return xSize;
+		}
+
+		/**
+		 * @param aWord a word of an incident Description
+		 * @return the id of the word, or -1 when the word is not within the dictionary
+		 **/
+		public int idOf(CharSequence aWord) {
+			int slot = slotOf(aWord);
+			while (true) {
+				int entry = xTable.get(slot);
+				if (entry == 0) {
+					return -1;
+				}
+				if (matches(entry - 1, aWord)) {
+					return entry - 1;
+				}
+				slot = (slot + 1) & xMask;
+			}
+		}
+
+		/**
+		 * @param aId the id of a word
+		 * @return the word
+		 **/
+		public String termOf(int aId) {
+			int start = xOffsets.get(aId);
+			int end = xOffsets.get(aId + 1);
+			char[] allChars = new char[end - start];
+			for (int i = start; i < end; i++) {
+				allChars[i - start] = xChars.get(i);
+			}
+			return new String(allChars);
+		}
+
+		private boolean matches(int aId, CharSequence aWord) {
+			int start = xOffsets.get(aId);
+			if (xOffsets.get(aId + 1) - start != aWord.length()) {
+				return false;
+			}
+			for (int i = 0; i < aWord.length(); i++) {
+				if (xChars.get(start + i) != aWord.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private int slotOf(CharSequence aWord) {
+			long hash = DescriptionNGrams.hashOf(aWord);
+			return (int) (hash ^ (hash >>> 32)) & xMask;
+		}
+
+		private static ByteBuffer slice(MappedByteBuffer aBuffer, int aPosition) {
+			ByteBuffer myBuffer = aBuffer.duplicate();
+			myBuffer.position(aPosition);
+			return myBuffer.slice();
+		}
+	}
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class TermMapper extends InstrumentedMapper<Text, Text, Text, LongWritable> {
+		/*
+		 * Local Cache Variables for the <key,value> for reuse for each input record being processed.
+		 */
+		private Text xWordKey = new Text();
+
+		private DescriptionTokenizer xTokenizer;
+		private BatchedCounters<DescriptionWordFrequency.NEISS_DATA> xWordCounters;
+
+		private static final LongWritable ONE_COUNT = new LongWritable(1);
+
+		/**
+		 * Read the filtered NEISS data and write each word of the incident Description.
+		 * 
+		 * @param aKey a simple text key that represents the CaseNbr
+		 * @param aValue a tab delimited text string with the last field as the incident Description
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void map(Text aKey, Text aValue, Context aContext) throws IOException, InterruptedException {
+			aContext.getCounter(NEISS_DATA.TOAL_RECORDS_PROCESSED).increment(1);
+			String descriptionLine = xTokenizer.descriptionOf(aValue.toString());
+			for (String descriptionWord : xTokenizer.tokenize(descriptionLine, xWordCounters)) {
+				// @formatter:off
+				/*
+				 * Write the output record in the following format: 
+				 * 		[KEY(Text(Description_Word))  VALUE(LongWritable(1))]
+				 */
+				// @formatter:on
+				xWordKey.set(descriptionWord);
+				aContext.write(xWordKey, ONE_COUNT);
+			}
+		}
+
+		@Override
+		protected void setup(Context aContext) throws IOException, InterruptedException {
+			xTokenizer = DescriptionTokenizer.fromConfiguration(aContext.getConfiguration());
+			xWordCounters = new BatchedCounters<DescriptionWordFrequency.NEISS_DATA>(
+					DescriptionWordFrequency.NEISS_DATA.class, aContext);
+		}
+
+		@Override
+		protected void cleanup(Context aContext) throws IOException, InterruptedException {
+			xWordCounters.flush();
+		}
+	}
+
+	/**
+	 * Sums the occurrences of a word, which the TermCountReducer also counts as a distinct word.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class TermCountCombiner extends InstrumentedReducer<Text, LongWritable, Text, LongWritable> {
+		private LongWritable xCountValue = new LongWritable();
+
+		@Override
+		protected void reduce(Text aKey, Iterable<LongWritable> aValues, Context aContext) throws IOException,
+				InterruptedException {
+			long myCount = 0;
+			for (LongWritable myValue : aValues) {
+				myCount += myValue.get();
+			}
+			xCountValue.set(myCount);
+
+			// @formatter:off
+			/*
+			 * Write the output record in the following format: 
+			 * 		[KEY(Text(Description_Word))  VALUE(LongWritable(SUM(Occurrences)))]
+			 */
+			// @formatter:on
+			aContext.write(aKey, xCountValue);
+		}
+	}
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class TermCountReducer extends TermCountCombiner {
+		@Override
+		protected void reduce(Text aKey, Iterable<LongWritable> aValues, Context aContext) throws IOException,
+				InterruptedException {
+			aContext.getCounter(NEISS_DATA.NUM_DISTINCT_TERMS).increment(1);
+			super.reduce(aKey, aValues, aContext);
+		}
+	}
+
+	/**
+	 * Writes the occurrences of the words, and then the dictionary of the words once the job commits.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class DictionaryOutputFormat extends SequenceFileOutputFormat<Text, LongWritable> {
+		private OutputCommitter xCommitter;
+
+		@Override
+		public synchronized OutputCommitter getOutputCommitter(TaskAttemptContext aContext) throws IOException {
+			if (xCommitter == null) {
+				xCommitter = new FileOutputCommitter(getOutputPath(aContext), aContext) {
+					@Override
+					public void commitJob(JobContext aJobContext) throws IOException {
+						super.commitJob(aJobContext);
+						writeDictionary(aJobContext.getConfiguration(), getOutputPath(aJobContext));
+					}
+				};
+			}
+			return xCommitter;
+		}
+	}
+
+	/**
+	 * Number the words from the most to the least frequent (the ties in the order of the words) and write the
+	 * dictionary beside their occurrences.
+	 * 
+	 * @param aConf the configuration of the job
+	 * @param aOutputDir the output directory of the job
+	 **/
+	static void writeDictionary(Configuration aConf, Path aOutputDir) throws IOException {
+		FileSystem fs = aOutputDir.getFileSystem(aConf);
+		final List<String> allWords = new ArrayList<String>();
+		long[] allCounts = new long[1024];
+
+		FileStatus[] allParts = fs.globStatus(new Path(aOutputDir, OUTPUT_FILES));
+		for (FileStatus myPart : (allParts != null) ? allParts : new FileStatus[0]) {
+			SequenceFile.Reader countRdr = new SequenceFile.Reader(aConf, SequenceFile.Reader.file(myPart.getPath()));
+			try {
+				Text myWord = new Text();
+				LongWritable myCount = new LongWritable();
+				while (countRdr.next(myWord, myCount)) {
+					if (allWords.size() == allCounts.length) {
+						allCounts = Arrays.copyOf(allCounts, allCounts.length * 2);
+					}
+					allCounts[allWords.size()] = myCount.get();
+					allWords.add(myWord.toString());
+				}
+			} finally {
+				countRdr.close();
+			}
+		}
+
+		final long[] counts = allCounts;
+		List<Integer> allOrder = new ArrayList<Integer>(allWords.size());
+		for (int i = 0; i < allWords.size(); i++) {
+			allOrder.add(i);
+		}
+		Collections.sort(allOrder, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer aFirst, Integer aSecond) {
+				if (counts[aFirst] != counts[aSecond]) {
+					return (counts[aFirst] > counts[aSecond]) ? -1 : 1;
+				}
+				return allWords.get(aFirst).compareTo(allWords.get(aSecond));
+			}
+		});
+
+		/*
+		 * Build the offsets of the words and the table from the hash of each word to its id (+1, so that an empty slot
+		 * of the table is a zero). The table is kept at most half full.
+		 */
+		int size = allWords.size();
+		int tableSize = Integer.highestOneBit(Math.max(2, size * 2 - 1)) << 1;
+		int mask = tableSize - 1;
+		int[] allOffsets = new int[size + 1];
+		int[] allSlots = new int[tableSize];
+		for (int id = 0; id < size; id++) {
+			String myWord = allWords.get(allOrder.get(id));
+			allOffsets[id + 1] = allOffsets[id] + myWord.length();
+			long hash = DescriptionNGrams.hashOf(myWord);
+			int slot = (int) (hash ^ (hash >>> 32)) & mask;
+			while (allSlots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			allSlots[slot] = id + 1;
+		}
+
+		Path dictionaryFile = new Path(aOutputDir, DICTIONARY_FILE);
+		DataOutputStream dictionaryOut = new DataOutputStream(new BufferedOutputStream(
+				fs.create(dictionaryFile, true)));
+		try {
+			dictionaryOut.writeInt(MAGIC);
+			dictionaryOut.writeInt(size);
+			dictionaryOut.writeInt(tableSize);
+			for (int myOffset : allOffsets) {
+				dictionaryOut.writeInt(myOffset);
+			}
+			for (int mySlot : allSlots) {
+				dictionaryOut.writeInt(mySlot);
+			}
+			for (int id = 0; id < size; id++) {
+				dictionaryOut.writeChars(allWords.get(allOrder.get(id)));
+			}
+		} finally {
+			dictionaryOut.close();
+		}
+		LOG.info("Wrote the " + size + " words of the dictionary " + dictionaryFile);
+	}
+
+	/**
+	 * Request the dictionary within a directory (the output of this job) to be shipped to the tasks of a job, which
+	 * then map it with Dictionary.fromConfiguration().
+	 * 
+	 * @param aConfig the configuration of the job
+	 * @param aDictionaryDir the output directory of this job
+	 **/
+	public static void addDictionary(Configuration aConfig, Path aDictionaryDir) throws IOException {
+		Path dictionaryFile = new Path(aDictionaryDir, DICTIONARY_FILE);
+		FileSystem fs = dictionaryFile.getFileSystem(aConfig);
+		if (!fs.exists(dictionaryFile)) {
+			throw new IOException("There is no dictionary of the Description words within " + aDictionaryDir);
+		}
+		aConfig.set(DICTIONARY_KEY, aDictionaryDir.toString());
+		DistributedCache.addCacheFile(fs.makeQualified(dictionaryFile).toUri(), aConfig);
+		LOG.info("Added file to the distributed cache: " + dictionaryFile);
+	}
+
+	/**
+	 * Setup the environment so that we can invoke the Mapper and Reducer to count the words and build the dictionary.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public Job createJob(String[] aArguments) throws Exception {
+		final String usageText = "Usage: DescriptionTermDictionary <input_dir> <output_dir>"
+				+ " [-stopWords -caseSensitive] [-normalize]";
+
+		if (aArguments.length < 2) {
+			LOG.info(usageText);
+			return null;
+		}
+
+		Job job = new Job(getConf());
+
+		FileInputFormat.setInputPaths(job, new Path(aArguments[0]));
+		FileOutputFormat.setOutputPath(job, new Path(aArguments[1]));
+
+		/*
+		 * Process any additional arguments passed in (these must match those of the DescriptionWordFrequency, so that
+		 * every word it accepts is within the dictionary)...
+		 */
+		for (int i = 2; i < aArguments.length; i++) {
+			if ("-stopWords".equals(aArguments[i])) {
+				DescriptionTokenizer.addStopWords(job.getConfiguration());
+			} else if ("-caseSensitive".equals(aArguments[i])) {
+				job.getConfiguration().setBoolean("wordcount.case.sensitive", true);
+				LOG.info("Enabled case sensitivity while processing the incident Description words.");
+			} else if ("-normalize".equals(aArguments[i])) {
+				DescriptionTokenizer.addNormalizers(job.getConfiguration());
+			} else {
+				System.err.println("ERROR: Invalid argument : '" + aArguments[i] + "'");
+				LOG.info(usageText);
+				return null;
+			}
+		}
+
+		job.setJarByClass(DescriptionTermDictionary.class);
+		job.setJobName("Build the Dictionary of the Incident Description Words");
+
+		job.setMapperClass(TermMapper.class);
+		job.setCombinerClass(TermCountCombiner.class);
+		job.setReducerClass(TermCountReducer.class);
+
+		job.setOutputKeyClass(Text.class);
+		job.setOutputValueClass(LongWritable.class);
+
+		job.setInputFormatClass(KeyValueTextInputFormat.class);
+		job.setOutputFormatClass(DictionaryOutputFormat.class);
+
+		job.setNumReduceTasks(8);
+
+		CompressionSettings.configure(job, DescriptionTermDictionary.class);
+
+		return job;
+	}
+
+	/**
+	 * Build the job from the arguments that were passed in and run it, waiting for it to be completed.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		Job job = createJob(aArguments);
+		if (job == null) {
+			return -1;
+		}
+
+		/*
+		 * Run the job and wait for it to be completed.
+		 */
+		boolean success = job.waitForCompletion(true);
+		CompressionSettings.report(job);
+		JobInstrumentation.report(job);
+
+		return success ? 0 : 1;
+	}
+
+	/**
+	 * The main method calls the ToolRunner.run method, which in turn calls an options parser that interprets Hadoop
+	 * command-line options and puts them into a Configuration object.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	public static void main(String[] aArguments) throws Exception {
+		int exitCode = ToolRunner.run(new Configuration(), new DescriptionTermDictionary(), aArguments);
+		System.exit(exitCode);
+	}
+}
@@ -0,0 +1,285 @@
+package edu.stthomas.gps.project;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.hadoop.util.StringUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Splits the incident Description of the filtered NEISS data into the words (terms) that are used for the word
+ * frequency and TF-IDF calculations, rejecting the empty words, the words that do not start with a letter and the stop
+ * words. This is shared by every job that tokenizes the Descriptions so that they all agree upon the terms.
+ * <p>
+ * 
+ * The accepted words may also be passed through a chain of TokenNormalizer stages (e.g. stemming) so that the
+ * different forms of a word become a single term. The normalized form of each distinct word is kept within a bounded
+ * cache (the least recently used words are evicted first), so the chain is only run once per distinct word of a task:
+ * 
+ * <pre>
+ * 		wordcount.normalizers		=	comma separated list of the TokenNormalizer classes (default none)
+ * 		wordcount.normalizer.cache.size	=	maximum number of words within the cache (default 10000)
+ * </pre>
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class DescriptionTokenizer {
+	private static final Logger LOG = Logger.getLogger(DescriptionTokenizer.class);
+
+	private static final String NAME_PREFIX = "/user/training/NEISS_Local/";
+	private static final String STOP_WORD_DATA = "StopWords.dat";
+
+	private static final String TAB_DELIMITER = new String("\t");
+	private static final Pattern WORD_BOUNDARY = Pattern.compile("\\s*\\b\\s*");
+	private static final int DESCRIPTION_FIELD = 12;
+
+	public static final String NORMALIZERS_KEY = new String("wordcount.normalizers");
+	public static final String CACHE_SIZE_KEY = new String("wordcount.normalizer.cache.size");
+
+	private final boolean xCaseSensitive;
+	private final Set<String> xStopWords = new HashSet<String>();
+	private final List<TokenNormalizer> xNormalizers = new ArrayList<TokenNormalizer>();
+	private NormalizedWordCache xNormalizedWords = new NormalizedWordCache(10000);
+
+	/**
+	 * Maps the words of the Descriptions to their normalized form, evicting the least recently used word once the
+	 * cache is full.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	private static class NormalizedWordCache extends LinkedHashMap<String, String> {
+		private static final long serialVersionUID = 1L;
+		private final int xMaximumSize;
+
+		NormalizedWordCache(int aMaximumSize) {
+			super(16, 0.75f, true);
+			xMaximumSize = aMaximumSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> aEldest) {
+			return size() > xMaximumSize;
+		}
+	}
+
+	/**
+	 * @param aCaseSensitive indicates if the case of the words should be preserved
+	 **/
+	public DescriptionTokenizer(boolean aCaseSensitive) {
+		xCaseSensitive = aCaseSensitive;
+	}
+
+	/**
+	 * Build the tokenizer from the settings stored within the configuration of a task, loading the stop words from
+	 * the distributed cache and creating the normalizer stages when they were requested.
+	 * 
+	 * @param aConfig the configuration associated with this process
+	 * @return the tokenizer
+	 **/
+	public static DescriptionTokenizer fromConfiguration(Configuration aConfig) throws IOException {
+		DescriptionTokenizer tokenizer = new DescriptionTokenizer(aConfig.getBoolean("wordcount.case.sensitive", false));
+		if (aConfig.getBoolean("wordcount.skip.patterns", false)) {
+			Path[] allCachedFiles = DistributedCache.getLocalCacheFiles(aConfig);
+			for (Path cachedFile : (allCachedFiles != null) ? allCachedFiles : new Path[0]) {
+				if (cachedFile.getName().equals(STOP_WORD_DATA)) {
+					tokenizer.parseSkipFile(cachedFile);
+				}
+			}
+			if (tokenizer.xStopWords.isEmpty()) {
+				throw new IOException("Unable to load the Stop Word data [" + STOP_WORD_DATA + "].");
+			}
+		}
+		for (Class<?> normalizerClass : aConfig.getClasses(NORMALIZERS_KEY)) {
+			if (!TokenNormalizer.class.isAssignableFrom(normalizerClass)) {
+				throw new IOException("The class [" + normalizerClass.getName() + "] is not a TokenNormalizer.");
+			}
+			tokenizer.xNormalizers.add((TokenNormalizer) ReflectionUtils.newInstance(normalizerClass, aConfig));
+		}
+		tokenizer.xNormalizedWords = new NormalizedWordCache(Math.max(1, aConfig.getInt(CACHE_SIZE_KEY, 10000)));
+		return tokenizer;
+	}
+
+	/**
+	 * Request the stop words to be skipped by the tokenizer of the tasks of a job.
+	 * 
+	 * @param aConfig the configuration of the job
+	 **/
+	public static void addStopWords(Configuration aConfig) throws URISyntaxException {
+		aConfig.setBoolean("wordcount.skip.patterns", true);
+		DistributedCache.addCacheFile(new URI(NAME_PREFIX + STOP_WORD_DATA), aConfig);
+		LOG.info("Added file to the distributed cache: " + NAME_PREFIX + STOP_WORD_DATA);
+	}
+
+	/**
+	 * Request the accepted words to be lowercased, to have the NEISS abbreviations expanded and to be stemmed by the
+	 * tokenizer of the tasks of a job (unless a chain of normalizers was already configured).
+	 * 
+	 * @param aConfig the configuration of the job
+	 **/
+	public static void addNormalizers(Configuration aConfig) {
+		if (aConfig.get(NORMALIZERS_KEY) == null) {
+			aConfig.setStrings(NORMALIZERS_KEY, TokenNormalizer.LowerCase.class.getName(),
+					TokenNormalizer.Abbreviations.class.getName(), PorterStemmer.class.getName());
+		}
+		LOG.info("Normalizing the incident Description words with: " + aConfig.get(NORMALIZERS_KEY));
+	}
+
+	/**
+	 * Extract the incident Description from a line of the filtered NEISS data.
+	 * 
+	 * @param aValue a tab delimited text string with the last field as the incident Description
+	 * @return the incident Description (mono-cased unless the tokenizer is case sensitive)
+	 **/
+	public String descriptionOf(String aValue) {
+		String myLine = xCaseSensitive ? aValue : aValue.toLowerCase();
+		return myLine.split(TAB_DELIMITER, DESCRIPTION_FIELD + 1)[DESCRIPTION_FIELD];
+	}
+
+	/**
+	 * Split an incident Description into its words, counting each of the accepted and rejected words within the
+	 * (batched) counters of the task. The accepted words are replaced by their normalized form (a word that normalizes
+	 * to nothing or to a stop word is rejected as a stop word).
+	 * 
+	 * @param aDescription the incident Description
+	 * @param aCounters the batched counters of the task that are updated (may be null)
+	 * @return the accepted words in the order they appear within the Description
+	 **/
+	public List<String> tokenize(String aDescription, BatchedCounters<DescriptionWordFrequency.NEISS_DATA> aCounters) {
+		return tokenize(aDescription, aCounters, null);
+	}
+
+	/**
+	 * Split an incident Description into its words as above, also recording the sequence of its tokens: the accepted
+	 * words in place, with a null in place of each rejected token (a punctuation mark, a number or a stop word). The
+	 * empty words are only the gaps left between two tokens by the split, so they do not appear within the sequence.
+	 * This lets the phrases of the Description be built from the words that are truly next to each other.
+	 * 
+	 * @param aDescription the incident Description
+	 * @param aCounters the batched counters of the task that are updated (may be null)
+	 * @param aSequence the list that is cleared and filled with the sequence of tokens (may be null)
+	 * @return the accepted words in the order they appear within the Description
+	 **/
+	public List<String> tokenize(String aDescription, BatchedCounters<DescriptionWordFrequency.NEISS_DATA> aCounters,
+			List<String> aSequence) {
+		List<String> allWords = new ArrayList<String>();
+		if (aSequence != null) {
+			aSequence.clear();
+		}
+		for (String descriptionWord : WORD_BOUNDARY.split(aDescription)) {
+			/*
+			 * Check to see if the word within the description should be included into the final set of words or if it
+			 * should be skipped (because of Stop-Word processing).
+			 */
+			DescriptionWordFrequency.NEISS_DATA counterType = null;
+			if (descriptionWord.isEmpty())
+				counterType = DescriptionWordFrequency.NEISS_DATA.NUM_REJECTED_ZEROWORDS;
+			else if (!Character.isLetter(descriptionWord.charAt(0)))
+				counterType = DescriptionWordFrequency.NEISS_DATA.NUM_REJECTED_NONCHARS;
+			else if (Character.isDigit(descriptionWord.charAt(0)))
+				counterType = DescriptionWordFrequency.NEISS_DATA.NUM_REJECTED_DIGITS;
+			else if (xStopWords.contains(descriptionWord))
+				counterType = DescriptionWordFrequency.NEISS_DATA.NUM_REJECTED_STOPWORDS;
+
+			if (counterType != null) {
+				if (aCounters != null) {
+					aCounters.increment(DescriptionWordFrequency.NEISS_DATA.TOTAL_REJECTED_WORDS);
+					aCounters.increment(counterType);
+				}
+				if (aSequence != null && counterType != DescriptionWordFrequency.NEISS_DATA.NUM_REJECTED_ZEROWORDS) {
+					aSequence.add(null);
+				}
+				continue;
+			}
+			if (!xNormalizers.isEmpty()) {
+				String normalizedWord = normalize(descriptionWord, aCounters);
+				if (normalizedWord.isEmpty() || xStopWords.contains(normalizedWord)) {
+					if (aCounters != null) {
+						aCounters.increment(DescriptionWordFrequency.NEISS_DATA.TOTAL_REJECTED_WORDS);
+						aCounters.increment(DescriptionWordFrequency.NEISS_DATA.NUM_REJECTED_STOPWORDS);
+					}
+					if (aSequence != null) {
+						aSequence.add(null);
+					}
+					continue;
+				}
+				descriptionWord = normalizedWord;
+			}
+			allWords.add(descriptionWord);
+			if (aSequence != null) {
+				aSequence.add(descriptionWord);
+			}
+			if (aCounters != null) {
+				aCounters.increment(DescriptionWordFrequency.NEISS_DATA.NUM_VALID_WORDS);
+			}
+		}
+		return allWords;
+	}
+
+	/**
+	 * Run a word through the chain of normalizers, unless its normalized form is still within the cache.
+	 * 
+	 * @param aWord the accepted word
+	 * @param aCounters the batched counters of the task that are updated (may be null)
+	 * @return the normalized form of the word
+	 **/
+	private String normalize(String aWord, BatchedCounters<DescriptionWordFrequency.NEISS_DATA> aCounters) {
+		String normalizedWord = xNormalizedWords.get(aWord);
+		if (normalizedWord == null) {
+			normalizedWord = aWord;
+			for (TokenNormalizer myNormalizer : xNormalizers) {
+				normalizedWord = myNormalizer.normalize(normalizedWord);
+			}
+			xNormalizedWords.put(aWord, normalizedWord);
+			if (aCounters != null) {
+				aCounters.increment(DescriptionWordFrequency.NEISS_DATA.NUM_NORMALIZER_CACHE_MISSES);
+			}
+		}
+		if (aCounters != null && !normalizedWord.equals(aWord)) {
+			aCounters.increment(DescriptionWordFrequency.NEISS_DATA.NUM_NORMALIZED_WORDS);
+		}
+		return normalizedWord;
+	}
+
+	/**
+	 * Parse all of the data stored within the distributed cache file and load it into the data structure of stop
+	 * words to skip while tokenizing the Descriptions.
+	 * 
+	 * @param aPatternsPath the path to the distributed cache file to use
+	 **/
+	private void parseSkipFile(Path aPatternsPath) throws IOException {
+		LOG.info("Added file \"" + aPatternsPath.getName().toString() + "\" from the distributed cache.");
+		BufferedReader bufferedRdr = new BufferedReader(new FileReader(aPatternsPath.toUri().getPath()));
+		try {
+			String patternLine = bufferedRdr.readLine();
+			while (patternLine != null) {
+				if (!xCaseSensitive) {
+					patternLine = patternLine.toLowerCase();
+				}
+				xStopWords.add(patternLine);
+				patternLine = bufferedRdr.readLine();
+			}
+		} catch (IOException ioe) {
+			System.err.println("ERROR: Caught exception while parsing the cached file '"
+					+ aPatternsPath.getName().toString() + "' : " + StringUtils.stringifyException(ioe));
+		} finally {
+			LOG.info(xStopWords.size() + " entries added from distributed cache file \""
+					+ aPatternsPath.getName().toString() + "\" to local data structure.");
+			bufferedRdr.close();
+		}
+	}
+}
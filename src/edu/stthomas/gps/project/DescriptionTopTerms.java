@@ -0,0 +1,241 @@
+package edu.stthomas.gps.project;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+/**
+ * Regroups the TF-IDF scores (the output of DescriptionTFIDF, which is grouped by the DescriptionWord) by the CaseNbr
+ * and keeps only the highest scoring words of each incident Description. The output is partitioned with the
+ * CaseNbrPartitioner, so that it can be joined on the map side by IncidentTopTermsJoin with the output of
+ * KeywordFilterSortByYearCaseNbr -partitionByCaseNbr (using the same number of partitions).
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class DescriptionTopTerms extends Configured implements Tool, JobFactory {
+	private static final Logger LOG = Logger.getLogger(DescriptionTopTerms.class);
+
+	private static final String TOP_TERMS_KEY = new String("neiss.topterms.count");
+	private static final int DEFAULT_TOP_TERMS = 5;
+
+	private static final String SPACE_DELIMITER = new String(" ");
+	private static final String EQUALS_DELIMITER = new String("=");
+	private static final String AT_DELIMITER = new String("@");
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class TermScoreMapper extends InstrumentedMapper<Text, Text, Text, Text> {
+		/*
+		 * Local Cache Variables for the <key,value> for reuse for each input record being processed.
+		 */
+		private Text xCaseNbrKey = new Text();
+		private Text xTermScoreValue = new Text();
+
+		/**
+		 * Re-key the TF-IDF score of a DescriptionWord by the CaseNbr of the incident it was found within.
+		 * 
+		 * @param aKey a composite text key of the DescriptionWord and the CaseNbr/FileName where the word originates
+		 * @param aValue the text of the TF-IDF score of the word within the incident Description
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void map(Text aKey, Text aValue, Context aContext) throws IOException, InterruptedException {
+
+			// @formatter:off
+			/*
+			 * Expects a line of input like the following: 
+			 * 		[KEY(Text(<Description_Word = CaseNbr@FileName>))
+			 * 		 	VALUE(Text(<[ DocumentsWithWord/TotalDocuments WordCount/AllWordCounts TF-IDF ]>))]
+			 */
+			// @formatter:on
+			String[] wordAndCaseNbr = aKey.toString().split(EQUALS_DELIMITER);
+			String[] allScoreFields = aValue.toString().split(SPACE_DELIMITER);
+			String caseNbr = wordAndCaseNbr[1];
+			int endOfCaseNbr = caseNbr.indexOf(AT_DELIMITER);
+
+			// @formatter:off
+			/*
+			 * Write the output record in the following format: 
+			 * 		[KEY(Text(CaseNbr))  VALUE(Text(<Description_Word=TF-IDF>))]
+			 */
+			// @formatter:on
+			xCaseNbrKey.set((endOfCaseNbr < 0) ? caseNbr : caseNbr.substring(0, endOfCaseNbr));
+			xTermScoreValue.set(wordAndCaseNbr[0] + EQUALS_DELIMITER + allScoreFields[3]);
+			aContext.write(xCaseNbrKey, xTermScoreValue);
+		}
+	}
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class TopTermsReducer extends InstrumentedReducer<Text, Text, Text, Text> {
+		private int xTopTerms;
+		private List<String[]> xAllTermScores = new ArrayList<String[]>();
+		private Text xTopTermsValue = new Text();
+
+		/*
+		 * Order the words by their TF-IDF (highest first) and then alphabetically, so that ties are always broken the
+		 * same way.
+		 */
+		private static final Comparator<String[]> BY_SCORE = new Comparator<String[]>() {
+			@Override
+			public int compare(String[] aFirst, String[] aSecond) {
+				int compare = Double.compare(Double.parseDouble(aSecond[1]), Double.parseDouble(aFirst[1]));
+				return (compare != 0) ? compare : aFirst[0].compareTo(aSecond[0]);
+			}
+		};
+
+		@Override
+		protected void setup(Context aContext) throws IOException, InterruptedException {
+			xTopTerms = aContext.getConfiguration().getInt(TOP_TERMS_KEY, DEFAULT_TOP_TERMS);
+		}
+
+		/**
+		 * Keep only the highest scoring words of the incident Description.
+		 * 
+		 * @param aKey a simple text key that represents the CaseNbr
+		 * @param aValues the TF-IDF of each DescriptionWord within the incident Description
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void reduce(Text aKey, Iterable<Text> aValues, Context aContext) throws IOException,
+				InterruptedException {
+			xAllTermScores.clear();
+			for (Text myValue : aValues) {
+				xAllTermScores.add(myValue.toString().split(EQUALS_DELIMITER));
+			}
+			Collections.sort(xAllTermScores, BY_SCORE);
+
+			StringBuilder topTermsBuilder = new StringBuilder();
+			for (int i = 0; i < Math.min(xTopTerms, xAllTermScores.size()); i++) {
+				if (i > 0) {
+					topTermsBuilder.append(SPACE_DELIMITER);
+				}
+				topTermsBuilder.append(xAllTermScores.get(i)[0]);
+				topTermsBuilder.append(EQUALS_DELIMITER);
+				topTermsBuilder.append(xAllTermScores.get(i)[1]);
+			}
+
+			// @formatter:off
+			/*
+			 * Write the output record in the following format: 
+			 * 		[KEY(Text(CaseNbr))  VALUE(Text(<Description_Word=TF-IDF Description_Word=TF-IDF ...>))]
+			 */
+			// @formatter:on
+			xTopTermsValue.set(topTermsBuilder.toString());
+			aContext.write(aKey, xTopTermsValue);
+		}
+	}
+
+	/**
+	 * Setup the environment so that we can regroup the TF-IDF scores by the CaseNbr.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public Job createJob(String[] aArguments) throws Exception {
+		final String usageText = "Usage: DescriptionTopTerms <tfidf_dir> <output_dir> -partitions n [-topTerms n]";
+
+		if (aArguments.length < 2) {
+			LOG.info(usageText);
+			return null;
+		}
+
+		Job job = new Job(getConf());
+		int numPartitions = 0;
+
+		/*
+		 * Process any additional arguments passed in...
+		 */
+		for (int i = 2; i < aArguments.length; i++) {
+			if ("-partitions".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				numPartitions = Integer.parseInt(aArguments[i]);
+			} else if ("-topTerms".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				job.getConfiguration().setInt(TOP_TERMS_KEY, Integer.parseInt(aArguments[i]));
+			} else {
+				System.err.println("ERROR: Invalid argument : '" + aArguments[i] + "'");
+				LOG.info(usageText);
+				return null;
+			}
+		}
+		if (numPartitions < 1) {
+			System.err.println("ERROR: The number of -partitions is required");
+			LOG.info(usageText);
+			return null;
+		}
+
+		job.setJarByClass(DescriptionTopTerms.class);
+		job.setJobName("Collect the Top TF-IDF Terms of each Incident Description");
+
+		FileInputFormat.setInputPaths(job, new Path(aArguments[0]));
+		FileOutputFormat.setOutputPath(job, new Path(aArguments[1]));
+
+		job.setMapperClass(TermScoreMapper.class);
+		job.setReducerClass(TopTermsReducer.class);
+		job.setPartitionerClass(CaseNbrPartitioner.class);
+
+		job.setOutputKeyClass(Text.class);
+		job.setOutputValueClass(Text.class);
+
+		job.setInputFormatClass(KeyValueTextInputFormat.class);
+		job.setOutputFormatClass(TextOutputFormat.class);
+
+		job.setNumReduceTasks(numPartitions);
+
+		CompressionSettings.configure(job, DescriptionTopTerms.class);
+
+		return job;
+	}
+
+	/**
+	 * Build the job from the arguments that were passed in and run it, waiting for it to be completed.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		Job job = createJob(aArguments);
+		if (job == null) {
+			return -1;
+		}
+
+		/*
+		 * Run the job and wait for it to be completed.
+		 */
+		boolean success = job.waitForCompletion(true);
+		CompressionSettings.report(job);
+		JobInstrumentation.report(job);
+
+		return success ? 0 : 1;
+	}
+
+	/**
+	 * The main method calls the ToolRunner.run method, which in turn calls an options parser that interprets Hadoop
+	 * command-line options and puts them into a Configuration object.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	public static void main(String[] aArguments) throws Exception {
+		int exitCode = ToolRunner.run(new Configuration(), new DescriptionTopTerms(), aArguments);
+		System.exit(exitCode);
+	}
+}
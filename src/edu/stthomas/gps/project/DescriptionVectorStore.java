@@ -0,0 +1,633 @@
+package edu.stthomas.gps.project;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+/**
+ * A local copy of the TF-IDF scores of every incident (the output of DescriptionTFIDF) as L2 normalized sparse
+ * vectors, which answers "more like this" questions such as which incidents are the most similar to case 140512345
+ * (by the cosine similarity of their vectors) without running a MapReduce job:
+ * 
+ * <pre>
+ * 		<store_dir>/_VECTORS		=	the sparse vectors of every incident
+ * 		<store_dir>/_TERMS		=	the term of each term id (one per line, in the order of the ids)
+ * 		<store_dir>/_DOCUMENTS		=	the CaseNbr@FileName of each incident (one per line, in row order)
+ * </pre>
+ * 
+ * The vectors file is a header (the magic number, the number of incidents, terms and non-zero scores) followed by the
+ * offset of the first score of each incident, the term ids of the scores (sorted within each incident) and the
+ * normalized scores as floats. It is memory mapped when the store is opened, which also builds an inverted index (the
+ * incidents and scores of each term) from it. A query accumulates the products of the scores of its own terms with
+ * the scores within the postings of those terms, so only the incidents that share a term with the query are ever
+ * touched, and the best K of them are kept within a small heap.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class DescriptionVectorStore extends Configured implements Tool {
+	private static final Logger LOG = Logger.getLogger(DescriptionVectorStore.class);
+
+	private static final int MAGIC = 0x4e455356; // "NESV"
+	private static final int HEADER_INTS = 4;
+	private static final String VECTORS_FILE = new String("_VECTORS");
+	private static final String TERMS_FILE = new String("_TERMS");
+	private static final String DOCUMENTS_FILE = new String("_DOCUMENTS");
+	private static final String OUTPUT_FILES = new String("part-*");
+	private static final String TAB_DELIMITER = new String("\t");
+	private static final String SPACE_DELIMITER = new String(" ");
+	private static final String SIMILARITY_PATTERN = new String("0.000000");
+	private static final int DEFAULT_TOP = 10;
+
+	private final List<String> xDocuments = new ArrayList<String>();
+	private final Map<String, Integer> xRows = new HashMap<String, Integer>();
+	private final List<String> xTerms = new ArrayList<String>();
+	private IntBuffer xOffsets;
+	private IntBuffer xTermIds;
+	private FloatBuffer xWeights;
+
+	/*
+	 * The inverted index: the postings of term t are the rows and the scores from xPostingStart[t] up to (but not
+	 * including) xPostingStart[t+1].
+	 */
+	private int[] xPostingStart;
+	private int[] xPostingRows;
+	private float[] xPostingWeights;
+
+	/**
+	 * Used by ToolRunner, the store is built or opened from the arguments.
+	 **/
+	public DescriptionVectorStore() {
+	}
+
+	/**
+	 * Open the store by memory mapping its vectors, loading its terms and documents and building its inverted index.
+	 * 
+	 * @param aStoreDir the local directory of the store
+	 **/
+	private DescriptionVectorStore(File aStoreDir) throws IOException {
+		readLines(new File(aStoreDir, DOCUMENTS_FILE), xDocuments);
+		readLines(new File(aStoreDir, TERMS_FILE), xTerms);
+		for (int i = 0; i < xDocuments.size(); i++) {
+			xRows.put(xDocuments.get(i), i);
+		}
+
+		MappedByteBuffer vectorBuffer;
+		RandomAccessFile vectorFile = new RandomAccessFile(new File(aStoreDir, VECTORS_FILE), "r");
+		try {
+			vectorBuffer = vectorFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, vectorFile.length());
+		} finally {
+			vectorFile.close();
+		}
+		IntBuffer header = vectorBuffer.asIntBuffer();
+		if (header.get(0) != MAGIC || header.get(1) != xDocuments.size() || header.get(2) != xTerms.size()) {
+			throw new IOException("The directory " + aStoreDir + " does not hold a valid description vector store.");
+		}
+		int scoreCount = header.get(3);
+		int position = HEADER_INTS * 4;
+		xOffsets = slice(vectorBuffer, position).asIntBuffer();
+		position += (xDocuments.size() + 1) * 4;
+		xTermIds = slice(vectorBuffer, position).asIntBuffer();
+		position += scoreCount * 4;
+		xWeights = slice(vectorBuffer, position).asFloatBuffer();
+
+		/*
+		 * Count the postings of each term, then fill them in row order so each list of postings is sorted by row.
+		 */
+		xPostingStart = new int[xTerms.size() + 1];
+		for (int i = 0; i < scoreCount; i++) {
+			xPostingStart[xTermIds.get(i) + 1]++;
+		}
+		for (int i = 0; i < xTerms.size(); i++) {
+			xPostingStart[i + 1] += xPostingStart[i];
+		}
+		xPostingRows = new int[scoreCount];
+		xPostingWeights = new float[scoreCount];
+		int[] allNext = Arrays.copyOf(xPostingStart, xTerms.size());
+		for (int row = 0; row < xDocuments.size(); row++) {
+			for (int i = xOffsets.get(row); i < xOffsets.get(row + 1); i++) {
+				int posting = allNext[xTermIds.get(i)]++;
+				xPostingRows[posting] = row;
+				xPostingWeights[posting] = xWeights.get(i);
+			}
+		}
+	}
+
+	/**
+	 * Open a store that was built by DescriptionVectorStore.build().
+	 * 
+	 * @param aStoreDir the local directory of the store
+	 * @return the opened store
+	 **/
+	public static DescriptionVectorStore open(File aStoreDir) throws IOException {
+		if (!new File(aStoreDir, VECTORS_FILE).exists()) {
+			throw new IOException("The directory " + aStoreDir + " does not hold a description vector store.");
+		}
+		return new DescriptionVectorStore(aStoreDir);
+	}
+
+	/**
+	 * @return the number of incidents (documents) within the store
+	 **/
+	public int getDocumentCount() {
+		return xDocuments.size();
+	}
+
+	/**
+	 * @return the number of distinct terms within the store
+	 **/
+	public int getTermCount() {
+		return xTerms.size();
+	}
+
+	/**
+	 * Find the row of an incident, either by its full CaseNbr@FileName or by its CaseNbr alone.
+	 * 
+	 * @param aDocument the CaseNbr@FileName (or the CaseNbr) of the incident
+	 * @return the row of the incident, or -1 if it is not within the store
+	 **/
+	public int rowOf(String aDocument) {
+		Integer myRow = xRows.get(aDocument);
+		if (myRow != null) {
+			return myRow;
+		}
+		String casePrefix = aDocument + "@";
+		for (int row = 0; row < xDocuments.size(); row++) {
+			if (xDocuments.get(row).startsWith(casePrefix)) {
+				return row;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Find the incidents that are the most similar to an incident of the store.
+	 * 
+	 * @param aRow the row of the incident
+	 * @param aTop the number of incidents to return
+	 * @param aRows filled with the rows of the most similar incidents (most similar first)
+	 * @param aSimilarities filled with the cosine similarity of each of those incidents
+	 * @return the number of incidents found (at most aTop, as only the incidents sharing a term are scored)
+	 **/
+	public int similarTo(int aRow, int aTop, int[] aRows, float[] aSimilarities) {
+		int start = xOffsets.get(aRow);
+		int end = xOffsets.get(aRow + 1);
+		int[] allTermIds = new int[end - start];
+		float[] allWeights = new float[end - start];
+		for (int i = start; i < end; i++) {
+			allTermIds[i - start] = xTermIds.get(i);
+			allWeights[i - start] = xWeights.get(i);
+		}
+		return similarTo(allTermIds, allWeights, aRow, aTop, aRows, aSimilarities);
+	}
+
+	/**
+	 * Find the incidents that are the most similar to a normalized query vector, by accumulating the score of every
+	 * incident within the postings of the terms of the query.
+	 * 
+	 * @param aTermIds the term ids of the query
+	 * @param aWeights the normalized scores of the terms of the query
+	 * @param aExcludedRow a row to leave out of the result (the incident the query came from), or -1
+	 * @param aTop the number of incidents to return
+	 * @param aRows filled with the rows of the most similar incidents (most similar first)
+	 * @param aSimilarities filled with the cosine similarity of each of those incidents
+	 * @return the number of incidents found
+	 **/
+	public int similarTo(int[] aTermIds, float[] aWeights, int aExcludedRow, int aTop, int[] aRows,
+			float[] aSimilarities) {
+		float[] allScores = new float[xDocuments.size()];
+		int[] allTouched = new int[64];
+		int touched = 0;
+		for (int i = 0; i < aTermIds.length; i++) {
+			float queryWeight = aWeights[i];
+			for (int posting = xPostingStart[aTermIds[i]]; posting < xPostingStart[aTermIds[i] + 1]; posting++) {
+				int row = xPostingRows[posting];
+				if (allScores[row] == 0.0f) {
+					if (touched == allTouched.length) {
+						allTouched = Arrays.copyOf(allTouched, touched * 2);
+					}
+					allTouched[touched++] = row;
+				}
+				allScores[row] += queryWeight * xPostingWeights[posting];
+			}
+		}
+
+		/*
+		 * Keep the best incidents within a min-heap of the top K, so each other incident costs a single comparison.
+		 */
+		int size = 0;
+		for (int i = 0; i < touched; i++) {
+			int row = allTouched[i];
+			if (row == aExcludedRow) {
+				continue;
+			}
+			float score = allScores[row];
+			if (size < aTop) {
+				aRows[size] = row;
+				aSimilarities[size] = score;
+				siftUp(aRows, aSimilarities, size++);
+			} else if (score > aSimilarities[0]) {
+				aRows[0] = row;
+				aSimilarities[0] = score;
+				siftDown(aRows, aSimilarities, size);
+			}
+		}
+
+		/*
+		 * Empty the heap from the least similar incident, filling the arrays in from their end.
+		 */
+		for (int last = size - 1; last > 0; last--) {
+			swap(aRows, aSimilarities, 0, last);
+			siftDown(aRows, aSimilarities, last);
+		}
+		return size;
+	}
+
+	private static void siftUp(int[] aRows, float[] aScores, int aIndex) {
+		while (aIndex > 0 && aScores[(aIndex - 1) / 2] > aScores[aIndex]) {
+			swap(aRows, aScores, aIndex, (aIndex - 1) / 2);
+			aIndex = (aIndex - 1) / 2;
+		}
+	}
+
+	private static void siftDown(int[] aRows, float[] aScores, int aSize) {
+		int index = 0;
+		while (index * 2 + 1 < aSize) {
+			int child = index * 2 + 1;
+			if (child + 1 < aSize && aScores[child + 1] < aScores[child]) {
+				child++;
+			}
+			if (aScores[index] <= aScores[child]) {
+				return;
+			}
+			swap(aRows, aScores, index, child);
+			index = child;
+		}
+	}
+
+	private static void swap(int[] aRows, float[] aScores, int aFirst, int aSecond) {
+		int row = aRows[aFirst];
+		aRows[aFirst] = aRows[aSecond];
+		aRows[aSecond] = row;
+		float score = aScores[aFirst];
+		aScores[aFirst] = aScores[aSecond];
+		aScores[aSecond] = score;
+	}
+
+	/**
+	 * @return the CaseNbr@FileName of the incident of a row
+	 **/
+	public String getDocument(int aRow) {
+		return xDocuments.get(aRow);
+	}
+
+	/**
+	 * @return the terms of the incident of a row, highest score first
+	 **/
+	public List<String> getTerms(int aRow) {
+		final Map<String, Float> allWeights = new HashMap<String, Float>();
+		for (int i = xOffsets.get(aRow); i < xOffsets.get(aRow + 1); i++) {
+			allWeights.put(xTerms.get(xTermIds.get(i)), xWeights.get(i));
+		}
+		List<String> allTerms = new ArrayList<String>(allWeights.keySet());
+		Collections.sort(allTerms, new Comparator<String>() {
+			@Override
+			public int compare(String aFirst, String aSecond) {
+				return allWeights.get(aSecond).compareTo(allWeights.get(aFirst));
+			}
+		});
+		return allTerms;
+	}
+
+	/**
+	 * Build the store from the output of DescriptionTFIDF (or IncrementalTFIDF -rescore).
+	 * 
+	 * @param aConf the configuration holding the file systems
+	 * @param aInput the directory of the TF-IDF scores
+	 * @param aStoreDir the local directory of the store
+	 * @return the number of incidents within the store
+	 **/
+	public static int build(Configuration aConf, Path aInput, File aStoreDir) throws IOException {
+		if (aStoreDir.exists() && !new File(aStoreDir, VECTORS_FILE).exists()) {
+			throw new IOException("Refusing to replace " + aStoreDir
+					+ " as it does not hold a description vector store.");
+		}
+		if (!aStoreDir.exists() && !aStoreDir.mkdirs()) {
+			throw new IOException("Unable to create the directory " + aStoreDir);
+		}
+
+		/*
+		 * Collect every score along with (provisional) ids of its incident and term.
+		 */
+		Map<String, Integer> allDocumentIds = new HashMap<String, Integer>();
+		Map<String, Integer> allTermIds = new HashMap<String, Integer>();
+		int[] allDocuments = new int[4096];
+		int[] allTerms = new int[4096];
+		float[] allScores = new float[4096];
+		int scoreCount = 0;
+		long skippedRecords = 0;
+
+		FileSystem fs = aInput.getFileSystem(aConf);
+		FileStatus[] allParts = fs.globStatus(new Path(aInput, OUTPUT_FILES));
+		for (FileStatus myPart : (allParts != null) ? allParts : new FileStatus[0]) {
+			BufferedReader partRdr = new BufferedReader(new InputStreamReader(CompressionSettings.openText(aConf,
+					myPart.getPath()), "UTF-8"));
+			try {
+				String inputLine = partRdr.readLine();
+				while (inputLine != null) {
+					// @formatter:off
+					/*
+					 * Expects a line of input like the following: 
+					 * 		Description_Word=CaseNbr@FileName
+					 * 			\t [ DocumentsWithWord/TotalDocuments WordCount/AllWordCounts TF-IDF ]
+					 */
+					// @formatter:on
+					int endOfKey = inputLine.indexOf(TAB_DELIMITER);
+					int endOfTerm = inputLine.indexOf('=');
+					String[] scoreVals = (endOfKey < 0) ? new String[0] : inputLine.substring(endOfKey + 1).split(
+							SPACE_DELIMITER);
+					if (endOfTerm < 0 || endOfTerm > endOfKey || scoreVals.length < 5) {
+						skippedRecords++;
+						inputLine = partRdr.readLine();
+						continue;
+					}
+					float score = Float.parseFloat(scoreVals[3]);
+					if (score > 0.0f) {
+						if (scoreCount == allScores.length) {
+							allDocuments = Arrays.copyOf(allDocuments, scoreCount * 2);
+							allTerms = Arrays.copyOf(allTerms, scoreCount * 2);
+							allScores = Arrays.copyOf(allScores, scoreCount * 2);
+						}
+						allDocuments[scoreCount] = idOf(allDocumentIds, inputLine.substring(endOfTerm + 1, endOfKey));
+						allTerms[scoreCount] = idOf(allTermIds, inputLine.substring(0, endOfTerm));
+						allScores[scoreCount++] = score;
+					}
+					inputLine = partRdr.readLine();
+				}
+			} finally {
+				partRdr.close();
+			}
+		}
+
+		/*
+		 * Number the incidents and the terms in the order of their names, so the store is the same however the
+		 * scores were partitioned.
+		 */
+		List<String> sortedDocuments = new ArrayList<String>(allDocumentIds.keySet());
+		Collections.sort(sortedDocuments);
+		int[] documentRows = new int[sortedDocuments.size()];
+		for (int i = 0; i < sortedDocuments.size(); i++) {
+			documentRows[allDocumentIds.get(sortedDocuments.get(i))] = i;
+		}
+		List<String> sortedTerms = new ArrayList<String>(allTermIds.keySet());
+		Collections.sort(sortedTerms);
+		int[] termIds = new int[sortedTerms.size()];
+		for (int i = 0; i < sortedTerms.size(); i++) {
+			termIds[allTermIds.get(sortedTerms.get(i))] = i;
+		}
+
+		/*
+		 * Group the scores by incident (a counting sort by row), then sort the scores of each incident by term id and
+		 * normalize them to a unit length.
+		 */
+		int[] offsets = new int[sortedDocuments.size() + 1];
+		for (int i = 0; i < scoreCount; i++) {
+			offsets[documentRows[allDocuments[i]] + 1]++;
+		}
+		for (int i = 0; i < sortedDocuments.size(); i++) {
+			offsets[i + 1] += offsets[i];
+		}
+		int[] vectorTerms = new int[scoreCount];
+		float[] vectorScores = new float[scoreCount];
+		int[] allNext = Arrays.copyOf(offsets, sortedDocuments.size());
+		for (int i = 0; i < scoreCount; i++) {
+			int position = allNext[documentRows[allDocuments[i]]]++;
+			vectorTerms[position] = termIds[allTerms[i]];
+			vectorScores[position] = allScores[i];
+		}
+		for (int row = 0; row < sortedDocuments.size(); row++) {
+			sortVector(vectorTerms, vectorScores, offsets[row], offsets[row + 1]);
+			double sumOfSquares = 0.0;
+			for (int i = offsets[row]; i < offsets[row + 1]; i++) {
+				sumOfSquares += (double) vectorScores[i] * vectorScores[i];
+			}
+			float norm = (float) Math.sqrt(sumOfSquares);
+			for (int i = offsets[row]; i < offsets[row + 1]; i++) {
+				vectorScores[i] /= norm;
+			}
+		}
+
+		/*
+		 * Write the vectors, then the terms and the documents.
+		 */
+		DataOutputStream vectorStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(
+				aStoreDir, VECTORS_FILE))));
+		try {
+			vectorStream.writeInt(MAGIC);
+			vectorStream.writeInt(sortedDocuments.size());
+			vectorStream.writeInt(sortedTerms.size());
+			vectorStream.writeInt(scoreCount);
+			for (int myOffset : offsets) {
+				vectorStream.writeInt(myOffset);
+			}
+			for (int i = 0; i < scoreCount; i++) {
+				vectorStream.writeInt(vectorTerms[i]);
+			}
+			for (int i = 0; i < scoreCount; i++) {
+				vectorStream.writeFloat(vectorScores[i]);
+			}
+		} finally {
+			vectorStream.close();
+		}
+		writeLines(new File(aStoreDir, TERMS_FILE), sortedTerms);
+		writeLines(new File(aStoreDir, DOCUMENTS_FILE), sortedDocuments);
+
+		if (skippedRecords > 0) {
+			LOG.info("Skipped " + skippedRecords + " malformed records of " + aInput);
+		}
+		LOG.info("Stored " + scoreCount + " scores of " + sortedTerms.size() + " terms for " + sortedDocuments.size()
+				+ " incidents.");
+		return sortedDocuments.size();
+	}
+
+	/**
+	 * @return the id of a name (assigned on first use)
+	 **/
+	private static int idOf(Map<String, Integer> aIds, String aName) {
+		Integer myId = aIds.get(aName);
+		if (myId == null) {
+			myId = aIds.size();
+			aIds.put(aName, myId);
+		}
+		return myId;
+	}
+
+	/**
+	 * Sort the scores of a single incident by their term id (an insertion sort, as an incident has only a few terms).
+	 **/
+	private static void sortVector(int[] aTerms, float[] aScores, int aStart, int aEnd) {
+		for (int i = aStart + 1; i < aEnd; i++) {
+			int term = aTerms[i];
+			float score = aScores[i];
+			int j = i - 1;
+			while (j >= aStart && aTerms[j] > term) {
+				aTerms[j + 1] = aTerms[j];
+				aScores[j + 1] = aScores[j];
+				j--;
+			}
+			aTerms[j + 1] = term;
+			aScores[j + 1] = score;
+		}
+	}
+
+	private static ByteBuffer slice(MappedByteBuffer aBuffer, int aPosition) {
+		ByteBuffer myBuffer = aBuffer.duplicate();
+		myBuffer.position(aPosition);
+		return myBuffer.slice();
+	}
+
+	private static void readLines(File aFile, List<String> aLines) throws IOException {
+		BufferedReader lineRdr = new BufferedReader(new InputStreamReader(new FileInputStream(aFile), "UTF-8"));
+		try {
+			String myLine = lineRdr.readLine();
+			while (myLine != null) {
+				aLines.add(myLine);
+				myLine = lineRdr.readLine();
+			}
+		} finally {
+			lineRdr.close();
+		}
+	}
+
+	private static void writeLines(File aFile, List<String> aLines) throws IOException {
+		Writer lineWriter = new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(aFile)), "UTF-8");
+		try {
+			for (String myLine : aLines) {
+				lineWriter.write(myLine);
+				lineWriter.write('\n');
+			}
+		} finally {
+			lineWriter.close();
+		}
+	}
+
+	/**
+	 * Build the store, or answer a "more like this" query from it.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		final String usageText = "Usage: DescriptionVectorStore <local_store_dir> -build tfidf_dir"
+				+ " | DescriptionVectorStore <local_store_dir> -like CaseNbr[@FileName] [-top n]";
+
+		if (aArguments.length < 3) {
+			LOG.info(usageText);
+			return -1;
+		}
+
+		String tfidfDir = null;
+		List<String> allLike = new ArrayList<String>();
+		int top = DEFAULT_TOP;
+		for (int i = 1; i < aArguments.length; i++) {
+			if ("-build".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				tfidfDir = aArguments[i];
+			} else if ("-like".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				allLike.add(aArguments[i]);
+			} else if ("-top".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				top = Integer.parseInt(aArguments[i]);
+			} else {
+				System.err.println("ERROR: Invalid argument : '" + aArguments[i] + "'");
+				LOG.info(usageText);
+				return -1;
+			}
+		}
+		if (top < 1) {
+			System.err.println("ERROR: The -top must be at least 1");
+			LOG.info(usageText);
+			return -1;
+		}
+
+		long startTime = System.currentTimeMillis();
+		if (tfidfDir != null) {
+			int documentCount = build(getConf(), new Path(tfidfDir), new File(aArguments[0]));
+			LOG.info("Built the description vector store " + aArguments[0] + " with " + documentCount
+					+ " incidents in " + (System.currentTimeMillis() - startTime) + " ms.");
+			startTime = System.currentTimeMillis();
+		}
+		if (allLike.isEmpty()) {
+			return 0;
+		}
+
+		DescriptionVectorStore store = open(new File(aArguments[0]));
+		LOG.info("Opened the description vector store " + aArguments[0] + " with " + store.getDocumentCount()
+				+ " incidents and " + store.getTermCount() + " terms in " + (System.currentTimeMillis() - startTime)
+				+ " ms.");
+
+		DecimalFormat similarityFormat = new DecimalFormat(SIMILARITY_PATTERN);
+		int[] allRows = new int[top];
+		float[] allSimilarities = new float[top];
+		for (String myLike : allLike) {
+			int row = store.rowOf(myLike);
+			if (row < 0) {
+				System.err.println("ERROR: The incident '" + myLike + "' is not within the store");
+				return -1;
+			}
+			long queryTime = System.nanoTime();
+			int found = store.similarTo(row, top, allRows, allSimilarities);
+			LOG.info("Found the " + found + " incidents most like " + store.getDocument(row) + " "
+					+ store.getTerms(row) + " in " + (System.nanoTime() - queryTime) / 1000 + " us.");
+			for (int i = 0; i < found; i++) {
+				System.out.println(store.getDocument(row) + TAB_DELIMITER + (i + 1) + TAB_DELIMITER
+						+ store.getDocument(allRows[i]) + TAB_DELIMITER
+						+ similarityFormat.format(allSimilarities[i]) + TAB_DELIMITER
+						+ store.getTerms(allRows[i]));
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * The main method calls the ToolRunner.run method, which in turn calls an options parser that interprets Hadoop
+	 * command-line options and puts them into a Configuration object.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	public static void main(String[] aArguments) throws Exception {
+		int exitCode = ToolRunner.run(new Configuration(), new DescriptionVectorStore(), aArguments);
+		System.exit(exitCode);
+	}
+}
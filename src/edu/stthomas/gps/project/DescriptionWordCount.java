@@ -1,6 +1,7 @@
 package edu.stthomas.gps.project;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -8,11 +9,9 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.Job;
-import org.apache.hadoop.mapreduce.Mapper;
-import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
@@ -26,7 +25,7 @@ import org.apache.log4j.Logger;
  * @author Robert Driesch - UST Id# 101058113
  * @version 1.0, December 1, 2014
  **/
-public class DescriptionWordCount extends Configured implements Tool {
+public class DescriptionWordCount extends Configured implements Tool, JobFactory {
 	private static final Logger LOG = Logger.getLogger(DescriptionWordCount.class);
 
 	private static final String TAB_DELIMITER = new String("\t");
@@ -39,7 +38,7 @@ public class DescriptionWordCount extends Configured implements Tool {
 	/**
 	 * @version 1.0, December 1, 2014
 	 **/
-	public static class DescriptionWordCountMapper extends Mapper<Text, IntWritable, Text, Text> {
+	public static class DescriptionWordCountMapper extends InstrumentedMapper<Text, IntWritable, Text, Text> {
 
 		/*
 		 * Local Cache Variables for the <key,value> for reuse for each input record being processed.
@@ -90,7 +89,7 @@ public class DescriptionWordCount extends Configured implements Tool {
 	/**
 	 * @version 1.0, December 1, 2014
 	 **/
-	public static class SumDescriptionWordCountReducer extends Reducer<Text, Text, Text, Text> {
+	public static class SumDescriptionWordCountReducer extends InstrumentedReducer<Text, Text, Text, Text> {
 
 		/*
 		 * Local Cache Variables for the <key, value> for reuse for each output reduce record being processed.
@@ -167,6 +166,86 @@ public class DescriptionWordCount extends Configured implements Tool {
 		}
 	}
 
+	/**
+	 * Re-swizzles the word frequencies that were counted by the ids of the words (DescriptionWordFrequency
+	 * -dictionary) so that they are grouped by the CaseNbr and FileName.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class TermIdCountMapper extends
+			InstrumentedMapper<TermPostingWritable, IntWritable, Text, TermPostingWritable> {
+		private Text xCaseNbrKey = new Text();
+		private TermPostingWritable xTermCountValue = new TermPostingWritable();
+		private Text xNoDocument = new Text();
+
+		/**
+		 * @param aKey the id of the DescriptionWord along with the CaseNbr/FileName where the word originates
+		 * @param aValue the count of the number of times that this word occurs within the incident description
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void map(TermPostingWritable aKey, IntWritable aValue, Context aContext) throws IOException,
+				InterruptedException {
+			// @formatter:off
+			/*
+			 * Write the output record in the following format: 
+			 * 		[KEY(Text(CaseNbr@FileName))  VALUE(TermPostingWritable(<TermId, WordCount>))]
+			 */
+			// @formatter:on
+			xCaseNbrKey.set(aKey.getDocument());
+			xTermCountValue.set(aKey.getTermId(), xNoDocument, aValue.get(), 0);
+			aContext.write(xCaseNbrKey, xTermCountValue);
+		}
+	}
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class SumTermIdCountReducer extends
+			InstrumentedReducer<Text, TermPostingWritable, TermPostingWritable, NullWritable> {
+		private TermPostingWritable xPostingKey = new TermPostingWritable();
+
+		/*
+		 * The ids and counts of the words of the incident, held until the total of all of its words is known.
+		 */
+		private int[] xTermIds = new int[64];
+		private int[] xCounts = new int[64];
+
+		/**
+		 * @param aKey a Text value key that represents the CaseNbr/FileName associated with the incident description
+		 * @param aValues the ids of the DescriptionWords of the incident along with the count of each word
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void reduce(Text aKey, Iterable<TermPostingWritable> aValues, Context aContext) throws IOException,
+				InterruptedException {
+			int size = 0;
+			int sumAllWordCounts = 0;
+			for (TermPostingWritable myValue : aValues) {
+				if (size == xTermIds.length) {
+					xTermIds = Arrays.copyOf(xTermIds, size * 2);
+					xCounts = Arrays.copyOf(xCounts, size * 2);
+				}
+				xTermIds[size] = myValue.getTermId();
+				xCounts[size++] = myValue.getCount();
+				sumAllWordCounts += myValue.getCount();
+			}
+
+			for (int i = 0; i < size; i++) {
+				// @formatter:off
+				/*
+				 * Write the output record in the following format: 
+				 * 		[KEY(TermPostingWritable(<TermId, CaseNbr@FileName, WordCount, SUM(AllWordCounts)>))
+				 * 			VALUE(NullWritable)]
+				 */
+				// @formatter:on
+				xPostingKey.set(xTermIds[i], aKey, xCounts[i], sumAllWordCounts);
+				aContext.write(xPostingKey, NullWritable.get());
+				aContext.getCounter(NEISS_DATA.TOAL_RECORDS_GENERATED).increment(1);
+			}
+		}
+	}
+
 	/**
 	 * Setup the environment so that we can invoke the Mapper as a mapper-only job to perform the simple filtering of
 	 * the initial data.
@@ -174,15 +253,15 @@ public class DescriptionWordCount extends Configured implements Tool {
 	 * @param aArguments the arguments that were passed into the program
 	 **/
 	@Override
-	public int run(String[] aArguments) throws Exception {
-		final String usageText = "Usage: DescriptionWordCount <input_dir> <output_dir>";
+	public Job createJob(String[] aArguments) throws Exception {
+		final String usageText = "Usage: DescriptionWordCount <input_dir> <output_dir> [-termIds]";
 
 		/*
 		 * Process any arguments passed in...
 		 */
 		if (aArguments.length < 2) {
 			LOG.info(usageText);
-			return -1;
+			return null;
 		}
 
 		Job job = new Job(getConf());
@@ -190,17 +269,40 @@ public class DescriptionWordCount extends Configured implements Tool {
 		FileInputFormat.setInputPaths(job, new Path(aArguments[0]));
 		FileOutputFormat.setOutputPath(job, new Path(aArguments[1]));
 
+		boolean termIds = false;
+		for (int i = 2; i < aArguments.length; i++) {
+			if ("-termIds".equals(aArguments[i])) {
+				termIds = true;
+				LOG.info("Reading the word frequencies that were counted by the ids of the words.");
+			} else {
+				System.err.println("ERROR: Invalid argument : '" + aArguments[i] + "'");
+				LOG.info(usageText);
+				return null;
+			}
+		}
+
 		job.setJarByClass(DescriptionWordCount.class);
 		job.setJobName("Total WordCount against the Incident Descriptions");
 
-		job.setMapperClass(DescriptionWordCountMapper.class);
-		job.setReducerClass(SumDescriptionWordCountReducer.class);
+		if (termIds) {
+			job.setMapperClass(TermIdCountMapper.class);
+			job.setReducerClass(SumTermIdCountReducer.class);
 
-		job.setMapOutputKeyClass(Text.class);
-		job.setMapOutputValueClass(Text.class);
+			job.setMapOutputKeyClass(Text.class);
+			job.setMapOutputValueClass(TermPostingWritable.class);
 
-		job.setOutputKeyClass(Text.class);
-		job.setOutputValueClass(Text.class);
+			job.setOutputKeyClass(TermPostingWritable.class);
+			job.setOutputValueClass(NullWritable.class);
+		} else {
+			job.setMapperClass(DescriptionWordCountMapper.class);
+			job.setReducerClass(SumDescriptionWordCountReducer.class);
+
+			job.setMapOutputKeyClass(Text.class);
+			job.setMapOutputValueClass(Text.class);
+
+			job.setOutputKeyClass(Text.class);
+			job.setOutputValueClass(Text.class);
+		}
 
 		job.setInputFormatClass(SequenceFileInputFormat.class);
 		job.setOutputFormatClass(SequenceFileOutputFormat.class);
@@ -208,16 +310,30 @@ public class DescriptionWordCount extends Configured implements Tool {
 
 		job.setNumReduceTasks(24);
 
+		CompressionSettings.configure(job, DescriptionWordCount.class);
+
+		return job;
+	}
+
+	/**
+	 * Build the job from the arguments that were passed in and run it, waiting for it to be completed.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		Job job = createJob(aArguments);
+		if (job == null) {
+			return -1;
+		}
+
 		/*
 		 * Run the job and wait for it to be completed.
 		 */
 		boolean success = job.waitForCompletion(true);
+		CompressionSettings.report(job);
+		JobInstrumentation.report(job);
 
-		/*
-		 * Quickly output the local counters to the local output stream (console).
-		 */
-		Counter myCounter = job.getCounters().findCounter(NEISS_DATA.TOAL_RECORDS_GENERATED);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
 		return success ? 0 : 1;
 	}
 
@@ -1,30 +1,21 @@
 package edu.stthomas.gps.project;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.net.URI;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
-import org.apache.hadoop.filecache.DistributedCache;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapreduce.Counter;
-import org.apache.hadoop.mapreduce.Counters;
 import org.apache.hadoop.mapreduce.Job;
-import org.apache.hadoop.mapreduce.Mapper;
-import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
-import org.apache.hadoop.util.StringUtils;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.log4j.Logger;
@@ -33,32 +24,40 @@ import org.apache.log4j.Logger;
  * @author Robert Driesch - UST Id# 101058113
  * @version 1.0, December 1, 2014
  **/
-public class DescriptionWordFrequency extends Configured implements Tool {
+public class DescriptionWordFrequency extends Configured implements Tool, JobFactory {
 	private static final Logger LOG = Logger.getLogger(DescriptionWordFrequency.class);
 
-	private static final String NAME_PREFIX = "/user/training/NEISS_Local/";
-	private static final String STOP_WORD_DATA = "StopWords.dat";
-
 	public static enum NEISS_DATA {
-		TOAL_RECORDS_PROCESSED, TOTAL_REJECTED_WORDS, NUM_REJECTED_ZEROWORDS, NUM_REJECTED_STOPWORDS, NUM_VALID_WORDS, NUM_REJECTED_DIGITS, NUM_REJECTED_NONCHARS
+		TOAL_RECORDS_PROCESSED, TOTAL_REJECTED_WORDS, NUM_REJECTED_ZEROWORDS, NUM_REJECTED_STOPWORDS, NUM_VALID_WORDS, NUM_REJECTED_DIGITS, NUM_REJECTED_NONCHARS, NUM_NGRAMS, NUM_PRUNED_NGRAMS, NUM_DISTINCT_NGRAMS, NUM_UNKNOWN_WORDS, NUM_NORMALIZED_WORDS, NUM_NORMALIZER_CACHE_MISSES
 	}
 
 	/**
 	 * @version 1.0, December 1, 2014
 	 **/
-	public static class DescriptionWordFrequencyMapper extends Mapper<Text, Text, Text, IntWritable> {
+	public static class DescriptionWordFrequencyMapper extends InstrumentedMapper<Text, Text, Text, IntWritable> {
 
 		/*
 		 * Local Cache Variables for the <key,value> for reuse for each input record being processed.
 		 */
 		private Text xWordKey = new Text();
 
-		private boolean xCaseSensitive = false;
-		private Set<String> patternsToSkip = new HashSet<String>();
+		private DescriptionTokenizer xTokenizer;
+		private BatchedCounters<NEISS_DATA> xCounters;
+
+		/*
+		 * The n-grams (up to the order requested) that are counted along with the words, held back by the pruner until
+		 * they have been seen often enough within this task.
+		 */
+		private int xNGramOrder;
+		private DescriptionNGrams.Pruner xPruner;
+		private MultipleOutputs<Text, IntWritable> xDictionaryOutputs;
+		private Text xNGramTerm = new Text();
+		private Text xNGramPhrase = new Text();
+		private List<String> xReleasedDocuments = new ArrayList<String>();
+		private long[] xWordHashes = new long[64];
+		private List<String> xTokenSequence = new ArrayList<String>();
 
 		private static final IntWritable ONE_COUNT = new IntWritable(1);
-		private static final String TAB_DELIMITER = new String("\t");
-		private static final Pattern WORD_BOUNDARY = Pattern.compile("\\s*\\b\\s*");
 
 		/**
 		 * Read the filtered NEISS data and calculate the frequency of the appearance of words within the incident
@@ -102,13 +101,11 @@ public class DescriptionWordFrequency extends Configured implements Tool {
 
 			/*
 			 * Convert the line of data, which is received as a Text object into a String object that we can manipulate
-			 * better. Also determine if we should mono-case text to make the consolidation and summarization easier.
+			 * better. The tokenizer also mono-cases the text (unless requested not to) to make the consolidation and
+			 * summarization easier.
 			 */
-			aContext.getCounter(NEISS_DATA.TOAL_RECORDS_PROCESSED).increment(1);
-			String myLine = aValue.toString();
-			if (!xCaseSensitive) {
-				myLine = myLine.toLowerCase();
-			}
+			xCounters.increment(NEISS_DATA.TOAL_RECORDS_PROCESSED);
+			String descriptionLine = xTokenizer.descriptionOf(aValue.toString());
 
 			/*
 			 * Convert the key of this line back into a string so that we can we re-format it for the new <key,value>
@@ -117,32 +114,13 @@ public class DescriptionWordFrequency extends Configured implements Tool {
 			String myCaseNbr = aKey.toString();
 
 			/*
-			 * Split the line of NEISS tab delimited data into its (at most) 13 separate fields in order to grab the
-			 * incident Description.
+			 * Split the incident Description into its words, skipping those that should not be included into the final
+			 * set of words (because of Stop-Word processing).
 			 */
 			StringBuilder textKeyBuilder = new StringBuilder();
-			String descriptionLine = myLine.split(TAB_DELIMITER, 13)[12];
-			for (String descriptionWord : WORD_BOUNDARY.split(descriptionLine)) {
-				/*
-				 * Check to see if the word within the description should be included into the final set of words or if
-				 * it should be skipped (because of Stop-Word processing).
-				 */
-				if (descriptionWord.isEmpty() || !Character.isLetter(descriptionWord.charAt(0))
-						|| Character.isDigit(descriptionWord.charAt(0)) || patternsToSkip.contains(descriptionWord)) {
-					aContext.getCounter(NEISS_DATA.TOTAL_REJECTED_WORDS).increment(1);
-					NEISS_DATA counterType;
-					if (descriptionWord.isEmpty())
-						counterType = NEISS_DATA.NUM_REJECTED_ZEROWORDS;
-					else if (!Character.isLetter(descriptionWord.charAt(0)))
-						counterType = NEISS_DATA.NUM_REJECTED_NONCHARS;
-					else if (Character.isDigit(descriptionWord.charAt(0)))
-						counterType = NEISS_DATA.NUM_REJECTED_DIGITS;
-					else
-						counterType = NEISS_DATA.NUM_REJECTED_STOPWORDS;
-					aContext.getCounter(counterType).increment(1);
-					continue;
-				}
-
+			List<String> allWords = xTokenizer.tokenize(descriptionLine, xCounters, (xNGramOrder > 1) ? xTokenSequence
+					: null);
+			for (String descriptionWord : allWords) {
 				/*
 				 * Build up the Format of the New Key: "Description_Word\tCaseNbr@FileName"
 				 */
@@ -161,7 +139,70 @@ public class DescriptionWordFrequency extends Configured implements Tool {
 				// @formatter:on
 				xWordKey.set(textKeyBuilder.toString());
 				aContext.write(xWordKey, ONE_COUNT);
-				aContext.getCounter(NEISS_DATA.NUM_VALID_WORDS).increment(1);
+			}
+
+			if (xNGramOrder > 1) {
+				writeNGrams(xTokenSequence, myCaseNbr + "@" + fileName, aContext);
+			}
+		}
+
+		/**
+		 * Write the n-grams (from the bigrams up to the requested order) of the words of an incident Description in the
+		 * same format as the words, using the term of their hashed ids: "#NGramId\tCaseNbr@FileName". The occurrences
+		 * of an n-gram are only written once it has been seen often enough within this task, at which point its phrase
+		 * is also written into the dictionary.
+		 * <p>
+		 * 
+		 * An n-gram is only built from the words that are next to each other within the Description, so any n-gram
+		 * that would span a rejected token (e.g. the stop word of "fell off slide" or the comma of "slide, hit") is
+		 * dropped rather than joining the words on either side of it.
+		 * 
+		 * @param aTokens the sequence of tokens of the incident Description (null in place of a rejected token)
+		 * @param aDocument the CaseNbr@FileName of the incident
+		 * @param aContext the context object associated with this process
+		 **/
+		private void writeNGrams(List<String> aTokens, String aDocument, Context aContext) throws IOException,
+				InterruptedException {
+			int tokenCount = aTokens.size();
+			if (xWordHashes.length < tokenCount) {
+				xWordHashes = new long[tokenCount * 2];
+			}
+			for (int i = 0; i < tokenCount; i++) {
+				String myToken = aTokens.get(i);
+				if (myToken != null) {
+					xWordHashes[i] = DescriptionNGrams.hashOf(myToken);
+				}
+			}
+
+			for (int start = 0; start < tokenCount - 1; start++) {
+				if (aTokens.get(start) == null) {
+					continue;
+				}
+				long myId = xWordHashes[start];
+				for (int order = 2; order <= xNGramOrder && start + order <= tokenCount; order++) {
+					if (aTokens.get(start + order - 1) == null) {
+						break; // Every longer n-gram from this start would also span the rejected token
+					}
+					myId = DescriptionNGrams.extend(myId, xWordHashes[start + order - 1]);
+					boolean firstRelease = xPruner.add(myId, aDocument, xReleasedDocuments);
+					if (xReleasedDocuments.isEmpty()) {
+						continue;
+					}
+
+					String myTerm = DescriptionNGrams.termOf(myId);
+					if (firstRelease) {
+						xNGramTerm.set(myTerm);
+						xNGramPhrase.set(DescriptionNGrams.phraseOf(aTokens, start, order));
+						xDictionaryOutputs.write(DescriptionNGrams.DICTIONARY_OUTPUT, xNGramTerm, xNGramPhrase,
+								DescriptionNGrams.DICTIONARY_FILE);
+						xCounters.increment(NEISS_DATA.NUM_DISTINCT_NGRAMS);
+					}
+					for (String myDocument : xReleasedDocuments) {
+						xWordKey.set(myTerm + "\t" + myDocument);
+						aContext.write(xWordKey, ONE_COUNT);
+					}
+					xCounters.increment(NEISS_DATA.NUM_NGRAMS, xReleasedDocuments.size());
+				}
 			}
 		}
 
@@ -174,57 +215,138 @@ public class DescriptionWordFrequency extends Configured implements Tool {
 		@Override
 		protected void setup(Context aContext) throws IOException, InterruptedException {
 
-			// Get the local configuration from the context so that we can test for the different options and extract
-			// out any distributed files that maybe used.
-			Configuration myConfig = aContext.getConfiguration();
-
 			/*
-			 * Test for Case Sensitivity usage while processing the incident Description words.
+			 * Test for Case Sensitivity and Stop Word usage while processing the incident Description words.
 			 */
-			xCaseSensitive = myConfig.getBoolean("wordcount.case.sensitive", false);
+			xTokenizer = DescriptionTokenizer.fromConfiguration(aContext.getConfiguration());
+			xCounters = new BatchedCounters<NEISS_DATA>(NEISS_DATA.class, aContext);
 
 			/*
-			 * Test for Stop Word usage while processing the incident Description words.
+			 * Test for the n-gram mode, which also counts the phrases of the incident Description words.
 			 */
-			if (myConfig.getBoolean("wordcount.skip.patterns", false)) {
-				Path[] allCachedFiles = DistributedCache.getLocalCacheFiles(myConfig);
-				parseSkipFile(allCachedFiles[0]);
+			xNGramOrder = aContext.getConfiguration().getInt(DescriptionNGrams.ORDER_KEY, 1);
+			if (xNGramOrder > 1) {
+				xPruner = new DescriptionNGrams.Pruner(aContext.getConfiguration().getInt(
+						DescriptionNGrams.MIN_COUNT_KEY, 2));
+				xDictionaryOutputs = new MultipleOutputs<Text, IntWritable>(aContext);
 			}
 		}
 
 		/**
-		 * Parse all of the data stored within the distributed cache file and load it into the data structure of
-		 * patterns to skip while generating the list of words for the <key,value> pair.
+		 * Add the counts accumulated by this task to its counters (including the occurrences of the n-grams that were
+		 * never seen often enough to be written).
 		 * 
-		 * @param aPatternsPath the path to the distributed cache file to use
+		 * @param aContext the context object associated with this process
 		 **/
-		private void parseSkipFile(Path aPatternsPath) throws IOException {
-			LOG.info("Added file \"" + aPatternsPath.getName().toString() + "\" from the distributed cache.");
-			BufferedReader bufferedRdr = new BufferedReader(new FileReader(aPatternsPath.toString()));
-			try {
-				String patternLine = bufferedRdr.readLine();
-				while (patternLine != null) {
-					if (!xCaseSensitive) {
-						patternLine = patternLine.toLowerCase();
-					}
-					patternsToSkip.add(patternLine);
-					patternLine = bufferedRdr.readLine();
+		@Override
+		protected void cleanup(Context aContext) throws IOException, InterruptedException {
+			if (xNGramOrder > 1) {
+				xCounters.increment(NEISS_DATA.NUM_PRUNED_NGRAMS, xPruner.getHeldCount());
+				xDictionaryOutputs.close();
+			}
+			xCounters.flush();
+		}
+	}
+
+	/**
+	 * Counts the words of the incident Descriptions by their ids within the DescriptionTermDictionary rather than by
+	 * the words themselves.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class TermIdFrequencyMapper extends InstrumentedMapper<Text, Text, TermPostingWritable, IntWritable> {
+
+		/*
+		 * Local Cache Variables for the <key,value> for reuse for each input record being processed.
+		 */
+		private TermPostingWritable xPostingKey = new TermPostingWritable();
+
+		private DescriptionTokenizer xTokenizer;
+		private DescriptionTermDictionary.Dictionary xDictionary;
+		private BatchedCounters<NEISS_DATA> xCounters;
+
+		private static final IntWritable ONE_COUNT = new IntWritable(1);
+
+		/**
+		 * Read the filtered NEISS data and write the id of each word of the incident Description, along with the
+		 * CaseNbr and FileName where the word originates.
+		 * 
+		 * @param aKey a simple text key that represents the CaseNbr
+		 * @param aValue a tab delimited text string with the last field as the incident Description
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void map(Text aKey, Text aValue, Context aContext) throws IOException, InterruptedException {
+			xCounters.increment(NEISS_DATA.TOAL_RECORDS_PROCESSED);
+			String fileName = ((FileSplit) aContext.getInputSplit()).getPath().getName();
+			String myDocument = aKey.toString() + "@" + fileName;
+			String descriptionLine = xTokenizer.descriptionOf(aValue.toString());
+
+			for (String descriptionWord : xTokenizer.tokenize(descriptionLine, xCounters)) {
+				/*
+				 * Every accepted word is within the dictionary unless the dictionary was built from other data (or
+				 * with other options), so those words are only counted.
+				 */
+				int termId = xDictionary.idOf(descriptionWord);
+				if (termId < 0) {
+					xCounters.increment(NEISS_DATA.NUM_UNKNOWN_WORDS);
+					continue;
 				}
-			} catch (IOException ioe) {
-				System.err.println("ERROR: Caught exception while parsing the cached file '"
-						+ aPatternsPath.getName().toString() + "' : " + StringUtils.stringifyException(ioe));
-			} finally {
-				LOG.info(patternsToSkip.size() + " entries added from distributed cache file \""
-						+ aPatternsPath.getName().toString() + "\" to local data structure.");
-				bufferedRdr.close();
+
+				// @formatter:off
+				/*
+				 * Write the output record in the following format: 
+				 * 		[KEY(TermPostingWritable(<TermId, CaseNbr@FileName>))  VALUE(IntWritable(1))]
+				 */
+				// @formatter:on
+				xPostingKey.set(termId, myDocument);
+				aContext.write(xPostingKey, ONE_COUNT);
 			}
 		}
+
+		@Override
+		protected void setup(Context aContext) throws IOException, InterruptedException {
+			xTokenizer = DescriptionTokenizer.fromConfiguration(aContext.getConfiguration());
+			xDictionary = DescriptionTermDictionary.Dictionary.fromConfiguration(aContext.getConfiguration());
+			xCounters = new BatchedCounters<NEISS_DATA>(NEISS_DATA.class, aContext);
+		}
+
+		@Override
+		protected void cleanup(Context aContext) throws IOException, InterruptedException {
+			xCounters.flush();
+		}
 	}
 
 	/**
 	 * @version 1.0, December 1, 2014
 	 **/
-	public static class SumFrequencyReducer extends Reducer<Text, IntWritable, Text, IntWritable> {
+	public static class SumTermIdFrequencyReducer extends
+			InstrumentedReducer<TermPostingWritable, IntWritable, TermPostingWritable, IntWritable> {
+		private IntWritable xSumIntWritable = new IntWritable();
+
+		@Override
+		protected void reduce(TermPostingWritable aKey, Iterable<IntWritable> aValues, Context aContext)
+				throws IOException, InterruptedException {
+			int myWordCount = 0;
+			for (IntWritable myValue : aValues) {
+				myWordCount += myValue.get();
+			}
+			xSumIntWritable.set(myWordCount);
+
+			// @formatter:off
+			/*
+			 * Write the output record in the following format: 
+			 * 		[KEY(TermPostingWritable(<TermId, CaseNbr@FileName>))  VALUE(IntWritable(SUM(Description_Word_Count)))]
+			 */
+			// @formatter:on
+			aContext.write(aKey, xSumIntWritable);
+		}
+	}
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class SumFrequencyReducer extends InstrumentedReducer<Text, IntWritable, Text, IntWritable> {
 
 		/*
 		 * Local Cache Variables for the <key, value> for reuse for each output reduce record being processed.
@@ -272,12 +394,13 @@ public class DescriptionWordFrequency extends Configured implements Tool {
 	 * @param aArguments the arguments that were passed into the program
 	 **/
 	@Override
-	public int run(String[] aArguments) throws Exception {
-		final String usageText = "Usage: DescriptionWordCount <input_dir> <output_dir> [-stopWords -caseSensitive]";
+	public Job createJob(String[] aArguments) throws Exception {
+		final String usageText = "Usage: DescriptionWordCount <input_dir> <output_dir> [-stopWords -caseSensitive]"
+				+ " [-normalize] [-ngrams n] [-ngramMinCount n] [-dictionary dir]";
 
 		if (aArguments.length < 2) {
 			LOG.info(usageText);
-			return -1;
+			return null;
 		}
 
 		Job job = new Job(getConf());
@@ -288,62 +411,101 @@ public class DescriptionWordFrequency extends Configured implements Tool {
 		/*
 		 * Process any additional arguments passed in...
 		 */
+		boolean termIds = false;
 		for (int i = 2; i < aArguments.length; i++) {
 			if ("-stopWords".equals(aArguments[i])) {
-				job.getConfiguration().setBoolean("wordcount.skip.patterns", true);
-				DistributedCache.addCacheFile(new URI(NAME_PREFIX + STOP_WORD_DATA), job.getConfiguration());
-				LOG.info("Added file to the distributed cache: " + NAME_PREFIX + STOP_WORD_DATA);
+				DescriptionTokenizer.addStopWords(job.getConfiguration());
 			} else if ("-caseSensitive".equals(aArguments[i])) {
 				job.getConfiguration().setBoolean("wordcount.case.sensitive", true);
 				LOG.info("Enabled case sensitivity while processing the incident Description words.");
+			} else if ("-normalize".equals(aArguments[i])) {
+				DescriptionTokenizer.addNormalizers(job.getConfiguration());
+			} else if ("-ngrams".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				int order = Integer.parseInt(aArguments[i]);
+				if (order < 1 || order > DescriptionNGrams.MAX_ORDER) {
+					System.err.println("ERROR: The order of the n-grams must be from 1 to " + DescriptionNGrams.MAX_ORDER);
+					LOG.info(usageText);
+					return null;
+				}
+				job.getConfiguration().setInt(DescriptionNGrams.ORDER_KEY, order);
+				LOG.info("Counting the n-grams up to an order of " + order + " along with the words.");
+			} else if ("-ngramMinCount".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				job.getConfiguration().setInt(DescriptionNGrams.MIN_COUNT_KEY, Integer.parseInt(aArguments[i]));
+				LOG.info("Pruning the n-grams seen fewer than " + aArguments[i] + " times within a map task.");
+			} else if ("-dictionary".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				DescriptionTermDictionary.addDictionary(job.getConfiguration(), new Path(aArguments[i]));
+				termIds = true;
+				LOG.info("Counting the words by their ids within the dictionary of " + aArguments[i]);
 			} else {
 				System.err.println("ERROR: Invalid argument : '" + aArguments[i] + "'");
 				LOG.info(usageText);
-				return -1;
+				return null;
 			}
 		}
 
+		/*
+		 * The n-grams are identified by the hashes of their words rather than by dictionary ids.
+		 */
+		if (termIds && job.getConfiguration().getInt(DescriptionNGrams.ORDER_KEY, 1) > 1) {
+			System.err.println("ERROR: The -ngrams and -dictionary arguments can not be used together.");
+			LOG.info(usageText);
+			return null;
+		}
+
 		job.setJarByClass(DescriptionWordFrequency.class);
 		job.setJobName("WordFrequency against the NEISS Descriptions");
 
-		job.setMapperClass(DescriptionWordFrequencyMapper.class);
-		job.setReducerClass(SumFrequencyReducer.class);
-		job.setCombinerClass(SumFrequencyReducer.class);
+		if (termIds) {
+			job.setMapperClass(TermIdFrequencyMapper.class);
+			job.setReducerClass(SumTermIdFrequencyReducer.class);
+			job.setCombinerClass(SumTermIdFrequencyReducer.class);
 
-		job.setMapOutputKeyClass(Text.class);
-		job.setMapOutputValueClass(IntWritable.class);
+			job.setMapOutputKeyClass(TermPostingWritable.class);
+			job.setOutputKeyClass(TermPostingWritable.class);
+		} else {
+			job.setMapperClass(DescriptionWordFrequencyMapper.class);
+			job.setReducerClass(SumFrequencyReducer.class);
+			job.setCombinerClass(SumFrequencyReducer.class);
 
-		job.setOutputKeyClass(Text.class);
+			job.setMapOutputKeyClass(Text.class);
+			job.setOutputKeyClass(Text.class);
+		}
+		job.setMapOutputValueClass(IntWritable.class);
 		job.setOutputValueClass(IntWritable.class);
 
 		job.setInputFormatClass(KeyValueTextInputFormat.class);
 		job.setOutputFormatClass(SequenceFileOutputFormat.class);
+		MultipleOutputs.addNamedOutput(job, DescriptionNGrams.DICTIONARY_OUTPUT, SequenceFileOutputFormat.class,
+				Text.class, Text.class);
 
 		job.setNumReduceTasks(24);
 
+		CompressionSettings.configure(job, DescriptionWordFrequency.class);
+
+		return job;
+	}
+
+	/**
+	 * Build the job from the arguments that were passed in and run it, waiting for it to be completed.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		Job job = createJob(aArguments);
+		if (job == null) {
+			return -1;
+		}
+
 		/*
 		 * Run the job and wait for it to be completed.
 		 */
 		boolean success = job.waitForCompletion(true);
-
-		/*
-		 * Quickly output the local counters to the local output stream (console).
-		 */
-		Counters allCounters = job.getCounters();
-		Counter myCounter = allCounters.findCounter(NEISS_DATA.TOAL_RECORDS_PROCESSED);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
-		myCounter = allCounters.findCounter(NEISS_DATA.NUM_VALID_WORDS);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
-		myCounter = allCounters.findCounter(NEISS_DATA.TOTAL_REJECTED_WORDS);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
-		myCounter = allCounters.findCounter(NEISS_DATA.NUM_REJECTED_ZEROWORDS);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
-		myCounter = allCounters.findCounter(NEISS_DATA.NUM_REJECTED_STOPWORDS);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
-		myCounter = allCounters.findCounter(NEISS_DATA.NUM_REJECTED_DIGITS);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
-		myCounter = allCounters.findCounter(NEISS_DATA.NUM_REJECTED_NONCHARS);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
+		CompressionSettings.report(job);
+		JobInstrumentation.report(job);
 
 		return success ? 0 : 1;
 	}
@@ -0,0 +1,1451 @@
+package edu.stthomas.gps.project;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.filecache.DistributedCache;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.LocalFileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.RawComparator;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.serializer.SerializationFactory;
+import org.apache.hadoop.io.serializer.Serializer;
+import org.apache.hadoop.mapred.RawKeyValueIterator;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.JobStatus;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.apache.hadoop.mapreduce.TaskID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.input.KeyValueLineRecordReader;
+import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.map.WrappedMapper;
+import org.apache.hadoop.mapreduce.lib.reduce.WrappedReducer;
+import org.apache.hadoop.mapreduce.task.JobContextImpl;
+import org.apache.hadoop.mapreduce.task.MapContextImpl;
+import org.apache.hadoop.mapreduce.task.ReduceContextImpl;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.hadoop.util.IndexedSortable;
+import org.apache.hadoop.util.Progress;
+import org.apache.hadoop.util.QuickSort;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.hadoop.util.StringUtils;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+/**
+ * An in-process execution engine that runs the Mapper<> and Reducer<> classes of an already configured Job directly
+ * upon a fork-join pool instead of submitting the Job to a cluster (or to the single threaded LocalJobRunner).
+ * <p>
+ * 
+ * The engine honors the same contract as the framework: the InputFormat<> of the Job is used to compute the splits,
+ * every split is processed by its own map task, the map output is partitioned with the Partitioner<> of the Job and
+ * sorted with its sort comparator, the Combiner (if any) is run on every sorted run, and every partition is merged and
+ * grouped with the grouping comparator before it is handed to its own reduce task. The final output is written through
+ * the OutputFormat<> and OutputCommitter of the Job, so existing output directories are still rejected and
+ * MultipleOutputs and LazyOutputFormat continue to work.
+ * <p>
+ * 
+ * Where the framework would always spill the map output to local disk, this engine keeps the sorted runs in memory
+ * and only spills them to a temporary directory when a map task fills its sort buffer or when all of the sorted runs
+ * held by the engine exceed the memory budget. Plain text splits of local files are read directly through a
+ * FileChannel rather than through the Hadoop FileSystem streams.
+ * <p>
+ * 
+ * Any of the drivers that implement {@link JobFactory} can be run from the command line:
+ * 
+ * <pre>
+ * EmbeddedJobEngine [-threads n] [-cacheDir dir] &lt;ToolClass&gt; &lt;tool arguments...&gt;
+ * </pre>
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class EmbeddedJobEngine extends Configured implements Tool {
+	private static final Logger LOG = Logger.getLogger(EmbeddedJobEngine.class);
+
+	/*
+	 * Configuration properties that control the behavior of the engine.
+	 */
+	public static final String THREADS_KEY = new String("engine.threads");
+	public static final String CACHE_DIR_KEY = new String("engine.cache.dir");
+	public static final String SPILL_DIR_KEY = new String("engine.spill.dir");
+	public static final String SORT_BUFFER_KEY = new String("engine.sort.buffer.bytes");
+	public static final String MEMORY_BUDGET_KEY = new String("engine.memory.budget.bytes");
+	public static final String SPLIT_SIZE_KEY = new String("engine.split.size.bytes");
+
+	private static final int DEFAULT_SORT_BUFFER = 64 * 1024 * 1024;
+	private static final long DEFAULT_SPLIT_SIZE = 8L * 1024 * 1024;
+	private static final int READ_BUFFER_SIZE = 1024 * 1024;
+	private static final int STREAM_BUFFER_SIZE = 128 * 1024;
+	private static final String SPLIT_MAXSIZE_KEY = new String("mapreduce.input.fileinputformat.split.maxsize");
+	private static final String RECORD_DELIMITER_KEY = new String("textinputformat.record.delimiter");
+
+	public static enum ENGINE_DATA {
+		MAP_TASKS, REDUCE_TASKS, SPILL_FILES
+	}
+
+	/*
+	 * Sequence used to give every Job run by this engine (within this JVM) a unique identifier.
+	 */
+	private static final AtomicLong JOB_SEQUENCE = new AtomicLong();
+
+	private Counters xCounters = new Counters();
+
+	/**
+	 * Create an engine that will pick up its configuration when it is run.
+	 **/
+	public EmbeddedJobEngine() {
+	}
+
+	/**
+	 * Create an engine that uses the specified configuration for its own settings.
+	 * 
+	 * @param aConf the configuration holding the engine settings
+	 **/
+	public EmbeddedJobEngine(Configuration aConf) {
+		super(aConf);
+	}
+
+	/**
+	 * @return the counters accumulated by all of the tasks of the last Job that was run
+	 **/
+	public Counters getCounters() {
+		return xCounters;
+	}
+
+	/**
+	 * Run the configured Job within this JVM and wait for it to be completed. The engine settings are taken from the
+	 * configuration of the engine (if any) and then from the configuration of the Job itself.
+	 * 
+	 * @param aJob the fully configured Job to be run
+	 * @return true if the Job completed successfully
+	 **/
+	public boolean runJob(Job aJob) throws IOException, InterruptedException {
+		Configuration conf = aJob.getConfiguration();
+		if (getConf() != null) {
+			for (String myKey : new String[] { THREADS_KEY, CACHE_DIR_KEY, SPILL_DIR_KEY, SORT_BUFFER_KEY,
+					MEMORY_BUDGET_KEY, SPLIT_SIZE_KEY }) {
+				if (conf.get(myKey) == null && getConf().get(myKey) != null) {
+					conf.set(myKey, getConf().get(myKey));
+				}
+			}
+		}
+		if (conf.get(SPLIT_MAXSIZE_KEY) == null) {
+			conf.setLong(SPLIT_MAXSIZE_KEY, conf.getLong(SPLIT_SIZE_KEY, DEFAULT_SPLIT_SIZE));
+		}
+		localizeCacheFiles(conf);
+
+		JobID jobId = new JobID("embedded", (int) JOB_SEQUENCE.incrementAndGet());
+		JobContext jobContext = new JobContextImpl(conf, jobId);
+		LOG.info("Running job \"" + aJob.getJobName() + "\" as " + jobId + " within the embedded engine.");
+		long startTime = System.currentTimeMillis();
+
+		ExecutionState state = new ExecutionState(jobContext);
+		ForkJoinPool pool = new ForkJoinPool(conf.getInt(THREADS_KEY, Runtime.getRuntime().availableProcessors()));
+		OutputCommitter jobCommitter = null;
+		boolean success = false;
+		try {
+
+			/*
+			 * Verify the output specifications and setup the job the same way the framework would before any of the
+			 * tasks are started.
+			 */
+			OutputFormat<?, ?> outputFormat = ReflectionUtils.newInstance(jobContext.getOutputFormatClass(), conf);
+			outputFormat.checkOutputSpecs(jobContext);
+			jobCommitter = outputFormat.getOutputCommitter(new TaskAttemptContextImpl(conf, new TaskAttemptID(
+					new TaskID(jobId, TaskType.JOB_SETUP, 0), 0)));
+			jobCommitter.setupJob(jobContext);
+
+			/*
+			 * Run all of the map tasks and then (unless this is a map-only job) all of the reduce tasks.
+			 */
+			InputFormat<?, ?> inputFormat = ReflectionUtils.newInstance(jobContext.getInputFormatClass(), conf);
+			List<InputSplit> allSplits = inputFormat.getSplits(jobContext);
+			List<Callable<Void>> allTasks = new ArrayList<Callable<Void>>();
+			for (int i = 0; i < allSplits.size(); i++) {
+				allTasks.add(new MapTask(state, i, allSplits.get(i)));
+			}
+			invokeAll(pool, allTasks);
+			state.xCounters.findCounter(ENGINE_DATA.MAP_TASKS).increment(allSplits.size());
+
+			if (state.xNumReduces > 0) {
+				allTasks.clear();
+				for (int i = 0; i < state.xNumReduces; i++) {
+					allTasks.add(new ReduceTask(state, i));
+				}
+				invokeAll(pool, allTasks);
+				state.xCounters.findCounter(ENGINE_DATA.REDUCE_TASKS).increment(state.xNumReduces);
+			}
+
+			jobCommitter.commitJob(jobContext);
+			success = true;
+		} catch (IOException ioe) {
+			System.err.println("ERROR: Job \"" + aJob.getJobName() + "\" failed within the embedded engine : "
+					+ StringUtils.stringifyException(ioe));
+		} catch (ClassNotFoundException cnfe) {
+			System.err.println("ERROR: Job \"" + aJob.getJobName() + "\" is configured with an unknown class : "
+					+ StringUtils.stringifyException(cnfe));
+		} finally {
+			pool.shutdownNow();
+			if (!success && jobCommitter != null) {
+				try {
+					jobCommitter.abortJob(jobContext, JobStatus.State.FAILED);
+				} catch (IOException ioe) {
+					System.err.println("ERROR: Unable to clean up the output of the failed job : "
+							+ StringUtils.stringifyException(ioe));
+				}
+			}
+			state.cleanup();
+			xCounters = state.xCounters;
+		}
+
+		LOG.info("Job " + jobId + (success ? " completed" : " failed") + " in "
+				+ (System.currentTimeMillis() - startTime) + " ms.");
+		return success;
+	}
+
+	/**
+	 * Run all of the tasks upon the pool and wait for every one of them to finish, rethrowing the first failure.
+	 * 
+	 * @param aPool the pool that runs the tasks
+	 * @param aTasks the tasks to be run
+	 **/
+	private static void invokeAll(ForkJoinPool aPool, List<Callable<Void>> aTasks) throws IOException,
+			InterruptedException {
+		IOException failure = null;
+		for (Future<Void> myFuture : aPool.invokeAll(aTasks)) {
+			try {
+				myFuture.get();
+			} catch (java.util.concurrent.ExecutionException ee) {
+				if (failure == null) {
+					Throwable cause = ee.getCause();
+					failure = (cause instanceof IOException) ? (IOException) cause : new IOException(cause);
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Point the local cache file property of the Job at local copies of every file that was added to the distributed
+	 * cache. The file is located by its name within the engine cache directory when one was specified, otherwise (or
+	 * when it is not within that directory) the URI of the cache file must already refer to a file upon the local disk.
+	 * 
+	 * @param aConf the configuration of the Job
+	 **/
+	static void localizeCacheFiles(Configuration aConf) throws IOException {
+		URI[] allCacheFiles = DistributedCache.getCacheFiles(aConf);
+		if (allCacheFiles == null) {
+			return;
+		}
+		String cacheDir = aConf.get(CACHE_DIR_KEY);
+		StringBuilder localFiles = new StringBuilder();
+		for (URI cacheFile : allCacheFiles) {
+			File localFile = (cacheDir != null) ? new File(cacheDir, new Path(cacheFile.getPath()).getName())
+					: new File(cacheFile.getPath());
+			if (!localFile.isFile() && cacheDir != null) {
+				localFile = new File(cacheFile.getPath());
+			}
+			if (!localFile.isFile()) {
+				throw new IOException("Unable to locate a local copy of the cache file [" + cacheFile + "].");
+			}
+			if (localFiles.length() > 0) {
+				localFiles.append(',');
+			}
+			localFiles.append(localFile.getAbsolutePath());
+		}
+		DistributedCache.setLocalFiles(aConf, localFiles.toString());
+	}
+
+	/**
+	 * The state shared between all of the tasks of a single Job.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	private static class ExecutionState {
+		private final JobContext xJobContext;
+		private final Configuration xConf;
+		private final int xNumReduces;
+		private final int xSortBufferSize;
+		private final long xMemoryBudget;
+		private final AtomicLong xMemoryUsed = new AtomicLong();
+		private final Counters xCounters = new Counters();
+		private final List<List<Segment>> xSegments = new ArrayList<List<Segment>>();
+		private File xSpillDir;
+
+		ExecutionState(JobContext aJobContext) {
+			xJobContext = aJobContext;
+			xConf = aJobContext.getConfiguration();
+			xNumReduces = aJobContext.getNumReduceTasks();
+			xSortBufferSize = xConf.getInt(SORT_BUFFER_KEY, DEFAULT_SORT_BUFFER);
+			xMemoryBudget = xConf.getLong(MEMORY_BUDGET_KEY, Runtime.getRuntime().maxMemory() / 4);
+			for (int i = 0; i < xNumReduces; i++) {
+				xSegments.add(new ArrayList<Segment>());
+			}
+		}
+
+		/**
+		 * Reserve room for a sorted run within the memory budget of the engine.
+		 * 
+		 * @param aBytes the size of the sorted run
+		 * @return true if the run can be held in memory, false if it must be spilled
+		 **/
+		boolean reserveMemory(long aBytes) {
+			long used = xMemoryUsed.get();
+			while (used + aBytes <= xMemoryBudget) {
+				if (xMemoryUsed.compareAndSet(used, used + aBytes)) {
+					return true;
+				}
+				used = xMemoryUsed.get();
+			}
+			return false;
+		}
+
+		/**
+		 * Create a new (empty) spill file within the temporary directory of this Job.
+		 * 
+		 * @return the new spill file
+		 **/
+		synchronized File createSpillFile() throws IOException {
+			if (xSpillDir == null) {
+				File parentDir = new File(xConf.get(SPILL_DIR_KEY, System.getProperty("java.io.tmpdir")));
+				xSpillDir = File.createTempFile("engine-" + xJobContext.getJobID() + "-", ".spill", parentDir);
+				if (!xSpillDir.delete() || !xSpillDir.mkdirs()) {
+					throw new IOException("Unable to create the spill directory [" + xSpillDir + "].");
+				}
+			}
+			xCounters.findCounter(ENGINE_DATA.SPILL_FILES).increment(1);
+			return File.createTempFile("run-", ".out", xSpillDir);
+		}
+
+		/**
+		 * Publish the sorted runs of a completed map task so that the reduce tasks will merge them.
+		 * 
+		 * @param aSegments the sorted runs of the map task indexed by partition
+		 * @param aCounters the counters of the map task
+		 **/
+		synchronized void completeMapTask(List<List<Segment>> aSegments, Counters aCounters) {
+			for (int i = 0; i < xNumReduces; i++) {
+				xSegments.get(i).addAll(aSegments.get(i));
+			}
+			xCounters.incrAllCounters(aCounters);
+		}
+
+		/**
+		 * Take (and forget) all of the sorted runs of a single partition.
+		 * 
+		 * @param aPartition the partition of the reduce task
+		 * @return the sorted runs of the partition in map task order
+		 **/
+		synchronized List<Segment> takeSegments(int aPartition) {
+			List<Segment> segments = xSegments.get(aPartition);
+			xSegments.set(aPartition, new ArrayList<Segment>());
+			return segments;
+		}
+
+		synchronized void completeTask(Counters aCounters) {
+			xCounters.incrAllCounters(aCounters);
+		}
+
+		/**
+		 * Release all of the sorted runs and remove any of the spill files that are still around.
+		 **/
+		synchronized void cleanup() {
+			xSegments.clear();
+			if (xSpillDir != null) {
+				FileUtil.fullyDelete(xSpillDir);
+			}
+		}
+	}
+
+	/**
+	 * A StatusReporter that records the counters of a single task.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	private static class TaskReporter extends StatusReporter {
+		private final Counters xCounters = new Counters();
+
+		@Override
+		public Counter getCounter(Enum<?> aName) {
+			return xCounters.findCounter(aName);
+		}
+
+		@Override
+		public Counter getCounter(String aGroup, String aName) {
+			return xCounters.findCounter(aGroup, aName);
+		}
+
+		@Override
+		public void progress() {
+		}
+
+		@Override
+		public float getProgress() {
+			return 0.0f;
+		}
+
+		@Override
+		public void setStatus(String aStatus) {
+		}
+	}
+
+	/**
+	 * Common handling of the task attempt and the output committer of a map or reduce task.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	private abstract static class EngineTask implements Callable<Void> {
+		protected final ExecutionState xState;
+		protected final Configuration xConf;
+		protected final TaskAttemptID xAttemptId;
+		protected final TaskReporter xReporter = new TaskReporter();
+
+		EngineTask(ExecutionState aState, TaskType aType, int aTaskNbr) {
+			xState = aState;
+			xConf = aState.xConf;
+			xAttemptId = new TaskAttemptID(new TaskID(aState.xJobContext.getJobID(), aType, aTaskNbr), 0);
+		}
+
+		/**
+		 * Run the body of the task between the setup and the commit of the task output.
+		 * 
+		 * @param aOutputFormat the output format of the job (a new instance for each task)
+		 * @param aCommitter the output committer of this task
+		 * @param aTaskContext the context for the task attempt
+		 **/
+		protected abstract void runTask(OutputFormat<?, ?> aOutputFormat, OutputCommitter aCommitter,
+				TaskAttemptContext aTaskContext) throws Exception;
+
+		@Override
+		public Void call() throws Exception {
+			TaskAttemptContext taskContext = new TaskAttemptContextImpl(xConf, xAttemptId, xReporter);
+			OutputFormat<?, ?> outputFormat = ReflectionUtils.newInstance(taskContext.getOutputFormatClass(), xConf);
+			OutputCommitter committer = outputFormat.getOutputCommitter(taskContext);
+			committer.setupTask(taskContext);
+			try {
+				runTask(outputFormat, committer, taskContext);
+				if (committer.needsTaskCommit(taskContext)) {
+					committer.commitTask(taskContext);
+				}
+			} catch (Exception e) {
+				committer.abortTask(taskContext);
+				throw e;
+			}
+			return null;
+		}
+
+		/**
+		 * Open a RecordWriter<> upon the output format of the job that counts the records being written.
+		 **/
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		protected RecordWriter openOutput(OutputFormat aOutputFormat, TaskAttemptContext aTaskContext,
+				Enum<?> aRecordCounter) throws IOException, InterruptedException {
+			return new CountingRecordWriter(aOutputFormat.getRecordWriter(aTaskContext),
+					xReporter.getCounter(aRecordCounter));
+		}
+	}
+
+	/**
+	 * Runs the Mapper<> of the Job over a single input split, either writing directly to the job output (map-only
+	 * jobs) or collecting the partitioned and sorted map output for the reduce tasks.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	private static class MapTask extends EngineTask {
+		private final InputSplit xSplit;
+
+		MapTask(ExecutionState aState, int aTaskNbr, InputSplit aSplit) {
+			super(aState, TaskType.MAP, aTaskNbr);
+			xSplit = aSplit;
+		}
+
+		@Override
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		protected void runTask(OutputFormat<?, ?> aOutputFormat, OutputCommitter aCommitter,
+				TaskAttemptContext aTaskContext) throws Exception {
+			JobContext jobContext = xState.xJobContext;
+			Mapper mapper = ReflectionUtils.newInstance(jobContext.getMapperClass(), xConf);
+			RecordReader reader = new CountingRecordReader(createRecordReader(aTaskContext),
+					xReporter.getCounter(TaskCounter.MAP_INPUT_RECORDS));
+
+			RecordWriter writer;
+			MapOutputCollector collector = null;
+			if (xState.xNumReduces == 0) {
+				writer = openOutput(aOutputFormat, aTaskContext, TaskCounter.MAP_OUTPUT_RECORDS);
+			} else {
+				collector = new MapOutputCollector(xState, xAttemptId, xReporter);
+				writer = collector;
+			}
+
+			MapContextImpl mapContext = new MapContextImpl(xConf, xAttemptId, reader, writer, aCommitter, xReporter,
+					xSplit);
+			Mapper.Context context = new WrappedMapper().getMapContext(mapContext);
+			try {
+				reader.initialize(xSplit, mapContext);
+				mapper.run(context);
+			} finally {
+				reader.close();
+				writer.close(mapContext);
+			}
+
+			if (collector != null) {
+				xState.completeMapTask(collector.getSegments(), xReporter.xCounters);
+			} else {
+				xState.completeTask(xReporter.xCounters);
+			}
+		}
+
+		/**
+		 * Create the reader for the split. Uncompressed line oriented splits of local files are read through a
+		 * FileChannel, anything else is read by the RecordReader<> of the input format of the Job.
+		 **/
+		@SuppressWarnings("rawtypes")
+		private RecordReader createRecordReader(TaskAttemptContext aTaskContext) throws Exception {
+			Class<?> inputFormatClass = aTaskContext.getInputFormatClass();
+			if (xSplit instanceof FileSplit && xConf.get(RECORD_DELIMITER_KEY) == null
+					&& (inputFormatClass == TextInputFormat.class || inputFormatClass == KeyValueTextInputFormat.class)) {
+				Path path = ((FileSplit) xSplit).getPath();
+				FileSystem fs = path.getFileSystem(xConf);
+				if (fs instanceof LocalFileSystem && new CompressionCodecFactory(xConf).getCodec(path) == null) {
+					if (inputFormatClass == TextInputFormat.class) {
+						return new ChannelLineRecordReader();
+					}
+					return new ChannelKeyValueRecordReader();
+				}
+			}
+			InputFormat inputFormat = (InputFormat) ReflectionUtils.newInstance(inputFormatClass, xConf);
+			return inputFormat.createRecordReader(xSplit, aTaskContext);
+		}
+	}
+
+	/**
+	 * Runs the Reducer<> of the Job over the merge of all of the sorted runs of a single partition.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	private static class ReduceTask extends EngineTask {
+		private final int xPartition;
+
+		ReduceTask(ExecutionState aState, int aPartition) {
+			super(aState, TaskType.REDUCE, aPartition);
+			xPartition = aPartition;
+		}
+
+		@Override
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		protected void runTask(OutputFormat<?, ?> aOutputFormat, OutputCommitter aCommitter,
+				TaskAttemptContext aTaskContext) throws Exception {
+			JobContext jobContext = xState.xJobContext;
+			Reducer reducer = ReflectionUtils.newInstance(jobContext.getReducerClass(), xConf);
+			RawKeyValueIterator input = new MergeIterator(xState.takeSegments(xPartition),
+					jobContext.getSortComparator());
+			RecordWriter writer = openOutput(aOutputFormat, aTaskContext, TaskCounter.REDUCE_OUTPUT_RECORDS);
+
+			ReduceContextImpl reduceContext = new ReduceContextImpl(xConf, xAttemptId, input,
+					xReporter.getCounter(TaskCounter.REDUCE_INPUT_GROUPS),
+					xReporter.getCounter(TaskCounter.REDUCE_INPUT_RECORDS), writer, aCommitter, xReporter,
+					jobContext.getGroupingComparator(), jobContext.getMapOutputKeyClass(),
+					jobContext.getMapOutputValueClass());
+			Reducer.Context context = new WrappedReducer().getReducerContext(reduceContext);
+			try {
+				reducer.run(context);
+			} finally {
+				input.close();
+				writer.close(reduceContext);
+			}
+			xState.completeTask(xReporter.xCounters);
+		}
+	}
+
+	/**
+	 * Collects the serialized output of a map task into a single buffer together with an index of the records. Once
+	 * the buffer is full (and when the map task completes), the records are sorted by partition and key, run through
+	 * the Combiner, and turned into one sorted run per partition.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static class MapOutputCollector extends RecordWriter implements IndexedSortable {
+		private static final int INDEX_WIDTH = 4; // partition, key start, key length, value length
+
+		private final ExecutionState xState;
+		private final TaskAttemptID xAttemptId;
+		private final TaskReporter xReporter;
+		private final JobContext xJobContext;
+		private final Partitioner xPartitioner;
+		private final RawComparator xComparator;
+		private final Class<? extends Reducer> xCombinerClass;
+		private final Serializer xKeySerializer;
+		private final Serializer xValueSerializer;
+		private final Counter xOutputRecords;
+		private final Counter xOutputBytes;
+		private final Counter xMaterializedBytes;
+		private final Counter xSpilledRecords;
+
+		private final DataOutputBuffer xBuffer = new DataOutputBuffer();
+		private int[] xIndex = new int[INDEX_WIDTH * 1024];
+		private int xRecords;
+
+		private final List<List<Segment>> xSegments = new ArrayList<List<Segment>>();
+
+		MapOutputCollector(ExecutionState aState, TaskAttemptID aAttemptId, TaskReporter aReporter)
+				throws IOException, ClassNotFoundException {
+			xState = aState;
+			xAttemptId = aAttemptId;
+			xReporter = aReporter;
+			xJobContext = aState.xJobContext;
+			xPartitioner = ReflectionUtils.newInstance(xJobContext.getPartitionerClass(), aState.xConf);
+			xComparator = xJobContext.getSortComparator();
+			xCombinerClass = xJobContext.getCombinerClass();
+
+			SerializationFactory serializationFactory = new SerializationFactory(aState.xConf);
+			xKeySerializer = serializationFactory.getSerializer(xJobContext.getMapOutputKeyClass());
+			xKeySerializer.open(xBuffer);
+			xValueSerializer = serializationFactory.getSerializer(xJobContext.getMapOutputValueClass());
+			xValueSerializer.open(xBuffer);
+
+			xOutputRecords = aReporter.getCounter(TaskCounter.MAP_OUTPUT_RECORDS);
+			xOutputBytes = aReporter.getCounter(TaskCounter.MAP_OUTPUT_BYTES);
+			xMaterializedBytes = aReporter.getCounter(TaskCounter.MAP_OUTPUT_MATERIALIZED_BYTES);
+			xSpilledRecords = aReporter.getCounter(TaskCounter.SPILLED_RECORDS);
+			for (int i = 0; i < aState.xNumReduces; i++) {
+				xSegments.add(new ArrayList<Segment>());
+			}
+		}
+
+		@Override
+		public void write(Object aKey, Object aValue) throws IOException {
+			int partition = xPartitioner.getPartition(aKey, aValue, xState.xNumReduces);
+			if (partition < 0 || partition >= xState.xNumReduces) {
+				throw new IOException("Illegal partition for " + aKey + " (" + partition + ")");
+			}
+
+			int keyStart = xBuffer.getLength();
+			xKeySerializer.serialize(aKey);
+			int valueStart = xBuffer.getLength();
+			xValueSerializer.serialize(aValue);
+			int valueEnd = xBuffer.getLength();
+
+			if (xRecords * INDEX_WIDTH == xIndex.length) {
+				int[] newIndex = new int[xIndex.length * 2];
+				System.arraycopy(xIndex, 0, newIndex, 0, xIndex.length);
+				xIndex = newIndex;
+			}
+			int offset = xRecords++ * INDEX_WIDTH;
+			xIndex[offset] = partition;
+			xIndex[offset + 1] = keyStart;
+			xIndex[offset + 2] = valueStart - keyStart;
+			xIndex[offset + 3] = valueEnd - valueStart;
+			xOutputRecords.increment(1);
+			xOutputBytes.increment(valueEnd - keyStart);
+
+			if (xBuffer.getLength() >= xState.xSortBufferSize) {
+				sortAndSpill(true);
+			}
+		}
+
+		@Override
+		public void close(TaskAttemptContext aContext) throws IOException {
+			sortAndSpill(false);
+		}
+
+		/**
+		 * @return the sorted runs of this map task indexed by partition
+		 **/
+		List<List<Segment>> getSegments() {
+			return xSegments;
+		}
+
+		@Override
+		public int compare(int aLeft, int aRight) {
+			int left = aLeft * INDEX_WIDTH;
+			int right = aRight * INDEX_WIDTH;
+			if (xIndex[left] != xIndex[right]) {
+				return (xIndex[left] < xIndex[right]) ? -1 : 1;
+			}
+			return xComparator.compare(xBuffer.getData(), xIndex[left + 1], xIndex[left + 2], xBuffer.getData(),
+					xIndex[right + 1], xIndex[right + 2]);
+		}
+
+		@Override
+		public void swap(int aLeft, int aRight) {
+			int left = aLeft * INDEX_WIDTH;
+			int right = aRight * INDEX_WIDTH;
+			for (int i = 0; i < INDEX_WIDTH; i++) {
+				int temp = xIndex[left + i];
+				xIndex[left + i] = xIndex[right + i];
+				xIndex[right + i] = temp;
+			}
+		}
+
+		/**
+		 * Sort the collected records and turn them into one sorted run per partition, which is held in memory unless
+		 * the buffer overflowed or the memory budget of the engine has been used up.
+		 * 
+		 * @param aForceSpill true if the sorted runs must be written to disk
+		 **/
+		private void sortAndSpill(boolean aForceSpill) throws IOException {
+			if (xRecords == 0) {
+				return;
+			}
+			new QuickSort().sort(this, 0, xRecords);
+
+			boolean inMemory = !aForceSpill && xState.reserveMemory(xBuffer.getLength());
+			File spillFile = inMemory ? null : xState.createSpillFile();
+			SegmentWriter segmentWriter = new SegmentWriter(spillFile);
+			try {
+				int first = 0;
+				while (first < xRecords) {
+					int partition = xIndex[first * INDEX_WIDTH];
+					int last = first;
+					while (last < xRecords && xIndex[last * INDEX_WIDTH] == partition) {
+						last++;
+					}
+					segmentWriter.startSegment();
+					if (xCombinerClass != null) {
+						combine(first, last, segmentWriter);
+					} else {
+						for (int i = first; i < last; i++) {
+							int offset = i * INDEX_WIDTH;
+							segmentWriter.append(xBuffer.getData(), xIndex[offset + 1], xIndex[offset + 2],
+									xBuffer.getData(), xIndex[offset + 1] + xIndex[offset + 2], xIndex[offset + 3]);
+						}
+					}
+					xSegments.get(partition).add(segmentWriter.finishSegment());
+					first = last;
+				}
+			} finally {
+				segmentWriter.close();
+			}
+
+			xMaterializedBytes.increment(segmentWriter.getBytesWritten());
+			if (!inMemory) {
+				xSpilledRecords.increment(segmentWriter.getRecordsWritten());
+			}
+			xBuffer.reset();
+			xRecords = 0;
+		}
+
+		/**
+		 * Run the Combiner over a sorted range of the collected records of a single partition.
+		 **/
+		private void combine(int aFirst, int aLast, final SegmentWriter aSegmentWriter) throws IOException {
+			RawKeyValueIterator input = new BufferIterator(aFirst, aLast);
+			RecordWriter combineWriter = new RecordWriter() {
+				private final DataOutputBuffer xCombineBuffer = new DataOutputBuffer();
+				private final SerializationFactory xFactory = new SerializationFactory(xState.xConf);
+				private Serializer xKeyOut = open(xJobContext.getMapOutputKeyClass());
+				private Serializer xValueOut = open(xJobContext.getMapOutputValueClass());
+				private Counter xCombineOutput = xReporter.getCounter(TaskCounter.COMBINE_OUTPUT_RECORDS);
+
+				private Serializer open(Class<?> aClass) throws IOException {
+					Serializer serializer = xFactory.getSerializer(aClass);
+					serializer.open(xCombineBuffer);
+					return serializer;
+				}
+
+				@Override
+				public void write(Object aKey, Object aValue) throws IOException {
+					xCombineBuffer.reset();
+					xKeyOut.serialize(aKey);
+					int keyLength = xCombineBuffer.getLength();
+					xValueOut.serialize(aValue);
+					aSegmentWriter.append(xCombineBuffer.getData(), 0, keyLength, xCombineBuffer.getData(), keyLength,
+							xCombineBuffer.getLength() - keyLength);
+					xCombineOutput.increment(1);
+				}
+
+				@Override
+				public void close(TaskAttemptContext aContext) {
+				}
+			};
+
+			try {
+				Reducer combiner = ReflectionUtils.newInstance(xCombinerClass, xState.xConf);
+				ReduceContextImpl combineContext = new ReduceContextImpl(xState.xConf, xAttemptId, input,
+						new Counters().findCounter("Combine", "Groups"),
+						xReporter.getCounter(TaskCounter.COMBINE_INPUT_RECORDS), combineWriter, null, xReporter,
+						xComparator, xJobContext.getMapOutputKeyClass(), xJobContext.getMapOutputValueClass());
+				combiner.run(new WrappedReducer().getReducerContext(combineContext));
+			} catch (InterruptedException ie) {
+				throw new IOException(ie);
+			}
+		}
+
+		/**
+		 * Iterates over a sorted range of the records held within the collection buffer.
+		 * 
+		 * @version 1.0, December 1, 2014
+		 **/
+		private class BufferIterator implements RawKeyValueIterator {
+			private final DataInputBuffer xKey = new DataInputBuffer();
+			private final DataInputBuffer xValue = new DataInputBuffer();
+			private int xCurrent;
+			private final int xLast;
+
+			BufferIterator(int aFirst, int aLast) {
+				xCurrent = aFirst - 1;
+				xLast = aLast;
+			}
+
+			@Override
+			public DataInputBuffer getKey() {
+				return xKey;
+			}
+
+			@Override
+			public DataInputBuffer getValue() {
+				return xValue;
+			}
+
+			@Override
+			public boolean next() {
+				if (++xCurrent >= xLast) {
+					return false;
+				}
+				int offset = xCurrent * INDEX_WIDTH;
+				xKey.reset(xBuffer.getData(), xIndex[offset + 1], xIndex[offset + 2]);
+				xValue.reset(xBuffer.getData(), xIndex[offset + 1] + xIndex[offset + 2], xIndex[offset + 3]);
+				return true;
+			}
+
+			@Override
+			public void close() {
+			}
+
+			@Override
+			public Progress getProgress() {
+				return new Progress();
+			}
+		}
+	}
+
+	// @formatter:off
+	/*
+	 * Every sorted run (in memory or on disk) is stored with the same simple record format:
+	 * 
+	 * 		VInt	=	length of the serialized key
+	 * 		VInt	=	length of the serialized value
+	 * 		bytes	=	serialized key
+	 * 		bytes	=	serialized value
+	 * 
+	 * A single spill file holds the sorted runs of every partition back to back.
+	 */
+	// @formatter:on
+
+	/**
+	 * A single sorted run of records of one partition.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	private static class Segment {
+		private final byte[] xData; // in memory runs only
+		private final File xFile; // spilled runs only
+		private final long xStart;
+		private final long xLength;
+
+		Segment(byte[] aData, File aFile, long aStart, long aLength) {
+			xData = aData;
+			xFile = aFile;
+			xStart = aStart;
+			xLength = aLength;
+		}
+
+		/**
+		 * @return a reader positioned at the first record of this run
+		 **/
+		SegmentReader open() throws IOException {
+			if (xData != null) {
+				DataInputBuffer input = new DataInputBuffer();
+				input.reset(xData, 0, xData.length);
+				return new SegmentReader(input, xData.length, null);
+			}
+			FileInputStream fileStream = new FileInputStream(xFile);
+			try {
+				fileStream.getChannel().position(xStart);
+			} catch (IOException ioe) {
+				fileStream.close();
+				throw ioe;
+			}
+			return new SegmentReader(new DataInputStream(new BufferedInputStream(fileStream, STREAM_BUFFER_SIZE)),
+					xLength, fileStream);
+		}
+	}
+
+	/**
+	 * Writes a sequence of sorted runs either into memory or back to back into a single spill file.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	private static class SegmentWriter {
+		private final File xFile;
+		private final DataOutputStream xFileOutput;
+		private final DataOutputBuffer xMemoryOutput = new DataOutputBuffer();
+		private long xFilePosition;
+		private long xSegmentStart;
+		private long xBytesWritten;
+		private long xRecordsWritten;
+
+		SegmentWriter(File aFile) throws IOException {
+			xFile = aFile;
+			xFileOutput = (aFile == null) ? null : new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+					aFile), STREAM_BUFFER_SIZE));
+		}
+
+		void startSegment() {
+			xMemoryOutput.reset();
+			xSegmentStart = xFilePosition;
+		}
+
+		void append(byte[] aKey, int aKeyStart, int aKeyLength, byte[] aValue, int aValueStart, int aValueLength)
+				throws IOException {
+			DataOutputStream output = (xFileOutput != null) ? xFileOutput : xMemoryOutput;
+			int length = WritableUtils.getVIntSize(aKeyLength) + WritableUtils.getVIntSize(aValueLength) + aKeyLength
+					+ aValueLength;
+			WritableUtils.writeVInt(output, aKeyLength);
+			WritableUtils.writeVInt(output, aValueLength);
+			output.write(aKey, aKeyStart, aKeyLength);
+			output.write(aValue, aValueStart, aValueLength);
+			xFilePosition += length;
+			xBytesWritten += length;
+			xRecordsWritten++;
+		}
+
+		Segment finishSegment() {
+			if (xFileOutput != null) {
+				return new Segment(null, xFile, xSegmentStart, xFilePosition - xSegmentStart);
+			}
+			byte[] data = new byte[xMemoryOutput.getLength()];
+			System.arraycopy(xMemoryOutput.getData(), 0, data, 0, data.length);
+			return new Segment(data, null, 0, data.length);
+		}
+
+		long getBytesWritten() {
+			return xBytesWritten;
+		}
+
+		long getRecordsWritten() {
+			return xRecordsWritten;
+		}
+
+		void close() throws IOException {
+			if (xFileOutput != null) {
+				xFileOutput.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads the records of a single sorted run.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	private static class SegmentReader {
+		private final java.io.DataInput xInput;
+		private final java.io.Closeable xCloseable;
+		private long xRemaining;
+		private byte[] xKeyBytes = new byte[64];
+		private byte[] xValueBytes = new byte[256];
+		private final DataInputBuffer xKey = new DataInputBuffer();
+		private final DataInputBuffer xValue = new DataInputBuffer();
+		private int xOrder;
+
+		SegmentReader(java.io.DataInput aInput, long aLength, java.io.Closeable aCloseable) {
+			xInput = aInput;
+			xRemaining = aLength;
+			xCloseable = aCloseable;
+		}
+
+		boolean next() throws IOException {
+			if (xRemaining <= 0) {
+				return false;
+			}
+			try {
+				int keyLength = WritableUtils.readVInt(xInput);
+				int valueLength = WritableUtils.readVInt(xInput);
+				if (xKeyBytes.length < keyLength) {
+					xKeyBytes = new byte[Math.max(keyLength, xKeyBytes.length * 2)];
+				}
+				if (xValueBytes.length < valueLength) {
+					xValueBytes = new byte[Math.max(valueLength, xValueBytes.length * 2)];
+				}
+				xInput.readFully(xKeyBytes, 0, keyLength);
+				xInput.readFully(xValueBytes, 0, valueLength);
+				xKey.reset(xKeyBytes, 0, keyLength);
+				xValue.reset(xValueBytes, 0, valueLength);
+				xRemaining -= WritableUtils.getVIntSize(keyLength) + WritableUtils.getVIntSize(valueLength)
+						+ keyLength + valueLength;
+			} catch (EOFException eofe) {
+				throw new IOException("Truncated sorted run of map output.", eofe);
+			}
+			return true;
+		}
+
+		void close() throws IOException {
+			if (xCloseable != null) {
+				xCloseable.close();
+			}
+		}
+	}
+
+	/**
+	 * Merges all of the sorted runs of a single partition into one sorted stream. Records with equal keys are returned
+	 * in the order of the runs (map task order), matching the framework.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	private static class MergeIterator implements RawKeyValueIterator {
+		private final PriorityQueue<SegmentReader> xQueue;
+		private final Progress xProgress = new Progress();
+		private SegmentReader xCurrent;
+
+		MergeIterator(List<Segment> aSegments, final RawComparator<?> aComparator) throws IOException {
+			xQueue = new PriorityQueue<SegmentReader>(Math.max(aSegments.size(), 1), new Comparator<SegmentReader>() {
+				@Override
+				public int compare(SegmentReader aLeft, SegmentReader aRight) {
+					int result = aComparator.compare(aLeft.xKey.getData(), 0, aLeft.xKey.getLength(),
+							aRight.xKey.getData(), 0, aRight.xKey.getLength());
+					return (result != 0) ? result : aLeft.xOrder - aRight.xOrder;
+				}
+			});
+			for (int i = 0; i < aSegments.size(); i++) {
+				SegmentReader reader = aSegments.get(i).open();
+				reader.xOrder = i;
+				if (reader.next()) {
+					xQueue.add(reader);
+				} else {
+					reader.close();
+				}
+			}
+		}
+
+		@Override
+		public DataInputBuffer getKey() {
+			return xCurrent.xKey;
+		}
+
+		@Override
+		public DataInputBuffer getValue() {
+			return xCurrent.xValue;
+		}
+
+		@Override
+		public boolean next() throws IOException {
+			if (xCurrent != null) {
+				if (xCurrent.next()) {
+					xQueue.add(xCurrent);
+				} else {
+					xCurrent.close();
+				}
+			}
+			xCurrent = xQueue.poll();
+			return xCurrent != null;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (xCurrent != null) {
+				xCurrent.close();
+			}
+			for (SegmentReader myReader : xQueue) {
+				myReader.close();
+			}
+			xQueue.clear();
+		}
+
+		@Override
+		public Progress getProgress() {
+			return xProgress;
+		}
+	}
+
+	/**
+	 * A RecordReader<> that counts every record that was read.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static class CountingRecordReader extends RecordReader {
+		private final RecordReader xReader;
+		private final Counter xCounter;
+
+		CountingRecordReader(RecordReader aReader, Counter aCounter) {
+			xReader = aReader;
+			xCounter = aCounter;
+		}
+
+		@Override
+		public void initialize(InputSplit aSplit, TaskAttemptContext aContext) throws IOException,
+				InterruptedException {
+			xReader.initialize(aSplit, aContext);
+		}
+
+		@Override
+		public boolean nextKeyValue() throws IOException, InterruptedException {
+			boolean result = xReader.nextKeyValue();
+			if (result) {
+				xCounter.increment(1);
+			}
+			return result;
+		}
+
+		@Override
+		public Object getCurrentKey() throws IOException, InterruptedException {
+			return xReader.getCurrentKey();
+		}
+
+		@Override
+		public Object getCurrentValue() throws IOException, InterruptedException {
+			return xReader.getCurrentValue();
+		}
+
+		@Override
+		public float getProgress() throws IOException, InterruptedException {
+			return xReader.getProgress();
+		}
+
+		@Override
+		public void close() throws IOException {
+			xReader.close();
+		}
+	}
+
+	/**
+	 * A RecordWriter<> that counts every record that was written.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static class CountingRecordWriter extends RecordWriter {
+		private final RecordWriter xWriter;
+		private final Counter xCounter;
+
+		CountingRecordWriter(RecordWriter aWriter, Counter aCounter) {
+			xWriter = aWriter;
+			xCounter = aCounter;
+		}
+
+		@Override
+		public void write(Object aKey, Object aValue) throws IOException, InterruptedException {
+			xWriter.write(aKey, aValue);
+			xCounter.increment(1);
+		}
+
+		@Override
+		public void close(TaskAttemptContext aContext) throws IOException, InterruptedException {
+			xWriter.close(aContext);
+		}
+	}
+
+	/**
+	 * Reads the lines of a FileSplit of a local file directly through a FileChannel. The split boundaries are handled
+	 * the same way as the LineRecordReader of the framework: every split except the first skips its partial first line
+	 * and every split reads the line that crosses its end.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	private static class ChannelLineRecordReader extends RecordReader<LongWritable, Text> {
+		private RandomAccessFile xFile;
+		private FileChannel xChannel;
+		private final ByteBuffer xBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		private long xBufferPosition; // file position of the first byte of the buffer
+		private long xStart;
+		private long xEnd;
+		private long xPosition;
+		private LongWritable xKey = new LongWritable();
+		private Text xValue = new Text();
+
+		@Override
+		public void initialize(InputSplit aSplit, TaskAttemptContext aContext) throws IOException {
+			FileSplit split = (FileSplit) aSplit;
+			xFile = new RandomAccessFile(new File(split.getPath().toUri().getPath()), "r");
+			xChannel = xFile.getChannel();
+			xStart = split.getStart();
+			xEnd = xStart + split.getLength();
+			xBufferPosition = xStart;
+			xBuffer.limit(0);
+			xPosition = xStart;
+			if (xStart != 0) {
+				xPosition += readLine(null);
+			}
+		}
+
+		@Override
+		public boolean nextKeyValue() throws IOException {
+			if (xPosition > xEnd) {
+				return false;
+			}
+			xKey.set(xPosition);
+			int consumed = readLine(xValue);
+			if (consumed == 0) {
+				return false;
+			}
+			xPosition += consumed;
+			return true;
+		}
+
+		/**
+		 * Read the next line from the channel (without its terminator) into the text.
+		 * 
+		 * @param aLine the text to receive the line, or null to skip the line
+		 * @return the number of bytes consumed including the line terminator
+		 **/
+		private int readLine(Text aLine) throws IOException {
+			if (aLine != null) {
+				aLine.clear();
+			}
+			int consumed = 0;
+			boolean previousCR = false;
+			while (true) {
+				if (!xBuffer.hasRemaining() && !fillBuffer()) {
+					return consumed;
+				}
+				byte[] data = xBuffer.array();
+				int begin = xBuffer.position();
+				int limit = xBuffer.limit();
+				int i = begin;
+				if (previousCR) {
+					if (data[i] == '\n') {
+						xBuffer.position(i + 1);
+						return consumed + 1;
+					}
+					return consumed;
+				}
+				while (i < limit && data[i] != '\n' && data[i] != '\r') {
+					i++;
+				}
+				if (aLine != null) {
+					aLine.append(data, begin, i - begin);
+				}
+				consumed += i - begin;
+				if (i == limit) {
+					xBuffer.position(limit);
+					continue;
+				}
+				consumed++;
+				xBuffer.position(i + 1);
+				if (data[i] == '\n') {
+					return consumed;
+				}
+				previousCR = true;
+				if (!xBuffer.hasRemaining() && !fillBuffer()) {
+					return consumed;
+				}
+			}
+		}
+
+		private boolean fillBuffer() throws IOException {
+			xBufferPosition += xBuffer.limit();
+			xBuffer.clear();
+			int count = xChannel.read(xBuffer, xBufferPosition);
+			if (count <= 0) {
+				xBuffer.limit(0);
+				return false;
+			}
+			xBuffer.flip();
+			return true;
+		}
+
+		@Override
+		public LongWritable getCurrentKey() {
+			return xKey;
+		}
+
+		@Override
+		public Text getCurrentValue() {
+			return xValue;
+		}
+
+		@Override
+		public float getProgress() {
+			return (xEnd == xStart) ? 1.0f : Math.min(1.0f, (xPosition - xStart) / (float) (xEnd - xStart));
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (xFile != null) {
+				xFile.close();
+			}
+		}
+	}
+
+	/**
+	 * Splits each line read through a FileChannel into a key and a value at the first separator, the same way as the
+	 * KeyValueLineRecordReader of the framework.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	private static class ChannelKeyValueRecordReader extends RecordReader<Text, Text> {
+		private final ChannelLineRecordReader xLineReader = new ChannelLineRecordReader();
+		private byte xSeparator = (byte) '\t';
+		private Text xKey = new Text();
+		private Text xValue = new Text();
+
+		@Override
+		public void initialize(InputSplit aSplit, TaskAttemptContext aContext) throws IOException {
+			String separator = aContext.getConfiguration().get(KeyValueLineRecordReader.KEY_VALUE_SEPERATOR, "\t");
+			xSeparator = (byte) separator.charAt(0);
+			xLineReader.initialize(aSplit, aContext);
+		}
+
+		@Override
+		public boolean nextKeyValue() throws IOException {
+			if (!xLineReader.nextKeyValue()) {
+				return false;
+			}
+			Text line = xLineReader.getCurrentValue();
+			byte[] data = line.getBytes();
+			int length = line.getLength();
+			int position = 0;
+			while (position < length && data[position] != xSeparator) {
+				position++;
+			}
+			if (position == length) {
+				xKey.set(data, 0, length);
+				xValue.clear();
+			} else {
+				xKey.set(data, 0, position);
+				xValue.set(data, position + 1, length - position - 1);
+			}
+			return true;
+		}
+
+		@Override
+		public Text getCurrentKey() {
+			return xKey;
+		}
+
+		@Override
+		public Text getCurrentValue() {
+			return xValue;
+		}
+
+		@Override
+		public float getProgress() {
+			return xLineReader.getProgress();
+		}
+
+		@Override
+		public void close() throws IOException {
+			xLineReader.close();
+		}
+	}
+
+	/**
+	 * Build the requested Tool, let it create its Job from the remaining arguments, and run that Job within this
+	 * engine.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		int argIndex = 0;
+		while (argIndex < aArguments.length && aArguments[argIndex].startsWith("-")) {
+			if (aArguments[argIndex].equals("-threads") && argIndex + 1 < aArguments.length) {
+				getConf().setInt(THREADS_KEY, Integer.parseInt(aArguments[argIndex + 1]));
+				argIndex += 2;
+			} else if (aArguments[argIndex].equals("-cacheDir") && argIndex + 1 < aArguments.length) {
+				getConf().set(CACHE_DIR_KEY, aArguments[argIndex + 1]);
+				argIndex += 2;
+			} else {
+				break;
+			}
+		}
+		if (argIndex >= aArguments.length) {
+			System.out.printf("Usage: EmbeddedJobEngine [-threads n] [-cacheDir dir] <ToolClass> <tool_arguments>\n");
+			return -1;
+		}
+
+		/*
+		 * Locate the Tool (by its simple name within this package or by its fully qualified name) and build its Job.
+		 */
+		String className = aArguments[argIndex];
+		Class<?> toolClass;
+		try {
+			toolClass = Class.forName(className.contains(".") ? className : EmbeddedJobEngine.class.getPackage()
+					.getName() + "." + className);
+		} catch (ClassNotFoundException cnfe) {
+			System.err.println("ERROR: Unable to locate the tool class '" + className + "'.");
+			return -1;
+		}
+		if (!JobFactory.class.isAssignableFrom(toolClass)) {
+			System.err.println("ERROR: The tool class '" + className + "' is not able to create its job.");
+			return -1;
+		}
+		JobFactory factory = (JobFactory) ReflectionUtils.newInstance(toolClass, getConf());
+		String[] toolArguments = new String[aArguments.length - argIndex - 1];
+		System.arraycopy(aArguments, argIndex + 1, toolArguments, 0, toolArguments.length);
+		Job job = factory.createJob(toolArguments);
+		if (job == null) {
+			return -1;
+		}
+
+		boolean success = runJob(job);
+
+		JobInstrumentation.report(job.getConfiguration(), getCounters(), job.getConfiguration().get(
+				CompressionSettings.STAGE_KEY, job.getJobName()));
+
+		return success ? 0 : 1;
+	}
+
+	/**
+	 * The main method calls the ToolRunner.run method, which in turn calls an options parser that interprets Hadoop
+	 * command-line options and puts them into a Configuration object.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	public static void main(String[] aArguments) throws Exception {
+		int exitCode = ToolRunner.run(new Configuration(), new EmbeddedJobEngine(), aArguments);
+		System.exit(exitCode);
+	}
+}
@@ -0,0 +1,137 @@
+package edu.stthomas.gps.project;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.chain.ChainMapper;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+/**
+ * Ingest the raw NEISS data in a single job by chaining the ProductMapper (product filtering and code expansion) and
+ * optionally the KeywordFilterMapper within each map task, and sending the result straight into the Year & CaseNbr
+ * sort. This produces the same output as running ProductFilter followed by SortByYearCaseNbr (or by
+ * KeywordFilterSortByYearCaseNbr with -keywords), without writing and re-reading the intermediate copy of the
+ * filtered data in NEISS_ScratchPad.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class FusedIngestFilter extends Configured implements Tool, JobFactory {
+	private static final Logger LOG = Logger.getLogger(FusedIngestFilter.class);
+	private static final Integer TOTAL_NUMBER_YEARS_OF_DATA = new Integer(17); // 1997 - 2013
+
+	/**
+	 * Setup the environment so that we can invoke the chain of Mappers followed by the sort by Year & CaseNbr.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public Job createJob(String[] aArguments) throws Exception {
+		final String usageText = "Usage: FusedIngestFilter <input_dir> <output_dir> [-keywords] [-totalYears n]";
+
+		if (aArguments.length < 2) {
+			LOG.info(usageText);
+			return null;
+		}
+
+		Job job = new Job(getConf());
+
+		FileInputFormat.setInputPaths(job, new Path(aArguments[0]));
+		FileOutputFormat.setOutputPath(job, new Path(aArguments[1]));
+
+		/*
+		 * Process any additional arguments passed in...
+		 */
+		boolean keywordFilter = false;
+		for (int i = 2; i < aArguments.length; i++) {
+			if ("-keywords".equals(aArguments[i])) {
+				keywordFilter = true;
+				LOG.info("Added the keyword filtering of the incident Descriptions to the chain.");
+			} else if ("-totalYears".equals(aArguments[i]) && i + 1 < aArguments.length) {
+				i += 1; // Bump to the value
+				job.getConfiguration().setLong("wordcount.total.years", Integer.parseInt(aArguments[i]));
+				LOG.info("Added " + aArguments[i] + " total years of data files for use in partition calculations.");
+			} else {
+				System.err.println("ERROR: Invalid argument : '" + aArguments[i] + "'");
+				LOG.info(usageText);
+				return null;
+			}
+		}
+
+		job.setJarByClass(FusedIngestFilter.class);
+		job.setJobName(keywordFilter ? "Product & Keyword Filter and Sort NEISS Data by Year & CaseNbr"
+				: "Product Filter and Sort NEISS Data by Year & CaseNbr");
+
+		/*
+		 * Build the chain of Mappers that run within each map task. The records are handed from one Mapper to the next
+		 * in memory, so only the records that survive the whole chain are ever serialized.
+		 */
+		ChainMapper.addMapper(job, ProductFilter.ProductMapper.class, LongWritable.class, Text.class, Text.class,
+				Text.class, new Configuration(false));
+		ProductFilter.addCacheFiles(job.getConfiguration());
+		if (keywordFilter) {
+			ChainMapper.addMapper(job, KeywordFilterSortByYearCaseNbr.KeywordFilterMapper.class, Text.class,
+					Text.class, Text.class, Text.class, new Configuration(false));
+			KeywordFilterSortByYearCaseNbr.addCacheFiles(job.getConfiguration());
+		}
+
+		job.setReducerClass(KeywordFilterSortByYearCaseNbr.SortByYearCaseNbrReducer.class);
+		job.setPartitionerClass(KeywordFilterSortByYearCaseNbr.YearPartitioner.class);
+
+		job.setMapOutputKeyClass(Text.class);
+		job.setMapOutputValueClass(Text.class);
+		job.setOutputKeyClass(Text.class);
+		job.setOutputValueClass(Text.class);
+
+		job.setInputFormatClass(TextInputFormat.class);
+		job.setOutputFormatClass(TextOutputFormat.class);
+
+		job.setNumReduceTasks(job.getConfiguration().getInt("wordcount.total.years", TOTAL_NUMBER_YEARS_OF_DATA));
+
+		CompressionSettings.configure(job, FusedIngestFilter.class);
+
+		return job;
+	}
+
+	/**
+	 * Build the job from the arguments that were passed in and run it, waiting for it to be completed.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		Job job = createJob(aArguments);
+		if (job == null) {
+			return -1;
+		}
+
+		/*
+		 * Run the job and wait for it to be completed.
+		 */
+		boolean success = job.waitForCompletion(true);
+		CompressionSettings.report(job);
+		JobInstrumentation.report(job);
+
+		return success ? 0 : 1;
+	}
+
+	/**
+	 * The main method calls the ToolRunner.run method, which in turn calls an options parser that interprets Hadoop
+	 * command-line options and puts them into a Configuration object.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	public static void main(String[] aArguments) throws Exception {
+		int exitCode = ToolRunner.run(new Configuration(), new FusedIngestFilter(), aArguments);
+		System.exit(exitCode);
+	}
+}
@@ -0,0 +1,262 @@
+package edu.stthomas.gps.project;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * A HyperLogLog sketch that estimates the number of distinct values (e.g. hospitals, products or case numbers) that
+ * were added to it. Each value is hashed into one of 32768 registers, and each register remembers the longest run of
+ * leading zeros seen within the rest of the hashes that landed in it. The standard error of the estimate is about
+ * 1.04/sqrt(32768) = 0.6%, and two sketches are merged by simply keeping the larger of each pair of registers, so the
+ * sketches of each mapper, combiner, reducer and year can be merged in any order.
+ * <p>
+ * 
+ * A sketch starts out sparse (as in HyperLogLog++, a sorted list of the hashes cut down to 25 bits, a few bytes each)
+ * so that the single incident sketches sent out of the Mapper<> stay small and the counts of the first few thousand
+ * values are practically exact. It switches to the dense 32KB array of registers once the sparse list holds 4096
+ * hashes.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class HyperLogLogWritable implements Writable {
+
+	private static final int PRECISION = 15;
+	private static final int NUM_REGISTERS = 1 << PRECISION;
+	private static final int RANK_BITS = 6;
+	private static final int SPARSE_PRECISION = 25;
+	private static final int SPARSE_LIMIT = NUM_REGISTERS / 8;
+	private static final int RANK_MASK = (1 << RANK_BITS) - 1;
+
+	/*
+	 * Up to this many values the linear counting of the empty registers is more accurate than the raw estimate, which
+	 * is biased upwards until most of the registers are set.
+	 */
+	private static final double LINEAR_COUNTING_LIMIT = 3.0 * NUM_REGISTERS;
+	private static final double ALPHA = 0.7213 / (1.0 + 1.079 / NUM_REGISTERS);
+
+	private byte[] xRegisters; // null while the sketch is sparse
+	private int[] xSparse = new int[4]; // (sparse index << RANK_BITS) | sparse rank, ordered by index
+	private int xSparseSize = 0;
+
+	/**
+	 * Remove every value from the sketch so this object can be reused.
+	 **/
+	public void clear() {
+		xRegisters = null;
+		xSparseSize = 0;
+	}
+
+	/**
+	 * @return true if no value has been added to the sketch
+	 **/
+	public boolean isEmpty() {
+		if (xRegisters == null) {
+			return xSparseSize == 0;
+		}
+		for (byte myRank : xRegisters) {
+			if (myRank != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param aValue the value to be counted
+	 **/
+	public void add(String aValue) {
+		long hash = hash(aValue);
+		if (xRegisters != null) {
+			setRegister((int) (hash >>> (Long.SIZE - PRECISION)), rankOf(hash, PRECISION));
+		} else {
+			setSparse((int) (hash >>> (Long.SIZE - SPARSE_PRECISION)), rankOf(hash, SPARSE_PRECISION));
+		}
+	}
+
+	/**
+	 * Merge the values of another sketch into this one.
+	 * 
+	 * @param aOther the sketch to be merged into this one
+	 **/
+	public void merge(HyperLogLogWritable aOther) {
+		if (aOther.xRegisters != null) {
+			toDense();
+			for (int i = 0; i < NUM_REGISTERS; i++) {
+				if (aOther.xRegisters[i] > xRegisters[i]) {
+					xRegisters[i] = aOther.xRegisters[i];
+				}
+			}
+		} else {
+			for (int i = 0; i < aOther.xSparseSize; i++) {
+				if (xRegisters != null) {
+					setRegister(registerOf(aOther.xSparse[i]), registerRankOf(aOther.xSparse[i]));
+				} else {
+					setSparse(aOther.xSparse[i] >>> RANK_BITS, aOther.xSparse[i] & RANK_MASK);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the estimated number of distinct values that were added to the sketch
+	 **/
+	public long getEstimate() {
+		/*
+		 * The sparse list is far from full of the 2^25 possible indexes, so linear counting is all that is needed.
+		 */
+		if (xRegisters == null) {
+			double sparseRegisters = 1 << SPARSE_PRECISION;
+			return Math.round(sparseRegisters * Math.log(sparseRegisters / (sparseRegisters - xSparseSize)));
+		}
+
+		int emptyRegisters = 0;
+		double harmonicSum = 0.0;
+		for (byte myRank : xRegisters) {
+			if (myRank == 0) {
+				emptyRegisters++;
+			}
+			harmonicSum += 1.0 / (1L << myRank);
+		}
+
+		if (emptyRegisters > 0) {
+			double linearCount = NUM_REGISTERS * Math.log((double) NUM_REGISTERS / emptyRegisters);
+			if (linearCount <= LINEAR_COUNTING_LIMIT) {
+				return Math.round(linearCount);
+			}
+		}
+		return Math.round(ALPHA * NUM_REGISTERS * NUM_REGISTERS / harmonicSum);
+	}
+
+	@Override
+	public void write(DataOutput aOutput) throws IOException {
+		if (xRegisters != null) {
+			WritableUtils.writeVInt(aOutput, -1);
+			aOutput.write(xRegisters);
+		} else {
+			WritableUtils.writeVInt(aOutput, xSparseSize);
+			for (int i = 0; i < xSparseSize; i++) {
+				WritableUtils.writeVInt(aOutput, xSparse[i]);
+			}
+		}
+	}
+
+	@Override
+	public void readFields(DataInput aInput) throws IOException {
+		int sparseSize = WritableUtils.readVInt(aInput);
+		if (sparseSize < 0) {
+			if (xRegisters == null) {
+				xRegisters = new byte[NUM_REGISTERS];
+			}
+			aInput.readFully(xRegisters);
+			xSparseSize = 0;
+		} else {
+			xRegisters = null;
+			if (xSparse.length < sparseSize) {
+				xSparse = new int[sparseSize];
+			}
+			for (int i = 0; i < sparseSize; i++) {
+				xSparse[i] = WritableUtils.readVInt(aInput);
+			}
+			xSparseSize = sparseSize;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.valueOf(getEstimate());
+	}
+
+	/**
+	 * Raise a register of the dense sketch to a rank (if it is not already at least that high).
+	 **/
+	private void setRegister(int aRegister, int aRank) {
+		if (aRank > xRegisters[aRegister]) {
+			xRegisters[aRegister] = (byte) aRank;
+		}
+	}
+
+	/**
+	 * Raise a sparse index to a rank (if it is not already at least that high), switching to the dense sketch once the
+	 * sparse list is full.
+	 **/
+	private void setSparse(int aIndex, int aRank) {
+		int myEntry = (aIndex << RANK_BITS) | aRank;
+		int position = Arrays.binarySearch(xSparse, 0, xSparseSize, aIndex << RANK_BITS);
+		position = (position >= 0) ? position : -position - 1;
+		if (position < xSparseSize && (xSparse[position] >>> RANK_BITS) == aIndex) {
+			xSparse[position] = Math.max(xSparse[position], myEntry);
+			return;
+		} else if (xSparseSize >= SPARSE_LIMIT) {
+			toDense();
+			setRegister(registerOf(myEntry), registerRankOf(myEntry));
+			return;
+		}
+		if (xSparseSize == xSparse.length) {
+			xSparse = Arrays.copyOf(xSparse, xSparse.length * 2);
+		}
+		System.arraycopy(xSparse, position, xSparse, position + 1, xSparseSize - position);
+		xSparse[position] = myEntry;
+		xSparseSize++;
+	}
+
+	private void toDense() {
+		if (xRegisters != null) {
+			return;
+		}
+		xRegisters = new byte[NUM_REGISTERS];
+		for (int i = 0; i < xSparseSize; i++) {
+			setRegister(registerOf(xSparse[i]), registerRankOf(xSparse[i]));
+		}
+		xSparseSize = 0;
+	}
+
+	/**
+	 * @return the dense register of a sparse entry (the top bits of its index)
+	 **/
+	private static int registerOf(int aEntry) {
+		return (aEntry >>> RANK_BITS) >>> (SPARSE_PRECISION - PRECISION);
+	}
+
+	/**
+	 * @return the rank of a sparse entry within its dense register, which counts the zeros of the rest of its index
+	 *         before those counted by its sparse rank
+	 **/
+	private static int registerRankOf(int aEntry) {
+		int extraBits = SPARSE_PRECISION - PRECISION;
+		int extraIndex = (aEntry >>> RANK_BITS) & ((1 << extraBits) - 1);
+		if (extraIndex != 0) {
+			return Integer.numberOfLeadingZeros(extraIndex) - (Integer.SIZE - extraBits) + 1;
+		}
+		return extraBits + (aEntry & RANK_MASK);
+	}
+
+	/**
+	 * @return one more than the number of leading zeros of the hash after its index bits
+	 **/
+	private static int rankOf(long aHash, int aPrecision) {
+		return Long.numberOfLeadingZeros((aHash << aPrecision) | (1L << (aPrecision - 1))) + 1;
+	}
+
+	/**
+	 * Hash a value into 64 well mixed bits (FNV-1a over the characters followed by the MurmurHash3 finalizer).
+	 **/
+	private static long hash(String aValue) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < aValue.length(); i++) {
+			hash ^= aValue.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -0,0 +1,391 @@
+package edu.stthomas.gps.project;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * A mergeable summary of a group of NEISS incidents that carries the raw incident count together with the sum of the
+ * statistical Weight of each incident (the national estimate) and the per Stratum sums needed to estimate the variance
+ * of that national estimate.
+ * <p>
+ * 
+ * All of the double sums are accumulated with compensated (Kahan-Babuska/Neumaier) summation so that adding hundreds of
+ * thousands of small weights within the combiners and reducers does not lose precision.
+ * <p>
+ * 
+ * A report can also estimate the number of distinct values of another field (e.g. the hospitals reporting each year)
+ * for each of its dimensions by adding the field to a HyperLogLogWritable sketch that travels and merges along with
+ * the sums, all the way into the segments of the aggregate store.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class IncidentAggregateWritable implements Writable {
+
+	// @formatter:off
+	/*
+	 * The NEISS sample of hospitals is divided into the following strata:
+	 * 
+	 * 		C	=	Children's Hospitals
+	 * 		S	=	Small Hospitals
+	 * 		M	=	Medium Hospitals
+	 * 		L	=	Large Hospitals
+	 * 		V	=	Very Large Hospitals
+	 * 
+	 * Any other value is collected into an additional unknown stratum.
+	 */
+	// @formatter:on
+	private static final String STRATUM_CODES = new String("CSMLV");
+	private static final int NUM_STRATA = STRATUM_CODES.length() + 1;
+	private static final int UNKNOWN_STRATUM = NUM_STRATA - 1;
+	private static final int DISTINCT_PRESENT = 1 << NUM_STRATA;
+
+	private static final String DISTINCT_FIELD_KEY = new String("neiss.aggregate.distinct.field");
+	private static final String SPACE_DELIMITER = new String(" ");
+
+	/**
+	 * The fields of the filtered NEISS data whose distinct values can be counted by the reports.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static enum DistinctField {
+		CASE_NBR(-1), HOSPITAL(1), DIAGNOSIS(7), BODY_PART(8), PRODUCT(11);
+
+		private final int xIndex;
+
+		private DistinctField(int aIndex) {
+			xIndex = aIndex;
+		}
+
+		/**
+		 * @param aName the name of the field, ignoring case and underscores (e.g. "caseNbr" or "hospital")
+		 * @return the field, or null if there is no such field
+		 **/
+		public static DistinctField forName(String aName) {
+			for (DistinctField myField : values()) {
+				if (myField.name().replace("_", "").equalsIgnoreCase(aName.replace("_", ""))) {
+					return myField;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * @param aConf the configuration of the report job
+		 * @return the field whose distinct values are counted by the report, or null if none are
+		 **/
+		public static DistinctField fromConfiguration(Configuration aConf) {
+			String fieldName = aConf.get(DISTINCT_FIELD_KEY);
+			return (fieldName == null) ? null : valueOf(fieldName);
+		}
+
+		/**
+		 * @param aConf the configuration of the report job
+		 **/
+		public void configure(Configuration aConf) {
+			aConf.set(DISTINCT_FIELD_KEY, name());
+		}
+
+		/**
+		 * Add the value of the field for an incident into the distinct values of a summary. Each of the products of
+		 * an incident is counted.
+		 * 
+		 * @param aSum the summary of the incident
+		 * @param aKey the CaseNbr of the incident
+		 * @param aDataVals the tab delimited fields of the value of the incident
+		 **/
+		public void addTo(IncidentAggregateWritable aSum, Object aKey, String[] aDataVals) {
+			if (xIndex < 0) {
+				aSum.addDistinct(aKey.toString());
+			} else if (xIndex < aDataVals.length && this == PRODUCT) {
+				for (String myProduct : aDataVals[xIndex].trim().split(SPACE_DELIMITER)) {
+					aSum.addDistinct(myProduct);
+				}
+			} else if (xIndex < aDataVals.length) {
+				aSum.addDistinct(aDataVals[xIndex]);
+			}
+		}
+	}
+
+	private long xCount;
+	private double[] xWeightSum = new double[2]; // [sum, compensation]
+	private long[] xStratumCount = new long[NUM_STRATA];
+	private double[] xStratumWeightSum = new double[NUM_STRATA * 2];
+	private double[] xStratumWeightSquaredSum = new double[NUM_STRATA * 2];
+	private HyperLogLogWritable xDistinct; // null until a distinct value is added or merged
+
+	/**
+	 * Clear all of the accumulated values so this object can be reused.
+	 **/
+	public void clear() {
+		xCount = 0;
+		xWeightSum[0] = xWeightSum[1] = 0.0;
+		for (int i = 0; i < NUM_STRATA; i++) {
+			xStratumCount[i] = 0;
+		}
+		for (int i = 0; i < NUM_STRATA * 2; i++) {
+			xStratumWeightSum[i] = xStratumWeightSquaredSum[i] = 0.0;
+		}
+		if (xDistinct != null) {
+			xDistinct.clear();
+		}
+	}
+
+	/**
+	 * Reset this object so that it only represents the single incident described by the arguments.
+	 * 
+	 * @param aWeight the statistical weight of the incident
+	 * @param aStratum the stratum code of the hospital that reported the incident
+	 **/
+	public void set(double aWeight, String aStratum) {
+		clear();
+		add(aWeight, aStratum);
+	}
+
+	/**
+	 * Add a single incident into the accumulated values.
+	 * 
+	 * @param aWeight the statistical weight of the incident
+	 * @param aStratum the stratum code of the hospital that reported the incident
+	 **/
+	public void add(double aWeight, String aStratum) {
+		int stratum = stratumIndex(aStratum);
+		xCount++;
+		addCompensated(xWeightSum, 0, aWeight);
+		xStratumCount[stratum]++;
+		addCompensated(xStratumWeightSum, stratum * 2, aWeight);
+		addCompensated(xStratumWeightSquaredSum, stratum * 2, aWeight * aWeight);
+	}
+
+	/**
+	 * Add a value into the distinct values of the field being counted by the report.
+	 * 
+	 * @param aValue the value of the field for an incident
+	 **/
+	public void addDistinct(String aValue) {
+		if (xDistinct == null) {
+			xDistinct = new HyperLogLogWritable();
+		}
+		xDistinct.add(aValue);
+	}
+
+	/**
+	 * Merge all of the accumulated values of another summary into this one. Since every value is a sum (or a sketch of
+	 * the distinct values), the merge is a pure addition and the order of the merges does not matter.
+	 * 
+	 * @param aOther the summary to be added into this one
+	 **/
+	public void merge(IncidentAggregateWritable aOther) {
+		xCount += aOther.xCount;
+		mergeCompensated(xWeightSum, 0, aOther.xWeightSum);
+		for (int i = 0; i < NUM_STRATA; i++) {
+			xStratumCount[i] += aOther.xStratumCount[i];
+			mergeCompensated(xStratumWeightSum, i * 2, aOther.xStratumWeightSum);
+			mergeCompensated(xStratumWeightSquaredSum, i * 2, aOther.xStratumWeightSquaredSum);
+		}
+		if (aOther.hasDistinct()) {
+			if (xDistinct == null) {
+				xDistinct = new HyperLogLogWritable();
+			}
+			xDistinct.merge(aOther.xDistinct);
+		}
+	}
+
+	/**
+	 * @return the raw number of incidents that were accumulated
+	 **/
+	public long getCount() {
+		return xCount;
+	}
+
+	/**
+	 * @return true if the distinct values of a field were accumulated
+	 **/
+	public boolean hasDistinct() {
+		return xDistinct != null && !xDistinct.isEmpty();
+	}
+
+	/**
+	 * @return the estimated number of distinct values of the field being counted by the report (0 if none were added)
+	 **/
+	public long getDistinctEstimate() {
+		return (xDistinct == null) ? 0 : xDistinct.getEstimate();
+	}
+
+	/**
+	 * @return the sum of the statistical weights (the national estimate of the number of incidents)
+	 **/
+	public double getWeightedSum() {
+		return xWeightSum[0] + xWeightSum[1];
+	}
+
+	/**
+	 * Estimate the variance of the national estimate from the spread of the weights within each stratum. Each incident
+	 * record within a stratum is treated as an independent sample unit, which is the usual first order approximation
+	 * when the hospital level totals are not available.
+	 * 
+	 * @return the estimated variance of the national estimate
+	 **/
+	public double getVariance() {
+		double variance = 0.0;
+		for (int i = 0; i < NUM_STRATA; i++) {
+			long stratumCount = xStratumCount[i];
+			if (stratumCount > 1) {
+				double weightSum = xStratumWeightSum[i * 2] + xStratumWeightSum[i * 2 + 1];
+				double weightSquaredSum = xStratumWeightSquaredSum[i * 2] + xStratumWeightSquaredSum[i * 2 + 1];
+				double sumOfSquares = weightSquaredSum - (weightSum * weightSum) / stratumCount;
+				variance += ((double) stratumCount / (double) (stratumCount - 1)) * Math.max(sumOfSquares, 0.0);
+			}
+		}
+		return variance;
+	}
+
+	/**
+	 * @return the estimated standard error of the national estimate
+	 **/
+	public double getStandardError() {
+		return Math.sqrt(getVariance());
+	}
+
+	@Override
+	public void write(DataOutput aOutput) throws IOException {
+		WritableUtils.writeVLong(aOutput, xCount);
+		aOutput.writeDouble(xWeightSum[0]);
+		aOutput.writeDouble(xWeightSum[1]);
+
+		/*
+		 * Only the strata that were actually encountered are written, which keeps the single incident records sent out
+		 * of the Mapper<> small. The sketch of the distinct values is flagged within the same byte.
+		 */
+		int presentStrata = 0;
+		for (int i = 0; i < NUM_STRATA; i++) {
+			if (xStratumCount[i] != 0) {
+				presentStrata |= (1 << i);
+			}
+		}
+		if (hasDistinct()) {
+			presentStrata |= DISTINCT_PRESENT;
+		}
+		aOutput.writeByte(presentStrata);
+		for (int i = 0; i < NUM_STRATA; i++) {
+			if ((presentStrata & (1 << i)) != 0) {
+				WritableUtils.writeVLong(aOutput, xStratumCount[i]);
+				aOutput.writeDouble(xStratumWeightSum[i * 2]);
+				aOutput.writeDouble(xStratumWeightSum[i * 2 + 1]);
+				aOutput.writeDouble(xStratumWeightSquaredSum[i * 2]);
+				aOutput.writeDouble(xStratumWeightSquaredSum[i * 2 + 1]);
+			}
+		}
+		if (hasDistinct()) {
+			xDistinct.write(aOutput);
+		}
+	}
+
+	@Override
+	public void readFields(DataInput aInput) throws IOException {
+		clear();
+		xCount = WritableUtils.readVLong(aInput);
+		xWeightSum[0] = aInput.readDouble();
+		xWeightSum[1] = aInput.readDouble();
+		int presentStrata = aInput.readByte();
+		for (int i = 0; i < NUM_STRATA; i++) {
+			if ((presentStrata & (1 << i)) != 0) {
+				xStratumCount[i] = WritableUtils.readVLong(aInput);
+				xStratumWeightSum[i * 2] = aInput.readDouble();
+				xStratumWeightSum[i * 2 + 1] = aInput.readDouble();
+				xStratumWeightSquaredSum[i * 2] = aInput.readDouble();
+				xStratumWeightSquaredSum[i * 2 + 1] = aInput.readDouble();
+			}
+		}
+		if ((presentStrata & DISTINCT_PRESENT) != 0) {
+			if (xDistinct == null) {
+				xDistinct = new HyperLogLogWritable();
+			}
+			xDistinct.readFields(aInput);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Total=" + xCount + " NationalEstimate=" + getWeightedSum() + " StdError=" + getStandardError()
+				+ (hasDistinct() ? " Distinct=" + getDistinctEstimate() : "");
+	}
+
+	/**
+	 * Locate the index of the stratum from the code stored within the NEISS data.
+	 * 
+	 * @param aStratum the stratum code of the hospital that reported the incident
+	 * @return the index of the stratum within the local data structures
+	 **/
+	private static int stratumIndex(String aStratum) {
+		if (aStratum == null || aStratum.length() != 1) {
+			return UNKNOWN_STRATUM;
+		}
+		int index = STRATUM_CODES.indexOf(Character.toUpperCase(aStratum.charAt(0)));
+		return (index < 0) ? UNKNOWN_STRATUM : index;
+	}
+
+	/**
+	 * Add a value into a compensated sum that is stored as a [sum, compensation] pair within an array.
+	 * 
+	 * @param aSum the array holding the compensated sum
+	 * @param aIndex the index of the sum portion of the pair
+	 * @param aValue the value to be added
+	 **/
+	private static void addCompensated(double[] aSum, int aIndex, double aValue) {
+		double sum = aSum[aIndex];
+		double total = sum + aValue;
+		if (Math.abs(sum) >= Math.abs(aValue)) {
+			aSum[aIndex + 1] += (sum - total) + aValue;
+		} else {
+			aSum[aIndex + 1] += (aValue - total) + sum;
+		}
+		aSum[aIndex] = total;
+	}
+
+	/**
+	 * Add another compensated sum (both its sum and its compensation) into a compensated sum.
+	 * 
+	 * @param aSum the array holding the compensated sum to be updated
+	 * @param aIndex the index of the sum portion of the pair
+	 * @param aOther the array holding the compensated sum to be added
+	 **/
+	private static void mergeCompensated(double[] aSum, int aIndex, double[] aOther) {
+		addCompensated(aSum, aIndex, aOther[aIndex]);
+		addCompensated(aSum, aIndex, aOther[aIndex + 1]);
+	}
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class SumCombiner<KEY> extends InstrumentedReducer<KEY, IncidentAggregateWritable, KEY, IncidentAggregateWritable> {
+
+		/*
+		 * Local Cache Variables for the <key, value> for reuse for each output combine record being processed.
+		 */
+		private IncidentAggregateWritable xSumValue = new IncidentAggregateWritable();
+
+		/**
+		 * Merge all of the partial incident summaries for the key into a single summary before they are sent across
+		 * the shuffle.
+		 * 
+		 * @param aKey the dimension value that the incidents are being summarized by
+		 * @param aValues an iterable array of partial incident summaries found across the values for the key
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void reduce(KEY aKey, Iterable<IncidentAggregateWritable> aValues, Context aContext)
+				throws IOException, InterruptedException {
+			xSumValue.clear();
+			for (IncidentAggregateWritable myValue : aValues) {
+				xSumValue.merge(myValue);
+			}
+			aContext.write(aKey, xSumValue);
+		}
+	}
+}
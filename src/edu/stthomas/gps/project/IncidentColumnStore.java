@@ -0,0 +1,695 @@
+package edu.stthomas.gps.project;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+/**
+ * A local, column oriented copy of the filtered NEISS incidents (the output of the ProductFilter) that is used by the
+ * IncidentQueryService to answer ad-hoc questions without writing and running a new MapReduce job. Every column is
+ * written into its own file of fixed width values (one per incident, in the same row order for every column) so that
+ * it can simply be memory mapped when the store is opened:
+ * 
+ * <pre>
+ * 		<store_dir>/_METADATA		=	the number of rows and the size of the zone map blocks
+ * 		<store_dir>/<COLUMN>.col		=	one int per row (dictionary codes for the coded dimensions)
+ * 		<store_dir>/WEIGHT.col		=	one double per row (the statistical Weight)
+ * 		<store_dir>/_DICTIONARY		=	COLUMN\tcode\tdescription for each code of the coded dimensions
+ * 		<store_dir>/_ZONEMAP		=	the min/max of each column for each block of rows
+ * 		<store_dir>/<COLUMN>.bitmap	=	a compressed bitmap of the rows holding each value of the indexed columns
+ * </pre>
+ * 
+ * The zone maps let a range filter (e.g. AGE<5) skip or accept whole blocks of rows without looking at them, and the
+ * bitmaps answer the equality filters on the low cardinality dimensions without touching the row data at all. The row
+ * number of an incident is its dense row id within the bitmaps, which are kept as RoaringBitmapWritable so that a rare
+ * value only costs a couple of bytes per row and a common value no more than a bit per row.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class IncidentColumnStore extends Configured implements Tool {
+	private static final Logger LOG = Logger.getLogger(IncidentColumnStore.class);
+
+	/*
+	 * The value stored for a field that is missing or can not be parsed.
+	 */
+	public static final int NULL_VALUE = -1;
+	/*
+	 * The code of a description that does not appear within the dictionary of a coded dimension (matches no row).
+	 */
+	public static final int NO_SUCH_CODE = -2;
+
+	private static final int DEFAULT_BLOCK_SIZE = 4096;
+	private static final String METADATA_FILE = new String("_METADATA");
+	private static final String DICTIONARY_FILE = new String("_DICTIONARY");
+	private static final String ZONEMAP_FILE = new String("_ZONEMAP");
+	private static final String COLUMN_SUFFIX = new String(".col");
+	private static final String BITMAP_SUFFIX = new String(".bitmap");
+	private static final String WEIGHT_COLUMN = new String("WEIGHT");
+	private static final String TAB_DELIMITER = new String("\t");
+	private static final int SCHEMA_SIZE = 14; // CaseNbr followed by the 13 fields of the value
+
+	/**
+	 * The int columns of the store. The coded columns hold the descriptions that the ProductMapper expanded from the
+	 * NEISS codes as codes of a dictionary, the rest hold the numeric values themselves.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static enum Column {
+		YEAR(false, true), MONTH(false, true), AGE(false, false), HOSPITAL(false, true), STRATUM(true, true), GENDER(
+				true, true), RACE(true, true), DIAGNOSIS(true, true), BODY_PART(true, true), DISPOSITION(true, true), LOCATION(
+				true, true), PRODUCT(false, true), SECONDARY_PRODUCT(false, true);
+
+		private final boolean xCoded;
+		private final boolean xIndexed;
+
+		private Column(boolean aCoded, boolean aIndexed) {
+			xCoded = aCoded;
+			xIndexed = aIndexed;
+		}
+
+		/**
+		 * @return true if the column holds the codes of a dictionary of descriptions
+		 **/
+		public boolean isCoded() {
+			return xCoded;
+		}
+
+		/**
+		 * @return true if a bitmap of the rows is kept for each value of the column
+		 **/
+		public boolean isIndexed() {
+			return xIndexed;
+		}
+
+		/**
+		 * Find the column by its name, ignoring the case and any underscores (e.g. "bodyPart" or "BODY_PART").
+		 * 
+		 * @param aName the name of the column
+		 * @return the column
+		 * @throws IllegalArgumentException if there is no such column
+		 **/
+		public static Column forName(String aName) {
+			String myName = aName.trim().replace("_", "");
+			for (Column myColumn : values()) {
+				if (myColumn.name().replace("_", "").equalsIgnoreCase(myName)) {
+					return myColumn;
+				}
+			}
+			throw new IllegalArgumentException("Unknown column : '" + aName + "'");
+		}
+	}
+
+	private final int xRowCount;
+	private final int xBlockSize;
+	private final Map<Column, IntBuffer> xColumns = new EnumMap<Column, IntBuffer>(Column.class);
+	private final DoubleBuffer xWeights;
+	private final Map<Column, List<String>> xDictionary = new EnumMap<Column, List<String>>(Column.class);
+	private final Map<Column, Map<String, Integer>> xCodes = new EnumMap<Column, Map<String, Integer>>(Column.class);
+	private final Map<Column, int[]> xZoneMin = new EnumMap<Column, int[]>(Column.class);
+	private final Map<Column, int[]> xZoneMax = new EnumMap<Column, int[]>(Column.class);
+	private final Map<Column, Map<Integer, RoaringBitmapWritable>> xBitmaps =
+			new EnumMap<Column, Map<Integer, RoaringBitmapWritable>>(Column.class);
+
+	/**
+	 * Used by ToolRunner to build a store.
+	 **/
+	public IncidentColumnStore() {
+		xRowCount = 0;
+		xBlockSize = DEFAULT_BLOCK_SIZE;
+		xWeights = null;
+	}
+
+	/**
+	 * Open the store by memory mapping its columns and loading its dictionaries, zone maps and bitmaps.
+	 * 
+	 * @param aStoreDir the local directory of the store
+	 **/
+	private IncidentColumnStore(File aStoreDir) throws IOException {
+		Properties metadata = new Properties();
+		FileInputStream metadataStream = new FileInputStream(new File(aStoreDir, METADATA_FILE));
+		try {
+			metadata.load(metadataStream);
+		} finally {
+			metadataStream.close();
+		}
+		xRowCount = Integer.parseInt(metadata.getProperty("rows"));
+		xBlockSize = Integer.parseInt(metadata.getProperty("blockSize"));
+
+		for (Column myColumn : Column.values()) {
+			xColumns.put(myColumn, map(new File(aStoreDir, myColumn.name() + COLUMN_SUFFIX)).asIntBuffer());
+			xDictionary.put(myColumn, new ArrayList<String>());
+			xCodes.put(myColumn, new HashMap<String, Integer>());
+		}
+		xWeights = map(new File(aStoreDir, WEIGHT_COLUMN + COLUMN_SUFFIX)).asDoubleBuffer();
+
+		/*
+		 * Load the descriptions of the codes of each of the coded dimensions.
+		 */
+		BufferedReader dictionaryRdr = new BufferedReader(new FileReader(new File(aStoreDir, DICTIONARY_FILE)));
+		try {
+			String dictionaryLine = dictionaryRdr.readLine();
+			while (dictionaryLine != null) {
+				String[] dictionaryVals = dictionaryLine.split(TAB_DELIMITER, 3);
+				Column myColumn = Column.valueOf(dictionaryVals[0]);
+				xDictionary.get(myColumn).add(dictionaryVals[2]);
+				xCodes.get(myColumn).put(dictionaryVals[2], Integer.parseInt(dictionaryVals[1]));
+				dictionaryLine = dictionaryRdr.readLine();
+			}
+		} finally {
+			dictionaryRdr.close();
+		}
+
+		/*
+		 * Load the zone maps of every column and the bitmaps of the indexed columns.
+		 */
+		DataInputStream zoneStream = new DataInputStream(new BufferedInputStream(new FileInputStream(new File(
+				aStoreDir, ZONEMAP_FILE))));
+		try {
+			for (Column myColumn : Column.values()) {
+				int[] allMin = new int[zoneStream.readInt()];
+				int[] allMax = new int[allMin.length];
+				for (int i = 0; i < allMin.length; i++) {
+					allMin[i] = zoneStream.readInt();
+					allMax[i] = zoneStream.readInt();
+				}
+				xZoneMin.put(myColumn, allMin);
+				xZoneMax.put(myColumn, allMax);
+			}
+		} finally {
+			zoneStream.close();
+		}
+		for (Column myColumn : Column.values()) {
+			if (myColumn.isIndexed()) {
+				xBitmaps.put(myColumn, readBitmaps(new File(aStoreDir, myColumn.name() + BITMAP_SUFFIX)));
+			}
+		}
+	}
+
+	/**
+	 * Open a store that was built by IncidentColumnStore.build().
+	 * 
+	 * @param aStoreDir the local directory of the store
+	 * @return the opened store
+	 **/
+	public static IncidentColumnStore open(File aStoreDir) throws IOException {
+		if (!new File(aStoreDir, METADATA_FILE).exists()) {
+			throw new IOException("The directory " + aStoreDir + " does not hold an incident column store.");
+		}
+		return new IncidentColumnStore(aStoreDir);
+	}
+
+	/**
+	 * @return the number of incidents (rows) within the store
+	 **/
+	public int getRowCount() {
+		return xRowCount;
+	}
+
+	/**
+	 * @return the number of rows within each block of the zone maps
+	 **/
+	public int getBlockSize() {
+		return xBlockSize;
+	}
+
+	/**
+	 * @return the number of blocks of the zone maps
+	 **/
+	public int getBlockCount() {
+		return (xRowCount + xBlockSize - 1) / xBlockSize;
+	}
+
+	/**
+	 * @param aColumn the column
+	 * @param aRow the row id of the incident
+	 * @return the value (or dictionary code) of the column for the incident
+	 **/
+	public int getValue(Column aColumn, int aRow) {
+		return xColumns.get(aColumn).get(aRow);
+	}
+
+	/**
+	 * @param aRow the row id of the incident
+	 * @return the statistical Weight of the incident
+	 **/
+	public double getWeight(int aRow) {
+		return xWeights.get(aRow);
+	}
+
+	/**
+	 * @param aColumn the column
+	 * @param aBlock the block of rows
+	 * @return the smallest value of the column within the block
+	 **/
+	public int getZoneMin(Column aColumn, int aBlock) {
+		return xZoneMin.get(aColumn)[aBlock];
+	}
+
+	/**
+	 * @param aColumn the column
+	 * @param aBlock the block of rows
+	 * @return the largest value of the column within the block
+	 **/
+	public int getZoneMax(Column aColumn, int aBlock) {
+		return xZoneMax.get(aColumn)[aBlock];
+	}
+
+	/**
+	 * @param aColumn an indexed column
+	 * @param aValue the value (or dictionary code)
+	 * @return a copy of the bitmap of the rows holding the value (empty if no row does)
+	 **/
+	public RoaringBitmapWritable getBitmap(Column aColumn, int aValue) {
+		RoaringBitmapWritable myBitmap = xBitmaps.get(aColumn).get(aValue);
+		return (myBitmap == null) ? new RoaringBitmapWritable() : myBitmap.clone();
+	}
+
+	/**
+	 * Count the rows of a selection that hold a value, without copying the bitmap of the value or touching the rows.
+	 * 
+	 * @param aColumn an indexed column
+	 * @param aValue the value (or dictionary code)
+	 * @param aRows the selected rows
+	 * @return the number of the selected rows that hold the value
+	 **/
+	public long countRows(Column aColumn, int aValue, RoaringBitmapWritable aRows) {
+		RoaringBitmapWritable myBitmap = xBitmaps.get(aColumn).get(aValue);
+		return (myBitmap == null) ? 0 : myBitmap.andCardinality(aRows);
+	}
+
+	/**
+	 * @param aColumn an indexed column
+	 * @return the values (or dictionary codes) held by the rows of the store
+	 **/
+	public Set<Integer> getValues(Column aColumn) {
+		return xBitmaps.get(aColumn).keySet();
+	}
+
+	/**
+	 * Convert the text of a value (a description for the coded dimensions) into the value stored within the column.
+	 * 
+	 * @param aColumn the column
+	 * @param aText the text of the value
+	 * @return the value, or NO_SUCH_CODE if the description is not used by any row
+	 * @throws NumberFormatException if the value of a numeric column is not a number
+	 **/
+	public int encode(Column aColumn, String aText) {
+		if (aColumn.isCoded()) {
+			Integer myCode = xCodes.get(aColumn).get(aText.trim().toUpperCase());
+			return (myCode == null) ? NO_SUCH_CODE : myCode;
+		}
+		return Integer.parseInt(aText.trim());
+	}
+
+	/**
+	 * Convert a value stored within the column back into its text.
+	 * 
+	 * @param aColumn the column
+	 * @param aValue the value (or dictionary code)
+	 * @return the text of the value
+	 **/
+	public String decode(Column aColumn, int aValue) {
+		if (aValue == NULL_VALUE) {
+			return "UNKNOWN";
+		}
+		return aColumn.isCoded() ? xDictionary.get(aColumn).get(aValue) : String.valueOf(aValue);
+	}
+
+	/**
+	 * Memory map a column file.
+	 **/
+	private static MappedByteBuffer map(File aFile) throws IOException {
+		RandomAccessFile columnFile = new RandomAccessFile(aFile, "r");
+		try {
+			return columnFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, columnFile.length());
+		} finally {
+			columnFile.close();
+		}
+	}
+
+	/**
+	 * Read the bitmaps of an indexed column.
+	 **/
+	private static Map<Integer, RoaringBitmapWritable> readBitmaps(File aFile) throws IOException {
+		Map<Integer, RoaringBitmapWritable> allBitmaps = new HashMap<Integer, RoaringBitmapWritable>();
+		DataInputStream bitmapStream = new DataInputStream(new BufferedInputStream(new FileInputStream(aFile)));
+		try {
+			int valueCount = bitmapStream.readInt();
+			for (int i = 0; i < valueCount; i++) {
+				int myValue = bitmapStream.readInt();
+				RoaringBitmapWritable myBitmap = new RoaringBitmapWritable();
+				myBitmap.readFields(bitmapStream);
+				allBitmaps.put(myValue, myBitmap);
+			}
+		} finally {
+			bitmapStream.close();
+		}
+		return allBitmaps;
+	}
+
+	/**
+	 * Accumulates the columns, dictionaries, zone maps and bitmaps of a store as the rows are added.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	private static class StoreWriter {
+		private final File xStoreDir;
+		private final int xBlockSize;
+		private int xRowCount = 0;
+		private final Map<Column, DataOutputStream> xColumnStreams = new EnumMap<Column, DataOutputStream>(
+				Column.class);
+		private final DataOutputStream xWeightStream;
+		private final Map<Column, Map<String, Integer>> xCodes = new EnumMap<Column, Map<String, Integer>>(
+				Column.class);
+		private final Map<Column, List<Integer>> xZones = new EnumMap<Column, List<Integer>>(Column.class);
+		private final Map<Column, Map<Integer, RoaringBitmapWritable>> xBitmaps =
+				new EnumMap<Column, Map<Integer, RoaringBitmapWritable>>(Column.class);
+		private final int[] xBlockMin = new int[Column.values().length];
+		private final int[] xBlockMax = new int[Column.values().length];
+
+		StoreWriter(File aStoreDir, int aBlockSize) throws IOException {
+			xStoreDir = aStoreDir;
+			xBlockSize = aBlockSize;
+			for (Column myColumn : Column.values()) {
+				xColumnStreams.put(myColumn, new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+						new File(aStoreDir, myColumn.name() + COLUMN_SUFFIX)))));
+				xCodes.put(myColumn, new HashMap<String, Integer>());
+				xZones.put(myColumn, new ArrayList<Integer>());
+				xBitmaps.put(myColumn, new TreeMap<Integer, RoaringBitmapWritable>());
+			}
+			xWeightStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(aStoreDir,
+					WEIGHT_COLUMN + COLUMN_SUFFIX))));
+		}
+
+		/**
+		 * @return the dictionary code of a description of a coded dimension (assigned on first use)
+		 **/
+		int code(Column aColumn, String aDescription) {
+			Map<String, Integer> allCodes = xCodes.get(aColumn);
+			Integer myCode = allCodes.get(aDescription);
+			if (myCode == null) {
+				myCode = allCodes.size();
+				allCodes.put(aDescription, myCode);
+			}
+			return myCode;
+		}
+
+		/**
+		 * Add a row to the store.
+		 * 
+		 * @param aValues the value of each column (in the order of the Column enum)
+		 * @param aWeight the statistical Weight
+		 **/
+		void add(int[] aValues, double aWeight) throws IOException {
+			if (xRowCount % xBlockSize == 0) {
+				closeBlock();
+			}
+			for (Column myColumn : Column.values()) {
+				int myValue = aValues[myColumn.ordinal()];
+				xColumnStreams.get(myColumn).writeInt(myValue);
+				xBlockMin[myColumn.ordinal()] = Math.min(xBlockMin[myColumn.ordinal()], myValue);
+				xBlockMax[myColumn.ordinal()] = Math.max(xBlockMax[myColumn.ordinal()], myValue);
+				if (myColumn.isIndexed()) {
+					RoaringBitmapWritable myBitmap = xBitmaps.get(myColumn).get(myValue);
+					if (myBitmap == null) {
+						myBitmap = new RoaringBitmapWritable();
+						xBitmaps.get(myColumn).put(myValue, myBitmap);
+					}
+					myBitmap.add(xRowCount);
+				}
+			}
+			xWeightStream.writeDouble(aWeight);
+			xRowCount++;
+		}
+
+		/**
+		 * Record the min/max of the block of rows that was just completed and start a new block.
+		 **/
+		private void closeBlock() {
+			for (Column myColumn : Column.values()) {
+				if (xRowCount > 0) {
+					xZones.get(myColumn).add(xBlockMin[myColumn.ordinal()]);
+					xZones.get(myColumn).add(xBlockMax[myColumn.ordinal()]);
+				}
+				xBlockMin[myColumn.ordinal()] = Integer.MAX_VALUE;
+				xBlockMax[myColumn.ordinal()] = Integer.MIN_VALUE;
+			}
+		}
+
+		/**
+		 * Finish the columns and write the dictionaries, zone maps, bitmaps and the metadata of the store.
+		 * 
+		 * @return the number of rows within the store
+		 **/
+		int close() throws IOException {
+			if (xRowCount % xBlockSize != 0) {
+				closeBlock();
+			}
+			for (DataOutputStream myStream : xColumnStreams.values()) {
+				myStream.close();
+			}
+			xWeightStream.close();
+
+			PrintWriter dictionaryWriter = new PrintWriter(new FileWriter(new File(xStoreDir, DICTIONARY_FILE)));
+			try {
+				for (Column myColumn : Column.values()) {
+					String[] allDescriptions = new String[xCodes.get(myColumn).size()];
+					for (Map.Entry<String, Integer> myEntry : xCodes.get(myColumn).entrySet()) {
+						allDescriptions[myEntry.getValue()] = myEntry.getKey();
+					}
+					for (int i = 0; i < allDescriptions.length; i++) {
+						dictionaryWriter.print(myColumn.name() + TAB_DELIMITER + i + TAB_DELIMITER
+								+ allDescriptions[i] + "\n");
+					}
+				}
+			} finally {
+				dictionaryWriter.close();
+			}
+
+			DataOutputStream zoneStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+					new File(xStoreDir, ZONEMAP_FILE))));
+			try {
+				for (Column myColumn : Column.values()) {
+					List<Integer> allZones = xZones.get(myColumn);
+					zoneStream.writeInt(allZones.size() / 2);
+					for (Integer myValue : allZones) {
+						zoneStream.writeInt(myValue);
+					}
+				}
+			} finally {
+				zoneStream.close();
+			}
+
+			for (Column myColumn : Column.values()) {
+				if (!myColumn.isIndexed()) {
+					continue;
+				}
+				DataOutputStream bitmapStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+						new File(xStoreDir, myColumn.name() + BITMAP_SUFFIX))));
+				long bitmapBytes = 0;
+				try {
+					bitmapStream.writeInt(xBitmaps.get(myColumn).size());
+					for (Map.Entry<Integer, RoaringBitmapWritable> myEntry : xBitmaps.get(myColumn).entrySet()) {
+						bitmapStream.writeInt(myEntry.getKey());
+						myEntry.getValue().write(bitmapStream);
+						bitmapBytes += myEntry.getValue().getSerializedSize();
+					}
+				} finally {
+					bitmapStream.close();
+				}
+				LOG.info("Indexed the " + xBitmaps.get(myColumn).size() + " values of " + myColumn + " with "
+						+ bitmapBytes + " bytes of bitmaps.");
+			}
+
+			Properties metadata = new Properties();
+			metadata.setProperty("rows", String.valueOf(xRowCount));
+			metadata.setProperty("blockSize", String.valueOf(xBlockSize));
+			FileOutputStream metadataStream = new FileOutputStream(new File(xStoreDir, METADATA_FILE));
+			try {
+				metadata.store(metadataStream, "NEISS incident column store");
+			} finally {
+				metadataStream.close();
+			}
+			return xRowCount;
+		}
+	}
+
+	/**
+	 * Build the store from the filtered NEISS data (the output of the ProductFilter, either as it is or partitioned
+	 * into the year=YYYY directories of an incremental run).
+	 * 
+	 * @param aConf the configuration holding the file systems
+	 * @param aInput the directory of the filtered NEISS data
+	 * @param aStoreDir the local directory of the store
+	 * @param aBlockSize the number of rows within each block of the zone maps
+	 * @return the number of rows within the store
+	 **/
+	public static int build(Configuration aConf, Path aInput, File aStoreDir, int aBlockSize) throws IOException {
+		if (aStoreDir.exists() && !new File(aStoreDir, METADATA_FILE).exists()) {
+			throw new IOException("Refusing to replace " + aStoreDir + " as it does not hold an incident column store.");
+		}
+		File[] allOldFiles = aStoreDir.listFiles();
+		for (File myFile : (allOldFiles != null) ? allOldFiles : new File[0]) {
+			myFile.delete();
+		}
+		if (!aStoreDir.exists() && !aStoreDir.mkdirs()) {
+			throw new IOException("Unable to create the directory " + aStoreDir);
+		}
+
+		FileSystem fs = aInput.getFileSystem(aConf);
+		StoreWriter writer = new StoreWriter(aStoreDir, aBlockSize);
+		int[] allValues = new int[Column.values().length];
+		long skippedRecords = 0;
+		for (String myPath : IngestManifest.scan(fs, aInput).getPaths()) {
+			BufferedReader inputRdr = new BufferedReader(new InputStreamReader(CompressionSettings.openText(aConf,
+					new Path(aInput, myPath)), "UTF-8"));
+			try {
+				String inputLine = inputRdr.readLine();
+				while (inputLine != null) {
+					// @formatter:off
+					/*
+					 * Expects a line of input like the following: 
+					 * 		CaseNbr \t TreatmentDate \t Hospital \t Weight \t Stratum \t Age \t Gender \t Race
+					 * 			\t Diagnosis \t BodyPart \t Disposition \t Location \t Products \t Description
+					 */
+					// @formatter:on
+					String[] dataVals = inputLine.split(TAB_DELIMITER, SCHEMA_SIZE);
+					if (dataVals.length < SCHEMA_SIZE - 1) {
+						skippedRecords++;
+						inputLine = inputRdr.readLine();
+						continue;
+					}
+
+					String[] dateVals = dataVals[1].split("/");
+					allValues[Column.MONTH.ordinal()] = parse(dateVals[0]);
+					allValues[Column.YEAR.ordinal()] = (dateVals.length == 3) ? parse(dateVals[2]) : NULL_VALUE;
+					allValues[Column.HOSPITAL.ordinal()] = parse(dataVals[2]);
+					allValues[Column.STRATUM.ordinal()] = writer.code(Column.STRATUM, dataVals[4]);
+					try {
+						allValues[Column.AGE.ordinal()] = SimpleAgeCount.AgeBuckets.yearsOf(dataVals[5], true);
+					} catch (NumberFormatException e) {
+						allValues[Column.AGE.ordinal()] = NULL_VALUE;
+					}
+					allValues[Column.GENDER.ordinal()] = writer.code(Column.GENDER, dataVals[6]);
+					allValues[Column.RACE.ordinal()] = writer.code(Column.RACE, dataVals[7]);
+					allValues[Column.DIAGNOSIS.ordinal()] = writer.code(Column.DIAGNOSIS, dataVals[8]);
+					allValues[Column.BODY_PART.ordinal()] = writer.code(Column.BODY_PART, dataVals[9]);
+					allValues[Column.DISPOSITION.ordinal()] = writer.code(Column.DISPOSITION, dataVals[10]);
+					allValues[Column.LOCATION.ordinal()] = writer.code(Column.LOCATION, dataVals[11]);
+					String[] productVals = dataVals[12].trim().split(" ");
+					allValues[Column.PRODUCT.ordinal()] = parse(productVals[0]);
+					allValues[Column.SECONDARY_PRODUCT.ordinal()] = (productVals.length > 1) ? parse(productVals[1])
+							: NULL_VALUE;
+					if (allValues[Column.SECONDARY_PRODUCT.ordinal()] == 0) {
+						// NEISS codes the lack of a second product as 0
+						allValues[Column.SECONDARY_PRODUCT.ordinal()] = NULL_VALUE;
+					}
+
+					double myWeight;
+					try {
+						myWeight = Double.parseDouble(dataVals[3]);
+					} catch (NumberFormatException e) {
+						myWeight = 0.0;
+					}
+					writer.add(allValues, myWeight);
+					inputLine = inputRdr.readLine();
+				}
+			} finally {
+				inputRdr.close();
+			}
+		}
+
+		int rowCount = writer.close();
+		if (skippedRecords > 0) {
+			LOG.info("Skipped " + skippedRecords + " malformed records of " + aInput);
+		}
+		return rowCount;
+	}
+
+	/**
+	 * @return the numeric value of a field, or NULL_VALUE if it is missing or not a number
+	 **/
+	private static int parse(String aField) {
+		try {
+			return Integer.parseInt(aField.trim());
+		} catch (NumberFormatException e) {
+			return NULL_VALUE;
+		}
+	}
+
+	/**
+	 * Build the store from the arguments that were passed in.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		final String usageText = "Usage: IncidentColumnStore <input_dir> <local_store_dir> [-blockSize n]";
+
+		if (aArguments.length < 2) {
+			LOG.info(usageText);
+			return -1;
+		}
+
+		int blockSize = DEFAULT_BLOCK_SIZE;
+		for (int i = 2; i < aArguments.length; i++) {
+			if ("-blockSize".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				blockSize = Integer.parseInt(aArguments[i]);
+			} else {
+				System.err.println("ERROR: Invalid argument : '" + aArguments[i] + "'");
+				LOG.info(usageText);
+				return -1;
+			}
+		}
+
+		long startTime = System.currentTimeMillis();
+		int rowCount = build(getConf(), new Path(aArguments[0]), new File(aArguments[1]), blockSize);
+		LOG.info("Built the incident column store " + aArguments[1] + " with " + rowCount + " rows in "
+				+ (System.currentTimeMillis() - startTime) + " ms.");
+		return 0;
+	}
+
+	/**
+	 * The main method calls the ToolRunner.run method, which in turn calls an options parser that interprets Hadoop
+	 * command-line options and puts them into a Configuration object.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	public static void main(String[] aArguments) throws Exception {
+		int exitCode = ToolRunner.run(new Configuration(), new IncidentColumnStore(), aArguments);
+		System.exit(exitCode);
+	}
+}
@@ -0,0 +1,587 @@
+package edu.stthomas.gps.project;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.util.StringUtils;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.stthomas.gps.project.IncidentColumnStore.Column;
+
+/**
+ * Answers ad-hoc filter, count and group-by questions over the incidents of an IncidentColumnStore from a local
+ * process, either once from the command line or repeatedly through a small local HTTP server. A query is a list of
+ * filters separated by semicolons that must all be true for an incident to be counted, e.g. the trampoline (product
+ * 1233) injuries to children under 5 in 2012 that were hospitalized:
+ * 
+ * <pre>
+ * 		-where "product=1233; age<5; year=2012; disposition=HOSPITALIZED" -groupBy diagnosis
+ * 		GET /query?where=product%3D1233%3Bage%3C5%3Byear%3D2012%3Bdisposition%3DHOSPITALIZED&groupBy=diagnosis
+ * </pre>
+ * 
+ * Several such lists can be separated by a vertical bar to count the incidents that pass any one of them (e.g.
+ * "product=1233; age<5 | product=1200; age<5"), and a != filter selects the incidents that do not hold any of its
+ * values. The equality filters (= and != with a comma separated list of values) on the indexed columns are answered
+ * with AND, OR and AND NOT operations on the compressed bitmaps of the store, and every other filter scans only the
+ * blocks of rows whose zone map can hold a match. A filter on the PRODUCT matches the incidents that involve the
+ * product as either of their two products (the range filters on the PRODUCT of a list must all hold for the same one
+ * of the two). The result has one line for each group (or a single line for ALL of the matching incidents) in the
+ * same format as the reports.
+ * <p>
+ * 
+ * The -count option (or /count) only returns the number of matching incidents of each group. When the query only
+ * filters and groups on the indexed columns it is answered from the cardinality of the bitmaps without touching the
+ * row data at all.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class IncidentQueryService extends Configured implements Tool {
+	private static final Logger LOG = Logger.getLogger(IncidentQueryService.class);
+
+	private static final Pattern FILTER_PATTERN = Pattern.compile("^\\s*(\\w+)\\s*(<=|>=|!=|=|<|>)\\s*(.*?)\\s*$");
+	private static final String FILTER_DELIMITER = new String(";");
+	private static final String CONJUNCTION_DELIMITER = new String("\\|");
+	private static final String VALUE_DELIMITER = new String(",");
+	private static final String TAB_DELIMITER = new String("\t");
+	private static final String ALL_GROUP = new String("ALL");
+
+	private IncidentColumnStore xStore;
+
+	/**
+	 * A single filter of a query (e.g. AGE<5).
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class Filter {
+		private final Column xColumn;
+		private final String xOperator;
+		private final int[] xValues;
+
+		/**
+		 * Parse a filter against the values of a store.
+		 * 
+		 * @param aText the text of the filter (e.g. "age<5" or "disposition=HOSPITALIZED,HELD FOR OBSERVATION")
+		 * @param aStore the store the filter will be evaluated against
+		 * @throws IllegalArgumentException if the filter can not be parsed
+		 **/
+		public Filter(String aText, IncidentColumnStore aStore) {
+			Matcher filterMatcher = FILTER_PATTERN.matcher(aText);
+			if (!filterMatcher.matches()) {
+				throw new IllegalArgumentException("Invalid filter : '" + aText + "'");
+			}
+			xColumn = Column.forName(filterMatcher.group(1));
+			xOperator = filterMatcher.group(2);
+			String[] valueTexts = filterMatcher.group(3).split(VALUE_DELIMITER);
+			if (valueTexts.length > 1 && !isEquality()) {
+				throw new IllegalArgumentException("Only = and != accept a list of values : '" + aText + "'");
+			} else if (xColumn.isCoded() && !isEquality()) {
+				throw new IllegalArgumentException("Only = and != can be used with " + xColumn + " : '" + aText + "'");
+			}
+			xValues = new int[valueTexts.length];
+			for (int i = 0; i < valueTexts.length; i++) {
+				try {
+					xValues[i] = aStore.encode(xColumn, valueTexts[i]);
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("The value of " + xColumn + " must be a number : '" + aText
+							+ "'");
+				}
+			}
+		}
+
+		/**
+		 * @return true if the filter is either = or !=
+		 **/
+		boolean isEquality() {
+			return "=".equals(xOperator) || "!=".equals(xOperator);
+		}
+
+		/**
+		 * @param aValue the value of the column for an incident
+		 * @return true if the value passes the filter (a missing value never does)
+		 **/
+		boolean matches(int aValue) {
+			if (aValue == IncidentColumnStore.NULL_VALUE) {
+				return false;
+			} else if (isEquality()) {
+				boolean found = false;
+				for (int myValue : xValues) {
+					found |= (myValue == aValue);
+				}
+				return found == "=".equals(xOperator);
+			} else if ("<".equals(xOperator)) {
+				return aValue < xValues[0];
+			} else if ("<=".equals(xOperator)) {
+				return aValue <= xValues[0];
+			} else if (">".equals(xOperator)) {
+				return aValue > xValues[0];
+			}
+			return aValue >= xValues[0];
+		}
+
+		/**
+		 * @param aMin the smallest value within a block of rows
+		 * @param aMax the largest value within a block of rows
+		 * @return true if no row of the block can pass the filter
+		 **/
+		boolean excludesZone(int aMin, int aMax) {
+			if ("=".equals(xOperator)) {
+				for (int myValue : xValues) {
+					if (myValue >= aMin && myValue <= aMax) {
+						return false;
+					}
+				}
+				return true;
+			} else if ("!=".equals(xOperator)) {
+				return (aMin == aMax) && !matches(aMin);
+			}
+
+			/*
+			 * The range filters are monotone, so only the ends of the zone (less any missing values) need to be checked.
+			 */
+			int myLow = Math.max(aMin, IncidentColumnStore.NULL_VALUE + 1);
+			if (myLow > aMax) {
+				return true;
+			}
+			return xOperator.startsWith("<") ? !matches(myLow) : !matches(aMax);
+		}
+
+		/**
+		 * @param aMin the smallest value within a block of rows
+		 * @param aMax the largest value within a block of rows
+		 * @return true if every row of the block passes the filter
+		 **/
+		boolean includesZone(int aMin, int aMax) {
+			if (aMin <= IncidentColumnStore.NULL_VALUE) {
+				return false;
+			} else if (isEquality()) {
+				return (aMin == aMax) && matches(aMin);
+			}
+			return matches(aMin) && matches(aMax);
+		}
+	}
+
+	/**
+	 * @param aStore the store that the queries are answered from
+	 **/
+	public IncidentQueryService(IncidentColumnStore aStore) {
+		xStore = aStore;
+	}
+
+	/**
+	 * Used by ToolRunner, the store is opened from the arguments.
+	 **/
+	public IncidentQueryService() {
+		this(null);
+	}
+
+	/**
+	 * Parse the filters of a query.
+	 * 
+	 * @param aWhere the filters separated by semicolons (may be empty to select every incident)
+	 * @return the filters
+	 **/
+	public List<Filter> parse(String aWhere) {
+		List<Filter> allFilters = new ArrayList<Filter>();
+		for (String filterText : (aWhere == null) ? new String[0] : aWhere.split(FILTER_DELIMITER)) {
+			if (!filterText.trim().isEmpty()) {
+				allFilters.add(new Filter(filterText, xStore));
+			}
+		}
+		return allFilters;
+	}
+
+	/**
+	 * Find the rows of the incidents that pass every filter of any one of the lists of filters of a query.
+	 * 
+	 * @param aWhere the lists of filters separated by vertical bars (may be empty to select every incident)
+	 * @return the bitmap of the matching rows
+	 * @throws IllegalArgumentException if the query can not be parsed
+	 **/
+	public RoaringBitmapWritable select(String aWhere) {
+		RoaringBitmapWritable allRows = new RoaringBitmapWritable();
+		for (String myConjunction : (aWhere == null) ? new String[] { "" } : aWhere.split(CONJUNCTION_DELIMITER)) {
+			allRows.or(select(parse(myConjunction)));
+		}
+		return allRows;
+	}
+
+	/**
+	 * Find the rows of the incidents that pass every one of the filters.
+	 * 
+	 * @param aFilters the filters of the query
+	 * @return the bitmap of the matching rows
+	 **/
+	public RoaringBitmapWritable select(List<Filter> aFilters) {
+		RoaringBitmapWritable allRows = RoaringBitmapWritable.range(0, xStore.getRowCount());
+
+		/*
+		 * Apply the filters that can be answered from the bitmaps first, as they are the cheapest and make the scans
+		 * that follow shorter.
+		 */
+		List<Filter> allScans = new ArrayList<Filter>();
+		List<Filter> allProductScans = new ArrayList<Filter>();
+		for (Filter myFilter : aFilters) {
+			if (myFilter.isEquality() && myFilter.xColumn.isIndexed()) {
+				allRows.and(lookup(myFilter));
+			} else if (myFilter.xColumn == Column.PRODUCT) {
+				allProductScans.add(myFilter);
+			} else {
+				allScans.add(myFilter);
+			}
+		}
+		for (Filter myFilter : allScans) {
+			if (!allRows.isEmpty()) {
+				allRows.and(scan(Collections.singletonList(myFilter), new Column[] { myFilter.xColumn }, allRows));
+			}
+		}
+
+		/*
+		 * The scanned filters on the PRODUCT are checked together against each of the two products of an incident.
+		 */
+		if (!allProductScans.isEmpty() && !allRows.isEmpty()) {
+			allRows.and(scan(allProductScans, new Column[] { Column.PRODUCT, Column.SECONDARY_PRODUCT }, allRows));
+		}
+		return allRows;
+	}
+
+	/**
+	 * Answer an equality filter from the bitmaps of the store.
+	 **/
+	private RoaringBitmapWritable lookup(Filter aFilter) {
+		RoaringBitmapWritable myRows = new RoaringBitmapWritable();
+		for (int myValue : aFilter.xValues) {
+			myRows.or(xStore.getBitmap(aFilter.xColumn, myValue));
+			if (aFilter.xColumn == Column.PRODUCT) {
+				myRows.or(xStore.getBitmap(Column.SECONDARY_PRODUCT, myValue));
+			}
+		}
+
+		/*
+		 * A != filter is the complement of the = filter, less the rows where the value is missing.
+		 */
+		if ("!=".equals(aFilter.xOperator)) {
+			RoaringBitmapWritable otherRows = RoaringBitmapWritable.range(0, xStore.getRowCount());
+			otherRows.andNot(myRows);
+			otherRows.andNot(xStore.getBitmap(aFilter.xColumn, IncidentColumnStore.NULL_VALUE));
+			return otherRows;
+		}
+		return myRows;
+	}
+
+	/**
+	 * Answer the filters on a column (or on either of the two products) by scanning the candidate rows of the blocks
+	 * that the zone maps can not rule out. A row passes when every one of the filters holds for the value of the same
+	 * column, so a range on the PRODUCT (e.g. "product>=3293; product<=3293") is never satisfied by one end on each of
+	 * the two products of an incident.
+	 * 
+	 * @param aFilters the filters that are all on the columns being scanned
+	 * @param aColumns the columns that are tried in turn
+	 * @param aCandidates the rows that passed the filters applied so far
+	 * @return the bitmap of the matching rows
+	 **/
+	private RoaringBitmapWritable scan(List<Filter> aFilters, Column[] aColumns, RoaringBitmapWritable aCandidates) {
+		RoaringBitmapWritable myRows = new RoaringBitmapWritable();
+		int blockSize = xStore.getBlockSize();
+		for (int block = 0; block < xStore.getBlockCount(); block++) {
+			int firstRow = block * blockSize;
+			int endRow = Math.min(firstRow + blockSize, xStore.getRowCount());
+
+			/*
+			 * A block is only skipped when the zone maps rule out every one of the columns, and taken whole when they
+			 * show that every filter holds for all of the rows of any one of them.
+			 */
+			boolean excluded = true;
+			boolean included = false;
+			for (Column myColumn : aColumns) {
+				int myMin = xStore.getZoneMin(myColumn, block);
+				int myMax = xStore.getZoneMax(myColumn, block);
+				boolean columnExcluded = false;
+				boolean columnIncluded = true;
+				for (Filter myFilter : aFilters) {
+					columnExcluded |= myFilter.excludesZone(myMin, myMax);
+					columnIncluded &= myFilter.includesZone(myMin, myMax);
+				}
+				excluded &= columnExcluded;
+				included |= columnIncluded;
+			}
+			if (excluded) {
+				continue;
+			} else if (included) {
+				myRows.addRange(firstRow, endRow);
+				continue;
+			}
+			for (int row = aCandidates.nextSetBit(firstRow); row >= 0 && row < endRow; row = aCandidates
+					.nextSetBit(row + 1)) {
+				if (matches(aFilters, aColumns, row)) {
+					myRows.add(row);
+				}
+			}
+		}
+		return myRows;
+	}
+
+	/**
+	 * @return true if every one of the filters holds for the value of any one of the columns of the row
+	 **/
+	private boolean matches(List<Filter> aFilters, Column[] aColumns, int aRow) {
+		for (Column myColumn : aColumns) {
+			int myValue = xStore.getValue(myColumn, aRow);
+			boolean allMatched = true;
+			for (Filter myFilter : aFilters) {
+				allMatched &= myFilter.matches(myValue);
+			}
+			if (allMatched) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Answer a query.
+	 * 
+	 * @param aWhere the lists of filters separated by vertical bars (may be empty to select every incident)
+	 * @param aGroupBy the name of the column to group the incidents by (or null for a single group)
+	 * @return the text of the result with one line per group
+	 * @throws IllegalArgumentException if the query can not be parsed
+	 **/
+	public String query(String aWhere, String aGroupBy) {
+		long startTime = System.nanoTime();
+		final Column groupBy = (aGroupBy == null || aGroupBy.trim().isEmpty()) ? null : Column.forName(aGroupBy);
+		RoaringBitmapWritable allRows = select(aWhere);
+
+		/*
+		 * Summarize the matching incidents of each group, keeping the national estimate along with the counts.
+		 */
+		Map<Integer, IncidentAggregateWritable> allGroups = new HashMap<Integer, IncidentAggregateWritable>();
+		for (int row = allRows.nextSetBit(0); row >= 0; row = allRows.nextSetBit(row + 1)) {
+			int myGroup = (groupBy == null) ? 0 : xStore.getValue(groupBy, row);
+			IncidentAggregateWritable mySum = allGroups.get(myGroup);
+			if (mySum == null) {
+				mySum = new IncidentAggregateWritable();
+				allGroups.put(myGroup, mySum);
+			}
+			mySum.add(xStore.getWeight(row),
+					xStore.decode(Column.STRATUM, xStore.getValue(Column.STRATUM, row)));
+		}
+
+		StringBuilder resultBuilder = new StringBuilder();
+		for (Integer myKey : sortGroups(allGroups.keySet(), groupBy)) {
+			resultBuilder.append((groupBy == null) ? ALL_GROUP : xStore.decode(groupBy, myKey));
+			resultBuilder.append(TAB_DELIMITER);
+			resultBuilder.append(AggregateStore.formatSummary(allGroups.get(myKey), allRows.getCardinality()));
+			resultBuilder.append("\n");
+		}
+		LOG.info("Answered [" + aWhere + "] grouped by " + groupBy + " with " + allRows.getCardinality() + " of "
+				+ xStore.getRowCount() + " incidents in " + (System.nanoTime() - startTime) / 1000000 + " ms.");
+		return resultBuilder.toString();
+	}
+
+	/**
+	 * Count the incidents of a query. The counts of the groups of an indexed column are the cardinality of the
+	 * intersection of the matching rows with the bitmap of each value, so only a group-by on a column without bitmaps
+	 * (or a filter that has to scan) reads the row data.
+	 * 
+	 * @param aWhere the lists of filters separated by vertical bars (may be empty to select every incident)
+	 * @param aGroupBy the name of the column to group the incidents by (or null for a single group)
+	 * @return the text of the result with the name and the number of incidents of each group on a line
+	 * @throws IllegalArgumentException if the query can not be parsed
+	 **/
+	public String count(String aWhere, String aGroupBy) {
+		long startTime = System.nanoTime();
+		final Column groupBy = (aGroupBy == null || aGroupBy.trim().isEmpty()) ? null : Column.forName(aGroupBy);
+		RoaringBitmapWritable allRows = select(aWhere);
+
+		Map<Integer, Long> allCounts = new HashMap<Integer, Long>();
+		if (groupBy == null) {
+			allCounts.put(0, allRows.getCardinality());
+		} else if (groupBy.isIndexed()) {
+			for (Integer myValue : xStore.getValues(groupBy)) {
+				long myCount = xStore.countRows(groupBy, myValue, allRows);
+				if (myCount > 0) {
+					allCounts.put(myValue, myCount);
+				}
+			}
+		} else {
+			for (int row = allRows.nextSetBit(0); row >= 0; row = allRows.nextSetBit(row + 1)) {
+				int myGroup = xStore.getValue(groupBy, row);
+				Long myCount = allCounts.get(myGroup);
+				allCounts.put(myGroup, (myCount == null) ? 1L : myCount + 1);
+			}
+		}
+
+		StringBuilder resultBuilder = new StringBuilder();
+		for (Integer myKey : sortGroups(allCounts.keySet(), groupBy)) {
+			resultBuilder.append((groupBy == null) ? ALL_GROUP : xStore.decode(groupBy, myKey));
+			resultBuilder.append(TAB_DELIMITER);
+			resultBuilder.append(allCounts.get(myKey));
+			resultBuilder.append("\n");
+		}
+		LOG.info("Counted [" + aWhere + "] grouped by " + groupBy + " with " + allRows.getCardinality() + " of "
+				+ xStore.getRowCount() + " incidents in " + (System.nanoTime() - startTime) / 1000000 + " ms.");
+		return resultBuilder.toString();
+	}
+
+	/**
+	 * Order the groups by their description for the coded columns, otherwise by their value.
+	 **/
+	private List<Integer> sortGroups(Collection<Integer> aGroups, final Column aGroupBy) {
+		List<Integer> allKeys = new ArrayList<Integer>(aGroups);
+		Collections.sort(allKeys, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer aFirst, Integer aSecond) {
+				if (aGroupBy != null && aGroupBy.isCoded()) {
+					return xStore.decode(aGroupBy, aFirst).compareTo(xStore.decode(aGroupBy, aSecond));
+				}
+				return aFirst.compareTo(aSecond);
+			}
+		});
+		return allKeys;
+	}
+
+	/**
+	 * Answers the queries sent to /query?where=...&groupBy=... (or /count?where=...&groupBy=...) with the text of the
+	 * result.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	private class QueryHandler implements HttpHandler {
+		private final boolean xCountOnly;
+
+		QueryHandler(boolean aCountOnly) {
+			xCountOnly = aCountOnly;
+		}
+
+		@Override
+		public void handle(HttpExchange aExchange) throws IOException {
+			int status = 200;
+			String response;
+			try {
+				Map<String, String> allParameters = new HashMap<String, String>();
+				String queryText = aExchange.getRequestURI().getRawQuery();
+				for (String myParameter : (queryText == null) ? new String[0] : queryText.split("&")) {
+					int endOfName = myParameter.indexOf('=');
+					if (endOfName > 0) {
+						allParameters.put(myParameter.substring(0, endOfName),
+								URLDecoder.decode(myParameter.substring(endOfName + 1), "UTF-8"));
+					}
+				}
+				response = xCountOnly ? count(allParameters.get("where"), allParameters.get("groupBy")) : query(
+						allParameters.get("where"), allParameters.get("groupBy"));
+			} catch (IllegalArgumentException e) {
+				status = 400;
+				response = "ERROR: " + e.getMessage() + "\n";
+			} catch (RuntimeException e) {
+				status = 500;
+				response = "ERROR: " + StringUtils.stringifyException(e) + "\n";
+			}
+
+			byte[] responseBytes = response.getBytes("UTF-8");
+			aExchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+			aExchange.sendResponseHeaders(status, responseBytes.length);
+			OutputStream responseStream = aExchange.getResponseBody();
+			try {
+				responseStream.write(responseBytes);
+			} finally {
+				responseStream.close();
+			}
+		}
+	}
+
+	/**
+	 * Answer a single query from the command line, or serve the queries through a local HTTP server.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		final String usageText = "Usage: IncidentQueryService <local_store_dir> [-where filters] [-groupBy column]"
+				+ " [-count] [-http port]";
+
+		if (aArguments.length < 1) {
+			LOG.info(usageText);
+			return -1;
+		}
+
+		String where = null;
+		String groupBy = null;
+		boolean countOnly = false;
+		int httpPort = -1;
+		for (int i = 1; i < aArguments.length; i++) {
+			if ("-where".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				where = aArguments[i];
+			} else if ("-groupBy".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				groupBy = aArguments[i];
+			} else if ("-count".equals(aArguments[i])) {
+				countOnly = true;
+			} else if ("-http".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				httpPort = Integer.parseInt(aArguments[i]);
+			} else {
+				System.err.println("ERROR: Invalid argument : '" + aArguments[i] + "'");
+				LOG.info(usageText);
+				return -1;
+			}
+		}
+
+		long startTime = System.currentTimeMillis();
+		xStore = IncidentColumnStore.open(new File(aArguments[0]));
+		LOG.info("Opened the incident column store " + aArguments[0] + " with " + xStore.getRowCount() + " rows in "
+				+ (System.currentTimeMillis() - startTime) + " ms.");
+
+		/*
+		 * Serve the queries until the process is stopped, only listening on the local interface.
+		 */
+		if (httpPort >= 0) {
+			HttpServer server = HttpServer.create(new InetSocketAddress("localhost", httpPort), 0);
+			server.createContext("/query", new QueryHandler(false));
+			server.createContext("/count", new QueryHandler(true));
+			server.start();
+			LOG.info("Serving queries on http://localhost:" + server.getAddress().getPort() + "/query and /count");
+			Thread.currentThread().join();
+			return 0;
+		}
+
+		try {
+			System.out.print(countOnly ? count(where, groupBy) : query(where, groupBy));
+		} catch (IllegalArgumentException e) {
+			System.err.println("ERROR: " + e.getMessage());
+			return -1;
+		}
+		return 0;
+	}
+
+	/**
+	 * The main method calls the ToolRunner.run method, which in turn calls an options parser that interprets Hadoop
+	 * command-line options and puts them into a Configuration object.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	public static void main(String[] aArguments) throws Exception {
+		int exitCode = ToolRunner.run(new Configuration(), new IncidentQueryService(), aArguments);
+		System.exit(exitCode);
+	}
+}
@@ -0,0 +1,195 @@
+package edu.stthomas.gps.project;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
+import org.apache.hadoop.mapreduce.lib.join.CompositeInputFormat;
+import org.apache.hadoop.mapreduce.lib.join.TupleWritable;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+/**
+ * Joins every keyword filtered incident with the top TF-IDF terms of its Description without any shuffle, by zipping
+ * together the matching part files of the two inputs within a map-only job (a sorted merge join through the
+ * CompositeInputFormat). This only works because both of the inputs are sorted by the CaseNbr and partitioned the same
+ * way, so they must be produced with the same number of partitions:
+ * 
+ * <pre>
+ * 		KeywordFilterSortByYearCaseNbr <input_dir> <incidents_dir> -partitionByCaseNbr n
+ * 		DescriptionTopTerms <tfidf_dir> <top_terms_dir> -partitions n
+ * 		IncidentTopTermsJoin <incidents_dir> <top_terms_dir> <output_dir>
+ * </pre>
+ * 
+ * Every incident is written with its top terms appended as the last field (which is empty for an incident whose
+ * Description had no scored words), and the top terms of the incidents that did not pass the keyword filter are
+ * dropped.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class IncidentTopTermsJoin extends Configured implements Tool, JobFactory {
+	private static final Logger LOG = Logger.getLogger(IncidentTopTermsJoin.class);
+
+	public static enum NEISS_DATA {
+		NUM_JOINED_INCIDENTS, NUM_INCIDENTS_WITHOUT_TERMS, NUM_TERMS_WITHOUT_INCIDENT
+	}
+
+	private static final String TAB_DELIMITER = new String("\t");
+
+	/**
+	 * Reads each partition of an input as a single split and lists the partitions in the order of their names, so that
+	 * part-r-00000 of one input is always zipped with part-r-00000 of the other.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class SortedPartitionInputFormat extends KeyValueTextInputFormat {
+
+		@Override
+		protected boolean isSplitable(JobContext aContext, Path aFile) {
+			return false;
+		}
+
+		@Override
+		protected List<FileStatus> listStatus(JobContext aJob) throws IOException {
+			List<FileStatus> allStatus = super.listStatus(aJob);
+			Collections.sort(allStatus, new Comparator<FileStatus>() {
+				@Override
+				public int compare(FileStatus aFirst, FileStatus aSecond) {
+					return aFirst.getPath().getName().compareTo(aSecond.getPath().getName());
+				}
+			});
+			return allStatus;
+		}
+	}
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class JoinMapper extends InstrumentedMapper<Text, TupleWritable, Text, Text> {
+		private Text xJoinedValue = new Text();
+
+		/**
+		 * Append the top terms of an incident (if any) to its row.
+		 * 
+		 * @param aKey a simple text key that represents the CaseNbr
+		 * @param aValue the incident row (position 0) and its top terms (position 1), either of which may be missing
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void map(Text aKey, TupleWritable aValue, Context aContext) throws IOException,
+				InterruptedException {
+			if (!aValue.has(0)) {
+				aContext.getCounter(NEISS_DATA.NUM_TERMS_WITHOUT_INCIDENT).increment(1);
+				return;
+			}
+
+			String topTerms = "";
+			if (aValue.has(1)) {
+				aContext.getCounter(NEISS_DATA.NUM_JOINED_INCIDENTS).increment(1);
+				topTerms = aValue.get(1).toString();
+			} else {
+				aContext.getCounter(NEISS_DATA.NUM_INCIDENTS_WITHOUT_TERMS).increment(1);
+			}
+
+			// @formatter:off
+			/*
+			 * Write the output record in the following format: 
+			 * 		[KEY(Text(CaseNbr))	VALUE(Text(TreatmentDate
+			 * 										...
+			 * 										\tDescription
+			 * 										\tDescription_Word=TF-IDF Description_Word=TF-IDF ...))]
+			 */
+			// @formatter:on
+			xJoinedValue.set(aValue.get(0).toString() + TAB_DELIMITER + topTerms);
+			aContext.write(aKey, xJoinedValue);
+		}
+	}
+
+	/**
+	 * Setup the environment so that we can join the keyword filtered incidents with their top terms on the map side.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public Job createJob(String[] aArguments) throws Exception {
+		final String usageText = "Usage: IncidentTopTermsJoin <incidents_dir> <top_terms_dir> <output_dir>";
+
+		if (aArguments.length != 3) {
+			LOG.info(usageText);
+			return null;
+		}
+
+		Job job = new Job(getConf());
+		job.setJarByClass(IncidentTopTermsJoin.class);
+		job.setJobName("Join the NEISS Incidents with their Top Description Terms");
+
+		/*
+		 * An outer join of the two inputs, of which the mapper only keeps the incidents (a left outer join).
+		 */
+		job.getConfiguration().set(
+				CompositeInputFormat.JOIN_EXPR,
+				CompositeInputFormat.compose("outer", SortedPartitionInputFormat.class, new Path(aArguments[0]),
+						new Path(aArguments[1])));
+		FileOutputFormat.setOutputPath(job, new Path(aArguments[2]));
+
+		job.setMapperClass(JoinMapper.class);
+
+		job.setOutputKeyClass(Text.class);
+		job.setOutputValueClass(Text.class);
+
+		job.setInputFormatClass(CompositeInputFormat.class);
+		job.setOutputFormatClass(TextOutputFormat.class);
+
+		job.setNumReduceTasks(0);
+
+		CompressionSettings.configure(job, IncidentTopTermsJoin.class);
+
+		return job;
+	}
+
+	/**
+	 * Build the job from the arguments that were passed in and run it, waiting for it to be completed.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		Job job = createJob(aArguments);
+		if (job == null) {
+			return -1;
+		}
+
+		/*
+		 * Run the job and wait for it to be completed.
+		 */
+		boolean success = job.waitForCompletion(true);
+		CompressionSettings.report(job);
+		JobInstrumentation.report(job);
+
+		return success ? 0 : 1;
+	}
+
+	/**
+	 * The main method calls the ToolRunner.run method, which in turn calls an options parser that interprets Hadoop
+	 * command-line options and puts them into a Configuration object.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	public static void main(String[] aArguments) throws Exception {
+		int exitCode = ToolRunner.run(new Configuration(), new IncidentTopTermsJoin(), aArguments);
+		System.exit(exitCode);
+	}
+}
@@ -0,0 +1,360 @@
+package edu.stthomas.gps.project;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.log4j.Logger;
+
+/**
+ * Supports the incremental refresh of a year partitioned output directory (year=YYYY/...). Only the input files that
+ * are new or changed since the last refresh (according to the {@link IngestManifest} saved with the output) are given
+ * to the job, the job writes its output through MultipleOutputs into a staging directory, and when the job commits
+ * the staged files replace the output that was produced from the same input before.
+ * <p>
+ * 
+ * Two granularities of replacement are supported:
+ * 
+ * <pre>
+ * 		BY_INPUT_FILE	=	every output file is named after the input file it came from (map-only jobs such as
+ * 							ProductFilter), and only the files of the changed inputs are replaced
+ * 		BY_YEAR			=	a whole year=YYYY directory of the input is reprocessed whenever any file within it
+ * 							changed, and the matching year=YYYY directory of the output is replaced
+ * </pre>
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class IncrementalOutputFormat extends TextOutputFormat<Text, Text> {
+	private static final Logger LOG = Logger.getLogger(IncrementalOutputFormat.class);
+
+	public static enum Mode {
+		BY_INPUT_FILE, BY_YEAR
+	}
+
+	public static final String MODE_KEY = new String("neiss.incremental.mode");
+	private static final String INPUT_KEY = new String("neiss.incremental.input");
+	private static final String OUTPUT_KEY = new String("neiss.incremental.output");
+	private static final String MANIFEST_KEY = new String("neiss.incremental.manifest");
+	private static final String REPLACED_KEY = new String("neiss.incremental.replaced");
+
+	public static final String STAGING_DIR = new String("_staging");
+	public static final String YEAR_PREFIX = new String("year=");
+	private static final String SUCCESS_FILE = new String("_SUCCESS");
+	private static final Pattern PART_SUFFIX = Pattern.compile("-[mr]-\\d{5}(\\.\\w+)?");
+
+	private OutputCommitter xCommitter;
+
+	/**
+	 * Setup a job to refresh its year partitioned output from the new or changed files of its input.
+	 * 
+	 * @param aJob the job to be setup
+	 * @param aInput the input directory of the job
+	 * @param aOutput the year partitioned output directory of the job
+	 * @param aMode the granularity at which the output is replaced
+	 * @return false if there is nothing to be processed (the output is up to date)
+	 **/
+	public static boolean configure(Job aJob, Path aInput, Path aOutput, Mode aMode) throws IOException {
+		Configuration conf = aJob.getConfiguration();
+		FileSystem inputFs = aInput.getFileSystem(conf);
+		IngestManifest currentInputs = IngestManifest.scan(inputFs, aInput);
+		FileSystem outputFs = aOutput.getFileSystem(conf);
+		IngestManifest processedInputs = IngestManifest.load(outputFs, aOutput);
+
+		/*
+		 * Output without a manifest was not produced incrementally, so none of it can be kept.
+		 */
+		if (!outputFs.exists(new Path(aOutput, IngestManifest.MANIFEST_FILE)) && outputFs.exists(aOutput)) {
+			LOG.info("Removing the output " + aOutput + " as it was not produced incrementally.");
+			outputFs.delete(aOutput, true);
+		}
+
+		/*
+		 * Collect the units (input files or year directories) that must be replaced, along with the ones that still
+		 * have input to be processed.
+		 */
+		Set<String> replacedUnits = new TreeSet<String>();
+		Set<String> processedUnits = new TreeSet<String>();
+		for (String myPath : currentInputs.getPaths()) {
+			if (!currentInputs.matches(myPath, processedInputs)) {
+				replacedUnits.add(unitOf(myPath, aMode));
+			}
+		}
+		for (String myPath : processedInputs.getPaths()) {
+			if (!currentInputs.contains(myPath)) {
+				replacedUnits.add(unitOf(myPath, aMode));
+			}
+		}
+		for (String myPath : currentInputs.getPaths()) {
+			if (replacedUnits.contains(unitOf(myPath, aMode))) {
+				processedUnits.add(unitOf(myPath, aMode));
+			}
+		}
+		if (replacedUnits.isEmpty()) {
+			LOG.info("All of the input files of " + aInput + " have already been processed into " + aOutput);
+			return false;
+		}
+
+		conf.set(MODE_KEY, aMode.name());
+		conf.set(INPUT_KEY, inputFs.makeQualified(aInput).toUri().getPath());
+		conf.set(OUTPUT_KEY, aOutput.toString());
+		conf.set(MANIFEST_KEY, currentInputs.toString());
+		conf.setStrings(REPLACED_KEY, replacedUnits.toArray(new String[replacedUnits.size()]));
+
+		/*
+		 * When the inputs were only removed there is nothing to run, so just drop their output right away.
+		 */
+		if (processedUnits.isEmpty()) {
+			LOG.info("Removing the output of the deleted input files " + replacedUnits + " from " + aOutput);
+			promote(conf);
+			return false;
+		}
+
+		List<Path> inputPaths = new ArrayList<Path>();
+		for (String myUnit : processedUnits) {
+			inputPaths.add(new Path(aInput, myUnit));
+		}
+		LOG.info("Processing the new or changed input " + processedUnits + " of " + aInput);
+		FileInputFormat.setInputPaths(aJob, inputPaths.toArray(new Path[inputPaths.size()]));
+
+		Path stagingDir = new Path(aOutput, STAGING_DIR);
+		outputFs.delete(stagingDir, true);
+		FileOutputFormat.setOutputPath(aJob, stagingDir);
+		LazyOutputFormat.setOutputFormatClass(aJob, IncrementalOutputFormat.class);
+		return true;
+	}
+
+	/**
+	 * @param aConf the configuration of the job
+	 * @return true if the job writes incremental year partitioned output
+	 **/
+	public static boolean isIncremental(Configuration aConf) {
+		return aConf.get(MODE_KEY) != null;
+	}
+
+	/**
+	 * List the output that a completed incremental job has promoted out of its staging directory, which is gone by
+	 * then (the output of the units that were not replaced by the job is left out).
+	 * 
+	 * @param aConf the configuration of the job
+	 * @return the year directories (BY_YEAR) or the files (BY_INPUT_FILE) of the refreshed output
+	 **/
+	public static List<Path> committedPaths(Configuration aConf) throws IOException {
+		Path outputDir = new Path(aConf.get(OUTPUT_KEY));
+		FileSystem fs = outputDir.getFileSystem(aConf);
+		String[] replacedUnits = aConf.getStrings(REPLACED_KEY, new String[0]);
+		List<Path> allPaths = new ArrayList<Path>();
+		if (Mode.valueOf(aConf.get(MODE_KEY)) == Mode.BY_YEAR) {
+			for (String myUnit : replacedUnits) {
+				Path yearDir = new Path(outputDir, myUnit);
+				if (fs.exists(yearDir)) {
+					allPaths.add(yearDir);
+				}
+			}
+		} else {
+			FileStatus[] allFiles = fs.globStatus(new Path(outputDir, YEAR_PREFIX + "*/*"));
+			for (FileStatus myFile : (allFiles != null) ? allFiles : new FileStatus[0]) {
+				for (String myUnit : replacedUnits) {
+					if (isOutputOf(myFile.getPath().getName(), myUnit)) {
+						allPaths.add(myFile.getPath());
+					}
+				}
+			}
+		}
+		return allPaths;
+	}
+
+	/**
+	 * @param aConf the configuration of the job (or pipeline)
+	 * @param aInput the input directory
+	 * @param aOutput the year partitioned output directory
+	 * @return true if every input file has already been processed into the output
+	 **/
+	public static boolean isUpToDate(Configuration aConf, Path aInput, Path aOutput) throws IOException {
+		IngestManifest currentInputs = IngestManifest.scan(aInput.getFileSystem(aConf), aInput);
+		return currentInputs.equals(IngestManifest.load(aOutput.getFileSystem(aConf), aOutput));
+	}
+
+	/**
+	 * Build the base output path (for use with MultipleOutputs) for a record of the specified year.
+	 * 
+	 * @param aYear the year of the TreatmentDate of the record
+	 * @param aBaseName the base name of the output file within the year directory
+	 * @return the base output path relative to the output directory
+	 **/
+	public static String yearPath(String aYear, String aBaseName) {
+		return YEAR_PREFIX + aYear + "/" + aBaseName;
+	}
+
+	/**
+	 * Determine the unit of replacement (the input file or the year=YYYY directory) that an input file of the job
+	 * belongs to.
+	 * 
+	 * @param aConf the configuration of the job
+	 * @param aFile the (qualified) path of an input file of the job
+	 * @return the unit of replacement relative to the input directory
+	 **/
+	public static String unitOf(Configuration aConf, Path aFile) {
+		String rootPath = aConf.get(INPUT_KEY);
+		String filePath = aFile.toUri().getPath();
+		String relativePath = filePath.startsWith(rootPath + "/") ? filePath.substring(rootPath.length() + 1)
+				: aFile.getName();
+		return unitOf(relativePath, Mode.valueOf(aConf.get(MODE_KEY)));
+	}
+
+	/**
+	 * Build the base name of the output files written for an input file of a BY_INPUT_FILE job: the path of the input
+	 * file relative to the input directory, with its '/' escaped so that the same-named files of different
+	 * subdirectories do not share their output.
+	 * 
+	 * @param aConf the configuration of the job
+	 * @param aFile the (qualified) path of an input file of the job
+	 * @return the base name of the output files (to be used with yearPath)
+	 **/
+	public static String baseNameOf(Configuration aConf, Path aFile) {
+		return baseNameOf(unitOf(aConf, aFile));
+	}
+
+	/**
+	 * Extract the year from a tab delimited record whose first field is the TreatmentDate (in MDY format).
+	 * 
+	 * @param aValue the record
+	 * @return the year of the record
+	 **/
+	public static String yearOf(String aValue) {
+		int endOfDate = aValue.indexOf('\t');
+		String treatmentDate = (endOfDate < 0) ? aValue : aValue.substring(0, endOfDate);
+		return treatmentDate.substring(treatmentDate.lastIndexOf('/') + 1);
+	}
+
+	@Override
+	public synchronized OutputCommitter getOutputCommitter(TaskAttemptContext aContext) throws IOException {
+		if (xCommitter == null) {
+			xCommitter = new IncrementalCommitter(getOutputPath(aContext), aContext);
+		}
+		return xCommitter;
+	}
+
+	/**
+	 * Commits the job output into the staging directory as usual and then promotes it into the real output.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	static class IncrementalCommitter extends FileOutputCommitter {
+
+		IncrementalCommitter(Path aOutputPath, TaskAttemptContext aContext) throws IOException {
+			super(aOutputPath, aContext);
+		}
+
+		@Override
+		public void commitJob(JobContext aContext) throws IOException {
+			super.commitJob(aContext);
+			promote(aContext.getConfiguration());
+		}
+	}
+
+	/**
+	 * Replace the output of the changed units with the staged output and save the manifest of the processed inputs.
+	 * 
+	 * @param aConf the configuration of the job
+	 **/
+	static void promote(Configuration aConf) throws IOException {
+		Path outputDir = new Path(aConf.get(OUTPUT_KEY));
+		Path stagingDir = new Path(outputDir, STAGING_DIR);
+		FileSystem fs = outputDir.getFileSystem(aConf);
+		Mode mode = Mode.valueOf(aConf.get(MODE_KEY));
+		String[] replacedUnits = aConf.getStrings(REPLACED_KEY, new String[0]);
+
+		/*
+		 * Remove the output that was produced from the replaced units by the earlier runs.
+		 */
+		if (mode == Mode.BY_YEAR) {
+			for (String myUnit : replacedUnits) {
+				fs.delete(new Path(outputDir, myUnit), true);
+			}
+		} else {
+			FileStatus[] allYearDirs = fs.globStatus(new Path(outputDir, YEAR_PREFIX + "*"));
+			for (FileStatus myYearDir : (allYearDirs != null) ? allYearDirs : new FileStatus[0]) {
+				for (FileStatus myFile : fs.listStatus(myYearDir.getPath())) {
+					for (String myUnit : replacedUnits) {
+						if (isOutputOf(myFile.getPath().getName(), myUnit)) {
+							fs.delete(myFile.getPath(), false);
+						}
+					}
+				}
+				if (fs.listStatus(myYearDir.getPath()).length == 0) {
+					fs.delete(myYearDir.getPath(), true);
+				}
+			}
+		}
+
+		/*
+		 * Move the staged output into the year (or unit) directories of the real output.
+		 */
+		FileStatus[] allStagedDirs = fs.exists(stagingDir) ? fs.listStatus(stagingDir) : new FileStatus[0];
+		for (FileStatus myStagedDir : allStagedDirs) {
+			String stagedName = myStagedDir.getPath().getName();
+			if (!myStagedDir.isDirectory() || stagedName.startsWith("_") || stagedName.startsWith(".")) {
+				continue;
+			}
+			Path yearDir = new Path(outputDir, myStagedDir.getPath().getName());
+			fs.mkdirs(yearDir);
+			for (FileStatus myFile : fs.listStatus(myStagedDir.getPath())) {
+				Path target = new Path(yearDir, myFile.getPath().getName());
+				fs.delete(target, false);
+				if (!fs.rename(myFile.getPath(), target)) {
+					throw new IOException("Unable to move " + myFile.getPath() + " to " + target);
+				}
+			}
+			LOG.info("Refreshed " + yearDir);
+		}
+		fs.delete(stagingDir, true);
+
+		IngestManifest.parse(aConf.get(MANIFEST_KEY)).save(fs, outputDir);
+		fs.create(new Path(outputDir, SUCCESS_FILE), true).close();
+	}
+
+	/**
+	 * @return the base name of the output files of an input file (with its '%' and '/' escaped)
+	 **/
+	private static String baseNameOf(String aUnit) {
+		return aUnit.replace("%", "%25").replace("/", "%2F");
+	}
+
+	/**
+	 * @return true if the output file was written for the unit: exactly its base name followed by the part suffix
+	 *         (-m-NNNNN or -r-NNNNN) and the extension of the codec (if any)
+	 **/
+	private static boolean isOutputOf(String aFileName, String aUnit) {
+		String baseName = baseNameOf(aUnit);
+		return aFileName.startsWith(baseName) && PART_SUFFIX.matcher(aFileName.substring(baseName.length())).matches();
+	}
+
+	/**
+	 * @return the unit of replacement that an input file belongs to
+	 **/
+	private static String unitOf(String aRelativePath, Mode aMode) {
+		if (aMode == Mode.BY_YEAR) {
+			int endOfDir = aRelativePath.indexOf('/');
+			return (endOfDir < 0) ? aRelativePath : aRelativePath.substring(0, endOfDir);
+		}
+		return aRelativePath;
+	}
+}
@@ -0,0 +1,474 @@
+package edu.stthomas.gps.project;
+
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.LazyOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+/**
+ * Maintains the TF-IDF of the incident Description words incrementally. Rather than running the WordFrequency,
+ * WordCount and TF-IDF chain over every incident again when a new year of data arrives, the Descriptions are tokenized
+ * only once into a store of per-document term frequency vectors and per-year document frequencies, kept under one
+ * directory per year (year=YYYY) just like the AggregateStore:
+ * 
+ * <pre>
+ * 		<store_dir>/_MANIFEST			=	the input files that have already been tokenized
+ * 		<store_dir>/year=YYYY/vectors-m-NNNNN	=	CaseNbr@FileName -> AllWordCounts\tWord=WordCount\t...
+ * 		<store_dir>/year=YYYY/terms-r-NNNNN	=	Word -> DocumentsWithWord (and "" -> Documents)
+ * </pre>
+ * 
+ * The update job (IncrementalTFIDF <input_dir> <store_dir>) only tokenizes the new or changed years and replaces
+ * their directories. The map-only rescoring job (IncrementalTFIDF <store_dir> <output_dir> -rescore) then loads the
+ * (small) merged document frequencies into memory and rescores every stored vector, producing the same output as
+ * DescriptionTFIDF without reading any of the historical Descriptions again.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class IncrementalTFIDF extends Configured implements Tool, JobFactory {
+	private static final Logger LOG = Logger.getLogger(IncrementalTFIDF.class);
+
+	public static enum NEISS_DATA {
+		TOAL_RECORDS_PROCESSED, NUM_TERM_VECTORS, NUM_TERMS_SCORED
+	}
+
+	private static final String STORE_KEY = new String("neiss.tfidf.store");
+
+	private static final String VECTOR_FILE = new String("vectors");
+	private static final String TERM_FILE = new String("terms");
+	/*
+	 * The document frequency entry that holds the number of documents (words are never empty).
+	 */
+	private static final String DOCUMENTS_TERM = new String("");
+
+	private static final String TAB_DELIMITER = new String("\t");
+	private static final String EQUALS_DELIMITER = new String("=");
+
+	/*
+	 * Set when the store is already up to date and there was no job to be run.
+	 */
+	private boolean xUpToDate;
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class TermVectorMapper extends InstrumentedMapper<Text, Text, Text, Text> {
+
+		/*
+		 * Local Cache Variables for the <key,value> for reuse for each input record being processed.
+		 */
+		private Text xDocumentKey = new Text();
+		private Text xVectorValue = new Text();
+
+		private DescriptionTokenizer xTokenizer;
+		private BatchedCounters<DescriptionWordFrequency.NEISS_DATA> xWordCounters;
+		private MultipleOutputs<Text, Text> xVectorOutputs;
+		private String xTag;
+		private String xFileName;
+		private long xDocuments;
+		private Map<String, Long> xDocumentFrequencies = new HashMap<String, Long>();
+
+		/**
+		 * Tokenize the incident Description and write its term frequency vector into the store, while accumulating the
+		 * number of documents each word appears in for the whole task (an in-mapper combiner).
+		 * <p>
+		 * 
+		 * @param aKey a simple text key that represents the CaseNbr
+		 * @param aValue a tab delimited text string with the last field as the incident Description
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void map(Text aKey, Text aValue, Context aContext) throws IOException, InterruptedException {
+			aContext.getCounter(NEISS_DATA.TOAL_RECORDS_PROCESSED).increment(1);
+			xDocuments++;
+
+			/*
+			 * Count the words of the incident Description (in a consistent order so that the store is repeatable).
+			 */
+			List<String> allWords = xTokenizer.tokenize(xTokenizer.descriptionOf(aValue.toString()), xWordCounters);
+			if (allWords.isEmpty()) {
+				return;
+			}
+			Map<String, Integer> wordCounts = new TreeMap<String, Integer>();
+			for (String descriptionWord : allWords) {
+				Integer myCount = wordCounts.get(descriptionWord);
+				wordCounts.put(descriptionWord, (myCount == null) ? 1 : myCount + 1);
+			}
+
+			/*
+			 * Build up the Format of the Vector: "AllWordCounts\tWord=WordCount\tWord=WordCount..."
+			 */
+			StringBuilder vectorBuilder = new StringBuilder();
+			vectorBuilder.append(allWords.size());
+			for (Map.Entry<String, Integer> myEntry : wordCounts.entrySet()) {
+				vectorBuilder.append(TAB_DELIMITER);
+				vectorBuilder.append(myEntry.getKey());
+				vectorBuilder.append(EQUALS_DELIMITER);
+				vectorBuilder.append(myEntry.getValue());
+
+				Long myFrequency = xDocumentFrequencies.get(myEntry.getKey());
+				xDocumentFrequencies.put(myEntry.getKey(), (myFrequency == null) ? 1L : myFrequency + 1L);
+			}
+
+			// @formatter:off
+			/*
+			 * Write the vector into the store in the following format: 
+			 * 		[KEY(Text(CaseNbr@FileName))  VALUE(Text(<AllWordCounts \t Word=WordCount ...>))]
+			 */
+			// @formatter:on
+			xDocumentKey.set(aKey.toString() + "@" + xFileName);
+			xVectorValue.set(vectorBuilder.toString());
+			xVectorOutputs.write(xDocumentKey, xVectorValue, xTag + "/" + VECTOR_FILE);
+			aContext.getCounter(NEISS_DATA.NUM_TERM_VECTORS).increment(1);
+		}
+
+		/**
+		 * Setup the tokenizer and determine the year directory (unit of replacement) and the name of the input file
+		 * being tokenized by this task.
+		 * 
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void setup(Context aContext) throws IOException, InterruptedException {
+			xTokenizer = DescriptionTokenizer.fromConfiguration(aContext.getConfiguration());
+			xWordCounters = new BatchedCounters<DescriptionWordFrequency.NEISS_DATA>(
+					DescriptionWordFrequency.NEISS_DATA.class, aContext);
+			xVectorOutputs = new MultipleOutputs<Text, Text>(aContext);
+			Path inputFile = ((FileSplit) aContext.getInputSplit()).getPath();
+			xTag = IncrementalOutputFormat.unitOf(aContext.getConfiguration(), inputFile);
+			xFileName = inputFile.getName();
+		}
+
+		/**
+		 * Write the document frequencies (and the number of documents) accumulated by this task, and add its word
+		 * counts to its counters.
+		 * 
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void cleanup(Context aContext) throws IOException, InterruptedException {
+			// @formatter:off
+			/*
+			 * Write the output record in the following format: 
+			 * 		[KEY(Text(Tag\tDescription_Word))  VALUE(Text(DocumentsWithWord))]
+			 */
+			// @formatter:on
+			Text myKey = new Text();
+			Text myValue = new Text();
+			for (Map.Entry<String, Long> myEntry : xDocumentFrequencies.entrySet()) {
+				myKey.set(xTag + TAB_DELIMITER + myEntry.getKey());
+				myValue.set(String.valueOf(myEntry.getValue()));
+				aContext.write(myKey, myValue);
+			}
+			myKey.set(xTag + TAB_DELIMITER + DOCUMENTS_TERM);
+			myValue.set(String.valueOf(xDocuments));
+			aContext.write(myKey, myValue);
+			xVectorOutputs.close();
+			xWordCounters.flush();
+		}
+	}
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class DocumentFrequencyReducer extends InstrumentedReducer<Text, Text, Text, Text> {
+
+		/*
+		 * Local Cache Variables for the <key, value> for reuse for each output reduce record being processed.
+		 */
+		private Text xTermKey = new Text();
+		private Text xFrequencyValue = new Text();
+		private MultipleOutputs<Text, Text> xTermOutputs;
+
+		@Override
+		protected void setup(Context aContext) throws IOException, InterruptedException {
+			xTermOutputs = new MultipleOutputs<Text, Text>(aContext);
+		}
+
+		/**
+		 * Sum the number of documents of a year in which the word appears and write it into the year of the store.
+		 * 
+		 * @param aKey the year directory and the word separated by a tab
+		 * @param aValues an iterable array of partial document frequencies of the word
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void reduce(Text aKey, Iterable<Text> aValues, Context aContext) throws IOException,
+				InterruptedException {
+			long myFrequency = 0;
+			for (Text myValue : aValues) {
+				myFrequency += Long.parseLong(myValue.toString());
+			}
+
+			String taggedKey = aKey.toString();
+			int endOfTag = taggedKey.indexOf(TAB_DELIMITER);
+			xTermKey.set(taggedKey.substring(endOfTag + 1));
+			xFrequencyValue.set(String.valueOf(myFrequency));
+			xTermOutputs.write(xTermKey, xFrequencyValue, taggedKey.substring(0, endOfTag) + "/" + TERM_FILE);
+		}
+
+		@Override
+		protected void cleanup(Context aContext) throws IOException, InterruptedException {
+			xTermOutputs.close();
+		}
+	}
+
+	/**
+	 * Writes the store as SequenceFiles and promotes the replaced years once the job has been committed.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class TermStoreOutputFormat extends SequenceFileOutputFormat<Text, Text> {
+		private OutputCommitter xCommitter;
+
+		@Override
+		public synchronized OutputCommitter getOutputCommitter(TaskAttemptContext aContext) throws IOException {
+			if (xCommitter == null) {
+				xCommitter = new IncrementalOutputFormat.IncrementalCommitter(getOutputPath(aContext), aContext);
+			}
+			return xCommitter;
+		}
+	}
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class RescoreMapper extends InstrumentedMapper<Text, Text, Text, Text> {
+
+		/*
+		 * Local Cache Variables for the <key,value> for reuse for each input record being processed.
+		 */
+		private Text xTextKey = new Text();
+		private Text xTextValue = new Text();
+		private DecimalFormat xScoreFormat = new DecimalFormat(DescriptionTFIDF.SCORE_PATTERN);
+
+		private Map<String, Long> xDocumentFrequencies;
+		private long xTotalDocuments;
+
+		/**
+		 * Rescore every word of a stored term frequency vector against the merged document frequencies.
+		 * <p>
+		 * 
+		 * @param aKey the CaseNbr@FileName of the incident Description (document)
+		 * @param aValue the term frequency vector of the incident Description
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void map(Text aKey, Text aValue, Context aContext) throws IOException, InterruptedException {
+			String[] vectorVals = aValue.toString().split(TAB_DELIMITER);
+			String allWordCounts = vectorVals[0];
+			for (int i = 1; i < vectorVals.length; i++) {
+				int endOfWord = vectorVals[i].lastIndexOf(EQUALS_DELIMITER);
+				String descriptionWord = vectorVals[i].substring(0, endOfWord);
+
+				// @formatter:off
+				/*
+				 * Write the output record in the following format: 
+				 * 		[KEY(Text(<Description_Word = CaseNbr@FileName>))
+				 * 		 	VALUE(Text(<[ DocumentsWithWord/TotalDocuments WordCount/AllWordCounts TF-IDF ]>))]
+				 */
+				// @formatter:on
+				xTextKey.set(descriptionWord + EQUALS_DELIMITER + aKey.toString());
+				xTextValue.set(DescriptionTFIDF.formatScore(xScoreFormat, xDocumentFrequencies.get(descriptionWord),
+						xTotalDocuments, vectorVals[i].substring(endOfWord + 1), allWordCounts));
+				aContext.write(xTextKey, xTextValue);
+				aContext.getCounter(NEISS_DATA.NUM_TERMS_SCORED).increment(1);
+			}
+			aContext.getCounter(NEISS_DATA.TOAL_RECORDS_PROCESSED).increment(1);
+		}
+
+		/**
+		 * Load the document frequencies of every year within the store.
+		 * 
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void setup(Context aContext) throws IOException, InterruptedException {
+			Configuration myConfig = aContext.getConfiguration();
+			xDocumentFrequencies = readDocumentFrequencies(myConfig, new Path(myConfig.get(STORE_KEY)));
+			Long myDocuments = xDocumentFrequencies.remove(DOCUMENTS_TERM);
+			xTotalDocuments = (myDocuments == null) ? 0 : myDocuments;
+		}
+	}
+
+	/**
+	 * Read and merge the document frequencies of every year within the store.
+	 * 
+	 * @param aConf the configuration holding the file systems
+	 * @param aStoreDir the directory of the store
+	 * @return the number of documents each word appears in (along with the number of documents under "")
+	 **/
+	public static Map<String, Long> readDocumentFrequencies(Configuration aConf, Path aStoreDir) throws IOException {
+		Map<String, Long> allFrequencies = new HashMap<String, Long>();
+		FileSystem fs = aStoreDir.getFileSystem(aConf);
+		FileStatus[] allSegments = fs.globStatus(new Path(aStoreDir, "[^_.]*/" + TERM_FILE + "-*"));
+		Text segmentKey = new Text();
+		Text segmentValue = new Text();
+		for (FileStatus mySegment : (allSegments != null) ? allSegments : new FileStatus[0]) {
+			SequenceFile.Reader segmentRdr = new SequenceFile.Reader(aConf, SequenceFile.Reader.file(mySegment
+					.getPath()));
+			try {
+				while (segmentRdr.next(segmentKey, segmentValue)) {
+					Long myFrequency = allFrequencies.get(segmentKey.toString());
+					allFrequencies.put(segmentKey.toString(), Long.parseLong(segmentValue.toString())
+							+ ((myFrequency == null) ? 0L : myFrequency));
+				}
+			} finally {
+				segmentRdr.close();
+			}
+		}
+		return allFrequencies;
+	}
+
+	/**
+	 * Setup the environment so that we can either tokenize the new or changed years of the filtered NEISS data into
+	 * the store, or rescore the whole store as a mapper-only job.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public Job createJob(String[] aArguments) throws Exception {
+		final String usageText = "Usage: IncrementalTFIDF <input_dir> <store_dir> [-stopWords -caseSensitive]"
+				+ " [-normalize]\n"
+				+ "       IncrementalTFIDF <store_dir> <output_dir> -rescore";
+
+		xUpToDate = false;
+
+		if (aArguments.length < 2) {
+			LOG.info(usageText);
+			return null;
+		}
+
+		Job job = new Job(getConf());
+		boolean rescore = false;
+
+		/*
+		 * Process any additional arguments passed in...
+		 */
+		for (int i = 2; i < aArguments.length; i++) {
+			if ("-stopWords".equals(aArguments[i])) {
+				DescriptionTokenizer.addStopWords(job.getConfiguration());
+			} else if ("-caseSensitive".equals(aArguments[i])) {
+				job.getConfiguration().setBoolean("wordcount.case.sensitive", true);
+				LOG.info("Enabled case sensitivity while processing the incident Description words.");
+			} else if ("-normalize".equals(aArguments[i])) {
+				DescriptionTokenizer.addNormalizers(job.getConfiguration());
+			} else if ("-rescore".equals(aArguments[i])) {
+				rescore = true;
+			} else {
+				System.err.println("ERROR: Invalid argument : '" + aArguments[i] + "'");
+				LOG.info(usageText);
+				return null;
+			}
+		}
+
+		job.setJarByClass(IncrementalTFIDF.class);
+
+		/*
+		 * The rescoring job reads the term frequency vectors of every year and rescores them against the merged
+		 * document frequencies, which are loaded by each of the mappers.
+		 */
+		if (rescore) {
+			job.setJobName("Rescore TF-IDF from the Incident Description Term Store");
+			job.getConfiguration().set(STORE_KEY, aArguments[0]);
+			FileInputFormat.setInputPaths(job, new Path(aArguments[0], "[^_.]*/" + VECTOR_FILE + "-*"));
+			FileOutputFormat.setOutputPath(job, new Path(aArguments[1]));
+
+			job.setMapperClass(RescoreMapper.class);
+			job.setOutputKeyClass(Text.class);
+			job.setOutputValueClass(Text.class);
+			job.setInputFormatClass(SequenceFileInputFormat.class);
+			job.setOutputFormatClass(TextOutputFormat.class);
+			job.setNumReduceTasks(0);
+			CompressionSettings.configure(job, IncrementalTFIDF.class);
+			return job;
+		}
+
+		job.setJobName("Update the Incident Description Term Store");
+
+		job.setMapperClass(TermVectorMapper.class);
+		job.setReducerClass(DocumentFrequencyReducer.class);
+
+		job.setMapOutputKeyClass(Text.class);
+		job.setMapOutputValueClass(Text.class);
+
+		job.setOutputKeyClass(Text.class);
+		job.setOutputValueClass(Text.class);
+
+		job.setInputFormatClass(KeyValueTextInputFormat.class);
+
+		job.setNumReduceTasks(1);
+
+		/*
+		 * Only tokenize the new or changed years, replacing their directories within the store once the job commits.
+		 */
+		if (!IncrementalOutputFormat.configure(job, new Path(aArguments[0]), new Path(aArguments[1]),
+				IncrementalOutputFormat.Mode.BY_YEAR)) {
+			xUpToDate = true;
+			return null;
+		}
+		LazyOutputFormat.setOutputFormatClass(job, TermStoreOutputFormat.class);
+
+		CompressionSettings.configure(job, IncrementalTFIDF.class);
+
+		return job;
+	}
+
+	/**
+	 * Build the job from the arguments that were passed in and run it, waiting for it to be completed.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		Job job = createJob(aArguments);
+		if (job == null) {
+			return xUpToDate ? 0 : -1;
+		}
+
+		/*
+		 * Run the job and wait for it to be completed.
+		 */
+		boolean success = job.waitForCompletion(true);
+		CompressionSettings.report(job);
+		JobInstrumentation.report(job);
+
+		return success ? 0 : 1;
+	}
+
+	/**
+	 * The main method calls the ToolRunner.run method, which in turn calls an options parser that interprets Hadoop
+	 * command-line options and puts them into a Configuration object.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	public static void main(String[] aArguments) throws Exception {
+		int exitCode = ToolRunner.run(new Configuration(), new IncrementalTFIDF(), aArguments);
+		System.exit(exitCode);
+	}
+}
@@ -0,0 +1,214 @@
+package edu.stthomas.gps.project;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.util.StringUtils;
+
+/**
+ * A small manifest of the input files that have already been processed into an output directory, recording the name
+ * (relative to the input directory), the size and a checksum of each file. Comparing the manifest saved with the
+ * output against the current contents of the input directory tells which of the input files are new, changed or
+ * removed since the output was last refreshed.
+ * <p>
+ * 
+ * The manifest is stored as a simple tab delimited text file named _MANIFEST (hidden from the FileInputFormat<> of
+ * any downstream jobs) in the following format: 
+ * 
+ * <pre>
+ * 		RelativePath	\tSize	\tChecksum
+ * </pre>
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class IngestManifest {
+
+	public static final String MANIFEST_FILE = new String("_MANIFEST");
+	private static final String TAB_DELIMITER = new String("\t");
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/*
+	 * Map each relative path to its "size\tchecksum" description, sorted so the saved manifest is stable.
+	 */
+	private final Map<String, String> xEntries = new TreeMap<String, String>();
+
+	/**
+	 * Build the manifest of all of the (visible) files currently found under the input directory.
+	 * 
+	 * @param aFs the file system holding the input directory
+	 * @param aInputDir the input directory
+	 * @return the manifest describing the current input files
+	 **/
+	public static IngestManifest scan(FileSystem aFs, Path aInputDir) throws IOException {
+		IngestManifest manifest = new IngestManifest();
+		Path inputDir = aFs.makeQualified(aInputDir);
+		String rootPath = inputDir.toUri().getPath();
+		RemoteIterator<LocatedFileStatus> allFiles = aFs.listFiles(inputDir, true);
+		while (allFiles.hasNext()) {
+			LocatedFileStatus myFile = allFiles.next();
+			String relativePath = myFile.getPath().toUri().getPath().substring(rootPath.length() + 1);
+			if (!isHidden(relativePath)) {
+				manifest.xEntries.put(relativePath, myFile.getLen() + TAB_DELIMITER + checksum(aFs, myFile));
+			}
+		}
+		return manifest;
+	}
+
+	/**
+	 * Load the manifest saved within an output directory, which is empty when no manifest has been saved yet.
+	 * 
+	 * @param aFs the file system holding the output directory
+	 * @param aOutputDir the output directory
+	 * @return the manifest of the input files that were already processed
+	 **/
+	public static IngestManifest load(FileSystem aFs, Path aOutputDir) throws IOException {
+		IngestManifest manifest = new IngestManifest();
+		Path manifestFile = new Path(aOutputDir, MANIFEST_FILE);
+		if (aFs.exists(manifestFile)) {
+			BufferedReader bufferedRdr = new BufferedReader(new InputStreamReader(aFs.open(manifestFile), "UTF-8"));
+			try {
+				String lineOfData = bufferedRdr.readLine();
+				while (lineOfData != null) {
+					String[] lineTokens = lineOfData.split(TAB_DELIMITER, 2);
+					if (lineTokens.length == 2) {
+						manifest.xEntries.put(lineTokens[0], lineTokens[1]);
+					}
+					lineOfData = bufferedRdr.readLine();
+				}
+			} finally {
+				bufferedRdr.close();
+			}
+		}
+		return manifest;
+	}
+
+	/**
+	 * Rebuild a manifest from the text form produced by {@link #toString()}.
+	 * 
+	 * @param aText the text form of the manifest
+	 * @return the manifest
+	 **/
+	public static IngestManifest parse(String aText) {
+		IngestManifest manifest = new IngestManifest();
+		if (aText != null) {
+			for (String myLine : aText.split("\n")) {
+				String[] lineTokens = myLine.split(TAB_DELIMITER, 2);
+				if (lineTokens.length == 2) {
+					manifest.xEntries.put(lineTokens[0], lineTokens[1]);
+				}
+			}
+		}
+		return manifest;
+	}
+
+	/**
+	 * Save this manifest within an output directory, replacing any manifest that was saved before.
+	 * 
+	 * @param aFs the file system holding the output directory
+	 * @param aOutputDir the output directory
+	 **/
+	public void save(FileSystem aFs, Path aOutputDir) throws IOException {
+		PrintWriter writer = new PrintWriter(new OutputStreamWriter(aFs.create(new Path(aOutputDir, MANIFEST_FILE),
+				true), "UTF-8"));
+		try {
+			writer.print(toString());
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * @return the relative paths of all of the files within this manifest
+	 **/
+	public Iterable<String> getPaths() {
+		return xEntries.keySet();
+	}
+
+	/**
+	 * @param aPath the relative path of a file
+	 * @return true if this manifest holds the file with the same size and checksum as the other manifest
+	 **/
+	public boolean matches(String aPath, IngestManifest aOther) {
+		String description = xEntries.get(aPath);
+		return description != null && description.equals(aOther.xEntries.get(aPath));
+	}
+
+	/**
+	 * @param aPath the relative path of a file
+	 * @return true if this manifest holds the file
+	 **/
+	public boolean contains(String aPath) {
+		return xEntries.containsKey(aPath);
+	}
+
+	@Override
+	public boolean equals(Object aOther) {
+		return (aOther instanceof IngestManifest) && xEntries.equals(((IngestManifest) aOther).xEntries);
+	}
+
+	@Override
+	public int hashCode() {
+		return xEntries.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder textBuilder = new StringBuilder();
+		for (Map.Entry<String, String> myEntry : xEntries.entrySet()) {
+			textBuilder.append(myEntry.getKey()).append(TAB_DELIMITER).append(myEntry.getValue()).append('\n');
+		}
+		return textBuilder.toString();
+	}
+
+	/**
+	 * Files (or directories along the path) that start with an underscore or a period are ignored the same way the
+	 * FileInputFormat<> ignores them.
+	 **/
+	private static boolean isHidden(String aRelativePath) {
+		for (String myName : aRelativePath.split("/")) {
+			if (myName.startsWith("_") || myName.startsWith(".")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Use the checksum provided by the file system when it has one (HDFS), otherwise calculate a CRC32 checksum of the
+	 * contents of the file.
+	 **/
+	private static String checksum(FileSystem aFs, FileStatus aFile) throws IOException {
+		FileChecksum fileChecksum = aFs.getFileChecksum(aFile.getPath());
+		if (fileChecksum != null) {
+			return fileChecksum.getAlgorithmName() + ":" + StringUtils.byteToHexString(fileChecksum.getBytes());
+		}
+
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		InputStream inputStream = aFs.open(aFile.getPath());
+		try {
+			int count = inputStream.read(buffer);
+			while (count > 0) {
+				crc.update(buffer, 0, count);
+				count = inputStream.read(buffer);
+			}
+		} finally {
+			inputStream.close();
+		}
+		return "CRC32:" + Long.toHexString(crc.getValue());
+	}
+}
@@ -0,0 +1,50 @@
+package edu.stthomas.gps.project;
+
+import java.io.IOException;
+
+import org.apache.hadoop.mapreduce.Mapper;
+
+/**
+ * A Mapper that times its setup, the processing of its records (and a sample of the individual records) and its
+ * cleanup, publishing the measurements through the JobInstrumentation once the task has completed. The Mappers of the
+ * project extend this class instead of the Mapper so that every job is measured the same way.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class InstrumentedMapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT> extends Mapper<KEYIN, VALUEIN, KEYOUT, VALUEOUT> {
+
+	/**
+	 * Run the task the same way as the Mapper does, with the timing added around each of its steps.
+	 * 
+	 * @param aContext the context of the task
+	 **/
+	@Override
+	public void run(Context aContext) throws IOException, InterruptedException {
+		JobInstrumentation.TaskMetrics metrics = new JobInstrumentation.TaskMetrics(aContext,
+				JobInstrumentation.MAP_PHASE);
+		long startTime = System.nanoTime();
+		setup(aContext);
+		long processTime = System.nanoTime();
+		metrics.xSetupNanos = processTime - startTime;
+		try {
+			long records = 0;
+			while (aContext.nextKeyValue()) {
+				if (metrics.isSampled(records++)) {
+					long recordTime = System.nanoTime();
+					map(aContext.getCurrentKey(), aContext.getCurrentValue(), aContext);
+					metrics.xLatencies.record(System.nanoTime() - recordTime);
+				} else {
+					map(aContext.getCurrentKey(), aContext.getCurrentValue(), aContext);
+				}
+			}
+			metrics.xRecords = records;
+		} finally {
+			long cleanupTime = System.nanoTime();
+			metrics.xProcessNanos = cleanupTime - processTime;
+			cleanup(aContext);
+			metrics.xCleanupNanos = System.nanoTime() - cleanupTime;
+		}
+		metrics.publish(aContext);
+	}
+}
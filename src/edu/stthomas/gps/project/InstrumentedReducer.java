@@ -0,0 +1,59 @@
+package edu.stthomas.gps.project;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.apache.hadoop.mapreduce.ReduceContext;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.TaskType;
+
+/**
+ * A Reducer that times its setup, the reduction of its keys (and a sample of the individual keys) and its cleanup,
+ * publishing the measurements through the JobInstrumentation once the task has completed. When it is run as the
+ * combiner of a map task its measurements are published as those of the COMBINE phase instead of the REDUCE phase.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class InstrumentedReducer<KEYIN, VALUEIN, KEYOUT, VALUEOUT> extends Reducer<KEYIN, VALUEIN, KEYOUT, VALUEOUT> {
+
+	/**
+	 * Run the task the same way as the Reducer does, with the timing added around each of its steps.
+	 * 
+	 * @param aContext the context of the task
+	 **/
+	@Override
+	@SuppressWarnings("unchecked")
+	public void run(Context aContext) throws IOException, InterruptedException {
+		JobInstrumentation.TaskMetrics metrics = new JobInstrumentation.TaskMetrics(aContext, (aContext
+				.getTaskAttemptID().getTaskType() == TaskType.MAP) ? JobInstrumentation.COMBINE_PHASE
+				: JobInstrumentation.REDUCE_PHASE);
+		long startTime = System.nanoTime();
+		setup(aContext);
+		long processTime = System.nanoTime();
+		metrics.xSetupNanos = processTime - startTime;
+		try {
+			long records = 0;
+			while (aContext.nextKey()) {
+				if (metrics.isSampled(records++)) {
+					long recordTime = System.nanoTime();
+					reduce(aContext.getCurrentKey(), aContext.getValues(), aContext);
+					metrics.xLatencies.record(System.nanoTime() - recordTime);
+				} else {
+					reduce(aContext.getCurrentKey(), aContext.getValues(), aContext);
+				}
+				Iterator<VALUEIN> valueIter = aContext.getValues().iterator();
+				if (valueIter instanceof ReduceContext.ValueIterator) {
+					((ReduceContext.ValueIterator<VALUEIN>) valueIter).resetBackupStore();
+				}
+			}
+			metrics.xRecords = records;
+		} finally {
+			long cleanupTime = System.nanoTime();
+			metrics.xProcessNanos = cleanupTime - processTime;
+			cleanup(aContext);
+			metrics.xCleanupNanos = System.nanoTime() - cleanupTime;
+		}
+		metrics.publish(aContext);
+	}
+}
@@ -0,0 +1,22 @@
+package edu.stthomas.gps.project;
+
+import org.apache.hadoop.mapreduce.Job;
+
+/**
+ * Implemented by each of the NEISS drivers so that the fully configured job can be obtained without submitting it,
+ * which allows the job to be run by something other than the driver itself (e.g. an embedded execution engine or a
+ * pipeline of dependent jobs).
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public interface JobFactory {
+
+	/**
+	 * Setup the environment for the job from the arguments that were passed in, but do not submit it.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 * @return the fully configured job or null when the arguments were not valid
+	 **/
+	Job createJob(String[] aArguments) throws Exception;
+}
@@ -0,0 +1,305 @@
+package edu.stthomas.gps.project;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.CounterGroup;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormatCounter;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormatCounter;
+import org.apache.log4j.Logger;
+
+/**
+ * The instrumentation shared by every Mapper and Reducer of the project (through the InstrumentedMapper and the
+ * InstrumentedReducer) and the uniform summary of a job that is published once it has completed.
+ * 
+ * Within each task the setup, the processing of the records and the cleanup are timed, and the processing time of a
+ * sample of the records is kept within a LatencyHistogram. The CPU time of the thread running the task is measured
+ * as well, as the CPU_MILLISECONDS counter of the framework is not kept by the local job runner or the embedded
+ * engine (it does not include the sorting and spilling of the map output done by the framework outside of the
+ * task). These measurements become counters of the "NEISS Instrumentation" group when the task completes. Once the
+ * job has completed its own counters are logged and a single line JSON summary of all of its counters, its phases
+ * (with their latency percentiles) and the bytes that it read, shuffled and wrote is logged as well (and written into
+ * the summary directory when there is one):
+ * 
+ * <pre>
+ * 		neiss.instrument.sample		=	time 1 in n records (a power of two, default 16, or 0 to time none)
+ * 		neiss.instrument.summary.dir	=	directory to write the JSON summary of each job into (default none)
+ * </pre>
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class JobInstrumentation {
+	private static final Logger LOG = Logger.getLogger(JobInstrumentation.class);
+
+	public static final String GROUP = new String("NEISS Instrumentation");
+	public static final String SAMPLE_KEY = new String("neiss.instrument.sample");
+	public static final String SUMMARY_DIR_KEY = new String("neiss.instrument.summary.dir");
+
+	public static final String MAP_PHASE = new String("MAP");
+	public static final String COMBINE_PHASE = new String("COMBINE");
+	public static final String REDUCE_PHASE = new String("REDUCE");
+	private static final String[] PHASES = new String[] { MAP_PHASE, COMBINE_PHASE, REDUCE_PHASE };
+
+	private static final String TASKS = new String("_TASKS");
+	private static final String RECORDS = new String("_RECORDS");
+	private static final String SETUP_NANOS = new String("_SETUP_NANOS");
+	private static final String PROCESS_NANOS = new String("_PROCESS_NANOS");
+	private static final String CLEANUP_NANOS = new String("_CLEANUP_NANOS");
+	private static final String CPU_NANOS = new String("_CPU_NANOS");
+	private static final String PROJECT_GROUP_PREFIX = JobInstrumentation.class.getPackage().getName() + ".";
+	private static final String SUMMARY_PREFIX = new String("NEISS_SUMMARY ");
+	private static final double[] PERCENTILES = new double[] { 50.0, 90.0, 99.0, 99.9, 100.0 };
+	private static final String[] PERCENTILE_NAMES = new String[] { "p50", "p90", "p99", "p999", "max" };
+
+	/**
+	 * The measurements of a single task, which are filled in by the InstrumentedMapper or the InstrumentedReducer and
+	 * published as counters once the task has completed.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	static class TaskMetrics {
+		final String xPhase;
+		final long xSampleMask;
+		final LatencyHistogram xLatencies = new LatencyHistogram();
+		long xSetupNanos;
+		long xProcessNanos;
+		long xCleanupNanos;
+		long xRecords;
+		private final long xStartCpuNanos = threadCpuNanos();
+
+		TaskMetrics(TaskInputOutputContext<?, ?, ?, ?> aContext, String aPhase) {
+			xPhase = aPhase;
+			int sampleRate = aContext.getConfiguration().getInt(SAMPLE_KEY, 16);
+			xSampleMask = (sampleRate > 0) ? Long.highestOneBit(sampleRate * 2 - 1) - 1 : -1L;
+		}
+
+		/**
+		 * @return whether the processing of the current record (counted from zero) should be timed
+		 **/
+		boolean isSampled(long aRecord) {
+			return xSampleMask >= 0 && (aRecord & xSampleMask) == 0;
+		}
+
+		void publish(TaskInputOutputContext<?, ?, ?, ?> aContext) {
+			aContext.getCounter(GROUP, xPhase + TASKS).increment(1);
+			aContext.getCounter(GROUP, xPhase + RECORDS).increment(xRecords);
+			aContext.getCounter(GROUP, xPhase + SETUP_NANOS).increment(xSetupNanos);
+			aContext.getCounter(GROUP, xPhase + PROCESS_NANOS).increment(xProcessNanos);
+			aContext.getCounter(GROUP, xPhase + CLEANUP_NANOS).increment(xCleanupNanos);
+			aContext.getCounter(GROUP, xPhase + CPU_NANOS).increment(threadCpuNanos() - xStartCpuNanos);
+			xLatencies.publish(aContext, GROUP, xPhase);
+		}
+	}
+
+	/**
+	 * Static methods only.
+	 **/
+	private JobInstrumentation() {
+	}
+
+	/**
+	 * @return the CPU time used so far by the current thread, or zero when the JVM can not measure it
+	 **/
+	static long threadCpuNanos() {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (!threadBean.isCurrentThreadCpuTimeSupported() || !threadBean.isThreadCpuTimeEnabled()) {
+			return 0;
+		}
+		return threadBean.getCurrentThreadCpuTime();
+	}
+
+	/**
+	 * @param aCounters the counters of a completed job
+	 * @return the CPU time used by the threads of all of the instrumented tasks of the job together
+	 **/
+	public static long cpuNanosOf(Counters aCounters) {
+		long cpuNanos = 0;
+		CounterGroup instrumentation = aCounters.getGroup(GROUP);
+		for (String myPhase : PHASES) {
+			cpuNanos += instrumentation.findCounter(myPhase + CPU_NANOS).getValue();
+		}
+		return cpuNanos;
+	}
+
+	/**
+	 * Log the counters of a completed job and publish its JSON summary.
+	 * 
+	 * @param aJob the completed job
+	 **/
+	public static void report(Job aJob) throws IOException {
+		report(aJob.getConfiguration(), aJob.getCounters(), aJob.getConfiguration().get(CompressionSettings.STAGE_KEY,
+				aJob.getJobName()));
+	}
+
+	/**
+	 * Log the counters of the project (leaving out those of the framework) and publish the JSON summary of a completed
+	 * job.
+	 * 
+	 * @param aConf the configuration of the job
+	 * @param aCounters the counters of the job
+	 * @param aStage the name of the stage to report
+	 **/
+	public static void report(Configuration aConf, Counters aCounters, String aStage) throws IOException {
+		if (aCounters == null) {
+			return;
+		}
+		for (CounterGroup myGroup : aCounters) {
+			if (myGroup.getName().startsWith(PROJECT_GROUP_PREFIX)) {
+				for (Counter myCounter : myGroup) {
+					LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
+				}
+			}
+		}
+
+		String summary = summarize(aCounters, aStage);
+		LOG.info(SUMMARY_PREFIX + summary);
+
+		String summaryDir = aConf.get(SUMMARY_DIR_KEY);
+		if (summaryDir != null) {
+			Path summaryFile = new Path(summaryDir, aStage + "-" + System.currentTimeMillis() + ".json");
+			FileSystem fs = summaryFile.getFileSystem(aConf);
+			Writer summaryWriter = new OutputStreamWriter(fs.create(summaryFile, true), "UTF-8");
+			try {
+				summaryWriter.write(summary);
+				summaryWriter.write('\n');
+			} finally {
+				summaryWriter.close();
+			}
+		}
+	}
+
+	/**
+	 * Build the JSON summary of the counters of a completed job.
+	 * 
+	 * @param aCounters the counters of the job
+	 * @param aStage the name of the stage
+	 * @return the summary as a single line of JSON
+	 **/
+	public static String summarize(Counters aCounters, String aStage) {
+		StringBuilder jsonBuilder = new StringBuilder(4096);
+		jsonBuilder.append("{\"stage\":");
+		appendString(jsonBuilder, aStage);
+		jsonBuilder.append(",\"timestamp\":").append(System.currentTimeMillis());
+
+		/*
+		 * The bytes read, shuffled and written as counted by the framework.
+		 */
+		jsonBuilder.append(",\"bytes\":{\"input\":")
+				.append(aCounters.findCounter(FileInputFormatCounter.BYTES_READ).getValue());
+		jsonBuilder.append(",\"mapOutput\":").append(aCounters.findCounter(TaskCounter.MAP_OUTPUT_BYTES).getValue());
+		jsonBuilder.append(",\"shuffle\":")
+				.append(aCounters.findCounter(TaskCounter.MAP_OUTPUT_MATERIALIZED_BYTES).getValue());
+		jsonBuilder.append(",\"output\":")
+				.append(aCounters.findCounter(FileOutputFormatCounter.BYTES_WRITTEN).getValue());
+		jsonBuilder.append('}');
+
+		/*
+		 * The time spent within each phase by all of its tasks together, along with its latency percentiles.
+		 */
+		jsonBuilder.append(",\"phases\":{");
+		boolean first = true;
+		CounterGroup instrumentation = aCounters.getGroup(GROUP);
+		for (String myPhase : PHASES) {
+			long tasks = instrumentation.findCounter(myPhase + TASKS).getValue();
+			if (tasks == 0) {
+				continue;
+			}
+			long records = instrumentation.findCounter(myPhase + RECORDS).getValue();
+			long processNanos = instrumentation.findCounter(myPhase + PROCESS_NANOS).getValue();
+			if (!first) {
+				jsonBuilder.append(',');
+			}
+			first = false;
+			appendString(jsonBuilder, myPhase);
+			jsonBuilder.append(":{\"tasks\":").append(tasks);
+			jsonBuilder.append(",\"records\":").append(records);
+			jsonBuilder.append(",\"setupNanos\":").append(instrumentation.findCounter(myPhase + SETUP_NANOS).getValue());
+			jsonBuilder.append(",\"processNanos\":").append(processNanos);
+			jsonBuilder.append(",\"cleanupNanos\":")
+					.append(instrumentation.findCounter(myPhase + CLEANUP_NANOS).getValue());
+			jsonBuilder.append(",\"cpuNanos\":").append(instrumentation.findCounter(myPhase + CPU_NANOS).getValue());
+			jsonBuilder.append(",\"recordsPerSecond\":").append(
+					(processNanos > 0) ? (long) (records * 1000000000.0 / processNanos) : 0);
+
+			LatencyHistogram latencies = LatencyHistogram.fromCounters(aCounters, GROUP, myPhase);
+			jsonBuilder.append(",\"latencyNanos\":{\"samples\":").append(latencies.getCount());
+			for (int i = 0; i < PERCENTILES.length; i++) {
+				jsonBuilder.append(",\"").append(PERCENTILE_NAMES[i]).append("\":")
+						.append(latencies.percentile(PERCENTILES[i]));
+			}
+			jsonBuilder.append(",\"buckets\":{");
+			boolean firstBucket = true;
+			for (int i = 0; i < LatencyHistogram.getBucketTotal(); i++) {
+				if (latencies.getBucketCount(i) > 0) {
+					if (!firstBucket) {
+						jsonBuilder.append(',');
+					}
+					firstBucket = false;
+					jsonBuilder.append('"').append(LatencyHistogram.upperBoundOf(i)).append("\":")
+							.append(latencies.getBucketCount(i));
+				}
+			}
+			jsonBuilder.append("}}}");
+		}
+		jsonBuilder.append('}');
+
+		/*
+		 * Every counter of the job, grouped by the name of its group.
+		 */
+		jsonBuilder.append(",\"counters\":{");
+		first = true;
+		for (CounterGroup myGroup : aCounters) {
+			if (GROUP.equals(myGroup.getName())) {
+				continue;
+			}
+			if (!first) {
+				jsonBuilder.append(',');
+			}
+			first = false;
+			appendString(jsonBuilder, myGroup.getName());
+			jsonBuilder.append(":{");
+			boolean firstCounter = true;
+			for (Counter myCounter : myGroup) {
+				if (!firstCounter) {
+					jsonBuilder.append(',');
+				}
+				firstCounter = false;
+				appendString(jsonBuilder, myCounter.getName());
+				jsonBuilder.append(':').append(myCounter.getValue());
+			}
+			jsonBuilder.append('}');
+		}
+		jsonBuilder.append("}}");
+		return jsonBuilder.toString();
+	}
+
+	/**
+	 * Append a string as a quoted JSON string, escaping the characters that need it.
+	 **/
+	private static void appendString(StringBuilder aBuilder, String aValue) {
+		aBuilder.append('"');
+		for (int i = 0; i < aValue.length(); i++) {
+			char myChar = aValue.charAt(i);
+			if (myChar == '"' || myChar == '\\') {
+				aBuilder.append('\\').append(myChar);
+			} else if (myChar < ' ') {
+				aBuilder.append(String.format("\\u%04x", (int) myChar));
+			} else {
+				aBuilder.append(myChar);
+			}
+		}
+		aBuilder.append('"');
+	}
+}
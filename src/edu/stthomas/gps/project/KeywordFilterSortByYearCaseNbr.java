@@ -4,6 +4,7 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -13,15 +14,12 @@ import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.filecache.DistributedCache;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapreduce.Counter;
-import org.apache.hadoop.mapreduce.Counters;
 import org.apache.hadoop.mapreduce.Job;
-import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Partitioner;
-import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 import org.apache.hadoop.util.StringUtils;
 import org.apache.hadoop.util.Tool;
@@ -33,7 +31,7 @@ import org.apache.log4j.Logger;
  * @author Robert Driesch - UST Id# 101058113
  * @version 1.0, December 1, 2014
  **/
-public class KeywordFilterSortByYearCaseNbr extends Configured implements Tool {
+public class KeywordFilterSortByYearCaseNbr extends Configured implements Tool, JobFactory {
 	private static final Logger LOG = Logger.getLogger(DescriptionTFIDF.class);
 	private static final Integer TOTAL_NUMBER_YEARS_OF_DATA = new Integer(17); // 1997 - 2013
 
@@ -44,6 +42,11 @@ public class KeywordFilterSortByYearCaseNbr extends Configured implements Tool {
 		TOAL_RECORDS_PROCESSED, TOTAL_REJECTED_WORDS, NUM_REJECTED_ZEROWORDS, NUM_REJECTED_KEYWORDS, NUM_VALID_WORDS, NUM_REJECTED_DIGITS, NUM_REJECTED_NONCHARS
 	}
 
+	/*
+	 * Set when the incremental output is already up to date and there is no job that needs to be run.
+	 */
+	private boolean xUpToDate;
+
 	/**
 	 * @version 1.0, December 1, 2014
 	 **/
@@ -111,9 +114,10 @@ public class KeywordFilterSortByYearCaseNbr extends Configured implements Tool {
 	/**
 	 * @version 1.0, December 1, 2014
 	 **/
-	public static class KeywordFilterMapper extends Mapper<Text, Text, Text, Text> {
+	public static class KeywordFilterMapper extends InstrumentedMapper<Text, Text, Text, Text> {
 
 		private Set<String> keywordsToSelect = new HashSet<String>();
+		private BatchedCounters<NEISS_DATA> xCounters;
 
 		private static final String TAB_DELIMITER = new String("\t");
 		private static final Pattern WORD_BOUNDARY = Pattern.compile("\\s*\\b\\s*");
@@ -153,7 +157,7 @@ public class KeywordFilterSortByYearCaseNbr extends Configured implements Tool {
 			 * Convert the line of data, which is received as a Text object into a String object that we can manipulate
 			 * better.
 			 */
-			aContext.getCounter(NEISS_DATA.TOAL_RECORDS_PROCESSED).increment(1);
+			xCounters.increment(NEISS_DATA.TOAL_RECORDS_PROCESSED);
 			String myLine = aValue.toString();
 
 			/*
@@ -168,7 +172,7 @@ public class KeywordFilterSortByYearCaseNbr extends Configured implements Tool {
 				 */
 				if (descriptionWord.isEmpty() || !Character.isLetter(descriptionWord.charAt(0))
 						|| Character.isDigit(descriptionWord.charAt(0))) {
-					aContext.getCounter(NEISS_DATA.TOTAL_REJECTED_WORDS).increment(1);
+					xCounters.increment(NEISS_DATA.TOTAL_REJECTED_WORDS);
 					NEISS_DATA counterType;
 					if (descriptionWord.isEmpty())
 						counterType = NEISS_DATA.NUM_REJECTED_ZEROWORDS;
@@ -178,7 +182,7 @@ public class KeywordFilterSortByYearCaseNbr extends Configured implements Tool {
 						counterType = NEISS_DATA.NUM_REJECTED_DIGITS;
 					else
 						counterType = NEISS_DATA.NUM_REJECTED_KEYWORDS;
-					aContext.getCounter(counterType).increment(1);
+					xCounters.increment(counterType);
 					continue;
 				}
 
@@ -188,7 +192,7 @@ public class KeywordFilterSortByYearCaseNbr extends Configured implements Tool {
 				 */
 				if (keywordsToSelect.contains(descriptionWord)) {
 					aContext.write(aKey, aValue);
-					aContext.getCounter(NEISS_DATA.NUM_VALID_WORDS).increment(1);
+					xCounters.increment(NEISS_DATA.NUM_VALID_WORDS);
 					break;
 				}
 			}
@@ -207,12 +211,33 @@ public class KeywordFilterSortByYearCaseNbr extends Configured implements Tool {
 			// Get the local configuration from the context so that we can test for the different options and extract
 			// out any distributed files that maybe used.
 			Configuration myConfig = aContext.getConfiguration();
+			xCounters = new BatchedCounters<NEISS_DATA>(NEISS_DATA.class, aContext);
 
 			/*
-			 * Populate the local data structure for the distributed Keyword data.
+			 * Populate the local data structure for the distributed Keyword data. The file is located by its name as
+			 * other files may have been distributed along with it (e.g. when chained after the ProductMapper).
 			 */
 			Path[] allCachedFiles = DistributedCache.getLocalCacheFiles(myConfig);
-			parseDistributedFile(allCachedFiles[0], keywordsToSelect);
+			if (allCachedFiles != null) {
+				for (Path cachedFile : allCachedFiles) {
+					if (cachedFile.getName().equals(KEYWORD_DATA)) {
+						parseDistributedFile(cachedFile, keywordsToSelect);
+					}
+				}
+			}
+			if (keywordsToSelect.isEmpty()) {
+				throw new IOException("Unable to load Keyword data [" + KEYWORD_DATA + "].");
+			}
+		}
+
+		/**
+		 * Add the counts accumulated by this task to its counters.
+		 * 
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void cleanup(Context aContext) throws IOException, InterruptedException {
+			xCounters.flush();
 		}
 
 		/**
@@ -244,7 +269,25 @@ public class KeywordFilterSortByYearCaseNbr extends Configured implements Tool {
 	/**
 	 * @version 1.0, December 1, 2014
 	 **/
-	public static class SortByYearCaseNbrReducer extends Reducer<Text, Text, Text, Text> {
+	public static class SortByYearCaseNbrReducer extends InstrumentedReducer<Text, Text, Text, Text> {
+
+		/*
+		 * When refreshing the year partitioned output incrementally, every record is written into the directory of its
+		 * year.
+		 */
+		private MultipleOutputs<Text, Text> xYearOutputs;
+
+		/**
+		 * Open the year partitioned output when the output is being refreshed incrementally.
+		 * 
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void setup(Context aContext) throws IOException, InterruptedException {
+			if (IncrementalOutputFormat.isIncremental(aContext.getConfiguration())) {
+				xYearOutputs = new MultipleOutputs<Text, Text>(aContext);
+			}
+		}
 
 		/**
 		 * Read all of the <key, List(values)> pairs generated by the Mapper<> and separate the list of values back into
@@ -282,7 +325,24 @@ public class KeywordFilterSortByYearCaseNbr extends Configured implements Tool {
 				 * 										\tDescription))]
 				 */
 				// @formatter:on
-				aContext.write(aKey, myValue);
+				if (xYearOutputs != null) {
+					xYearOutputs.write(aKey, myValue, IncrementalOutputFormat.yearPath(
+							IncrementalOutputFormat.yearOf(myValue.toString()), "part"));
+				} else {
+					aContext.write(aKey, myValue);
+				}
+			}
+		}
+
+		/**
+		 * Close the year partitioned output files (if any) that were opened by this reducer.
+		 * 
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void cleanup(Context aContext) throws IOException, InterruptedException {
+			if (xYearOutputs != null) {
+				xYearOutputs.close();
 			}
 		}
 	}
@@ -294,10 +354,14 @@ public class KeywordFilterSortByYearCaseNbr extends Configured implements Tool {
 	 * @param aArguments the arguments that were passed into the program
 	 **/
 	@Override
-	public int run(String[] aArguments) throws Exception {
-		final String usageText = "Usage: KeywordFilterSortByYearCaseNbr <input_dir> <output_dir> -totalYears n";
+	public Job createJob(String[] aArguments) throws Exception {
+		final String usageText = "Usage: KeywordFilterSortByYearCaseNbr <input_dir> <output_dir> -totalYears n "
+				+ "[-incremental] [-partitionByCaseNbr n]";
+		xUpToDate = false;
 
 		Job job = new Job(getConf());
+		boolean incremental = false;
+		int caseNbrPartitions = 0;
 
 		/*
 		 * Process any arguments passed in...
@@ -312,10 +376,17 @@ public class KeywordFilterSortByYearCaseNbr extends Configured implements Tool {
 					i += 1; // Bump to the value
 					job.getConfiguration().setLong("wordcount.total.years", Integer.parseInt(aArguments[i]));
 					LOG.info("Added " + aArguments[i] + " total years of data files for use in partition calculations.");
+				} else if ("-incremental".equals(aArguments[i])) {
+					incremental = true;
+					LOG.info("Refreshing only the new or changed years of the output.");
+				} else if ("-partitionByCaseNbr".equals(aArguments[i])) {
+					i += 1; // Bump to the value
+					caseNbrPartitions = Integer.parseInt(aArguments[i]);
+					LOG.info("Partitioning the output by CaseNbr into " + aArguments[i] + " partitions.");
 				} else {
 					System.err.println("ERROR: Invalid argument : '" + aArguments[i] + "'");
 					LOG.info(usageText);
-					return -1;
+					return null;
 				}
 			}
 		}
@@ -335,32 +406,66 @@ public class KeywordFilterSortByYearCaseNbr extends Configured implements Tool {
 
 		job.setNumReduceTasks(job.getConfiguration().getInt("wordcount.total.years", TOTAL_NUMBER_YEARS_OF_DATA));
 
-		DistributedCache.addCacheFile(new URI(NAME_PREFIX + KEYWORD_DATA), job.getConfiguration());
-		LOG.info("Added file to the distributed cache: " + NAME_PREFIX + KEYWORD_DATA);
+		/*
+		 * Partition the output by the CaseNbr alone (instead of by year) so that it can be joined on the map side with
+		 * other output partitioned the same way (see IncidentTopTermsJoin).
+		 */
+		if (caseNbrPartitions > 0) {
+			if (incremental) {
+				System.err.println("ERROR: -partitionByCaseNbr cannot be combined with -incremental");
+				LOG.info(usageText);
+				return null;
+			}
+			job.setPartitionerClass(CaseNbrPartitioner.class);
+			job.setNumReduceTasks(caseNbrPartitions);
+		}
+
+		addCacheFiles(job.getConfiguration());
 
 		/*
-		 * Run the job and wait for it to be completed.
+		 * Only process the year=YYYY directories of the input that are new or changed and replace the matching
+		 * directories of the output when refreshing it incrementally.
 		 */
-		boolean success = job.waitForCompletion(true);
+		if (incremental
+				&& !IncrementalOutputFormat.configure(job, new Path(aArguments[0]), new Path(aArguments[1]),
+						IncrementalOutputFormat.Mode.BY_YEAR)) {
+			xUpToDate = true;
+			return null;
+		}
+
+		CompressionSettings.configure(job, KeywordFilterSortByYearCaseNbr.class);
+
+		return job;
+	}
+
+	/**
+	 * Add all of the files that the KeywordFilterMapper needs to have distributed to the configuration of a job.
+	 * 
+	 * @param aConf the configuration of the job that runs the KeywordFilterMapper
+	 **/
+	static void addCacheFiles(Configuration aConf) throws URISyntaxException {
+		DistributedCache.addCacheFile(new URI(NAME_PREFIX + KEYWORD_DATA), aConf);
+		LOG.info("Added file to the distributed cache: " + NAME_PREFIX + KEYWORD_DATA);
+	}
+
+	/**
+	 * Build the job from the arguments that were passed in and run it, waiting for it to be completed.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		Job job = createJob(aArguments);
+		if (job == null) {
+			return xUpToDate ? 0 : -1;
+		}
 
 		/*
-		 * Quickly output the local counters to the local output stream (console).
+		 * Run the job and wait for it to be completed.
 		 */
-		Counters allCounters = job.getCounters();
-		Counter myCounter = allCounters.findCounter(NEISS_DATA.TOAL_RECORDS_PROCESSED);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
-		myCounter = allCounters.findCounter(NEISS_DATA.NUM_VALID_WORDS);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
-		myCounter = allCounters.findCounter(NEISS_DATA.TOTAL_REJECTED_WORDS);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
-		myCounter = allCounters.findCounter(NEISS_DATA.NUM_REJECTED_ZEROWORDS);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
-		myCounter = allCounters.findCounter(NEISS_DATA.NUM_REJECTED_KEYWORDS);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
-		myCounter = allCounters.findCounter(NEISS_DATA.NUM_REJECTED_DIGITS);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
-		myCounter = allCounters.findCounter(NEISS_DATA.NUM_REJECTED_NONCHARS);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
+		boolean success = job.waitForCompletion(true);
+		CompressionSettings.report(job);
+		JobInstrumentation.report(job);
 
 		return success ? 0 : 1;
 	}
@@ -0,0 +1,135 @@
+package edu.stthomas.gps.project;
+
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.CounterGroup;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+/**
+ * A histogram of latencies (in nanoseconds) in the style of an HdrHistogram with a single significant binary digit:
+ * every power of two is split into two buckets of equal width, so a recorded value is known to within 50% of its
+ * bucket's lower bound while the whole range from 64 nanoseconds to a minute takes only 60 buckets.
+ * 
+ * The buckets are plain longs within the task and are published as counters (one per non-empty bucket) when the task
+ * completes, so the framework merges the histograms of all tasks without any further effort. Keeping the number of
+ * buckets small keeps the job well within the limit on the number of counters.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class LatencyHistogram {
+	private static final int MIN_EXPONENT = 6; // 64 nanoseconds
+	private static final int MAX_EXPONENT = 36; // About a minute
+	private static final int BUCKET_COUNT = (MAX_EXPONENT - MIN_EXPONENT) * 2;
+	private static final String BUCKET_PREFIX = new String("_LATENCY_");
+
+	private final long[] xBuckets = new long[BUCKET_COUNT];
+	private long xCount = 0;
+
+	/**
+	 * @return the bucket of the latency
+	 **/
+	static int bucketOf(long aNanos) {
+		if (aNanos < (1L << MIN_EXPONENT)) {
+			return 0;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(aNanos);
+		int bucket = (exponent - MIN_EXPONENT) * 2 + (int) ((aNanos >>> (exponent - 1)) & 1);
+		return Math.min(bucket, BUCKET_COUNT - 1);
+	}
+
+	/**
+	 * @return the highest latency that falls within the bucket
+	 **/
+	static long upperBoundOf(int aBucket) {
+		int exponent = MIN_EXPONENT + aBucket / 2;
+		long halfWidth = 1L << (exponent - 1);
+		return (1L << exponent) + (aBucket % 2 + 1) * halfWidth - 1;
+	}
+
+	/**
+	 * Record a single latency.
+	 * 
+	 * @param aNanos the latency in nanoseconds
+	 **/
+	public void record(long aNanos) {
+		xBuckets[bucketOf(aNanos)]++;
+		xCount++;
+	}
+
+	/**
+	 * @return the number of latencies recorded
+	 **/
+	public long getCount() {
+		return xCount;
+	}
+
+	/**
+	 * @return the number of latencies recorded within the bucket
+	 **/
+	long getBucketCount(int aBucket) {
+		return xBuckets[aBucket];
+	}
+
+	static int getBucketTotal() {
+		return BUCKET_COUNT;
+	}
+
+	/**
+	 * Estimate a percentile of the recorded latencies (as the upper bound of the bucket that holds it).
+	 * 
+	 * @param aPercentile the percentile (0 to 100) to estimate
+	 * @return the estimated latency in nanoseconds, or 0 when nothing was recorded
+	 **/
+	public long percentile(double aPercentile) {
+		if (xCount == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(xCount * aPercentile / 100.0));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += xBuckets[i];
+			if (seen >= rank) {
+				return upperBoundOf(i);
+			}
+		}
+		return upperBoundOf(BUCKET_COUNT - 1);
+	}
+
+	/**
+	 * Add the buckets of this histogram to the counters of the task, one counter per non-empty bucket.
+	 * 
+	 * @param aContext the context of the task
+	 * @param aGroup the counter group of the histogram
+	 * @param aPhase the phase (MAP, COMBINE or REDUCE) the latencies were recorded within
+	 **/
+	public void publish(TaskInputOutputContext<?, ?, ?, ?> aContext, String aGroup, String aPhase) {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			if (xBuckets[i] > 0) {
+				aContext.getCounter(aGroup, aPhase + BUCKET_PREFIX + (i < 10 ? "0" : "") + i).increment(xBuckets[i]);
+			}
+		}
+	}
+
+	/**
+	 * Rebuild the merged histogram of a phase from the counters of a completed job.
+	 * 
+	 * @param aCounters the counters of the job
+	 * @param aGroup the counter group of the histogram
+	 * @param aPhase the phase (MAP, COMBINE or REDUCE) the latencies were recorded within
+	 * @return the histogram (which is empty when the phase recorded nothing)
+	 **/
+	public static LatencyHistogram fromCounters(Counters aCounters, String aGroup, String aPhase) {
+		LatencyHistogram histogram = new LatencyHistogram();
+		String bucketPrefix = aPhase + BUCKET_PREFIX;
+		CounterGroup myGroup = aCounters.getGroup(aGroup);
+		for (Counter myCounter : myGroup) {
+			if (myCounter.getName().startsWith(bucketPrefix)) {
+				int bucket = Integer.parseInt(myCounter.getName().substring(bucketPrefix.length()));
+				histogram.xBuckets[bucket] += myCounter.getValue();
+				histogram.xCount += myCounter.getValue();
+			}
+		}
+		return histogram;
+	}
+}
@@ -0,0 +1,762 @@
+package edu.stthomas.gps.project;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.util.StringUtils;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+/**
+ * Generates synthetic raw NEISS data (the 19 column, tab delimited rows read by the ProductFilter) onto the local disk,
+ * so that the benchmarks and the scaling tests of the pipeline can be run without the real CPSC files. The values are
+ * drawn from the lookup tables of the project (Data/Local) with distributions that resemble the real data:
+ * <ul>
+ * <li>the product codes of Product.dat and the coded dimensions (Diagnosis, BodyPart, Disposition, ...) follow a Zipf
+ * distribution, with a fixed share of the incidents coded with the amusement product codes of the ProductFilter</li>
+ * <li>the volume of each year grows by a fixed rate from the first year to the last one, and the summer months are
+ * busier than the winter ones</li>
+ * <li>the Description is built from a Zipfian vocabulary of the stop words followed by the words of the lookup tables
+ * (including Keywords.dat), and the amusement incidents mention one of the keywords at a fixed rate</li>
+ * <li>a configurable share of the rows is malformed in one of the ways that the jobs are expected to tolerate</li>
+ * </ul>
+ * The rows of each year are written into one or more files (NEISS<year>-<part>.tsv) by a pool of threads. Every file is
+ * generated from its own seed derived from the -seed, the year and the part, so the same arguments always generate the
+ * same data no matter how many -threads are used:
+ * 
+ * <pre>
+ * 		NEISSDataGenerator /data/NEISS -size 4g -threads 8 -seed 736
+ * </pre>
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class NEISSDataGenerator extends Configured implements Tool {
+	private static final Logger LOG = Logger.getLogger(NEISSDataGenerator.class);
+
+	private static final String TAB_DELIMITER = new String("\t");
+	private static final String SPACE_DELIMITER = new String(" ");
+	private static final String LOOKUP_DELIMITER = new String("\\s+");
+	private static final String FILE_PREFIX = new String("NEISS");
+	private static final String FILE_SUFFIX = new String(".tsv");
+
+	private static final String PRODUCT_DATA = new String("Product.dat");
+	private static final String GENDER_DATA = new String("Gender.dat");
+	private static final String RACE_DATA = new String("Race.dat");
+	private static final String DIAGNOSIS_DATA = new String("Diagnosis.dat");
+	private static final String BODY_PART_DATA = new String("BodyPart.dat");
+	private static final String DISPOSITION_DATA = new String("Disposition.dat");
+	private static final String LOCATION_DATA = new String("Location.dat");
+	private static final String FIRE_DATA = new String("Fire.dat");
+	private static final String KEYWORD_DATA = new String("Keywords.dat");
+	private static final String STOP_WORD_DATA = new String("StopWords.dat");
+
+	/*
+	 * The product codes that the ProductFilter keeps (see ProductMapper.AMUSEMENT_ATTRACTION_CODES).
+	 */
+	private static final int[] AMUSEMENT_ATTRACTION_CODES = new int[] { 1200, 1242, 1293, 3219, 3293, 3294, 3295 };
+
+	private static final int RACE_OTHER = 3;
+	private static final int DIAGNOSIS_OTHER = 71;
+	private static final int INFANT_AGE_OFFSET = 200;
+	private static final String[] ALL_STRATA = new String[] { "C", "S", "M", "L", "V" };
+	private static final double[] ALL_STRATUM_WEIGHTS = new double[] { 4.8, 80.0, 70.0, 75.0, 16.0 };
+	private static final String[] ALL_OTHER_RACES = new String[] { "HISPANIC", "ASIAN", "MULTIRACIAL", "NS" };
+	private static final String[] ALL_OTHER_DIAGNOSES = new String[] { "PAIN", "SWELLING", "REDNESS", "NUMBNESS" };
+	private static final double[] ALL_MONTH_WEIGHTS = new double[] { 0.7, 0.7, 0.9, 1.0, 1.2, 1.4, 1.5, 1.4, 1.1, 1.0,
+			0.8, 0.7 };
+	private static final int[] ALL_MONTH_DAYS = new int[] { 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+
+	/*
+	 * The CaseNbr is the two digit year followed by a seven digit sequence number within the year (9 digits in all).
+	 */
+	private static final int MAX_INCIDENTS_PER_YEAR = 10000000;
+
+	/*
+	 * The Description fields of the real data hold up to about 70 characters each.
+	 */
+	private static final int DESCRIPTION_FIELD_SIZE = 70;
+	private static final int WRITE_BUFFER_SIZE = 1 << 20;
+	private static final int SAMPLE_ROWS = 2000;
+
+	/*
+	 * Settings of the distributions (with their defaults).
+	 */
+	private double xAmusementRate = 0.05;
+	private double xKeywordRate = 0.6;
+	private double xMalformedRate = 0.001;
+	private double xYearGrowth = 0.06;
+	private double xZipfExponent = 1.07;
+
+	/*
+	 * The distributions built from the lookup tables (which are only read once they are built, so one generator can
+	 * be shared by all of the threads).
+	 */
+	private int[] xProductCodes;
+	private int[] xGenderCodes;
+	private int[] xRaceCodes;
+	private int[] xDiagnosisCodes;
+	private int[] xBodyPartCodes;
+	private int[] xDispositionCodes;
+	private int[] xLocationCodes;
+	private int[] xFireCodes;
+	private String[] xKeywords;
+	private String[] xVocabulary;
+	private ZipfDistribution xProductDistribution;
+	private ZipfDistribution xCodeDistribution;
+	private ZipfDistribution xWordDistribution;
+
+	/**
+	 * Draws the ranks 0..n-1 with the probability of rank k proportional to 1/(k+1)^s.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	private static class ZipfDistribution {
+		private final double[] xCumulative;
+
+		ZipfDistribution(int aSize, double aExponent) {
+			xCumulative = new double[aSize];
+			double total = 0.0;
+			for (int k = 0; k < aSize; k++) {
+				total += 1.0 / Math.pow(k + 1, aExponent);
+				xCumulative[k] = total;
+			}
+			for (int k = 0; k < aSize; k++) {
+				xCumulative[k] /= total;
+			}
+		}
+
+		/**
+		 * Draw a rank, scaled down onto the first aLimit ranks when the table being drawn from is smaller.
+		 **/
+		int sample(Random aRandom, int aLimit) {
+			int position = Arrays.binarySearch(xCumulative, aRandom.nextDouble());
+			int rank = (position >= 0) ? position : Math.min(-position - 1, xCumulative.length - 1);
+			return (aLimit >= xCumulative.length) ? rank : (int) ((long) rank * aLimit / xCumulative.length);
+		}
+	}
+
+	/**
+	 * Writes the rows of one part of one year into its own file.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	private class PartWriter implements Callable<Long> {
+		private final File xFile;
+		private final int xYear;
+		private final int xFirstCaseIndex;
+		private final int xRowCount;
+		private final long xSeed;
+
+		PartWriter(File aFile, int aYear, int aFirstCaseIndex, int aRowCount, long aSeed) {
+			xFile = aFile;
+			xYear = aYear;
+			xFirstCaseIndex = aFirstCaseIndex;
+			xRowCount = aRowCount;
+			xSeed = aSeed;
+		}
+
+		@Override
+		public Long call() throws IOException {
+			Random random = new Random(xSeed);
+			StringBuilder rowBuilder = new StringBuilder(512);
+			long byteCount = 0;
+			Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(xFile), "UTF-8"),
+					WRITE_BUFFER_SIZE);
+			try {
+				for (int i = 0; i < xRowCount; i++) {
+					rowBuilder.setLength(0);
+					appendIncident(rowBuilder, random, xYear, xFirstCaseIndex + i);
+					rowBuilder.append('\n');
+					writer.append(rowBuilder);
+					byteCount += rowBuilder.length();
+				}
+			} finally {
+				writer.close();
+			}
+			return byteCount;
+		}
+	}
+
+	/**
+	 * Build a generator from the lookup tables within a local directory.
+	 * 
+	 * @param aLookupDir the directory that holds the .dat files (e.g. Data/Local)
+	 * @return the generator
+	 **/
+	public static NEISSDataGenerator fromDirectory(File aLookupDir) throws IOException {
+		NEISSDataGenerator generator = new NEISSDataGenerator();
+		generator.loadTables(aLookupDir);
+		return generator;
+	}
+
+	/**
+	 * @param aRate the share of the incidents that are coded with one of the amusement product codes
+	 **/
+	public void setAmusementRate(double aRate) {
+		xAmusementRate = aRate;
+	}
+
+	/**
+	 * @param aRate the share of the amusement incidents whose Description mentions one of the keywords
+	 **/
+	public void setKeywordRate(double aRate) {
+		xKeywordRate = aRate;
+	}
+
+	/**
+	 * @param aRate the share of the rows that are malformed
+	 **/
+	public void setMalformedRate(double aRate) {
+		xMalformedRate = aRate;
+	}
+
+	/**
+	 * @param aGrowth the growth of the volume of incidents from one year to the next (e.g. 0.06 for 6%)
+	 **/
+	public void setYearGrowth(double aGrowth) {
+		xYearGrowth = aGrowth;
+	}
+
+	/**
+	 * @param aExponent the exponent of the Zipf distributions of the products and of the Description words
+	 **/
+	public void setZipfExponent(double aExponent) {
+		xZipfExponent = aExponent;
+		if (xVocabulary != null) {
+			buildDistributions();
+		}
+	}
+
+	/**
+	 * Append a raw NEISS row (without the line terminator) to the builder.
+	 * 
+	 * @param aRow the builder to append the row to
+	 * @param aRandom the source of the random values
+	 * @param aYear the year of the TreatmentDate
+	 * @param aCaseIndex the sequence number of the incident within the year (which makes its CaseNbr unique)
+	 **/
+	public void appendIncident(StringBuilder aRow, Random aRandom, int aYear, int aCaseIndex) {
+		boolean malformed = aRandom.nextDouble() < xMalformedRate;
+		int malformedKind = malformed ? aRandom.nextInt(5) : -1;
+		if (malformedKind == 0) {
+			aRow.append("*** CORRUPTED RECORD ").append(aCaseIndex).append(" ***");
+			return;
+		}
+
+		/*
+		 * CaseNbr, TreatmentDate (M/D/YYYY), Hospital (PSU), Weight and Stratum.
+		 */
+		int month = pickMonth(aRandom);
+		int stratum = aRandom.nextInt(ALL_STRATA.length);
+		aRow.append((aYear % 100) * MAX_INCIDENTS_PER_YEAR + aCaseIndex);
+		aRow.append(TAB_DELIMITER).append(month + 1).append('/').append(1 + aRandom.nextInt(ALL_MONTH_DAYS[month]))
+				.append('/').append(aYear);
+		aRow.append(TAB_DELIMITER).append(1 + aRandom.nextInt(100));
+		aRow.append(TAB_DELIMITER);
+		if (malformedKind == 1) {
+			aRow.append("N/A");
+		} else {
+			appendWeight(aRow, ALL_STRATUM_WEIGHTS[stratum] * (0.8 + 0.4 * aRandom.nextDouble()));
+		}
+		aRow.append(TAB_DELIMITER).append(ALL_STRATA[stratum]);
+
+		/*
+		 * Age (with the infants coded as 200 + months), Gender, Race and RaceOther.
+		 */
+		int age = pickAge(aRandom);
+		int gender = pickCode(aRandom, xGenderCodes);
+		int race = pickCode(aRandom, xRaceCodes);
+		aRow.append(TAB_DELIMITER).append(age);
+		aRow.append(TAB_DELIMITER).append((malformedKind == 2) ? "M" : String.valueOf(gender));
+		aRow.append(TAB_DELIMITER).append(race);
+		aRow.append(TAB_DELIMITER).append((race == RACE_OTHER) ? pick(aRandom, ALL_OTHER_RACES) : "");
+
+		/*
+		 * Diagnosis, DiagnosisOther, BodyPart, Disposition, Location and FireDept.
+		 */
+		int diagnosis = pickCode(aRandom, xDiagnosisCodes);
+		aRow.append(TAB_DELIMITER).append(diagnosis);
+		aRow.append(TAB_DELIMITER).append((diagnosis == DIAGNOSIS_OTHER) ? pick(aRandom, ALL_OTHER_DIAGNOSES) : "");
+		aRow.append(TAB_DELIMITER).append(pickCode(aRandom, xBodyPartCodes));
+		aRow.append(TAB_DELIMITER).append(pickCode(aRandom, xDispositionCodes));
+		aRow.append(TAB_DELIMITER).append(pickCode(aRandom, xLocationCodes));
+		aRow.append(TAB_DELIMITER).append(pickCode(aRandom, xFireCodes));
+
+		/*
+		 * Product1 and Product2 (most of the incidents only involve a single product).
+		 */
+		boolean amusement = aRandom.nextDouble() < xAmusementRate;
+		int firstProduct = amusement ? AMUSEMENT_ATTRACTION_CODES[aRandom.nextInt(AMUSEMENT_ATTRACTION_CODES.length)]
+				: xProductCodes[xProductDistribution.sample(aRandom, xProductCodes.length)];
+		int secondProduct = (aRandom.nextInt(5) == 0) ? xProductCodes[xProductDistribution.sample(aRandom,
+				xProductCodes.length)] : 0;
+		aRow.append(TAB_DELIMITER).append(firstProduct);
+		aRow.append(TAB_DELIMITER).append(secondProduct);
+		if (malformedKind == 3) {
+			return; // Truncated after the products, so the row does not match the schema.
+		}
+
+		/*
+		 * Description1 and Description2, which start with the age and gender of the patient like the real data.
+		 */
+		int descriptionStart = aRow.length() + TAB_DELIMITER.length();
+		aRow.append(TAB_DELIMITER);
+		if (age > INFANT_AGE_OFFSET) {
+			aRow.append(age - INFANT_AGE_OFFSET).append("MO");
+		} else {
+			aRow.append(age).append("YO");
+		}
+		aRow.append((gender == 2) ? 'F' : 'M');
+		int wordCount = 4 + aRandom.nextInt(12) + aRandom.nextInt(12);
+		int keywordPosition = (amusement && aRandom.nextDouble() < xKeywordRate) ? aRandom.nextInt(wordCount) : -1;
+		for (int w = 0; w < wordCount; w++) {
+			aRow.append(SPACE_DELIMITER);
+			aRow.append((w == keywordPosition) ? pick(aRandom, xKeywords) : xVocabulary[xWordDistribution.sample(
+					aRandom, xVocabulary.length)]);
+		}
+
+		/*
+		 * Move the rest of a long Description into the Description2 field at a word boundary.
+		 */
+		aRow.append(TAB_DELIMITER);
+		int descriptionEnd = aRow.length() - TAB_DELIMITER.length();
+		if (descriptionEnd - descriptionStart > DESCRIPTION_FIELD_SIZE) {
+			int split = aRow.lastIndexOf(SPACE_DELIMITER, descriptionStart + DESCRIPTION_FIELD_SIZE);
+			if (split > descriptionStart) {
+				aRow.setCharAt(split, '\t');
+				aRow.setLength(aRow.length() - TAB_DELIMITER.length());
+			}
+		}
+		if (malformedKind == 4) {
+			aRow.append(TAB_DELIMITER).append("EXTRA").append(TAB_DELIMITER).append("COLUMNS");
+		}
+	}
+
+	/**
+	 * Determine how many rows of each year make up the requested total, with the volume growing from year to year.
+	 * 
+	 * @param aTotalRows the total number of rows
+	 * @param aFirstYear the first year of the data
+	 * @param aLastYear the last year of the data
+	 * @return the number of rows of each year (starting with the first year)
+	 **/
+	public int[] rowsPerYear(long aTotalRows, int aFirstYear, int aLastYear) {
+		int[] allRows = new int[aLastYear - aFirstYear + 1];
+		double[] allShares = new double[allRows.length];
+		double totalShare = 0.0;
+		for (int y = 0; y < allRows.length; y++) {
+			allShares[y] = Math.pow(1.0 + xYearGrowth, y);
+			totalShare += allShares[y];
+		}
+		long assignedRows = 0;
+		for (int y = 0; y < allRows.length; y++) {
+			long myRows = (y == allRows.length - 1) ? aTotalRows - assignedRows : Math.round(aTotalRows
+					* allShares[y] / totalShare);
+			if (myRows > MAX_INCIDENTS_PER_YEAR) {
+				throw new IllegalArgumentException("Unable to generate more than " + MAX_INCIDENTS_PER_YEAR
+						+ " incidents for the year " + (aFirstYear + y));
+			}
+			allRows[y] = (int) myRows;
+			assignedRows += myRows;
+		}
+		return allRows;
+	}
+
+	/**
+	 * Estimate the average size of a row (in bytes, with its line terminator) from a sample of rows.
+	 **/
+	public double averageRowSize(long aSeed) {
+		Random random = new Random(aSeed);
+		StringBuilder rowBuilder = new StringBuilder(512);
+		long totalSize = 0;
+		for (int i = 0; i < SAMPLE_ROWS; i++) {
+			rowBuilder.setLength(0);
+			appendIncident(rowBuilder, random, 2013, i);
+			totalSize += rowBuilder.length() + 1;
+		}
+		return (double) totalSize / SAMPLE_ROWS;
+	}
+
+	/**
+	 * Derive the seed of one part of one year from the seed of the whole data set.
+	 **/
+	public static long partSeed(long aSeed, int aYear, int aPart) {
+		long mixed = aSeed ^ (aYear * 0x9E3779B97F4A7C15L) ^ (aPart * 0xC2B2AE3D27D4EB4FL);
+		mixed = (mixed ^ (mixed >>> 33)) * 0xFF51AFD7ED558CCDL;
+		return mixed ^ (mixed >>> 33);
+	}
+
+	/*
+	 * Append the Weight with four decimals without going through Double.toString(), which would otherwise be one of the
+	 * most expensive parts of generating a row.
+	 */
+	private static void appendWeight(StringBuilder aRow, double aWeight) {
+		long scaledWeight = Math.round(aWeight * 10000);
+		long fraction = scaledWeight % 10000;
+		aRow.append(scaledWeight / 10000).append('.');
+		for (long digit = 1000; digit > fraction && digit > 1; digit /= 10) {
+			aRow.append('0');
+		}
+		aRow.append(fraction);
+	}
+
+	private int pickMonth(Random aRandom) {
+		double total = 0.0;
+		for (double myWeight : ALL_MONTH_WEIGHTS) {
+			total += myWeight;
+		}
+		double target = aRandom.nextDouble() * total;
+		for (int m = 0; m < ALL_MONTH_WEIGHTS.length; m++) {
+			target -= ALL_MONTH_WEIGHTS[m];
+			if (target < 0.0) {
+				return m;
+			}
+		}
+		return ALL_MONTH_WEIGHTS.length - 1;
+	}
+
+	/*
+	 * Children and young adults make up most of the incidents, with the infants coded in months.
+	 */
+	private static int pickAge(Random aRandom) {
+		int draw = aRandom.nextInt(100);
+		if (draw < 5) {
+			return INFANT_AGE_OFFSET + 1 + aRandom.nextInt(23);
+		} else if (draw < 45) {
+			return 2 + aRandom.nextInt(13);
+		} else if (draw < 75) {
+			return 15 + aRandom.nextInt(30);
+		} else if (draw < 99) {
+			return 45 + aRandom.nextInt(50);
+		}
+		return 0;
+	}
+
+	private int pickCode(Random aRandom, int[] aCodes) {
+		return aCodes[xCodeDistribution.sample(aRandom, aCodes.length)];
+	}
+
+	private static String pick(Random aRandom, String[] aValues) {
+		return aValues[aRandom.nextInt(aValues.length)];
+	}
+
+	/**
+	 * Read all of the lookup tables and build the distributions from them.
+	 **/
+	private void loadTables(File aLookupDir) throws IOException {
+		xProductCodes = readCodes(new File(aLookupDir, PRODUCT_DATA));
+		xGenderCodes = readCodes(new File(aLookupDir, GENDER_DATA));
+		xRaceCodes = readCodes(new File(aLookupDir, RACE_DATA));
+		xDiagnosisCodes = readCodes(new File(aLookupDir, DIAGNOSIS_DATA));
+		xBodyPartCodes = readCodes(new File(aLookupDir, BODY_PART_DATA));
+		xDispositionCodes = readCodes(new File(aLookupDir, DISPOSITION_DATA));
+		xLocationCodes = readCodes(new File(aLookupDir, LOCATION_DATA));
+		xFireCodes = readCodes(new File(aLookupDir, FIRE_DATA));
+
+		/*
+		 * The products and the coded values are ranked in a fixed shuffled order, except that the most common codes
+		 * of the small tables (listed first, e.g. the MALE and FEMALE genders) keep their place near the top.
+		 */
+		Random ranking = new Random(736L);
+		shuffle(xProductCodes, ranking);
+		moveKnownFirst(xGenderCodes, 1, 2);
+		moveKnownFirst(xRaceCodes, 1, 2);
+		moveKnownFirst(xDispositionCodes, 1);
+		moveKnownFirst(xLocationCodes, 1, 9, 0);
+		moveKnownFirst(xFireCodes, 0);
+		shuffle(xDiagnosisCodes, ranking);
+		shuffle(xBodyPartCodes, ranking);
+
+		/*
+		 * The vocabulary starts with the stop words (the most common words of any text) followed by the words of the
+		 * descriptions within the lookup tables, ranked in a fixed shuffled order.
+		 */
+		List<String> allKeywords = readWords(new File(aLookupDir, KEYWORD_DATA), false);
+		xKeywords = allKeywords.toArray(new String[allKeywords.size()]);
+		List<String> allStopWords = readWords(new File(aLookupDir, STOP_WORD_DATA), false);
+		Collections.shuffle(allStopWords, ranking);
+		Set<String> allDomainWords = new LinkedHashSet<String>();
+		for (String myTable : new String[] { PRODUCT_DATA, DIAGNOSIS_DATA, BODY_PART_DATA, DISPOSITION_DATA,
+				LOCATION_DATA }) {
+			allDomainWords.addAll(readWords(new File(aLookupDir, myTable), true));
+		}
+		allDomainWords.addAll(allKeywords);
+		allDomainWords.removeAll(allStopWords);
+		List<String> allRankedWords = new ArrayList<String>(allDomainWords);
+		Collections.shuffle(allRankedWords, ranking);
+		allRankedWords.addAll(0, allStopWords);
+		xVocabulary = allRankedWords.toArray(new String[allRankedWords.size()]);
+
+		buildDistributions();
+	}
+
+	private void buildDistributions() {
+		xProductDistribution = new ZipfDistribution(xProductCodes.length, xZipfExponent);
+		xWordDistribution = new ZipfDistribution(xVocabulary.length, xZipfExponent);
+		xCodeDistribution = new ZipfDistribution(64, 0.8);
+	}
+
+	/**
+	 * Read the codes of a lookup table (the first field of each line).
+	 **/
+	private static int[] readCodes(File aFile) throws IOException {
+		List<Integer> allCodes = new ArrayList<Integer>();
+		BufferedReader bufferedRdr = new BufferedReader(new FileReader(aFile));
+		try {
+			String line;
+			while ((line = bufferedRdr.readLine()) != null) {
+				String[] lookupFields = line.trim().split(LOOKUP_DELIMITER, 2);
+				if (!lookupFields[0].isEmpty()) {
+					allCodes.add(Integer.valueOf(lookupFields[0]));
+				}
+			}
+		} finally {
+			bufferedRdr.close();
+		}
+		if (allCodes.isEmpty()) {
+			throw new IOException("Unable to load the codes of " + aFile);
+		}
+		int[] codes = new int[allCodes.size()];
+		for (int i = 0; i < codes.length; i++) {
+			codes[i] = allCodes.get(i);
+		}
+		return codes;
+	}
+
+	/**
+	 * Read the (upper cased) words of a word list, or of the descriptions of a lookup table.
+	 **/
+	private static List<String> readWords(File aFile, boolean aSkipCode) throws IOException {
+		List<String> allWords = new ArrayList<String>();
+		BufferedReader bufferedRdr = new BufferedReader(new FileReader(aFile));
+		try {
+			String line;
+			while ((line = bufferedRdr.readLine()) != null) {
+				String[] lineWords = line.trim().toUpperCase().split("[^A-Z0-9]+");
+				for (int i = aSkipCode ? 1 : 0; i < lineWords.length; i++) {
+					if (lineWords[i].length() > 1 && !Character.isDigit(lineWords[i].charAt(0))) {
+						allWords.add(lineWords[i]);
+					}
+				}
+			}
+		} finally {
+			bufferedRdr.close();
+		}
+		return allWords;
+	}
+
+	private static void shuffle(int[] aCodes, Random aRandom) {
+		for (int i = aCodes.length - 1; i > 0; i--) {
+			int j = aRandom.nextInt(i + 1);
+			int swap = aCodes[i];
+			aCodes[i] = aCodes[j];
+			aCodes[j] = swap;
+		}
+	}
+
+	/*
+	 * Move the listed codes (when they exist) to the front of the table, in the order that they are listed.
+	 */
+	private static void moveKnownFirst(int[] aCodes, int... aKnownCodes) {
+		int front = 0;
+		for (int myKnownCode : aKnownCodes) {
+			for (int i = front; i < aCodes.length; i++) {
+				if (aCodes[i] == myKnownCode) {
+					System.arraycopy(aCodes, front, aCodes, front + 1, i - front);
+					aCodes[front++] = myKnownCode;
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Parse a size with an optional k, m or g suffix (e.g. 512m or 4g).
+	 **/
+	private static long parseSize(String aSize) {
+		String size = aSize.trim().toLowerCase();
+		long multiplier = 1;
+		if (size.endsWith("k")) {
+			multiplier = 1L << 10;
+		} else if (size.endsWith("m")) {
+			multiplier = 1L << 20;
+		} else if (size.endsWith("g")) {
+			multiplier = 1L << 30;
+		}
+		if (multiplier > 1) {
+			size = size.substring(0, size.length() - 1);
+		}
+		return (long) (Double.parseDouble(size) * multiplier);
+	}
+
+	/**
+	 * Generate the requested amount of raw NEISS data into the local output directory.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		final String usageText = "Usage: NEISSDataGenerator <local_output_dir> [-rows n | -size n[k|m|g]] [-seed n]"
+				+ " [-threads n] [-rowsPerFile n] [-firstYear yyyy] [-lastYear yyyy] [-yearGrowth f] [-zipf s]"
+				+ " [-amusementRate f] [-keywordRate f] [-malformedRate f] [-lookupDir dir]";
+
+		if (aArguments.length < 1) {
+			LOG.info(usageText);
+			return -1;
+		}
+
+		long totalRows = 100000;
+		long totalSize = -1;
+		long seed = 736L;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int rowsPerFile = 1000000;
+		int firstYear = 1997;
+		int lastYear = 2013;
+		File lookupDir = new File("Data/Local");
+		List<String[]> allSettings = new ArrayList<String[]>();
+
+		/*
+		 * Process any additional arguments passed in...
+		 */
+		for (int i = 1; i < aArguments.length; i++) {
+			if ("-rows".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				totalRows = Long.parseLong(aArguments[i]);
+			} else if ("-size".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				totalSize = parseSize(aArguments[i]);
+			} else if ("-seed".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				seed = Long.parseLong(aArguments[i]);
+			} else if ("-threads".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				threads = Integer.parseInt(aArguments[i]);
+			} else if ("-rowsPerFile".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				rowsPerFile = Integer.parseInt(aArguments[i]);
+			} else if ("-firstYear".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				firstYear = Integer.parseInt(aArguments[i]);
+			} else if ("-lastYear".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				lastYear = Integer.parseInt(aArguments[i]);
+			} else if ("-lookupDir".equals(aArguments[i])) {
+				i += 1; // Bump to the value
+				lookupDir = new File(aArguments[i]);
+			} else if ("-yearGrowth".equals(aArguments[i]) || "-zipf".equals(aArguments[i])
+					|| "-amusementRate".equals(aArguments[i]) || "-keywordRate".equals(aArguments[i])
+					|| "-malformedRate".equals(aArguments[i])) {
+				allSettings.add(new String[] { aArguments[i], aArguments[i + 1] });
+				i += 1; // Bump to the value
+			} else {
+				System.err.println("ERROR: Invalid argument : '" + aArguments[i] + "'");
+				LOG.info(usageText);
+				return -1;
+			}
+		}
+		if (firstYear > lastYear || firstYear < 1900 || threads < 1 || rowsPerFile < 1) {
+			System.err.println("ERROR: Invalid -firstYear/-lastYear, -threads or -rowsPerFile");
+			LOG.info(usageText);
+			return -1;
+		}
+
+		NEISSDataGenerator generator = fromDirectory(lookupDir);
+		for (String[] mySetting : allSettings) {
+			double myValue = Double.parseDouble(mySetting[1]);
+			if ("-yearGrowth".equals(mySetting[0])) {
+				generator.setYearGrowth(myValue);
+			} else if ("-zipf".equals(mySetting[0])) {
+				generator.setZipfExponent(myValue);
+			} else if ("-amusementRate".equals(mySetting[0])) {
+				generator.setAmusementRate(myValue);
+			} else if ("-keywordRate".equals(mySetting[0])) {
+				generator.setKeywordRate(myValue);
+			} else {
+				generator.setMalformedRate(myValue);
+			}
+		}
+		if (totalSize > 0) {
+			totalRows = (long) Math.ceil(totalSize / generator.averageRowSize(seed));
+		}
+
+		File outputDir = new File(aArguments[0]);
+		if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+			System.err.println("ERROR: Unable to create the output directory " + outputDir);
+			return -1;
+		}
+
+		/*
+		 * Split every year into parts of at most rowsPerFile rows and write the parts in parallel.
+		 */
+		int[] allYearRows;
+		try {
+			allYearRows = generator.rowsPerYear(totalRows, firstYear, lastYear);
+		} catch (IllegalArgumentException e) {
+			System.err.println("ERROR: " + e.getMessage());
+			return -1;
+		}
+		long startTime = System.currentTimeMillis();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Long>> allParts = new ArrayList<Future<Long>>();
+		try {
+			for (int y = 0; y < allYearRows.length; y++) {
+				int year = firstYear + y;
+				for (int part = 0; part * (long) rowsPerFile < allYearRows[y]; part++) {
+					int firstIndex = part * rowsPerFile;
+					File partFile = new File(outputDir, FILE_PREFIX + year + "-" + String.format("%05d", part)
+							+ FILE_SUFFIX);
+					allParts.add(executor.submit(generator.new PartWriter(partFile, year, firstIndex, Math.min(
+							rowsPerFile, allYearRows[y] - firstIndex), partSeed(seed, year, part))));
+				}
+			}
+
+			long totalBytes = 0;
+			for (Future<Long> myPart : allParts) {
+				totalBytes += myPart.get();
+			}
+			long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+			LOG.info("Generated " + totalRows + " rows (" + StringUtils.byteDesc(totalBytes) + ") of the years "
+					+ firstYear + "-" + lastYear + " into " + allParts.size() + " files of " + outputDir + " in "
+					+ elapsed + " ms (" + StringUtils.byteDesc(totalBytes * 1000 / elapsed) + "/s).");
+		} catch (ExecutionException e) {
+			System.err.println("ERROR: Unable to generate the data : " + StringUtils.stringifyException(e.getCause()));
+			return 1;
+		} finally {
+			executor.shutdownNow();
+		}
+		return 0;
+	}
+
+	/**
+	 * The main method calls the ToolRunner.run method, which in turn calls an options parser that interprets Hadoop
+	 * command-line options and puts them into a Configuration object.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	public static void main(String[] aArguments) throws Exception {
+		int exitCode = ToolRunner.run(new Configuration(), new NEISSDataGenerator(), aArguments);
+		System.exit(exitCode);
+	}
+}
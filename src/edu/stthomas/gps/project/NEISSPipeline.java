@@ -0,0 +1,772 @@
+package edu.stthomas.gps.project;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.apache.hadoop.mapreduce.lib.jobcontrol.ControlledJob;
+import org.apache.hadoop.mapreduce.lib.jobcontrol.JobControl;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.hadoop.util.StringUtils;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+/**
+ * Runs the complete chain of NEISS jobs (previously run one at a time by the InitialProductFilter.sh,
+ * NEISS_Reports.sh and DescriptionWordCount.sh scripts) as a single dependency graph of jobs.
+ * <p>
+ * 
+ * Every job is submitted as soon as the jobs it depends upon have completed, so the independent branches of the graph
+ * run at the same time. The counters of a completed job are passed to the jobs that need them (e.g. the number of
+ * incidents found by the keyword filter becomes the -totalIncidents of each of the reports), and a job whose output is
+ * already newer than all of its input is skipped rather than run again.
+ * <p>
+ * 
+ * With -incremental the filtering stages keep their output partitioned by year (year=YYYY directories) along with a
+ * manifest of the input files they have processed, so that a new (or corrected) year of NEISS data only has that year
+ * filtered and sorted instead of the whole history.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class NEISSPipeline extends Configured implements Tool {
+	private static final Logger LOG = Logger.getLogger(NEISSPipeline.class);
+
+	private static final String SUCCESS_FILE = new String("_SUCCESS");
+	private static final String COUNTERS_FILE = new String("_COUNTERS");
+	private static final long POLL_INTERVAL = 1000; // milliseconds
+
+	// @formatter:off
+	/*
+	 * Output directories (relative to the base directory) for each of the stages of the pipeline. These are the same
+	 * directories that were used by the original scripts.
+	 * 
+	 * 		ProductFilter				->	NEISS_ScratchPad
+	 * 		SortByYearCaseNbr			->	NEISS_InitialFilter
+	 * 		KeywordFilterSortByYearCaseNbr		->	NEISS_KeywordFilter
+	 * 		SimpleYearCount				->	NEISS_ReportByYear
+	 * 		SimpleMonthCount			->	NEISS_ReportByMonth
+	 * 		SimpleAgeCount				->	NEISS_ReportByAge
+	 * 		SimpleGenderCount			->	NEISS_ReportByGender
+	 * 		DescriptionWordFrequency		->	NEISS_Frequency
+	 * 		DescriptionWordCount			->	NEISS_WordCounts
+	 * 		DescriptionTFIDF			->	NEISS_TFIDF
+	 * 
+	 * With -fused the first three stages are replaced by:
+	 * 
+	 * 		FusedIngestFilter			->	NEISS_InitialFilter
+	 * 		FusedIngestFilter -keywords		->	NEISS_KeywordFilter
+	 * 
+	 * With -incremental the output of the first three stages is partitioned into year=YYYY sub-directories, and the
+	 * per year summaries of each report are kept under NEISS_Aggregates/<report directory>. The TF-IDF chain is also
+	 * replaced by a store of the tokenized descriptions that is only updated for the new or changed years:
+	 * 
+	 * 		IncrementalTFIDF			->	NEISS_TermStore
+	 * 		IncrementalTFIDF -rescore		->	NEISS_TFIDF
+	 * 
+	 * With -ngrams the phrases of the n-grams counted along with the words are written by DescriptionWordFrequency
+	 * into NEISS_Frequency/_ngrams and used by DescriptionTFIDF to render the n-grams of its output.
+	 * 
+	 * With -termIds the words are first numbered by a dictionary that the TF-IDF chain then carries the ids of:
+	 * 
+	 * 		DescriptionTermDictionary		->	NEISS_TermDictionary
+	 * 
+	 * With -normalize every stage that tokenizes the descriptions lowercases, expands the NEISS abbreviations of and
+	 * stems the words, so that the different forms of a word are counted as one term.
+	 */
+	// @formatter:on
+	private static final String SCRATCH_PAD_DIR = new String("NEISS_ScratchPad");
+	private static final String INITIAL_FILTER_DIR = new String("NEISS_InitialFilter");
+	private static final String KEYWORD_FILTER_DIR = new String("NEISS_KeywordFilter");
+	private static final String REPORT_BY_YEAR_DIR = new String("NEISS_ReportByYear");
+	private static final String REPORT_BY_MONTH_DIR = new String("NEISS_ReportByMonth");
+	private static final String REPORT_BY_AGE_DIR = new String("NEISS_ReportByAge");
+	private static final String REPORT_BY_GENDER_DIR = new String("NEISS_ReportByGender");
+	private static final String FREQUENCY_DIR = new String("NEISS_Frequency");
+	private static final String WORD_COUNTS_DIR = new String("NEISS_WordCounts");
+	private static final String TFIDF_DIR = new String("NEISS_TFIDF");
+	private static final String AGGREGATES_DIR = new String("NEISS_Aggregates");
+	private static final String TERM_STORE_DIR = new String("NEISS_TermStore");
+	private static final String TERM_DICTIONARY_DIR = new String("NEISS_TermDictionary");
+
+	private boolean xForce = false;
+	private boolean xEmbedded = false;
+	private boolean xFused = false;
+	private boolean xIncremental = false;
+	private int xNGramOrder = 1;
+	private boolean xTermIds = false;
+	private boolean xNormalize = false;
+
+	/**
+	 * A single job within the pipeline. The job itself is only built (from the arguments of the stage and the counters
+	 * of the stages it depends upon) at the moment it is ready to be submitted.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public class Stage extends ControlledJob {
+		private String xName;
+		private final JobFactory xFactory;
+		private final Path xInput;
+		private final Path xOutput;
+		private final List<String> xArguments = new ArrayList<String>();
+		private final List<Stage> xCounterStages = new ArrayList<Stage>();
+		private final List<Enum<?>> xCounterNames = new ArrayList<Enum<?>>();
+		private final List<String> xCounterArguments = new ArrayList<String>();
+		private Path xManifestDir;
+		private Counters xCounters;
+		private boolean xSkipped = false;
+		private boolean xCountersSaved = false;
+
+		/**
+		 * @param aFactory the driver that builds the job of this stage
+		 * @param aInput the input directory (or glob) of the stage
+		 * @param aOutput the output directory of the stage
+		 * @param aArguments any additional arguments for the driver
+		 **/
+		Stage(JobFactory aFactory, Path aInput, Path aOutput, String... aArguments) throws IOException {
+			super(getConf());
+			xName = aFactory.getClass().getSimpleName();
+			xFactory = aFactory;
+			xInput = aInput;
+			xOutput = aOutput;
+			for (String myArgument : aArguments) {
+				xArguments.add(myArgument);
+			}
+			setJobName(xName);
+		}
+
+		/**
+		 * Make this stage depend upon another stage.
+		 * 
+		 * @param aStage the stage that must be completed before this one
+		 * @return this stage
+		 **/
+		Stage after(Stage aStage) {
+			addDependingJob(aStage);
+			return this;
+		}
+
+		/**
+		 * Make this stage depend upon another stage and pass the value of one of its counters to the driver of this
+		 * stage as the value of an argument.
+		 * 
+		 * @param aStage the stage that must be completed before this one
+		 * @param aCounter the counter of that stage whose value is needed
+		 * @param aArgument the argument of the driver of this stage that receives the value
+		 * @return this stage
+		 **/
+		Stage after(Stage aStage, Enum<?> aCounter, String aArgument) {
+			addDependingJob(aStage);
+			xCounterStages.add(aStage);
+			xCounterNames.add(aCounter);
+			xCounterArguments.add(aArgument);
+			return this;
+		}
+
+		/**
+		 * Have the driver of this stage refresh its year partitioned output incrementally.
+		 * 
+		 * @return this stage
+		 **/
+		Stage incremental() {
+			xArguments.add("-incremental");
+			return incrementalInto(xOutput);
+		}
+
+		/**
+		 * Have the driver of this stage normalize (e.g. stem) the words of the Descriptions it tokenizes when the
+		 * pipeline was run with -normalize.
+		 * 
+		 * @return this stage
+		 **/
+		Stage normalized() {
+			if (xNormalize) {
+				xArguments.add("-normalize");
+			}
+			return this;
+		}
+
+		/**
+		 * Mark this stage as one whose driver only processes the new or changed input files, keeping the manifest of
+		 * the processed input files within the specified directory (e.g. an aggregate store).
+		 * 
+		 * @param aManifestDir the directory holding the manifest of the processed input files
+		 * @return this stage
+		 **/
+		Stage incrementalInto(Path aManifestDir) {
+			xManifestDir = aManifestDir;
+			return this;
+		}
+
+		/**
+		 * Give this stage a more descriptive name than the name of its driver.
+		 * 
+		 * @param aName the name of the stage
+		 * @return this stage
+		 **/
+		Stage named(String aName) {
+			xName = aName;
+			setJobName(aName);
+			return this;
+		}
+
+		public String getName() {
+			return xName;
+		}
+
+		public boolean isSkipped() {
+			return xSkipped;
+		}
+
+		/**
+		 * @return the counters of the job of this stage (those saved by an earlier run when the stage was skipped)
+		 **/
+		public synchronized Counters getCounters() throws IOException {
+			if (xCounters == null && getJobState() == State.SUCCESS) {
+				if (xSkipped) {
+					xCounters = loadCounters(xOutput);
+				} else {
+					xCounters = getJob().getCounters();
+				}
+			}
+			return xCounters;
+		}
+
+		/**
+		 * Build the real job of this stage once all of the stages it depends upon have been completed and submit it,
+		 * unless the output of this stage is already up to date.
+		 **/
+		@Override
+		protected synchronized void submit() {
+			try {
+				Job job = isUpToDate() ? null : prepareJob();
+				if (job == null) {
+					skip();
+					return;
+				}
+				setJob(job);
+			} catch (Exception e) {
+				setMessage(StringUtils.stringifyException(e));
+				setJobState(State.FAILED);
+				return;
+			}
+			LOG.info("Submitting stage " + xName + " : " + xInput + " -> " + xOutput);
+			super.submit();
+		}
+
+		/**
+		 * Build and run the job of this stage within the embedded engine.
+		 **/
+		synchronized void runEmbedded() {
+			try {
+				Job job = isUpToDate() ? null : prepareJob();
+				if (job == null) {
+					skip();
+					return;
+				}
+				setJob(job);
+				LOG.info("Running stage " + xName + " : " + xInput + " -> " + xOutput);
+				EmbeddedJobEngine engine = new EmbeddedJobEngine(getConf());
+				boolean success = engine.runJob(job);
+				xCounters = engine.getCounters();
+				setJobState(success ? State.SUCCESS : State.FAILED);
+			} catch (Exception e) {
+				setMessage(StringUtils.stringifyException(e));
+				setJobState(State.FAILED);
+			}
+		}
+
+		/**
+		 * Build and run the job of this stage within the calling thread, waiting for it to be completed. When the
+		 * engine cache directory is set, the cache files are read directly from that local directory instead of being
+		 * localized (so the job can be run by the LocalJobRunner away from HDFS).
+		 **/
+		synchronized void runLocal() {
+			try {
+				Job job = isUpToDate() ? null : prepareJob();
+				if (job == null) {
+					skip();
+					return;
+				}
+				if (getConf().get(EmbeddedJobEngine.CACHE_DIR_KEY) != null) {
+					EmbeddedJobEngine.localizeCacheFiles(job.getConfiguration());
+					job.getConfiguration().unset(MRJobConfig.CACHE_FILES);
+				}
+				setJob(job);
+				LOG.info("Running stage " + xName + " : " + xInput + " -> " + xOutput);
+				boolean success = job.waitForCompletion(false);
+				xCounters = job.getCounters();
+				setJobState(success ? State.SUCCESS : State.FAILED);
+			} catch (Exception e) {
+				setMessage(StringUtils.stringifyException(e));
+				setJobState(State.FAILED);
+			}
+		}
+
+		/**
+		 * Mark this stage as completed without running its job.
+		 **/
+		private void skip() {
+			LOG.info("Skipping stage " + xName + " as " + xOutput + " is up to date.");
+			xSkipped = true;
+			xCountersSaved = true;
+			setJobState(State.SUCCESS);
+		}
+
+		/**
+		 * Mark this stage as failed because one of the stages it depends upon has failed.
+		 **/
+		synchronized void failStage() {
+			setJobState(State.DEPENDENT_FAILED);
+		}
+
+		/**
+		 * Remove the stale output of this stage and build its job with the counters of the upstream stages.
+		 * 
+		 * @return the job, or null when the driver found its incremental output to already be up to date
+		 **/
+		private Job prepareJob() throws Exception {
+			List<String> allArguments = new ArrayList<String>();
+			allArguments.add(xInput.toString());
+			allArguments.add(xOutput.toString());
+			allArguments.addAll(xArguments);
+			for (int i = 0; i < xCounterStages.size(); i++) {
+				Counter myCounter = xCounterStages.get(i).getCounters().findCounter(xCounterNames.get(i));
+				allArguments.add(xCounterArguments.get(i));
+				allArguments.add(String.valueOf(myCounter.getValue()));
+				LOG.info("Passing " + myCounter.getDisplayName() + "=" + myCounter.getValue() + " from stage "
+						+ xCounterStages.get(i).getName() + " to stage " + xName + " as " + xCounterArguments.get(i));
+			}
+
+			/*
+			 * The incremental output is only replaced one piece at a time by the job itself (unless forced).
+			 */
+			FileSystem fs = xOutput.getFileSystem(getConf());
+			if ((xForce || xManifestDir == null) && fs.exists(xOutput)) {
+				LOG.info("Removing the stale output " + xOutput + " of stage " + xName);
+				fs.delete(xOutput, true);
+			}
+			if (xForce && xManifestDir != null && fs.exists(xManifestDir)) {
+				LOG.info("Removing the processed input of stage " + xName + " from " + xManifestDir);
+				fs.delete(xManifestDir, true);
+			}
+
+			Job job = xFactory.createJob(allArguments.toArray(new String[allArguments.size()]));
+			if (job == null && xManifestDir != null
+					&& IncrementalOutputFormat.isUpToDate(getConf(), xInput, xManifestDir)) {
+				return null;
+			} else if (job == null) {
+				throw new IOException("Invalid arguments for stage " + xName + " : " + allArguments);
+			}
+			return job;
+		}
+
+		/**
+		 * The output of a stage is up to date when the job that produced it succeeded (and saved its counters) after
+		 * the last modification of any of its input files. Incremental output is up to date when its manifest matches
+		 * the current input files.
+		 **/
+		private boolean isUpToDate() throws IOException {
+			if (xForce) {
+				return false;
+			} else if (xManifestDir != null) {
+				return IncrementalOutputFormat.isUpToDate(getConf(), xInput, xManifestDir)
+						&& xOutput.getFileSystem(getConf()).exists(new Path(xOutput, SUCCESS_FILE));
+			}
+			FileSystem fs = xOutput.getFileSystem(getConf());
+			Path successFile = new Path(xOutput, SUCCESS_FILE);
+			if (!fs.exists(successFile) || !fs.exists(new Path(xOutput, COUNTERS_FILE))) {
+				return false;
+			}
+			long outputTime = fs.getFileStatus(successFile).getModificationTime();
+
+			FileSystem inputFs = xInput.getFileSystem(getConf());
+			FileStatus[] allInputs = inputFs.globStatus(xInput);
+			if (allInputs == null || allInputs.length == 0) {
+				return false;
+			}
+			for (FileStatus myInput : allInputs) {
+				RemoteIterator<LocatedFileStatus> allFiles = inputFs.listFiles(myInput.getPath(), true);
+				while (allFiles.hasNext()) {
+					LocatedFileStatus myFile = allFiles.next();
+					if (!myFile.getPath().getName().equals(COUNTERS_FILE)
+							&& myFile.getModificationTime() > outputTime) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Save the counters of a successfully completed job next to its output for use by a later run.
+		 **/
+		synchronized void saveCounters() throws IOException {
+			if (!xCountersSaved && getJobState() == State.SUCCESS) {
+				FileSystem fs = xOutput.getFileSystem(getConf());
+				FSDataOutputStream countersStream = fs.create(new Path(xOutput, COUNTERS_FILE), true);
+				try {
+					getCounters().write(countersStream);
+				} finally {
+					countersStream.close();
+				}
+				xCountersSaved = true;
+				CompressionSettings.report(getJob().getConfiguration(), getCounters(), xName);
+				JobInstrumentation.report(getJob().getConfiguration(), getCounters(), xName);
+			}
+		}
+	}
+
+	/**
+	 * Read the counters saved with the output of an earlier run of a stage.
+	 * 
+	 * @param aOutput the output directory of the stage
+	 * @return the saved counters
+	 **/
+	private Counters loadCounters(Path aOutput) throws IOException {
+		Counters counters = new Counters();
+		Path countersFile = new Path(aOutput, COUNTERS_FILE);
+		FSDataInputStream countersStream = countersFile.getFileSystem(getConf()).open(countersFile);
+		try {
+			counters.readFields(countersStream);
+		} finally {
+			countersStream.close();
+		}
+		return counters;
+	}
+
+	/**
+	 * Create the driver of a stage with the configuration of the pipeline.
+	 **/
+	private JobFactory driver(Class<? extends JobFactory> aDriverClass) {
+		return ReflectionUtils.newInstance(aDriverClass, getConf());
+	}
+
+	/**
+	 * Declare all of the stages of the pipeline and the dependencies between them.
+	 * 
+	 * @param aInput the directory holding the raw NEISS data
+	 * @param aBaseDir the directory under which the output of every stage is written
+	 * @return all of the stages in an order in which they can be run
+	 **/
+	List<Stage> buildStages(Path aInput, Path aBaseDir) throws IOException {
+		List<Stage> allStages = new ArrayList<Stage>();
+
+		/*
+		 * Filter the raw NEISS data down to the amusement products and then sort it by year. The fused stages chain
+		 * the filters within the map tasks of the sort instead of writing NEISS_ScratchPad.
+		 */
+		Stage initialFilter;
+		Stage keywordFilter;
+		if (xFused) {
+			initialFilter = new Stage(driver(FusedIngestFilter.class), aInput, new Path(aBaseDir, INITIAL_FILTER_DIR),
+					"-totalYears", "17");
+			keywordFilter = new Stage(driver(FusedIngestFilter.class), aInput, new Path(aBaseDir, KEYWORD_FILTER_DIR),
+					"-keywords", "-totalYears", "17").named("FusedIngestFilter -keywords");
+		} else {
+			Stage productFilter = new Stage(driver(ProductFilter.class), aInput, new Path(aBaseDir, SCRATCH_PAD_DIR));
+			initialFilter = new Stage(driver(SortByYearCaseNbr.class), new Path(aBaseDir, SCRATCH_PAD_DIR), new Path(
+					aBaseDir, INITIAL_FILTER_DIR)).after(productFilter);
+			keywordFilter = new Stage(driver(KeywordFilterSortByYearCaseNbr.class), new Path(aBaseDir,
+					SCRATCH_PAD_DIR), new Path(aBaseDir, KEYWORD_FILTER_DIR), "-totalYears", "17").after(productFilter);
+			if (xIncremental) {
+				productFilter.incremental();
+				initialFilter.incremental();
+				keywordFilter.incremental();
+			}
+			allStages.add(productFilter);
+		}
+		allStages.add(initialFilter);
+		allStages.add(keywordFilter);
+
+		/*
+		 * The reports each need the total number of incidents that passed the keyword filter. When refreshing
+		 * incrementally the reports instead summarize only the new or changed years into their aggregate stores and
+		 * take the total from the stores.
+		 */
+		Path keywordFilterDir = new Path(aBaseDir, KEYWORD_FILTER_DIR);
+		Enum<?> keywordIncidents = KeywordFilterSortByYearCaseNbr.NEISS_DATA.NUM_VALID_WORDS;
+		List<Class<? extends JobFactory>> allReports = new ArrayList<Class<? extends JobFactory>>();
+		allReports.add(SimpleYearCount.class);
+		allReports.add(SimpleMonthCount.class);
+		allReports.add(SimpleAgeCount.class);
+		allReports.add(SimpleGenderCount.class);
+		String[] allReportDirs = new String[] { REPORT_BY_YEAR_DIR, REPORT_BY_MONTH_DIR, REPORT_BY_AGE_DIR,
+				REPORT_BY_GENDER_DIR };
+		for (int i = 0; i < allReports.size(); i++) {
+			Stage report;
+			if (xIncremental) {
+				Path aggregateStore = new Path(new Path(aBaseDir, AGGREGATES_DIR), allReportDirs[i]);
+				report = new Stage(driver(allReports.get(i)), keywordFilterDir, new Path(aBaseDir, allReportDirs[i]),
+						"-aggregateStore", aggregateStore.toString()).incrementalInto(aggregateStore).after(
+						keywordFilter);
+			} else {
+				report = new Stage(driver(allReports.get(i)), keywordFilterDir, new Path(aBaseDir, allReportDirs[i]))
+						.after(keywordFilter, keywordIncidents, "-totalIncidents");
+			}
+			allStages.add(report);
+		}
+
+		/*
+		 * When refreshing incrementally only the descriptions of the new or changed years are tokenized into the term
+		 * store, and the TF-IDF of every description is then rescored from the store.
+		 */
+		if (xIncremental) {
+			Path termStoreDir = new Path(aBaseDir, TERM_STORE_DIR);
+			Stage termStore = new Stage(driver(IncrementalTFIDF.class), new Path(aBaseDir, INITIAL_FILTER_DIR),
+					termStoreDir, "-stopWords").normalized().incrementalInto(termStoreDir).after(initialFilter);
+			Stage rescore = new Stage(driver(IncrementalTFIDF.class), termStoreDir, new Path(aBaseDir, TFIDF_DIR),
+					"-rescore").named("IncrementalTFIDF -rescore").after(termStore);
+			allStages.add(termStore);
+			allStages.add(rescore);
+			return allStages;
+		}
+
+		/*
+		 * The TF-IDF calculations need the total number of incidents (documents) whose descriptions were processed.
+		 */
+		Path initialFilterDir = new Path(aBaseDir, INITIAL_FILTER_DIR);
+		Path frequencyDir = new Path(aBaseDir, FREQUENCY_DIR);
+		Stage wordFrequency;
+		Stage tfidf;
+		if (xTermIds) {
+			Path dictionaryDir = new Path(aBaseDir, TERM_DICTIONARY_DIR);
+			Stage dictionary = new Stage(driver(DescriptionTermDictionary.class), initialFilterDir, dictionaryDir,
+					"-stopWords").normalized().after(initialFilter);
+			allStages.add(dictionary);
+			wordFrequency = new Stage(driver(DescriptionWordFrequency.class), initialFilterDir, frequencyDir,
+					"-stopWords", "-dictionary", dictionaryDir.toString()).normalized().after(dictionary);
+			tfidf = new Stage(driver(DescriptionTFIDF.class), new Path(aBaseDir, WORD_COUNTS_DIR), new Path(aBaseDir,
+					TFIDF_DIR), "-dictionary", dictionaryDir.toString()).after(dictionary);
+		} else if (xNGramOrder > 1) {
+			wordFrequency = new Stage(driver(DescriptionWordFrequency.class), initialFilterDir, frequencyDir,
+					"-stopWords", "-ngrams", String.valueOf(xNGramOrder)).normalized().after(initialFilter);
+			tfidf = new Stage(driver(DescriptionTFIDF.class), new Path(aBaseDir, WORD_COUNTS_DIR), new Path(aBaseDir,
+					TFIDF_DIR), "-ngramDictionary", new Path(frequencyDir, DescriptionNGrams.DICTIONARY_DIR).toString());
+		} else {
+			wordFrequency = new Stage(driver(DescriptionWordFrequency.class), initialFilterDir, frequencyDir,
+					"-stopWords").normalized().after(initialFilter);
+			tfidf = new Stage(driver(DescriptionTFIDF.class), new Path(aBaseDir, WORD_COUNTS_DIR), new Path(aBaseDir,
+					TFIDF_DIR));
+		}
+		Stage wordCount = new Stage(driver(DescriptionWordCount.class), frequencyDir, new Path(aBaseDir,
+				WORD_COUNTS_DIR), xTermIds ? new String[] { "-termIds" } : new String[0]).after(wordFrequency);
+		tfidf.after(wordCount).after(wordFrequency, DescriptionWordFrequency.NEISS_DATA.TOAL_RECORDS_PROCESSED,
+				"-totalIncidents");
+		allStages.add(wordFrequency);
+		allStages.add(wordCount);
+		allStages.add(tfidf);
+
+		return allStages;
+	}
+
+	/**
+	 * Submit the stages to the cluster through a JobControl and wait for all of them to finish.
+	 **/
+	private void runWithJobControl(List<Stage> aStages) throws IOException, InterruptedException {
+		JobControl jobControl = new JobControl("NEISS Pipeline");
+		for (Stage myStage : aStages) {
+			jobControl.addJob(myStage);
+		}
+
+		Thread controlThread = new Thread(jobControl, "NEISS Pipeline JobControl");
+		controlThread.setDaemon(true);
+		controlThread.start();
+		try {
+			while (!jobControl.allFinished()) {
+				saveCompletedCounters(aStages);
+				Thread.sleep(POLL_INTERVAL);
+			}
+			saveCompletedCounters(aStages);
+		} finally {
+			jobControl.stop();
+		}
+	}
+
+	/**
+	 * Run the stages within the embedded engine, running every stage as soon as the stages it depends upon are done.
+	 **/
+	private void runEmbedded(List<Stage> aStages) throws IOException, InterruptedException {
+		ExecutorService executor = Executors.newCachedThreadPool();
+		CompletionService<Stage> completionService = new ExecutorCompletionService<Stage>(executor);
+		Set<Stage> waitingStages = new HashSet<Stage>(aStages);
+		int runningStages = 0;
+		try {
+			while (!waitingStages.isEmpty() || runningStages > 0) {
+				for (final Stage myStage : new ArrayList<Stage>(waitingStages)) {
+					boolean ready = true;
+					boolean dependencyFailed = false;
+					List<ControlledJob> allDependencies = myStage.getDependentJobs();
+					for (ControlledJob myDependency : (allDependencies != null) ? allDependencies
+							: new ArrayList<ControlledJob>()) {
+						ControlledJob.State dependencyState = myDependency.getJobState();
+						if (dependencyState == ControlledJob.State.FAILED
+								|| dependencyState == ControlledJob.State.DEPENDENT_FAILED) {
+							dependencyFailed = true;
+						} else if (dependencyState != ControlledJob.State.SUCCESS) {
+							ready = false;
+						}
+					}
+					if (dependencyFailed) {
+						myStage.setMessage("A job it depends upon has failed.");
+						myStage.failStage();
+						waitingStages.remove(myStage);
+					} else if (ready) {
+						waitingStages.remove(myStage);
+						runningStages++;
+						completionService.submit(new Runnable() {
+							@Override
+							public void run() {
+								myStage.runEmbedded();
+							}
+						}, myStage);
+					}
+				}
+				if (runningStages > 0) {
+					completionService.take();
+					runningStages--;
+					saveCompletedCounters(aStages);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Save the counters of every stage that completed since the last call.
+	 **/
+	private void saveCompletedCounters(List<Stage> aStages) throws IOException {
+		for (Stage myStage : aStages) {
+			myStage.saveCounters();
+		}
+	}
+
+	/**
+	 * Run the complete pipeline of NEISS jobs.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		final String usageText = "Usage: NEISSPipeline <input_dir> <base_dir> [-force] [-embedded] [-fused] [-incremental]"
+				+ " [-threads n] [-cacheDir dir] [-ngrams n] [-termIds] [-normalize]";
+
+		if (aArguments.length < 2) {
+			LOG.info(usageText);
+			return -1;
+		}
+
+		/*
+		 * Process any additional arguments passed in...
+		 */
+		for (int i = 2; i < aArguments.length; i++) {
+			if ("-force".equals(aArguments[i])) {
+				xForce = true;
+				LOG.info("Running every stage regardless of the state of its output.");
+			} else if ("-embedded".equals(aArguments[i])) {
+				xEmbedded = true;
+				LOG.info("Running every stage within the embedded engine.");
+			} else if ("-fused".equals(aArguments[i])) {
+				xFused = true;
+				LOG.info("Fusing the product and keyword filters into the sort by Year & CaseNbr.");
+			} else if ("-incremental".equals(aArguments[i])) {
+				xIncremental = true;
+				LOG.info("Refreshing only the new or changed years of the filtered NEISS data.");
+			} else if ("-threads".equals(aArguments[i]) && i + 1 < aArguments.length) {
+				getConf().setInt(EmbeddedJobEngine.THREADS_KEY, Integer.parseInt(aArguments[++i]));
+			} else if ("-cacheDir".equals(aArguments[i]) && i + 1 < aArguments.length) {
+				getConf().set(EmbeddedJobEngine.CACHE_DIR_KEY, aArguments[++i]);
+			} else if ("-ngrams".equals(aArguments[i]) && i + 1 < aArguments.length) {
+				xNGramOrder = Integer.parseInt(aArguments[++i]);
+				LOG.info("Counting the n-grams up to an order of " + xNGramOrder + " along with the words.");
+			} else if ("-termIds".equals(aArguments[i])) {
+				xTermIds = true;
+				LOG.info("Carrying the ids of the words of a dictionary through the TF-IDF chain.");
+			} else if ("-normalize".equals(aArguments[i])) {
+				xNormalize = true;
+				LOG.info("Normalizing (stemming) the words of the incident Descriptions.");
+			} else {
+				System.err.println("ERROR: Invalid argument : '" + aArguments[i] + "'");
+				LOG.info(usageText);
+				return -1;
+			}
+		}
+
+		if (xNGramOrder > 1 && xIncremental) {
+			System.err.println("ERROR: The -ngrams and -incremental arguments can not be used together.");
+			LOG.info(usageText);
+			return -1;
+		}
+
+		if (xTermIds && (xNGramOrder > 1 || xIncremental)) {
+			System.err.println("ERROR: The -termIds argument can not be used with -ngrams or -incremental.");
+			LOG.info(usageText);
+			return -1;
+		}
+
+		if (xFused && xIncremental) {
+			System.err.println("ERROR: The -fused and -incremental arguments can not be used together.");
+			LOG.info(usageText);
+			return -1;
+		}
+
+		List<Stage> allStages = buildStages(new Path(aArguments[0]), new Path(aArguments[1]));
+		long startTime = System.currentTimeMillis();
+		if (xEmbedded) {
+			runEmbedded(allStages);
+		} else {
+			runWithJobControl(allStages);
+		}
+
+		/*
+		 * Quickly output the state of each of the stages to the local output stream (console).
+		 */
+		boolean success = true;
+		for (Stage myStage : allStages) {
+			String state = myStage.isSkipped() ? "SKIPPED" : myStage.getJobState().toString();
+			LOG.info(myStage.getName() + " : " + state);
+			if (myStage.getJobState() != ControlledJob.State.SUCCESS) {
+				success = false;
+				if (myStage.getMessage() != null) {
+					System.err.println("ERROR: Stage " + myStage.getName() + " : " + myStage.getMessage());
+				}
+			}
+		}
+		LOG.info("Pipeline " + (success ? "completed" : "failed") + " in " + (System.currentTimeMillis() - startTime)
+				+ " ms.");
+
+		return success ? 0 : 1;
+	}
+
+	/**
+	 * The main method calls the ToolRunner.run method, which in turn calls an options parser that interprets Hadoop
+	 * command-line options and puts them into a Configuration object.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	public static void main(String[] aArguments) throws Exception {
+		int exitCode = ToolRunner.run(new Configuration(), new NEISSPipeline(), aArguments);
+		System.exit(exitCode);
+	}
+}
@@ -0,0 +1,386 @@
+package edu.stthomas.gps.project;
+
+/**
+ * Reduces a word to its stem with the Porter stemming algorithm (M.F. Porter, "An algorithm for suffix stripping",
+ * Program 14(3), 1980), so that e.g. "slides", "sliding" and "slide" are all counted as the term "slide".
+ * <p>
+ * 
+ * Only the mono-cased words made up entirely of the letters 'a' to 'z' and longer than two letters are stemmed, every
+ * other word is returned as it is. The stem is built within a buffer of this object that is reused from word to word,
+ * so an instance must not be shared between threads.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class PorterStemmer implements TokenNormalizer {
+	private char[] xBuffer = new char[32];
+	private int xEnd; // Index of the last letter of the word being stemmed
+	private int xStemEnd; // Index of the last letter of the stem before the suffix matched by endsWith()
+
+	@Override
+	public String normalize(String aToken) {
+		int length = aToken.length();
+		if (length <= 2) {
+			return aToken;
+		}
+		if (xBuffer.length <= length) {
+			xBuffer = new char[length + 1];
+		}
+		for (int i = 0; i < length; i++) {
+			char myLetter = aToken.charAt(i);
+			if (myLetter < 'a' || myLetter > 'z') {
+				return aToken;
+			}
+			xBuffer[i] = myLetter;
+		}
+
+		xEnd = length - 1;
+		removePlurals();
+		replaceTerminalY();
+		replaceDoubleSuffixes();
+		replaceIcFulNess();
+		removeSuffixes();
+		removeTerminalE();
+
+		String stem = new String(xBuffer, 0, xEnd + 1);
+		return stem.equals(aToken) ? aToken : stem;
+	}
+
+	/**
+	 * @return true when the letter at the index is a consonant ('y' is a consonant unless it follows one)
+	 **/
+	private boolean isConsonant(int aIndex) {
+		switch (xBuffer[aIndex]) {
+		case 'a':
+		case 'e':
+		case 'i':
+		case 'o':
+		case 'u':
+			return false;
+		case 'y':
+			return (aIndex == 0) ? true : !isConsonant(aIndex - 1);
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * @return the number of vowel-consonant sequences (the "measure") of the stem before the matched suffix
+	 **/
+	private int measure() {
+		int count = 0;
+		int i = 0;
+		while (i <= xStemEnd && isConsonant(i)) {
+			i++;
+		}
+		while (i <= xStemEnd) {
+			while (i <= xStemEnd && !isConsonant(i)) {
+				i++;
+			}
+			if (i > xStemEnd) {
+				break;
+			}
+			count++;
+			while (i <= xStemEnd && isConsonant(i)) {
+				i++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return true when the stem before the matched suffix contains a vowel
+	 **/
+	private boolean hasVowelInStem() {
+		for (int i = 0; i <= xStemEnd; i++) {
+			if (!isConsonant(i)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return true when the letter at the index and the one before it are the same consonant
+	 **/
+	private boolean isDoubleConsonant(int aIndex) {
+		return aIndex >= 1 && xBuffer[aIndex] == xBuffer[aIndex - 1] && isConsonant(aIndex);
+	}
+
+	/**
+	 * @return true when the letters ending at the index are consonant-vowel-consonant and the last consonant is not a
+	 *         'w', 'x' or 'y' (e.g. "hop" but not "snow")
+	 **/
+	private boolean isConsonantVowelConsonant(int aIndex) {
+		if (aIndex < 2 || !isConsonant(aIndex) || isConsonant(aIndex - 1) || !isConsonant(aIndex - 2)) {
+			return false;
+		}
+		char myLetter = xBuffer[aIndex];
+		return myLetter != 'w' && myLetter != 'x' && myLetter != 'y';
+	}
+
+	/**
+	 * @return true when the word ends with the suffix (which sets the end of the stem to just before the suffix)
+	 **/
+	private boolean endsWith(String aSuffix) {
+		int length = aSuffix.length();
+		int start = xEnd - length + 1;
+		if (start < 0) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (xBuffer[start + i] != aSuffix.charAt(i)) {
+				return false;
+			}
+		}
+		xStemEnd = xEnd - length;
+		return true;
+	}
+
+	/**
+	 * Replace the matched suffix of the word with another suffix.
+	 **/
+	private void setSuffix(String aSuffix) {
+		for (int i = 0; i < aSuffix.length(); i++) {
+			xBuffer[xStemEnd + 1 + i] = aSuffix.charAt(i);
+		}
+		xEnd = xStemEnd + aSuffix.length();
+	}
+
+	/**
+	 * Replace the matched suffix of the word with another suffix when the stem has a measure greater than zero.
+	 **/
+	private void replaceSuffix(String aSuffix) {
+		if (measure() > 0) {
+			setSuffix(aSuffix);
+		}
+	}
+
+	/**
+	 * Step 1ab: remove the plurals and the -ed or -ing endings (e.g. "caresses" to "caress", "ponies" to "poni",
+	 * "agreed" to "agree" and "hopping" to "hop").
+	 **/
+	private void removePlurals() {
+		if (xBuffer[xEnd] == 's') {
+			if (endsWith("sses")) {
+				xEnd -= 2;
+			} else if (endsWith("ies")) {
+				setSuffix("i");
+			} else if (xBuffer[xEnd - 1] != 's') {
+				xEnd--;
+			}
+		}
+		if (endsWith("eed")) {
+			if (measure() > 0) {
+				xEnd--;
+			}
+		} else if ((endsWith("ed") || endsWith("ing")) && hasVowelInStem()) {
+			xEnd = xStemEnd;
+			if (endsWith("at")) {
+				setSuffix("ate");
+			} else if (endsWith("bl")) {
+				setSuffix("ble");
+			} else if (endsWith("iz")) {
+				setSuffix("ize");
+			} else if (isDoubleConsonant(xEnd)) {
+				char myLetter = xBuffer[xEnd];
+				if (myLetter != 'l' && myLetter != 's' && myLetter != 'z') {
+					xEnd--;
+				}
+			} else {
+				xStemEnd = xEnd;
+				if (measure() == 1 && isConsonantVowelConsonant(xEnd)) {
+					setSuffix("e");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Step 1c: replace a terminal 'y' with an 'i' when there is another vowel within the stem.
+	 **/
+	private void replaceTerminalY() {
+		if (endsWith("y") && hasVowelInStem()) {
+			xBuffer[xEnd] = 'i';
+		}
+	}
+
+	/**
+	 * Step 2: map the double suffixes to single ones (e.g. "-ization" to "-ize" and "-fulness" to "-ful").
+	 **/
+	private void replaceDoubleSuffixes() {
+		if (xEnd == 0) {
+			return;
+		}
+		switch (xBuffer[xEnd - 1]) {
+		case 'a':
+			if (endsWith("ational")) {
+				replaceSuffix("ate");
+			} else if (endsWith("tional")) {
+				replaceSuffix("tion");
+			}
+			break;
+		case 'c':
+			if (endsWith("enci")) {
+				replaceSuffix("ence");
+			} else if (endsWith("anci")) {
+				replaceSuffix("ance");
+			}
+			break;
+		case 'e':
+			if (endsWith("izer")) {
+				replaceSuffix("ize");
+			}
+			break;
+		case 'l':
+			if (endsWith("bli")) {
+				replaceSuffix("ble");
+			} else if (endsWith("alli")) {
+				replaceSuffix("al");
+			} else if (endsWith("entli")) {
+				replaceSuffix("ent");
+			} else if (endsWith("eli")) {
+				replaceSuffix("e");
+			} else if (endsWith("ousli")) {
+				replaceSuffix("ous");
+			}
+			break;
+		case 'o':
+			if (endsWith("ization")) {
+				replaceSuffix("ize");
+			} else if (endsWith("ation") || endsWith("ator")) {
+				replaceSuffix("ate");
+			}
+			break;
+		case 's':
+			if (endsWith("alism")) {
+				replaceSuffix("al");
+			} else if (endsWith("iveness")) {
+				replaceSuffix("ive");
+			} else if (endsWith("fulness")) {
+				replaceSuffix("ful");
+			} else if (endsWith("ousness")) {
+				replaceSuffix("ous");
+			}
+			break;
+		case 't':
+			if (endsWith("aliti")) {
+				replaceSuffix("al");
+			} else if (endsWith("iviti")) {
+				replaceSuffix("ive");
+			} else if (endsWith("biliti")) {
+				replaceSuffix("ble");
+			}
+			break;
+		case 'g':
+			if (endsWith("logi")) {
+				replaceSuffix("log");
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Step 3: handle the -ic-, -full and -ness suffixes (e.g. "-icate" to "-ic" and "-ful" removed).
+	 **/
+	private void replaceIcFulNess() {
+		switch (xBuffer[xEnd]) {
+		case 'e':
+			if (endsWith("icate")) {
+				replaceSuffix("ic");
+			} else if (endsWith("ative")) {
+				replaceSuffix("");
+			} else if (endsWith("alize")) {
+				replaceSuffix("al");
+			}
+			break;
+		case 'i':
+			if (endsWith("iciti")) {
+				replaceSuffix("ic");
+			}
+			break;
+		case 'l':
+			if (endsWith("ical")) {
+				replaceSuffix("ic");
+			} else if (endsWith("ful")) {
+				replaceSuffix("");
+			}
+			break;
+		case 's':
+			if (endsWith("ness")) {
+				replaceSuffix("");
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Step 4: remove the -ant, -ence, -ment and similar suffixes when the stem has a measure greater than one.
+	 **/
+	private void removeSuffixes() {
+		if (xEnd == 0) {
+			return;
+		}
+		boolean matched;
+		switch (xBuffer[xEnd - 1]) {
+		case 'a':
+			matched = endsWith("al");
+			break;
+		case 'c':
+			matched = endsWith("ance") || endsWith("ence");
+			break;
+		case 'e':
+			matched = endsWith("er");
+			break;
+		case 'i':
+			matched = endsWith("ic");
+			break;
+		case 'l':
+			matched = endsWith("able") || endsWith("ible");
+			break;
+		case 'n':
+			matched = endsWith("ant") || endsWith("ement") || endsWith("ment") || endsWith("ent");
+			break;
+		case 'o':
+			matched = (endsWith("ion") && xStemEnd >= 0 && (xBuffer[xStemEnd] == 's' || xBuffer[xStemEnd] == 't'))
+					|| endsWith("ou");
+			break;
+		case 's':
+			matched = endsWith("ism");
+			break;
+		case 't':
+			matched = endsWith("ate") || endsWith("iti");
+			break;
+		case 'u':
+			matched = endsWith("ous");
+			break;
+		case 'v':
+			matched = endsWith("ive");
+			break;
+		case 'z':
+			matched = endsWith("ize");
+			break;
+		default:
+			matched = false;
+		}
+		if (matched && measure() > 1) {
+			xEnd = xStemEnd;
+		}
+	}
+
+	/**
+	 * Step 5: remove a final 'e' and reduce a final "ll" to "l" when the stem has a large enough measure.
+	 **/
+	private void removeTerminalE() {
+		xStemEnd = xEnd;
+		if (xBuffer[xEnd] == 'e') {
+			int stemMeasure = measure();
+			if (stemMeasure > 1 || (stemMeasure == 1 && !isConsonantVowelConsonant(xEnd - 1))) {
+				xEnd--;
+			}
+		}
+		if (xBuffer[xEnd] == 'l' && isDoubleConsonant(xEnd) && measure() > 1) {
+			xEnd--;
+		}
+	}
+}
@@ -4,6 +4,7 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -14,13 +15,12 @@ import org.apache.hadoop.filecache.DistributedCache;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapreduce.Counter;
-import org.apache.hadoop.mapreduce.Counters;
 import org.apache.hadoop.mapreduce.Job;
-import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 import org.apache.hadoop.util.StringUtils;
 import org.apache.hadoop.util.Tool;
@@ -32,7 +32,7 @@ import org.apache.log4j.Logger;
  * @author Robert Driesch - UST Id# 101058113
  * @version 1.0, December 1, 2014
  **/
-public class ProductFilter extends Configured implements Tool {
+public class ProductFilter extends Configured implements Tool, JobFactory {
 	private static final Logger LOG = Logger.getLogger(ProductFilter.class);
 
 	private static final String NAME_PREFIX = "/user/training/NEISS_Local/";
@@ -47,11 +47,17 @@ public class ProductFilter extends Configured implements Tool {
 		NUM_AMUSEMENTS, NUM_REJECTED, BAD_RECORD
 	}
 
+	/*
+	 * Set when the incremental output is already up to date and there is no job that needs to be run.
+	 */
+	private boolean xUpToDate;
+
 	/**
 	 * @version 1.0, December 1, 2014
 	 **/
-	public static class ProductMapper extends Mapper<LongWritable, Text, Text, Text> {
+	public static class ProductMapper extends InstrumentedMapper<LongWritable, Text, Text, Text> {
 		private static final String TAB_DELIMITER = new String("\t");
+		private static final String LOOKUP_DELIMITER = new String("\\s+");
 		private static final int SCHEMA_SIZE = 19;
 		private static final Integer GENDER_UNKNOWN = new Integer(0);
 		private static final Integer RACE_UNKNOWN = new Integer(0);
@@ -86,6 +92,13 @@ public class ProductFilter extends Configured implements Tool {
 		private Text xTextKey = new Text();
 		private Text xTextValue = new Text();
 
+		/*
+		 * When refreshing the year partitioned output incrementally, every record is written into the directory of its
+		 * year within a file named after the input file that it came from.
+		 */
+		private MultipleOutputs<Text, Text> xYearOutputs;
+		private String xInputName;
+
 		/*
 		 * Local Hash Tables to help Process the Distributed Cache information needed to process the records.
 		 */
@@ -174,6 +187,24 @@ public class ProductFilter extends Configured implements Tool {
 			if (locationMap.isEmpty()) {
 				throw new IOException("Unable to load Location data [" + LOCATION_DATA + "].");
 			}
+
+			if (IncrementalOutputFormat.isIncremental(aContext.getConfiguration())) {
+				xYearOutputs = new MultipleOutputs<Text, Text>(aContext);
+				xInputName = IncrementalOutputFormat.baseNameOf(aContext.getConfiguration(),
+						((FileSplit) aContext.getInputSplit()).getPath());
+			}
+		}
+
+		/**
+		 * Close the year partitioned output files (if any) that were opened by this mapper.
+		 * 
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void cleanup(Context aContext) throws IOException, InterruptedException {
+			if (xYearOutputs != null) {
+				xYearOutputs.close();
+			}
 		}
 
 		/**
@@ -408,9 +439,14 @@ public class ProductFilter extends Configured implements Tool {
 					xTextValue.set(valueBuilder.toString());
 
 					/*
-					 * Write the output record.
+					 * Write the output record (into the directory of its year when refreshing incrementally).
 					 */
-					aContext.write(xTextKey, xTextValue);
+					if (xYearOutputs != null) {
+						xYearOutputs.write(xTextKey, xTextValue,
+								IncrementalOutputFormat.yearPath(IncrementalOutputFormat.yearOf(dataVals[1]), xInputName));
+					} else {
+						aContext.write(xTextKey, xTextValue);
+					}
 					aContext.getCounter(NEISS_DATA.NUM_AMUSEMENTS).increment(1);
 				} else {
 					if (dataVals.length >= (SCHEMA_SIZE - 1)) {
@@ -477,8 +513,15 @@ public class ProductFilter extends Configured implements Tool {
 			try {
 				String lineOfData = bufferedRdr.readLine();
 				while (lineOfData != null) {
-					String[] lineTokens = lineOfData.split(TAB_DELIMITER);
-					aCacheMap.put(Integer.parseInt(lineTokens[0]), lineTokens[1]);
+
+					/*
+					 * The lookup files are separated by either a tab or a single space (the local copies of the files
+					 * use spaces), so split only on the first run of whitespace to keep the descriptions intact.
+					 */
+					String[] lineTokens = lineOfData.trim().split(LOOKUP_DELIMITER, 2);
+					if (lineTokens.length == 2) {
+						aCacheMap.put(Integer.parseInt(lineTokens[0]), lineTokens[1]);
+					}
 					lineOfData = bufferedRdr.readLine();
 				}
 			} catch (IOException ioe) {
@@ -500,11 +543,13 @@ public class ProductFilter extends Configured implements Tool {
 	 * @param aArguments the arguments that were passed into the program
 	 **/
 	@Override
-	public int run(String[] aArguments) throws Exception {
+	public Job createJob(String[] aArguments) throws Exception {
+		xUpToDate = false;
 
-		if (aArguments.length < 2) {
-			System.out.printf("Usage: ProductFilter <input_dir> <output_dir>\n");
-			return -1;
+		if (aArguments.length < 2 || aArguments.length > 3
+				|| (aArguments.length == 3 && !"-incremental".equals(aArguments[2]))) {
+			System.out.printf("Usage: ProductFilter <input_dir> <output_dir> [-incremental]\n");
+			return null;
 		}
 
 		Job job = new Job(getConf());
@@ -527,31 +572,56 @@ public class ProductFilter extends Configured implements Tool {
 		 */
 		job.setNumReduceTasks(0);
 
+		addCacheFiles(job.getConfiguration());
+
 		/*
-		 * Add all of the files that we need to have distributed for each of the mappers to take advantage of.
+		 * Only process the new or changed input files and write the records into the year=YYYY directories of the
+		 * output when refreshing it incrementally.
 		 */
-		DistributedCache.addCacheFile(new URI(NAME_PREFIX + GENDER_DATA), job.getConfiguration());
-		DistributedCache.addCacheFile(new URI(NAME_PREFIX + RACE_DATA), job.getConfiguration());
-		DistributedCache.addCacheFile(new URI(NAME_PREFIX + DIAGNOSIS_DATA), job.getConfiguration());
-		DistributedCache.addCacheFile(new URI(NAME_PREFIX + BODY_PART_DATA), job.getConfiguration());
-		DistributedCache.addCacheFile(new URI(NAME_PREFIX + DISPOSITION_DATA), job.getConfiguration());
-		DistributedCache.addCacheFile(new URI(NAME_PREFIX + LOCATION_DATA), job.getConfiguration());
+		if (aArguments.length == 3
+				&& !IncrementalOutputFormat.configure(job, new Path(aArguments[0]), new Path(aArguments[1]),
+						IncrementalOutputFormat.Mode.BY_INPUT_FILE)) {
+			xUpToDate = true;
+			return null;
+		}
+
+		CompressionSettings.configure(job, ProductFilter.class);
+
+		return job;
+	}
+
+	/**
+	 * Add all of the files that we need to have distributed for each of the mappers to take advantage of.
+	 * 
+	 * @param aConf the configuration of the job that runs the ProductMapper
+	 **/
+	static void addCacheFiles(Configuration aConf) throws URISyntaxException {
+		DistributedCache.addCacheFile(new URI(NAME_PREFIX + GENDER_DATA), aConf);
+		DistributedCache.addCacheFile(new URI(NAME_PREFIX + RACE_DATA), aConf);
+		DistributedCache.addCacheFile(new URI(NAME_PREFIX + DIAGNOSIS_DATA), aConf);
+		DistributedCache.addCacheFile(new URI(NAME_PREFIX + BODY_PART_DATA), aConf);
+		DistributedCache.addCacheFile(new URI(NAME_PREFIX + DISPOSITION_DATA), aConf);
+		DistributedCache.addCacheFile(new URI(NAME_PREFIX + LOCATION_DATA), aConf);
+	}
+
+	/**
+	 * Build the job from the arguments that were passed in and run it, waiting for it to be completed.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		Job job = createJob(aArguments);
+		if (job == null) {
+			return xUpToDate ? 0 : -1;
+		}
 
 		/*
 		 * Run the job and wait for it to be completed.
 		 */
 		boolean success = job.waitForCompletion(true);
-
-		/*
-		 * Quickly output the local counters to the local output stream (console).
-		 */
-		Counters allCounters = job.getCounters();
-		Counter myCounter = allCounters.findCounter(NEISS_DATA.NUM_AMUSEMENTS);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
-		myCounter = allCounters.findCounter(NEISS_DATA.NUM_REJECTED);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
-		myCounter = allCounters.findCounter(NEISS_DATA.BAD_RECORD);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
+		CompressionSettings.report(job);
+		JobInstrumentation.report(job);
 
 		return success ? 0 : 1;
 	}
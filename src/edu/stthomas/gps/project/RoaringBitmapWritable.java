@@ -0,0 +1,642 @@
+package edu.stthomas.gps.project;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Writable;
+
+/**
+ * A compressed bitmap of (non-negative) row ids in the style of a Roaring bitmap. The row ids are split by their high
+ * 16 bits into chunks of 65536 rows, and each chunk that holds any rows is kept in the container that is the smallest
+ * for its cardinality: a sorted array of the low 16 bits of its rows when there are at most 4096 of them (at most 8KB),
+ * otherwise a plain bitmap of 1024 longs (always 8KB). The sparse values of a dimension therefore only cost two bytes
+ * per row, while the dense values never cost more than one bit per row.
+ * <p>
+ * 
+ * The AND, OR and AND NOT operations (NOT is an AND NOT from a full range of rows) work one pair of containers at a
+ * time, and the cardinality of an AND can be counted without building the result.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class RoaringBitmapWritable implements Writable, Cloneable {
+
+	/*
+	 * A container is a bitmap when it holds more than ARRAY_LIMIT values and a sorted array otherwise.
+	 */
+	private static final int ARRAY_LIMIT = 4096;
+	private static final int BITMAP_WORDS = 1024;
+	private static final int CHUNK_BITS = 16;
+	private static final int LOW_MASK = 0xFFFF;
+
+	private char[] xKeys = new char[4];
+	private Container[] xContainers = new Container[4];
+	private int xSize = 0;
+
+	/**
+	 * The rows of a single chunk of 65536 row ids.
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	private static abstract class Container implements Cloneable {
+
+		abstract int cardinality();
+
+		abstract boolean contains(char aValue);
+
+		abstract Container add(char aValue);
+
+		abstract Container addRange(int aStart, int aEnd);
+
+		abstract Container and(Container aOther);
+
+		abstract int andCardinality(Container aOther);
+
+		abstract Container or(Container aOther);
+
+		abstract Container andNot(Container aOther);
+
+		/**
+		 * @return the smallest value of the container that is not less than aFrom, or -1 if there is none
+		 **/
+		abstract int nextValue(int aFrom);
+
+		abstract void write(DataOutput aOutput) throws IOException;
+
+		@Override
+		public abstract Container clone();
+
+		/**
+		 * @return the container in the representation that suits its cardinality
+		 **/
+		Container repair() {
+			return this;
+		}
+	}
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	private static final class ArrayContainer extends Container {
+		private char[] xValues;
+		private int xCardinality;
+
+		ArrayContainer(int aCapacity) {
+			xValues = new char[Math.max(aCapacity, 4)];
+		}
+
+		@Override
+		int cardinality() {
+			return xCardinality;
+		}
+
+		@Override
+		boolean contains(char aValue) {
+			return Arrays.binarySearch(xValues, 0, xCardinality, aValue) >= 0;
+		}
+
+		@Override
+		Container add(char aValue) {
+			/*
+			 * The rows are mostly added in ascending order, so check the end of the array before searching it.
+			 */
+			int position = (xCardinality == 0 || xValues[xCardinality - 1] < aValue) ? -xCardinality - 1 : Arrays
+					.binarySearch(xValues, 0, xCardinality, aValue);
+			if (position >= 0) {
+				return this;
+			} else if (xCardinality >= ARRAY_LIMIT) {
+				return toBitmap().add(aValue);
+			}
+			position = -position - 1;
+			if (xCardinality == xValues.length) {
+				xValues = Arrays.copyOf(xValues, Math.min(xValues.length * 2, ARRAY_LIMIT));
+			}
+			System.arraycopy(xValues, position, xValues, position + 1, xCardinality - position);
+			xValues[position] = aValue;
+			xCardinality++;
+			return this;
+		}
+
+		@Override
+		Container addRange(int aStart, int aEnd) {
+			return toBitmap().addRange(aStart, aEnd).repair();
+		}
+
+		@Override
+		Container and(Container aOther) {
+			ArrayContainer result = new ArrayContainer(xCardinality);
+			for (int i = 0; i < xCardinality; i++) {
+				if (aOther.contains(xValues[i])) {
+					result.xValues[result.xCardinality++] = xValues[i];
+				}
+			}
+			return result;
+		}
+
+		@Override
+		int andCardinality(Container aOther) {
+			int count = 0;
+			for (int i = 0; i < xCardinality; i++) {
+				if (aOther.contains(xValues[i])) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		@Override
+		Container or(Container aOther) {
+			if (aOther instanceof BitmapContainer) {
+				return aOther.or(this);
+			}
+
+			/*
+			 * Merge the two sorted arrays, switching to a bitmap when the result is too large for an array.
+			 */
+			ArrayContainer other = (ArrayContainer) aOther;
+			if (xCardinality + other.xCardinality > ARRAY_LIMIT) {
+				return toBitmap().or(other);
+			}
+			ArrayContainer result = new ArrayContainer(xCardinality + other.xCardinality);
+			int i = 0, j = 0;
+			while (i < xCardinality || j < other.xCardinality) {
+				char myValue;
+				if (j >= other.xCardinality || (i < xCardinality && xValues[i] < other.xValues[j])) {
+					myValue = xValues[i++];
+				} else if (i >= xCardinality || other.xValues[j] < xValues[i]) {
+					myValue = other.xValues[j++];
+				} else {
+					myValue = xValues[i++];
+					j++;
+				}
+				result.xValues[result.xCardinality++] = myValue;
+			}
+			return result;
+		}
+
+		@Override
+		Container andNot(Container aOther) {
+			ArrayContainer result = new ArrayContainer(xCardinality);
+			for (int i = 0; i < xCardinality; i++) {
+				if (!aOther.contains(xValues[i])) {
+					result.xValues[result.xCardinality++] = xValues[i];
+				}
+			}
+			return result;
+		}
+
+		@Override
+		int nextValue(int aFrom) {
+			int position = Arrays.binarySearch(xValues, 0, xCardinality, (char) aFrom);
+			position = (position >= 0) ? position : -position - 1;
+			return (position < xCardinality) ? xValues[position] : -1;
+		}
+
+		@Override
+		void write(DataOutput aOutput) throws IOException {
+			for (int i = 0; i < xCardinality; i++) {
+				aOutput.writeChar(xValues[i]);
+			}
+		}
+
+		@Override
+		public ArrayContainer clone() {
+			ArrayContainer result = new ArrayContainer(0);
+			result.xValues = Arrays.copyOf(xValues, xValues.length);
+			result.xCardinality = xCardinality;
+			return result;
+		}
+
+		BitmapContainer toBitmap() {
+			BitmapContainer result = new BitmapContainer();
+			for (int i = 0; i < xCardinality; i++) {
+				result.add(xValues[i]);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	private static final class BitmapContainer extends Container {
+		private long[] xWords = new long[BITMAP_WORDS];
+		private int xCardinality;
+
+		@Override
+		int cardinality() {
+			return xCardinality;
+		}
+
+		@Override
+		boolean contains(char aValue) {
+			return (xWords[aValue >>> 6] & (1L << aValue)) != 0;
+		}
+
+		@Override
+		Container add(char aValue) {
+			long before = xWords[aValue >>> 6];
+			xWords[aValue >>> 6] = before | (1L << aValue);
+			if (before != xWords[aValue >>> 6]) {
+				xCardinality++;
+			}
+			return this;
+		}
+
+		@Override
+		Container addRange(int aStart, int aEnd) {
+			for (int myValue = aStart; myValue < aEnd; myValue++) {
+				xWords[myValue >>> 6] |= (1L << myValue);
+			}
+			recount();
+			return this;
+		}
+
+		@Override
+		Container and(Container aOther) {
+			if (aOther instanceof ArrayContainer) {
+				return aOther.and(this);
+			}
+			BitmapContainer result = new BitmapContainer();
+			long[] otherWords = ((BitmapContainer) aOther).xWords;
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				result.xWords[i] = xWords[i] & otherWords[i];
+			}
+			result.recount();
+			return result.repair();
+		}
+
+		@Override
+		int andCardinality(Container aOther) {
+			if (aOther instanceof ArrayContainer) {
+				return aOther.andCardinality(this);
+			}
+			int count = 0;
+			long[] otherWords = ((BitmapContainer) aOther).xWords;
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				count += Long.bitCount(xWords[i] & otherWords[i]);
+			}
+			return count;
+		}
+
+		@Override
+		Container or(Container aOther) {
+			BitmapContainer result = clone();
+			if (aOther instanceof ArrayContainer) {
+				ArrayContainer other = (ArrayContainer) aOther;
+				for (int i = 0; i < other.xCardinality; i++) {
+					result.add(other.xValues[i]);
+				}
+				return result.repair();
+			}
+			long[] otherWords = ((BitmapContainer) aOther).xWords;
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				result.xWords[i] |= otherWords[i];
+			}
+			result.recount();
+			return result.repair();
+		}
+
+		@Override
+		Container andNot(Container aOther) {
+			BitmapContainer result = clone();
+			if (aOther instanceof ArrayContainer) {
+				ArrayContainer other = (ArrayContainer) aOther;
+				for (int i = 0; i < other.xCardinality; i++) {
+					result.xWords[other.xValues[i] >>> 6] &= ~(1L << other.xValues[i]);
+				}
+			} else {
+				long[] otherWords = ((BitmapContainer) aOther).xWords;
+				for (int i = 0; i < BITMAP_WORDS; i++) {
+					result.xWords[i] &= ~otherWords[i];
+				}
+			}
+			result.recount();
+			return result.repair();
+		}
+
+		@Override
+		int nextValue(int aFrom) {
+			int word = aFrom >>> 6;
+			if (word >= BITMAP_WORDS) {
+				return -1;
+			}
+			long myBits = xWords[word] & (-1L << aFrom);
+			while (myBits == 0) {
+				if (++word >= BITMAP_WORDS) {
+					return -1;
+				}
+				myBits = xWords[word];
+			}
+			return (word << 6) + Long.numberOfTrailingZeros(myBits);
+		}
+
+		@Override
+		void write(DataOutput aOutput) throws IOException {
+			for (long myWord : xWords) {
+				aOutput.writeLong(myWord);
+			}
+		}
+
+		@Override
+		public BitmapContainer clone() {
+			BitmapContainer result = new BitmapContainer();
+			result.xWords = Arrays.copyOf(xWords, BITMAP_WORDS);
+			result.xCardinality = xCardinality;
+			return result;
+		}
+
+		@Override
+		Container repair() {
+			if (xCardinality > ARRAY_LIMIT) {
+				return this;
+			}
+			ArrayContainer result = new ArrayContainer(xCardinality);
+			for (int myValue = nextValue(0); myValue >= 0; myValue = nextValue(myValue + 1)) {
+				result.xValues[result.xCardinality++] = (char) myValue;
+			}
+			return result;
+		}
+
+		private void recount() {
+			xCardinality = 0;
+			for (long myWord : xWords) {
+				xCardinality += Long.bitCount(myWord);
+			}
+		}
+	}
+
+	/**
+	 * Build a bitmap that holds every row id of a range.
+	 * 
+	 * @param aStart the first row id of the range
+	 * @param aEnd the row id just past the end of the range
+	 * @return the bitmap
+	 **/
+	public static RoaringBitmapWritable range(int aStart, int aEnd) {
+		RoaringBitmapWritable result = new RoaringBitmapWritable();
+		result.addRange(aStart, aEnd);
+		return result;
+	}
+
+	/**
+	 * Remove every row id from the bitmap so this object can be reused.
+	 **/
+	public void clear() {
+		xSize = 0;
+		Arrays.fill(xContainers, null);
+	}
+
+	/**
+	 * @param aRow the row id to add
+	 **/
+	public void add(int aRow) {
+		int index = containerFor((char) (aRow >>> CHUNK_BITS));
+		xContainers[index] = xContainers[index].add((char) (aRow & LOW_MASK));
+	}
+
+	/**
+	 * @param aStart the first row id to add
+	 * @param aEnd the row id just past the last one to add
+	 **/
+	public void addRange(int aStart, int aEnd) {
+		int myStart = aStart;
+		while (myStart < aEnd) {
+			int chunkEnd = Math.min(aEnd, ((myStart >>> CHUNK_BITS) + 1) << CHUNK_BITS);
+			int index = containerFor((char) (myStart >>> CHUNK_BITS));
+			xContainers[index] = xContainers[index].addRange(myStart & LOW_MASK,
+					((chunkEnd - 1) & LOW_MASK) + 1);
+			myStart = chunkEnd;
+		}
+	}
+
+	/**
+	 * @param aRow the row id
+	 * @return true if the bitmap holds the row id
+	 **/
+	public boolean contains(int aRow) {
+		int index = indexOf((char) (aRow >>> CHUNK_BITS));
+		return index >= 0 && xContainers[index].contains((char) (aRow & LOW_MASK));
+	}
+
+	/**
+	 * @return the number of row ids within the bitmap
+	 **/
+	public long getCardinality() {
+		long cardinality = 0;
+		for (int i = 0; i < xSize; i++) {
+			cardinality += xContainers[i].cardinality();
+		}
+		return cardinality;
+	}
+
+	/**
+	 * @return true if the bitmap holds no row ids
+	 **/
+	public boolean isEmpty() {
+		return xSize == 0;
+	}
+
+	/**
+	 * Find the next row id of the bitmap, for iterating through the rows like a BitSet:
+	 * <code>for (int row = bitmap.nextSetBit(0); row >= 0; row = bitmap.nextSetBit(row + 1))</code>
+	 * 
+	 * @param aFrom the row id to start looking from
+	 * @return the smallest row id of the bitmap that is not less than aFrom, or -1 if there is none
+	 **/
+	public int nextSetBit(int aFrom) {
+		char fromKey = (char) (aFrom >>> CHUNK_BITS);
+		int index = indexOf(fromKey);
+		if (index < 0) {
+			index = -index - 1;
+		} else {
+			int myValue = xContainers[index].nextValue(aFrom & LOW_MASK);
+			if (myValue >= 0) {
+				return (fromKey << CHUNK_BITS) | myValue;
+			}
+			index++;
+		}
+		return (index < xSize) ? (xKeys[index] << CHUNK_BITS) | xContainers[index].nextValue(0) : -1;
+	}
+
+	/**
+	 * Keep only the row ids that are also held by the other bitmap.
+	 * 
+	 * @param aOther the other bitmap
+	 **/
+	public void and(RoaringBitmapWritable aOther) {
+		int size = 0;
+		for (int i = 0, j = 0; i < xSize && j < aOther.xSize;) {
+			if (xKeys[i] < aOther.xKeys[j]) {
+				i++;
+			} else if (xKeys[i] > aOther.xKeys[j]) {
+				j++;
+			} else {
+				Container result = xContainers[i].and(aOther.xContainers[j]);
+				if (result.cardinality() > 0) {
+					xKeys[size] = xKeys[i];
+					xContainers[size++] = result;
+				}
+				i++;
+				j++;
+			}
+		}
+		Arrays.fill(xContainers, size, xSize, null);
+		xSize = size;
+	}
+
+	/**
+	 * Count the row ids held by both bitmaps without building their intersection.
+	 * 
+	 * @param aOther the other bitmap
+	 * @return the number of row ids held by both bitmaps
+	 **/
+	public long andCardinality(RoaringBitmapWritable aOther) {
+		long cardinality = 0;
+		for (int i = 0, j = 0; i < xSize && j < aOther.xSize;) {
+			if (xKeys[i] < aOther.xKeys[j]) {
+				i++;
+			} else if (xKeys[i] > aOther.xKeys[j]) {
+				j++;
+			} else {
+				cardinality += xContainers[i++].andCardinality(aOther.xContainers[j++]);
+			}
+		}
+		return cardinality;
+	}
+
+	/**
+	 * Add every row id that is held by the other bitmap.
+	 * 
+	 * @param aOther the other bitmap
+	 **/
+	public void or(RoaringBitmapWritable aOther) {
+		for (int j = 0; j < aOther.xSize; j++) {
+			int index = indexOf(aOther.xKeys[j]);
+			if (index >= 0) {
+				xContainers[index] = xContainers[index].or(aOther.xContainers[j]);
+			} else {
+				insert(-index - 1, aOther.xKeys[j], aOther.xContainers[j].clone());
+			}
+		}
+	}
+
+	/**
+	 * Remove every row id that is held by the other bitmap.
+	 * 
+	 * @param aOther the other bitmap
+	 **/
+	public void andNot(RoaringBitmapWritable aOther) {
+		int size = 0;
+		for (int i = 0; i < xSize; i++) {
+			int index = aOther.indexOf(xKeys[i]);
+			Container result = (index < 0) ? xContainers[i] : xContainers[i].andNot(aOther.xContainers[index]);
+			if (result.cardinality() > 0) {
+				xKeys[size] = xKeys[i];
+				xContainers[size++] = result;
+			}
+		}
+		Arrays.fill(xContainers, size, xSize, null);
+		xSize = size;
+	}
+
+	/**
+	 * @return the number of bytes that the bitmap takes when it is written out
+	 **/
+	public long getSerializedSize() {
+		long size = 4;
+		for (int i = 0; i < xSize; i++) {
+			int cardinality = xContainers[i].cardinality();
+			size += 2 + 2 + ((cardinality > ARRAY_LIMIT) ? BITMAP_WORDS * 8 : cardinality * 2);
+		}
+		return size;
+	}
+
+	@Override
+	public RoaringBitmapWritable clone() {
+		RoaringBitmapWritable result = new RoaringBitmapWritable();
+		result.xKeys = Arrays.copyOf(xKeys, xKeys.length);
+		result.xContainers = new Container[xContainers.length];
+		for (int i = 0; i < xSize; i++) {
+			result.xContainers[i] = xContainers[i].clone();
+		}
+		result.xSize = xSize;
+		return result;
+	}
+
+	@Override
+	public void write(DataOutput aOutput) throws IOException {
+		aOutput.writeInt(xSize);
+		for (int i = 0; i < xSize; i++) {
+			aOutput.writeChar(xKeys[i]);
+			aOutput.writeChar(xContainers[i].cardinality() - 1); // 1 to 65536 rows
+			xContainers[i].write(aOutput);
+		}
+	}
+
+	@Override
+	public void readFields(DataInput aInput) throws IOException {
+		clear();
+		int size = aInput.readInt();
+		for (int i = 0; i < size; i++) {
+			char myKey = aInput.readChar();
+			int cardinality = aInput.readChar() + 1;
+			Container myContainer;
+			if (cardinality > ARRAY_LIMIT) {
+				BitmapContainer bitmap = new BitmapContainer();
+				for (int j = 0; j < BITMAP_WORDS; j++) {
+					bitmap.xWords[j] = aInput.readLong();
+				}
+				bitmap.xCardinality = cardinality;
+				myContainer = bitmap;
+			} else {
+				ArrayContainer array = new ArrayContainer(cardinality);
+				for (int j = 0; j < cardinality; j++) {
+					array.xValues[j] = aInput.readChar();
+				}
+				array.xCardinality = cardinality;
+				myContainer = array;
+			}
+			insert(xSize, myKey, myContainer);
+		}
+	}
+
+	/**
+	 * @return the position of the container of a chunk, or (-insertion point - 1) if the chunk has no container
+	 **/
+	private int indexOf(char aKey) {
+		return Arrays.binarySearch(xKeys, 0, xSize, aKey);
+	}
+
+	/**
+	 * @return the position of the container of a chunk, adding an empty container if the chunk does not have one
+	 **/
+	private int containerFor(char aKey) {
+		/*
+		 * The rows are mostly added in ascending order, so check the last container before searching for it.
+		 */
+		if (xSize > 0 && xKeys[xSize - 1] == aKey) {
+			return xSize - 1;
+		}
+		int index = indexOf(aKey);
+		if (index < 0) {
+			index = -index - 1;
+			insert(index, aKey, new ArrayContainer(4));
+		}
+		return index;
+	}
+
+	private void insert(int aIndex, char aKey, Container aContainer) {
+		if (xSize == xKeys.length) {
+			xKeys = Arrays.copyOf(xKeys, xKeys.length * 2);
+			xContainers = Arrays.copyOf(xContainers, xContainers.length * 2);
+		}
+		System.arraycopy(xKeys, aIndex, xKeys, aIndex + 1, xSize - aIndex);
+		System.arraycopy(xContainers, aIndex, xContainers, aIndex + 1, xSize - aIndex);
+		xKeys[aIndex] = aKey;
+		xContainers[aIndex] = aContainer;
+		xSize++;
+	}
+}
@@ -0,0 +1,154 @@
+package edu.stthomas.gps.project;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.util.bloom.BloomFilter;
+import org.apache.hadoop.util.bloom.Key;
+import org.apache.hadoop.util.hash.Hash;
+
+/**
+ * A scalable Bloom filter (Almeida et al.) that keeps its false positive rate below a target no matter how many values
+ * are added to it. It is a list of ordinary (Hadoop) Bloom filters: once the newest one holds as many values as it was
+ * sized for, another one twice as large and with half the false positive rate is added after it. A value that was
+ * never added is reported as present by any one stage with at most the sum of their rates, which converges to the
+ * target rate.
+ * <p>
+ * 
+ * A value that the filter does not contain was definitely never added, which is what makes it a cheap pre-check in
+ * front of an exact (and expensive) lookup.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class ScalableBloomFilter implements Writable {
+	private static final double TIGHTENING_RATIO = 0.5;
+	private static final int GROWTH_FACTOR = 2;
+
+	private int xInitialCapacity;
+	private double xFalsePositiveRate;
+	private List<BloomFilter> xStages = new ArrayList<BloomFilter>();
+	private long xCount = 0; // values added into all of the stages
+	private long xLastStageCount = 0; // values added into the newest stage
+
+	/**
+	 * Used by readFields().
+	 **/
+	public ScalableBloomFilter() {
+		this(1024, 0.01);
+	}
+
+	/**
+	 * @param aInitialCapacity the number of values that the first stage is sized for
+	 * @param aFalsePositiveRate the largest false positive rate of the whole filter (e.g. 0.01)
+	 **/
+	public ScalableBloomFilter(int aInitialCapacity, double aFalsePositiveRate) {
+		if (aInitialCapacity < 1 || aFalsePositiveRate <= 0.0 || aFalsePositiveRate >= 1.0) {
+			throw new IllegalArgumentException("Invalid Bloom filter capacity " + aInitialCapacity
+					+ " or false positive rate " + aFalsePositiveRate);
+		}
+		xInitialCapacity = aInitialCapacity;
+		xFalsePositiveRate = aFalsePositiveRate;
+	}
+
+	/**
+	 * @param aValue the value to add
+	 **/
+	public void add(String aValue) {
+		if (xStages.isEmpty() || xLastStageCount >= capacityOf(xStages.size() - 1)) {
+			xStages.add(newStage(xStages.size()));
+			xLastStageCount = 0;
+		}
+		xStages.get(xStages.size() - 1).add(keyOf(aValue));
+		xLastStageCount++;
+		xCount++;
+	}
+
+	/**
+	 * @param aValue the value to test
+	 * @return false if the value was definitely never added, true if it probably was
+	 **/
+	public boolean mightContain(String aValue) {
+		Key myKey = keyOf(aValue);
+		for (BloomFilter myStage : xStages) {
+			if (myStage.membershipTest(myKey)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the number of values that were added (including any added more than once)
+	 **/
+	public long getCount() {
+		return xCount;
+	}
+
+	/**
+	 * @return the number of stages that the filter has grown to
+	 **/
+	public int getStageCount() {
+		return xStages.size();
+	}
+
+	@Override
+	public void write(DataOutput aOutput) throws IOException {
+		aOutput.writeInt(xInitialCapacity);
+		aOutput.writeDouble(xFalsePositiveRate);
+		aOutput.writeLong(xCount);
+		aOutput.writeLong(xLastStageCount);
+		aOutput.writeInt(xStages.size());
+		for (BloomFilter myStage : xStages) {
+			myStage.write(aOutput);
+		}
+	}
+
+	@Override
+	public void readFields(DataInput aInput) throws IOException {
+		xInitialCapacity = aInput.readInt();
+		xFalsePositiveRate = aInput.readDouble();
+		xCount = aInput.readLong();
+		xLastStageCount = aInput.readLong();
+		int stageCount = aInput.readInt();
+		xStages.clear();
+		for (int i = 0; i < stageCount; i++) {
+			BloomFilter myStage = new BloomFilter();
+			myStage.readFields(aInput);
+			xStages.add(myStage);
+		}
+	}
+
+	/**
+	 * @return the number of values that a stage is sized for
+	 **/
+	private long capacityOf(int aStage) {
+		return xInitialCapacity * (long) Math.pow(GROWTH_FACTOR, aStage);
+	}
+
+	/**
+	 * Size a new stage for its capacity and its share of the false positive rate, using the usual optimal number of
+	 * bits (n * -ln(p) / ln(2)^2) and of hash functions (bits / n * ln(2)).
+	 **/
+	private BloomFilter newStage(int aStage) {
+		long capacity = capacityOf(aStage);
+		double stageRate = xFalsePositiveRate * (1.0 - TIGHTENING_RATIO) * Math.pow(TIGHTENING_RATIO, aStage);
+		int vectorSize = (int) Math.min(Integer.MAX_VALUE - 64,
+				Math.ceil(capacity * -Math.log(stageRate) / (Math.log(2) * Math.log(2))));
+		int hashCount = Math.max(1, (int) Math.round((double) vectorSize / capacity * Math.log(2)));
+		return new BloomFilter(vectorSize, hashCount, Hash.MURMUR_HASH);
+	}
+
+	private static Key keyOf(String aValue) {
+		try {
+			return new Key(aValue.getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -1,19 +1,15 @@
 package edu.stthomas.gps.project;
 
 import java.io.IOException;
-import java.text.NumberFormat;
+import java.util.Arrays;
+import java.util.Comparator;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapreduce.Counter;
-import org.apache.hadoop.mapreduce.Counters;
 import org.apache.hadoop.mapreduce.Job;
-import org.apache.hadoop.mapreduce.Mapper;
-import org.apache.hadoop.mapreduce.Partitioner;
-import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
@@ -22,101 +18,191 @@ import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.log4j.Logger;
 
+import edu.stthomas.gps.project.IncidentAggregateWritable.DistinctField;
+
 /**
  * 
  * @author Robert Driesch - UST Id# 101058113
  * @version 1.0, December 1, 2014
  **/
-public class SimpleAgeCount extends Configured implements Tool {
+public class SimpleAgeCount extends Configured implements Tool, JobFactory {
 	private static final Logger LOG = Logger.getLogger(SimpleAgeCount.class);
 
+	/*
+	 * Default lower boundaries (in years) of each age category. These match the categories that are used within the
+	 * CPSC reports with everything at or above the last boundary collected into a single open ended category.
+	 */
+	private static final String DEFAULT_AGE_BOUNDARIES = new String("0,5,10,15,20,25,30,35,40,45,50");
+
 	public static enum NEISS_DATA {
-		TOAL_RECORDS_PROCESSED
+		TOAL_RECORDS_PROCESSED, NUM_UNKNOWN_AGES, NUM_BAD_WEIGHTS
 	}
 
+	/*
+	 * Set when the aggregate store is already up to date and the report was rebuilt without running a job.
+	 */
+	private boolean xUpToDate;
+
 	/**
 	 * @version 1.0, December 1, 2014
 	 **/
-	public static class AgePartitioner extends Partitioner<Text, IntWritable> {
+	public static class AgeBuckets {
+		public static final int UNKNOWN_BUCKET = -1;
+
+		/*
+		 * NEISS records the age of infants (under 2 years old) as the number of months plus 200 (e.g. 201 = 1 month).
+		 */
+		private static final int INFANT_AGE_OFFSET = 200;
+		private static final int MONTHS_PER_YEAR = 12;
+
+		private final int[] xBoundaries;
+		private final boolean xInfantMonths;
 
-		// @formatter:off
 		/**
-		 * Read the <key, value> pair generated by the Mapper and use the numeric age to determine the what range 
-		 * this patient will fall into and which reducer this incident record should be routed towards. The 
-		 * goal is to have the data from each age category routed to a different reducer so when 11 Reduce 
-		 * Tasks are used, then each task should only be processing records that match their age category.
-		 * <p>
+		 * Build the age categories from a comma separated list of ascending lower boundaries (in years).
 		 * 
-		 * Expects a line of input like the following: 
-		 * 				[KEY(Text(Age))	VALUE(IntWritable(1))]
-		 * <p>
+		 * @param aBoundaries the comma separated list of the lower boundary of each age category
+		 * @param aInfantMonths indicates if ages above 200 should be decoded as months for infants
+		 **/
+		public AgeBuckets(String aBoundaries, boolean aInfantMonths) {
+			String[] boundaryTokens = aBoundaries.split(",");
+			xBoundaries = new int[boundaryTokens.length];
+			for (int i = 0; i < boundaryTokens.length; i++) {
+				xBoundaries[i] = Integer.parseInt(boundaryTokens[i].trim());
+				if (i > 0 && xBoundaries[i] <= xBoundaries[i - 1]) {
+					throw new IllegalArgumentException("Age boundaries must be in ascending order : " + aBoundaries);
+				}
+			}
+			xInfantMonths = aInfantMonths;
+		}
+
+		/**
+		 * Build the age categories from the settings stored within the configuration.
 		 * 
-		 * @param aKey a simple text key that represents the Age
-		 * @param aValue a count of the incidents found for this key
-		 * @param aNumReduceTasks the number of Reduce Tasks allocated for this process
+		 * @param aConfig the configuration associated with this process
 		 **/
-		// @formatter:on
-		@Override
-		public int getPartition(Text aKey, IntWritable aValue, int aNumReduceTasks) {
-			/*
-			 * Perform a sanity test to avoid any divide by zero exceptions (modulus with zero) when the number of
-			 * reducers is set to zero for some reason.
-			 */
-			if (aNumReduceTasks == 0) {
-				return 0;
+		public static AgeBuckets fromConfiguration(Configuration aConfig) {
+			return new AgeBuckets(aConfig.get("agecount.bucket.boundaries", DEFAULT_AGE_BOUNDARIES),
+					aConfig.getBoolean("agecount.infant.months", true));
+		}
+
+		/**
+		 * Determine which age category the raw NEISS age value belongs to.
+		 * 
+		 * @param aRawAge the Age field as it was coded within the NEISS data
+		 * @return the index of the age category or UNKNOWN_BUCKET when the age can not be categorized
+		 **/
+		public int bucketOf(String aRawAge) {
+			int ageInYears;
+			try {
+				ageInYears = yearsOf(aRawAge, xInfantMonths);
+			} catch (NumberFormatException e) {
+				return UNKNOWN_BUCKET;
+			}
+			if (ageInYears < xBoundaries[0]) {
+				return UNKNOWN_BUCKET;
 			}
 
 			/*
-			 * Get the Age from the key in the <key,value> pair so we can determine what category it belongs to for use
-			 * for the partitioning.
+			 * Note: A value of (-<insertion-point> - 1) is returned when the Arrays.binarySearch() does not find any
+			 * match during its probe, so the category is the one just before the insertion point.
 			 */
-			int ageInt = Integer.parseInt(aKey.toString());
+			int position = Arrays.binarySearch(xBoundaries, ageInYears);
+			return (position >= 0) ? position : (-position - 2);
+		}
+
+		/**
+		 * Convert the raw NEISS age value into years.
+		 * 
+		 * @param aRawAge the Age field as it was coded within the NEISS data
+		 * @param aInfantMonths indicates if ages above 200 should be decoded as months for infants
+		 * @return the age in years
+		 * @throws NumberFormatException when the Age field is not a number
+		 **/
+		public static int yearsOf(String aRawAge, boolean aInfantMonths) {
+			int ageInYears = Integer.parseInt(aRawAge.trim());
 
 			/*
-			 * Set the partition number based upon the range that this age falls into in order to keep the output
-			 * results grouped based upon the same category that was using in the CPSC reports.
+			 * Convert the ages coded as months for the infants back into years before we locate the category.
 			 */
-			if (ageInt >= 0 && ageInt <= 4)
-				return 0 % aNumReduceTasks;
-			else if (ageInt >= 5 && ageInt <= 9)
-				return 1 % aNumReduceTasks;
-			else if (ageInt >= 10 && ageInt <= 14)
-				return 2 % aNumReduceTasks;
-			else if (ageInt >= 15 && ageInt <= 19)
-				return 3 % aNumReduceTasks;
-			else if (ageInt >= 20 && ageInt <= 24)
-				return 4 % aNumReduceTasks;
-			else if (ageInt >= 25 && ageInt <= 29)
-				return 5 % aNumReduceTasks;
-			else if (ageInt >= 30 && ageInt <= 34)
-				return 6 % aNumReduceTasks;
-			else if (ageInt >= 35 && ageInt <= 39)
-				return 7 % aNumReduceTasks;
-			else if (ageInt >= 40 && ageInt <= 44)
-				return 8 % aNumReduceTasks;
-			else if (ageInt >= 45 && ageInt <= 49)
-				return 9 % aNumReduceTasks;
-			else
-				return 10 % aNumReduceTasks;
+			if (aInfantMonths && ageInYears >= INFANT_AGE_OFFSET) {
+				ageInYears = (ageInYears - INFANT_AGE_OFFSET) / MONTHS_PER_YEAR;
+			}
+			return ageInYears;
+		}
+
+		/**
+		 * Build the description of the age category for use within the reports.
+		 * 
+		 * @param aBucket the index of the age category
+		 * @return the text description of the age category (e.g. "5-9" or "50+")
+		 **/
+		public String label(int aBucket) {
+			if (aBucket < 0 || aBucket >= xBoundaries.length) {
+				return "UNKNOWN";
+			} else if (aBucket == xBoundaries.length - 1) {
+				return xBoundaries[aBucket] + "+";
+			} else if (xBoundaries[aBucket] == xBoundaries[aBucket + 1] - 1) {
+				return String.valueOf(xBoundaries[aBucket]);
+			}
+			return xBoundaries[aBucket] + "-" + (xBoundaries[aBucket + 1] - 1);
 		}
 	}
 
 	/**
+	 * Formats the age category index stored within the aggregate store as its description, with the categories kept in
+	 * the order of their index.
+	 * 
 	 * @version 1.0, December 1, 2014
 	 **/
-	public static class SimpleAgeCountMapper extends Mapper<Text, Text, Text, IntWritable> {
+	public static class AgeFormatter extends AggregateStore.ReportFormatter {
+
+		@Override
+		public String formatKey(String aKey) {
+			return "[ " + AgeBuckets.fromConfiguration(getConf()).label(Integer.parseInt(aKey)) + " ]";
+		}
+
+		@Override
+		public Comparator<String> getKeyOrder() {
+			return new Comparator<String>() {
+				@Override
+				public int compare(String aFirst, String aSecond) {
+					return Integer.valueOf(aFirst).compareTo(Integer.valueOf(aSecond));
+				}
+			};
+		}
+	}
+
+	/**
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class SimpleAgeCountMapper extends InstrumentedMapper<Text, Text, IntWritable, IncidentAggregateWritable> {
 
 		/*
 		 * Local Cache Variables for the <key,value> for reuse for each input record being processed.
 		 */
-		private Text xWordKey = new Text();
+		private IntWritable xBucketKey = new IntWritable();
+		private IncidentAggregateWritable xIncidentValue = new IncidentAggregateWritable();
+		private DistinctField xDistinctField;
+		private AgeBuckets xAgeBuckets;
 
-		private static final IntWritable ONE_COUNT = new IntWritable(1);
 		private static final String TAB_DELIMITER = new String("\t");
 
+		/**
+		 * Setup the age categories that will be used to classify each of the incidents, and the field whose distinct
+		 * values are counted (if any).
+		 * 
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void setup(Context aContext) throws IOException, InterruptedException {
+			xAgeBuckets = AgeBuckets.fromConfiguration(aContext.getConfiguration());
+			xDistinctField = DistinctField.fromConfiguration(aContext.getConfiguration());
+		}
+
 		/**
 		 * Read the filtered NEISS data and calculate the frequency of the incidents for each age category. This is
-		 * essentially a simple WordCount algorithm over the Ager field.
+		 * essentially a simple WordCount algorithm over the age category derived from the Age field.
 		 * <p>
 		 * 
 		 * @param aKey a simple text key that represents the CaseNbr
@@ -146,19 +232,38 @@ public class SimpleAgeCount extends Configured implements Tool {
 			 // @formatter:on
 
 			/*
-			 * Get the Age from the tab delimited value in the <key,value> pair so we can extract out the age value in
-			 * order to summarize the number of incidents by age categories.
+			 * Get the Age from the tab delimited value in the <key,value> pair and convert it into the age category
+			 * here on the map side so that the shuffle only has to carry the small number of category keys.
 			 */
-			String ageValue = aValue.toString().split(TAB_DELIMITER)[4];
+			String[] dataVals = aValue.toString().split(TAB_DELIMITER);
+			int ageBucket = xAgeBuckets.bucketOf(dataVals[4]);
+			if (ageBucket == AgeBuckets.UNKNOWN_BUCKET) {
+				aContext.getCounter(NEISS_DATA.NUM_UNKNOWN_AGES).increment(1);
+			}
+
+			/*
+			 * Get the statistical Weight and Stratum of the incident so that the national estimate is accumulated in
+			 * the same pass as the raw count of the incidents.
+			 */
+			try {
+				xIncidentValue.set(Double.parseDouble(dataVals[2]), dataVals[3]);
+			} catch (NumberFormatException e) {
+				// Bump the counter of bad weights. The incident is still counted but adds nothing to the estimate.
+				aContext.getCounter(NEISS_DATA.NUM_BAD_WEIGHTS).increment(1);
+				xIncidentValue.set(0.0, dataVals[3]);
+			}
+			if (xDistinctField != null) {
+				xDistinctField.addTo(xIncidentValue, aKey, dataVals);
+			}
 
 			// @formatter:off
 			/*
 			 * Write the output record in the following format: 
-			 * 		[KEY(Text(Ager))  VALUE(IntWritable(1))]
+			 * 		[KEY(IntWritable(AgeCategory))  VALUE(IncidentAggregateWritable(1, Weight, Stratum))]
 			 */
 			// @formatter:on
-			xWordKey.set(ageValue);
-			aContext.write(xWordKey, ONE_COUNT);
+			xBucketKey.set(ageBucket);
+			aContext.write(xBucketKey, xIncidentValue);
 			aContext.getCounter(NEISS_DATA.TOAL_RECORDS_PROCESSED).increment(1);
 		}
 	}
@@ -166,80 +271,57 @@ public class SimpleAgeCount extends Configured implements Tool {
 	/**
 	 * @version 1.0, December 1, 2014
 	 **/
-	public static class SimpleAgeSumReducer extends Reducer<Text, IntWritable, Text, Text> {
-		private static final NumberFormat PERCENT_FORMAT = NumberFormat.getPercentInstance();
+	public static class SimpleAgeSumReducer extends InstrumentedReducer<IntWritable, IncidentAggregateWritable, Text, Text> {
 
 		/*
 		 * Local Cache Variables for the <key, value> for reuse for each output reduce record being processed.
 		 */
-		int xAgeValue;
-		int xAgeCount = 0;// Must persist across method calls
 		private Text xTextKey = new Text();
 		private Text xTextValue = new Text();
+		private IncidentAggregateWritable xSumValue = new IncidentAggregateWritable();
+		private AgeBuckets xAgeBuckets;
 
 		private static final String SPACE_DELIMITER = new String(" ");
 
 		/**
-		 * Read all of the <key, List(values)> pairs generated by the Mapper<> and determine the number of times that we
-		 * encounter an incident for a particular age category and group those counts based upon the age (key).
-		 * <p>
+		 * Setup the age categories so that the category index can be converted back into its description.
 		 * 
-		 * @param aKey a Text value key that represents the age value of the patient involved in the incident
-		 * @param aValues an iterable array of counts of the incidents found across the values for the key
 		 * @param aContext the context object associated with this process
 		 **/
 		@Override
-		protected void reduce(Text aKey, Iterable<IntWritable> aValues, Context aContext) throws IOException,
-				InterruptedException {
-
-			/*
-			 * Get the Age value from the key in the <key,value> pair so we can remember what category this reducer is
-			 * responsible for building. It does not which one we remember since all of the different values in the
-			 * <key,value> pairs should belong to the same category. This is why we simply get the value every time.
-			 */
-			xAgeValue = Integer.parseInt(aKey.toString());
-
-			/*
-			 * Loop through all of the values collected for each key (Age) from the Mapper<> and summarize the total
-			 * number of incidents that occurred for that age within the data.
-			 */
-			for (IntWritable myValue : aValues) {
-				xAgeCount += myValue.get();
-			}
+		protected void setup(Context aContext) throws IOException, InterruptedException {
+			xAgeBuckets = AgeBuckets.fromConfiguration(aContext.getConfiguration());
 		}
 
 		/**
-		 * Cleanup and unload all of the internal data structures and write the summarization record out to the context.
-		 * This Reducer takes advantage of the fact that the only <key,value> that it will interrogate are the ones that
-		 * belong to the same age category.
+		 * Read all of the <key, List(values)> pairs generated by the Mapper<> and determine the number of times that we
+		 * encounter an incident for a particular age category. Each age category is written out as soon as it has been
+		 * summarized, so any number of Reduce Tasks may be used.
+		 * <p>
 		 * 
+		 * @param aKey the index of the age category of the patient involved in the incident
+		 * @param aValues an iterable array of counts of the incidents found across the values for the key
 		 * @param aContext the context object associated with this process
 		 **/
 		@Override
-		protected void cleanup(Context aContext) throws java.io.IOException, InterruptedException {
+		protected void reduce(IntWritable aKey, Iterable<IncidentAggregateWritable> aValues, Context aContext)
+				throws IOException, InterruptedException {
 
 			/*
-			 * Calculate the percentage of incidents that occurred for this age category across the entire population of
-			 * years.
+			 * Loop through all of the values collected for each key (AgeCategory) from the Mapper<> and summarize the
+			 * total number of incidents that occurred for that age category within the data.
 			 */
-			double percentOfTotalIncidents = (double) xAgeCount
-					/ (double) aContext.getConfiguration().getInt("wordcount.total.incidents", 1);
+			xSumValue.clear();
+			for (IncidentAggregateWritable myValue : aValues) {
+				xSumValue.merge(myValue);
+			}
 
 			/*
-			 * Build up the Format of the New Value:
-			 * "[ Total=SUM(IncidentCount)  PercentTotalAllYears=(SUM(IncidentCount)/TotalIncidents) ]"
+			 * Build up the Format of the New Value with the percentage of the incidents across the entire population of
+			 * years: "[ Total=...  PercentTotalAllYears=...  NationalEstimate=...  StdError=... ]"
 			 */
-			StringBuilder textValueBuilder = new StringBuilder();
-			textValueBuilder.append("[");
-			textValueBuilder.append(SPACE_DELIMITER);
-			textValueBuilder.append("Total=");
-			textValueBuilder.append(String.valueOf(xAgeCount));
-			textValueBuilder.append(SPACE_DELIMITER);
-			textValueBuilder.append(SPACE_DELIMITER);
-			textValueBuilder.append("PercentTotalAllYears=");
-			textValueBuilder.append(PERCENT_FORMAT.format(percentOfTotalIncidents));
-			textValueBuilder.append(SPACE_DELIMITER);
-			textValueBuilder.append("]");
+			String textValue = AggregateStore.formatSummary(xSumValue,
+					aContext.getConfiguration().getLong("wordcount.total.incidents", 1));
 
 			/*
 			 * Build up the Format of the New Key:
@@ -248,28 +330,7 @@ public class SimpleAgeCount extends Configured implements Tool {
 			StringBuilder textKeyBuilder = new StringBuilder();
 			textKeyBuilder.append("[");
 			textKeyBuilder.append(SPACE_DELIMITER);
-			if (xAgeValue >= 0 && xAgeValue <= 4)
-				textKeyBuilder.append("0-4");
-			else if (xAgeValue >= 5 && xAgeValue <= 9)
-				textKeyBuilder.append("5-9");
-			else if (xAgeValue >= 10 && xAgeValue <= 14)
-				textKeyBuilder.append("10-14");
-			else if (xAgeValue >= 15 && xAgeValue <= 19)
-				textKeyBuilder.append("15-19");
-			else if (xAgeValue >= 20 && xAgeValue <= 24)
-				textKeyBuilder.append("20-24");
-			else if (xAgeValue >= 25 && xAgeValue <= 29)
-				textKeyBuilder.append("25-29");
-			else if (xAgeValue >= 30 && xAgeValue <= 34)
-				textKeyBuilder.append("30-34");
-			else if (xAgeValue >= 35 && xAgeValue <= 39)
-				textKeyBuilder.append("35-39");
-			else if (xAgeValue >= 40 && xAgeValue <= 44)
-				textKeyBuilder.append("40-44");
-			else if (xAgeValue >= 45 && xAgeValue <= 49)
-				textKeyBuilder.append("45-49");
-			else
-				textKeyBuilder.append("50-99");
+			textKeyBuilder.append(xAgeBuckets.label(aKey.get()));
 			textKeyBuilder.append(SPACE_DELIMITER);
 			textKeyBuilder.append("]");
 
@@ -277,26 +338,30 @@ public class SimpleAgeCount extends Configured implements Tool {
 			/*
 			 * Write the output record in the following format: 
 			 * 		[KEY(Text(<AgeCategoryDescription>))
-			 * 			VALUE(Text(<[ Total=SUM(IncidentCount)  PercentTotalAllYears=(SUM(IncidentCount)/TotalIncidents) ]>))]
+			 * 			VALUE(Text(<[ Total=SUM(IncidentCount)  PercentTotalAllYears=(SUM(IncidentCount)/TotalIncidents)
+			 * 						NationalEstimate=SUM(Weight)  StdError=SQRT(VAR(SUM(Weight))) ]>))]
 			 */
 			// @formatter:on
-			xTextValue.set(textValueBuilder.toString());
+			xTextValue.set(textValue);
 			xTextKey.set(textKeyBuilder.toString());
 			aContext.write(xTextKey, xTextValue);
 		}
 	}
 
 	/**
-	 * Setup the environment so that we can invoke the Mapper as a mapper-only job to perform the simple filtering of
-	 * the initial data.
+	 * Setup the environment so that we can invoke the MapReduce job to summarize the incidents by the age categories.
 	 * 
 	 * @param aArguments the arguments that were passed into the program
 	 **/
 	@Override
-	public int run(String[] aArguments) throws Exception {
-		final String usageText = "Usage: SimpleAgeCount <input_dir> <output_dir> -totalIncidents n";
+	public Job createJob(String[] aArguments) throws Exception {
+		final String usageText = "Usage: SimpleAgeCount <input_dir> <output_dir> -totalIncidents n|-aggregateStore dir [-ageBuckets b1,b2,...] [-noInfantMonths] [-reducers n] [-distinct field]";
+
+		xUpToDate = false;
 
 		Job job = new Job(getConf());
+		Path aggregateStore = null;
+		int numReduceTasks = 1;
 
 		/*
 		 * Process any arguments passed in...
@@ -312,10 +377,35 @@ public class SimpleAgeCount extends Configured implements Tool {
 					job.getConfiguration().setLong("wordcount.total.incidents", Integer.parseInt(aArguments[i]));
 					LOG.info("Added " + aArguments[i]
 							+ " total unique incidents from the data files for use in calculations.");
+				} else if ("-aggregateStore".equals(aArguments[i])) {
+					i += 1; // Bump to the value
+					aggregateStore = new Path(aArguments[i]);
+					LOG.info("Summarizing the incidents of the new or changed years into " + aArguments[i] + ".");
+				} else if ("-ageBuckets".equals(aArguments[i])) {
+					i += 1; // Bump to the value
+					new AgeBuckets(aArguments[i], true); // Validate the boundaries before the job is submitted
+					job.getConfiguration().set("agecount.bucket.boundaries", aArguments[i]);
+					LOG.info("Using age category boundaries of [" + aArguments[i] + "].");
+				} else if ("-noInfantMonths".equals(aArguments[i])) {
+					job.getConfiguration().setBoolean("agecount.infant.months", false);
+					LOG.info("Disabled the decoding of infant ages recorded as months.");
+				} else if ("-reducers".equals(aArguments[i])) {
+					i += 1; // Bump to the value
+					numReduceTasks = Integer.parseInt(aArguments[i]);
+				} else if ("-distinct".equals(aArguments[i])) {
+					i += 1; // Bump to the value
+					DistinctField distinctField = DistinctField.forName(aArguments[i]);
+					if (distinctField == null) {
+						System.err.println("ERROR: Invalid distinct field : '" + aArguments[i] + "'");
+						LOG.info(usageText);
+						return null;
+					}
+					distinctField.configure(job.getConfiguration());
+					LOG.info("Estimating the number of distinct " + distinctField + " values of each dimension.");
 				} else {
 					System.err.println("ERROR: Invalid argument : '" + aArguments[i] + "'");
 					LOG.info(usageText);
-					return -1;
+					return null;
 				}
 			}
 		}
@@ -324,31 +414,60 @@ public class SimpleAgeCount extends Configured implements Tool {
 		job.setJobName("NEISS Report - Incidents by Age");
 
 		job.setMapperClass(SimpleAgeCountMapper.class);
+		job.setCombinerClass(IncidentAggregateWritable.SumCombiner.class);
 		job.setReducerClass(SimpleAgeSumReducer.class);
-		job.setPartitionerClass(AgePartitioner.class);
 
-		job.setMapOutputKeyClass(Text.class);
-		job.setMapOutputValueClass(IntWritable.class);
+		job.setMapOutputKeyClass(IntWritable.class);
+		job.setMapOutputValueClass(IncidentAggregateWritable.class);
 
 		job.setOutputKeyClass(Text.class);
-		job.setOutputValueClass(IntWritable.class);
+		job.setOutputValueClass(Text.class);
 
 		job.setInputFormatClass(KeyValueTextInputFormat.class);
 		job.setOutputFormatClass(TextOutputFormat.class);
 
-		job.setNumReduceTasks(11);
+		/*
+		 * The age category is computed by the Mapper<> and every category is written out by the Reducer<> as soon as it
+		 * has been summarized, so the default hash partitioning works for any number of Reduce Tasks. A single task
+		 * keeps all of the categories in order within one output file.
+		 */
+		job.setNumReduceTasks(numReduceTasks);
+
 
 		/*
-		 * Run the job and wait for it to be completed.
+		 * Only summarize the new or changed years into the aggregate store and rebuild the report from the store, which
+		 * also provides the total number of incidents for the percentages.
 		 */
-		boolean success = job.waitForCompletion(true);
+		if (aggregateStore != null
+				&& !AggregateStore.configure(job, new Path(aArguments[0]), aggregateStore, new Path(aArguments[1]),
+						AgeFormatter.class)) {
+			xUpToDate = true;
+			return null;
+		}
+
+		CompressionSettings.configure(job, SimpleAgeCount.class);
+
+		return job;
+	}
+
+	/**
+	 * Build the job from the arguments that were passed in and run it, waiting for it to be completed.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		Job job = createJob(aArguments);
+		if (job == null) {
+			return xUpToDate ? 0 : -1;
+		}
 
 		/*
-		 * Quickly output the local counters to the local output stream (console).
+		 * Run the job and wait for it to be completed.
 		 */
-		Counters allCounters = job.getCounters();
-		Counter myCounter = allCounters.findCounter(NEISS_DATA.TOAL_RECORDS_PROCESSED);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
+		boolean success = job.waitForCompletion(true);
+		CompressionSettings.report(job);
+		JobInstrumentation.report(job);
 
 		return success ? 0 : 1;
 	}
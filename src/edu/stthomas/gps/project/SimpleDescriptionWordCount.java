@@ -1,29 +1,17 @@
 package edu.stthomas.gps.project;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.net.URI;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.regex.Pattern;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
-import org.apache.hadoop.filecache.DistributedCache;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapreduce.Counter;
-import org.apache.hadoop.mapreduce.Counters;
 import org.apache.hadoop.mapreduce.Job;
-import org.apache.hadoop.mapreduce.Mapper;
-import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
-import org.apache.hadoop.util.StringUtils;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.log4j.Logger;
@@ -33,34 +21,28 @@ import org.apache.log4j.Logger;
  * @author Robert Driesch - UST Id# 101058113
  * @version 1.0, December 1, 2014
  **/
-public class SimpleDescriptionWordCount extends Configured implements Tool {
+public class SimpleDescriptionWordCount extends Configured implements Tool, JobFactory {
 	private static final Logger LOG = Logger.getLogger(SimpleDescriptionWordCount.class);
 
-	private static final String NAME_PREFIX = "/user/training/NEISS_Local/";
-	private static final String STOP_WORD_DATA = "StopWords.dat";
-
 	public static enum NEISS_DATA {
-		TOAL_RECORDS_PROCESSED, TOTAL_REJECTED_WORDS, NUM_REJECTED_ZEROWORDS, NUM_REJECTED_STOPWORDS, NUM_VALID_WORDS, NUM_REJECTED_DIGITS, NUM_REJECTED_NONCHARS
+		TOAL_RECORDS_PROCESSED
 	}
 
 	/**
 	 * @version 1.0, December 1, 2014
 	 **/
-	public static class SimpleDescriptionWordCountMapper extends Mapper<Text, Text, Text, IntWritable> {
+	public static class SimpleDescriptionWordCountMapper extends InstrumentedMapper<Text, Text, Text, IntWritable> {
 
 		/*
 		 * Local Cache Variables for the <key,value> for reuse for each input record being processed.
 		 */
 		private Text xWordKey = new Text();
 
-		private boolean xCaseSensitive = false;
-		private Set<String> patternsToSkip = new HashSet<String>();
+		private DescriptionTokenizer xTokenizer;
+		private BatchedCounters<NEISS_DATA> xCounters;
+		private BatchedCounters<DescriptionWordFrequency.NEISS_DATA> xWordCounters;
 
 		private static final IntWritable ONE_COUNT = new IntWritable(1);
-		private static final String TAB_DELIMITER = new String("\t");
-		private static final Pattern WORD_BOUNDARY = Pattern.compile("\\s*\\b\\s*");
-
-		// private static final Pattern WORD_BOUNDARY = Pattern.compile("\\w+");
 
 		/**
 		 * Read the filtered NEISS data and calculate the frequency of the appearance of words within the incident
@@ -98,40 +80,12 @@ public class SimpleDescriptionWordCount extends Configured implements Tool {
 			 // @formatter:on
 
 			/*
-			 * Convert the line of data, which is received as a Text object into a String object that we can manipulate
-			 * better. Also determine if we should mono-case text to make the consolidation and summarization easier.
+			 * Grab the incident Description (mono-cased unless the words are case sensitive) and split it into the
+			 * words that are accepted by the shared tokenizer.
 			 */
-			aContext.getCounter(NEISS_DATA.TOAL_RECORDS_PROCESSED).increment(1);
-			String myLine = aValue.toString();
-			if (!xCaseSensitive) {
-				myLine = myLine.toLowerCase();
-			}
-
-			/*
-			 * Split the line of NEISS tab delimited data into its (at most) 13 separate fields in order to grab the
-			 * incident Description.
-			 */
-			String descriptionLine = myLine.split(TAB_DELIMITER, 13)[12];
-			for (String descriptionWord : WORD_BOUNDARY.split(descriptionLine)) {
-				/*
-				 * Check to see if the word within the description should be included into the final set of words or if
-				 * it should be skipped (because of Stop-Word processing).
-				 */
-				if (descriptionWord.isEmpty() || !Character.isLetter(descriptionWord.charAt(0))
-						|| Character.isDigit(descriptionWord.charAt(0)) || patternsToSkip.contains(descriptionWord)) {
-					aContext.getCounter(NEISS_DATA.TOTAL_REJECTED_WORDS).increment(1);
-					NEISS_DATA counterType;
-					if (descriptionWord.isEmpty())
-						counterType = NEISS_DATA.NUM_REJECTED_ZEROWORDS;
-					else if (!Character.isLetter(descriptionWord.charAt(0)))
-						counterType = NEISS_DATA.NUM_REJECTED_NONCHARS;
-					else if (Character.isDigit(descriptionWord.charAt(0)))
-						counterType = NEISS_DATA.NUM_REJECTED_DIGITS;
-					else
-						counterType = NEISS_DATA.NUM_REJECTED_STOPWORDS;
-					aContext.getCounter(counterType).increment(1);
-					continue;
-				}
+			xCounters.increment(NEISS_DATA.TOAL_RECORDS_PROCESSED);
+			for (String descriptionWord : xTokenizer.tokenize(xTokenizer.descriptionOf(aValue.toString()),
+					xWordCounters)) {
 
 				// @formatter:off
 				/*
@@ -141,7 +95,6 @@ public class SimpleDescriptionWordCount extends Configured implements Tool {
 				// @formatter:on
 				xWordKey.set(descriptionWord);
 				aContext.write(xWordKey, ONE_COUNT);
-				aContext.getCounter(NEISS_DATA.NUM_VALID_WORDS).increment(1);
 			}
 		}
 
@@ -154,54 +107,31 @@ public class SimpleDescriptionWordCount extends Configured implements Tool {
 		@Override
 		protected void setup(Context aContext) throws IOException, InterruptedException {
 
-			// Get the local configuration from the context so that we can test for the different options and extract
-			// out any distributed files that maybe used.
-			Configuration myConfig = aContext.getConfiguration();
-
 			/*
-			 * Test for Case Sensitivity usage while processing the incident Description words.
+			 * Build the tokenizer from the options of the job (case sensitivity, stop words and normalization).
 			 */
-			xCaseSensitive = myConfig.getBoolean("wordcount.case.sensitive", false);
-
-			/*
-			 * Test for Stop Word usage while processing the incident Description words.
-			 */
-			if (myConfig.getBoolean("wordcount.skip.patterns", false)) {
-				Path[] allCachedFiles = DistributedCache.getLocalCacheFiles(myConfig);
-				parseSkipFile(allCachedFiles[0]);
-			}
+			xTokenizer = DescriptionTokenizer.fromConfiguration(aContext.getConfiguration());
+			xCounters = new BatchedCounters<NEISS_DATA>(NEISS_DATA.class, aContext);
+			xWordCounters = new BatchedCounters<DescriptionWordFrequency.NEISS_DATA>(
+					DescriptionWordFrequency.NEISS_DATA.class, aContext);
 		}
 
 		/**
-		 * Parse all of the data stored within the distributed cache file and load it into the data structure of
-		 * patterns to skip while generating the list of words for the <key,value> pair.
+		 * Add the counts accumulated by this task to its counters.
 		 * 
-		 * @param aPatternsPath the path to the distributed cache file to use
+		 * @param aContext the context object associated with this process
 		 **/
-		private void parseSkipFile(Path aPatternsPath) throws IOException {
-			LOG.info("Added file \"" + aPatternsPath.getName().toString() + "\" from the distributed cache.");
-			BufferedReader bufferedRdr = new BufferedReader(new FileReader(aPatternsPath.toString()));
-			try {
-				String patternLine = bufferedRdr.readLine();
-				while (patternLine != null) {
-					patternsToSkip.add(patternLine);
-					patternLine = bufferedRdr.readLine();
-				}
-			} catch (IOException ioe) {
-				System.err.println("ERROR: Caught exception while parsing the cached file '"
-						+ aPatternsPath.getName().toString() + "' : " + StringUtils.stringifyException(ioe));
-			} finally {
-				LOG.info(patternsToSkip.size() + " entries added from distributed cache file \""
-						+ aPatternsPath.getName().toString() + "\" to local data structure.");
-				bufferedRdr.close();
-			}
+		@Override
+		protected void cleanup(Context aContext) throws IOException, InterruptedException {
+			xCounters.flush();
+			xWordCounters.flush();
 		}
 	}
 
 	/**
 	 * @version 1.0, December 1, 2014
 	 **/
-	public static class SimpleSumReducer extends Reducer<Text, IntWritable, Text, IntWritable> {
+	public static class SimpleSumReducer extends InstrumentedReducer<Text, IntWritable, Text, IntWritable> {
 
 		/*
 		 * Local Cache Variables for the <key, value> for reuse for each output reduce record being processed.
@@ -249,12 +179,13 @@ public class SimpleDescriptionWordCount extends Configured implements Tool {
 	 * @param aArguments the arguments that were passed into the program
 	 **/
 	@Override
-	public int run(String[] aArguments) throws Exception {
-		final String usageText = "Usage: DescriptionWordCount <input_dir> <output_dir> [-stopWords -caseSensitive]";
+	public Job createJob(String[] aArguments) throws Exception {
+		final String usageText = "Usage: DescriptionWordCount <input_dir> <output_dir> [-stopWords -caseSensitive]"
+				+ " [-normalize]";
 
 		if (aArguments.length < 2) {
 			LOG.info(usageText);
-			return -1;
+			return null;
 		}
 
 		Job job = new Job(getConf());
@@ -267,16 +198,16 @@ public class SimpleDescriptionWordCount extends Configured implements Tool {
 		 */
 		for (int i = 2; i < aArguments.length; i++) {
 			if ("-stopWords".equals(aArguments[i])) {
-				job.getConfiguration().setBoolean("wordcount.skip.patterns", true);
-				DistributedCache.addCacheFile(new URI(NAME_PREFIX + STOP_WORD_DATA), job.getConfiguration());
-				LOG.info("Added file to the distributed cache: " + NAME_PREFIX + STOP_WORD_DATA);
+				DescriptionTokenizer.addStopWords(job.getConfiguration());
 			} else if ("-caseSensitive".equals(aArguments[i])) {
 				job.getConfiguration().setBoolean("wordcount.case.sensitive", true);
 				LOG.info("Enabled case sensitivity while processing the incident Description words.");
+			} else if ("-normalize".equals(aArguments[i])) {
+				DescriptionTokenizer.addNormalizers(job.getConfiguration());
 			} else {
 				System.err.println("ERROR: Invalid argument : '" + aArguments[i] + "'");
 				LOG.info(usageText);
-				return -1;
+				return null;
 			}
 		}
 
@@ -298,29 +229,29 @@ public class SimpleDescriptionWordCount extends Configured implements Tool {
 
 		job.setNumReduceTasks(24);
 
+		CompressionSettings.configure(job, SimpleDescriptionWordCount.class);
+
+		return job;
+	}
+
+	/**
+	 * Build the job from the arguments that were passed in and run it, waiting for it to be completed.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		Job job = createJob(aArguments);
+		if (job == null) {
+			return -1;
+		}
+
 		/*
 		 * Run the job and wait for it to be completed.
 		 */
 		boolean success = job.waitForCompletion(true);
-
-		/*
-		 * Quickly output the local counters to the local output stream (console).
-		 */
-		Counters allCounters = job.getCounters();
-		Counter myCounter = allCounters.findCounter(NEISS_DATA.TOAL_RECORDS_PROCESSED);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
-		myCounter = allCounters.findCounter(NEISS_DATA.NUM_VALID_WORDS);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
-		myCounter = allCounters.findCounter(NEISS_DATA.TOTAL_REJECTED_WORDS);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
-		myCounter = allCounters.findCounter(NEISS_DATA.NUM_REJECTED_ZEROWORDS);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
-		myCounter = allCounters.findCounter(NEISS_DATA.NUM_REJECTED_STOPWORDS);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
-		myCounter = allCounters.findCounter(NEISS_DATA.NUM_REJECTED_DIGITS);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
-		myCounter = allCounters.findCounter(NEISS_DATA.NUM_REJECTED_NONCHARS);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
+		CompressionSettings.report(job);
+		JobInstrumentation.report(job);
 
 		return success ? 0 : 1;
 	}
@@ -1,18 +1,12 @@
 package edu.stthomas.gps.project;
 
 import java.io.IOException;
-import java.text.NumberFormat;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapreduce.Counter;
-import org.apache.hadoop.mapreduce.Counters;
 import org.apache.hadoop.mapreduce.Job;
-import org.apache.hadoop.mapreduce.Mapper;
-import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
@@ -21,31 +15,49 @@ import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.log4j.Logger;
 
+import edu.stthomas.gps.project.IncidentAggregateWritable.DistinctField;
+
 /**
  * 
  * @author Robert Driesch - UST Id# 101058113
  * @version 1.0, December 1, 2014
  **/
-public class SimpleMonthCount extends Configured implements Tool {
+public class SimpleMonthCount extends Configured implements Tool, JobFactory {
 	private static final Logger LOG = Logger.getLogger(SimpleMonthCount.class);
 
 	public static enum NEISS_DATA {
-		TOAL_RECORDS_PROCESSED
+		TOAL_RECORDS_PROCESSED, NUM_BAD_WEIGHTS
 	}
 
+	/*
+	 * Set when the aggregate store is already up to date and the report was rebuilt without running a job.
+	 */
+	private boolean xUpToDate;
+
 	/**
 	 * @version 1.0, December 1, 2014
 	 **/
-	public static class SimpleMonthCountMapper extends Mapper<Text, Text, Text, IntWritable> {
+	public static class SimpleMonthCountMapper extends InstrumentedMapper<Text, Text, Text, IncidentAggregateWritable> {
 
 		/*
 		 * Local Cache Variables for the <key,value> for reuse for each input record being processed.
 		 */
 		private Text xWordKey = new Text();
+		private IncidentAggregateWritable xIncidentValue = new IncidentAggregateWritable();
+		private DistinctField xDistinctField;
 
-		private static final IntWritable ONE_COUNT = new IntWritable(1);
 		private static final String TAB_DELIMITER = new String("\t");
 
+		/**
+		 * Setup the field whose distinct values are counted for each dimension of the report (if any).
+		 * 
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void setup(Context aContext) throws IOException, InterruptedException {
+			xDistinctField = DistinctField.fromConfiguration(aContext.getConfiguration());
+		}
+
 		/**
 		 * Read the filtered NEISS data and calculate the frequency of the incidents for each month. This is essentially
 		 * a simple WordCount algorithm over the month portion of the TreatmentDate.
@@ -81,16 +93,32 @@ public class SimpleMonthCount extends Configured implements Tool {
 			 * Get the TreatmentDate from the tab delimited value in the <key,value> pair so we can extract out the month
 			 * portion to summarize the number of incidents by month.
 			 */
-			String treatmentDate = aValue.toString().split(TAB_DELIMITER)[0];
+			String[] dataVals = aValue.toString().split(TAB_DELIMITER);
+			String treatmentDate = dataVals[0];
+
+			/*
+			 * Get the statistical Weight and Stratum of the incident so that the national estimate is accumulated in
+			 * the same pass as the raw count of the incidents.
+			 */
+			try {
+				xIncidentValue.set(Double.parseDouble(dataVals[2]), dataVals[3]);
+			} catch (NumberFormatException e) {
+				// Bump the counter of bad weights. The incident is still counted but adds nothing to the estimate.
+				aContext.getCounter(NEISS_DATA.NUM_BAD_WEIGHTS).increment(1);
+				xIncidentValue.set(0.0, dataVals[3]);
+			}
+			if (xDistinctField != null) {
+				xDistinctField.addTo(xIncidentValue, aKey, dataVals);
+			}
 
 			// @formatter:off
 			/*
 			 * Write the output record in the following format: 
-			 * 		[KEY(Text(TreatmentMonth))  VALUE(IntWritable(1))]
+			 * 		[KEY(Text(TreatmentMonth))  VALUE(IncidentAggregateWritable(1, Weight, Stratum))]
 			 */
 			// @formatter:on
 			xWordKey.set(treatmentDate.split("/")[0]);// Date in MDY format with "/" as the separator
-			aContext.write(xWordKey, ONE_COUNT);
+			aContext.write(xWordKey, xIncidentValue);
 			aContext.getCounter(NEISS_DATA.TOAL_RECORDS_PROCESSED).increment(1);
 		}
 	}
@@ -98,15 +126,13 @@ public class SimpleMonthCount extends Configured implements Tool {
 	/**
 	 * @version 1.0, December 1, 2014
 	 **/
-	public static class SimpleMonthSumReducer extends Reducer<Text, IntWritable, Text, Text> {
-		private static final NumberFormat PERCENT_FORMAT = NumberFormat.getPercentInstance();
+	public static class SimpleMonthSumReducer extends InstrumentedReducer<Text, IncidentAggregateWritable, Text, Text> {
 
 		/*
 		 * Local Cache Variables for the <key, value> for reuse for each output reduce record being processed.
 		 */
 		private Text xTextValue = new Text();
-
-		private static final String SPACE_DELIMITER = new String(" ");
+		private IncidentAggregateWritable xSumValue = new IncidentAggregateWritable();
 
 		/**
 		 * Read all of the <key, List(values)> pairs generated by the Mapper<> and determine the number of times that we
@@ -118,48 +144,34 @@ public class SimpleMonthCount extends Configured implements Tool {
 		 * @param aContext the context object associated with this process
 		 **/
 		@Override
-		protected void reduce(Text aKey, Iterable<IntWritable> aValues, Context aContext) throws IOException,
-				InterruptedException {
+		protected void reduce(Text aKey, Iterable<IncidentAggregateWritable> aValues, Context aContext)
+				throws IOException, InterruptedException {
 
 			/*
 			 * Loop through all of the values collected for each key (TreatmentMonth) from the Mapper<> and summarize the
 			 * total number of incidents that occurred during that month within the data.
 			 */
-			int myMonthCount = 0;
-			for (IntWritable myValue : aValues) {
-				myMonthCount += myValue.get();
+			xSumValue.clear();
+			for (IncidentAggregateWritable myValue : aValues) {
+				xSumValue.merge(myValue);
 			}
 
 			/*
-			 * Calculate the percentage of incidents that occurred during this month across the entire population of years. 
+			 * Build up the Format of the New Value with the percentage of the incidents across the entire population of
+			 * years: "[ Total=...  PercentTotalAllYears=...  NationalEstimate=...  StdError=... ]"
 			 */
-			double percentOfTotalIncidents = (double) myMonthCount
-					/ (double) aContext.getConfiguration().getInt("wordcount.total.incidents", 1);
-
-			/*
-			 * Build up the Format of the New Value:
-			 * "[ Total=SUM(IncidentCount)  PercentTotalAllYears=(SUM(IncidentCount)/TotalIncidents) ]"
-			 */
-			StringBuilder textValueBuilder = new StringBuilder();
-			textValueBuilder.append("[");
-			textValueBuilder.append(SPACE_DELIMITER);
-			textValueBuilder.append("Total=");
-			textValueBuilder.append(String.valueOf(myMonthCount));
-			textValueBuilder.append(SPACE_DELIMITER);
-			textValueBuilder.append(SPACE_DELIMITER);
-			textValueBuilder.append("PercentTotalAllYears=");
-			textValueBuilder.append(PERCENT_FORMAT.format(percentOfTotalIncidents));
-			textValueBuilder.append(SPACE_DELIMITER);
-			textValueBuilder.append("]");
+			String textValue = AggregateStore.formatSummary(xSumValue,
+					aContext.getConfiguration().getLong("wordcount.total.incidents", 1));
 
 			// @formatter:off
 			/*
 			 * Write the output record in the following format: 
 			 * 		[KEY(Text(TreatmentMonth))
-			 * 			VALUE(Text(<[ Total=SUM(IncidentCount)  PercentTotalAllYears=(SUM(IncidentCount)/TotalIncidents) ]>))]
+			 * 			VALUE(Text(<[ Total=SUM(IncidentCount)  PercentTotalAllYears=(SUM(IncidentCount)/TotalIncidents)
+			 * 						NationalEstimate=SUM(Weight)  StdError=SQRT(VAR(SUM(Weight))) ]>))]
 			 */
 			// @formatter:on
-			xTextValue.set(textValueBuilder.toString());
+			xTextValue.set(textValue);
 			aContext.write(aKey, xTextValue);
 		}
 	}
@@ -171,10 +183,13 @@ public class SimpleMonthCount extends Configured implements Tool {
 	 * @param aArguments the arguments that were passed into the program
 	 **/
 	@Override
-	public int run(String[] aArguments) throws Exception {
-		final String usageText = "Usage: SimpleMonthCount <input_dir> <output_dir> -totalIncidents n";
+	public Job createJob(String[] aArguments) throws Exception {
+		final String usageText = "Usage: SimpleMonthCount <input_dir> <output_dir> -totalIncidents n|-aggregateStore dir [-distinct field]";
+
+		xUpToDate = false;
 
 		Job job = new Job(getConf());
+		Path aggregateStore = null;
 
 		/*
 		 * Process any arguments passed in...
@@ -190,10 +205,24 @@ public class SimpleMonthCount extends Configured implements Tool {
 					job.getConfiguration().setLong("wordcount.total.incidents", Integer.parseInt(aArguments[i]));
 					LOG.info("Added " + aArguments[i]
 							+ " total unique incidents from the data files for use in calculations.");
+				} else if ("-aggregateStore".equals(aArguments[i])) {
+					i += 1; // Bump to the value
+					aggregateStore = new Path(aArguments[i]);
+					LOG.info("Summarizing the incidents of the new or changed years into " + aArguments[i] + ".");
+				} else if ("-distinct".equals(aArguments[i])) {
+					i += 1; // Bump to the value
+					DistinctField distinctField = DistinctField.forName(aArguments[i]);
+					if (distinctField == null) {
+						System.err.println("ERROR: Invalid distinct field : '" + aArguments[i] + "'");
+						LOG.info(usageText);
+						return null;
+					}
+					distinctField.configure(job.getConfiguration());
+					LOG.info("Estimating the number of distinct " + distinctField + " values of each dimension.");
 				} else {
 					System.err.println("ERROR: Invalid argument : '" + aArguments[i] + "'");
 					LOG.info(usageText);
-					return -1;
+					return null;
 				}
 			}
 		}
@@ -202,30 +231,55 @@ public class SimpleMonthCount extends Configured implements Tool {
 		job.setJobName("NEISS Report - Incidents by Month");
 
 		job.setMapperClass(SimpleMonthCountMapper.class);
+		job.setCombinerClass(IncidentAggregateWritable.SumCombiner.class);
 		job.setReducerClass(SimpleMonthSumReducer.class);
 
 		job.setMapOutputKeyClass(Text.class);
-		job.setMapOutputValueClass(IntWritable.class);
+		job.setMapOutputValueClass(IncidentAggregateWritable.class);
 
 		job.setOutputKeyClass(Text.class);
-		job.setOutputValueClass(IntWritable.class);
+		job.setOutputValueClass(Text.class);
 
 		job.setInputFormatClass(KeyValueTextInputFormat.class);
 		job.setOutputFormatClass(TextOutputFormat.class);
 
 		job.setNumReduceTasks(1);
 
+
 		/*
-		 * Run the job and wait for it to be completed.
+		 * Only summarize the new or changed years into the aggregate store and rebuild the report from the store, which
+		 * also provides the total number of incidents for the percentages.
 		 */
-		boolean success = job.waitForCompletion(true);
+		if (aggregateStore != null
+				&& !AggregateStore.configure(job, new Path(aArguments[0]), aggregateStore, new Path(aArguments[1]),
+						AggregateStore.ReportFormatter.class)) {
+			xUpToDate = true;
+			return null;
+		}
+
+		CompressionSettings.configure(job, SimpleMonthCount.class);
+
+		return job;
+	}
+
+	/**
+	 * Build the job from the arguments that were passed in and run it, waiting for it to be completed.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		Job job = createJob(aArguments);
+		if (job == null) {
+			return xUpToDate ? 0 : -1;
+		}
 
 		/*
-		 * Quickly output the local counters to the local output stream (console).
+		 * Run the job and wait for it to be completed.
 		 */
-		Counters allCounters = job.getCounters();
-		Counter myCounter = allCounters.findCounter(NEISS_DATA.TOAL_RECORDS_PROCESSED);
-		LOG.info(myCounter.getDisplayName() + " : " + myCounter.getValue());
+		boolean success = job.waitForCompletion(true);
+		CompressionSettings.report(job);
+		JobInstrumentation.report(job);
 
 		return success ? 0 : 1;
 	}
@@ -7,12 +7,11 @@ import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
-import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Partitioner;
-import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
@@ -22,8 +21,18 @@ import org.apache.hadoop.util.ToolRunner;
  * @author Robert Driesch - UST Id# 101058113
  * @version 1.0, December 1, 2014
  **/
-public class SortByYearCaseNbr extends Configured implements Tool {
+public class SortByYearCaseNbr extends Configured implements Tool, JobFactory {
 	private static final Integer TOTAL_NUMBER_YEARS_OF_DATA = new Integer(17); // 1997 - 2013
+	private static final String DEDUP_KEY = new String("neiss.sort.dedup");
+
+	public static enum NEISS_DATA {
+		NUM_DUPLICATE_CASES
+	}
+
+	/*
+	 * Set when the incremental output is already up to date and there is no job that needs to be run.
+	 */
+	private boolean xUpToDate;
 
 	/**
 	 * @version 1.0, December 1, 2014
@@ -92,7 +101,7 @@ public class SortByYearCaseNbr extends Configured implements Tool {
 	/**
 	 * @version 1.0, December 1, 2014
 	 **/
-	public static class SimpleMapper extends Mapper<Text, Text, Text, Text> {
+	public static class SimpleMapper extends InstrumentedMapper<Text, Text, Text, Text> {
 
 		/**
 		 * Simple mapper that will basically just read the filtered product file which is keyed by the CaseNbr and send
@@ -135,7 +144,31 @@ public class SortByYearCaseNbr extends Configured implements Tool {
 	/**
 	 * @version 1.0, December 1, 2014
 	 **/
-	public static class SimpleReducer extends Reducer<Text, Text, Text, Text> {
+	public static class SimpleReducer extends InstrumentedReducer<Text, Text, Text, Text> {
+
+		/*
+		 * When refreshing the year partitioned output incrementally, every record is written into the directory of its
+		 * year.
+		 */
+		private MultipleOutputs<Text, Text> xYearOutputs;
+
+		/*
+		 * Set when only the first record of each CaseNbr should be kept (-dedup).
+		 */
+		private boolean xDedup;
+
+		/**
+		 * Open the year partitioned output when the output is being refreshed incrementally.
+		 * 
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void setup(Context aContext) throws IOException, InterruptedException {
+			xDedup = aContext.getConfiguration().getBoolean(DEDUP_KEY, false);
+			if (IncrementalOutputFormat.isIncremental(aContext.getConfiguration())) {
+				xYearOutputs = new MultipleOutputs<Text, Text>(aContext);
+			}
+		}
 
 		/**
 		 * Read all of the <key, List(values)> pairs generated by the Mapper<> and separate the list of values back into
@@ -152,9 +185,17 @@ public class SortByYearCaseNbr extends Configured implements Tool {
 
 			/*
 			 * Loop through all of the values collected for each key (CaseNbr) from the Mapper<> and add each value to
-			 * the output as a separate <key, value> pair.
+			 * the output as a separate <key, value> pair. Since every record of a CaseNbr arrives here together, any
+			 * record after the first one is a duplicate that is dropped when deduplicating.
 			 */
+			boolean firstValue = true;
 			for (Text myValue : aValues) {
+				if (xDedup && !firstValue) {
+					aContext.getCounter(NEISS_DATA.NUM_DUPLICATE_CASES).increment(1);
+					continue;
+				}
+				firstValue = false;
+
 				// @formatter:off
 				/*
 				 * Write the output record in the following format: 
@@ -173,7 +214,24 @@ public class SortByYearCaseNbr extends Configured implements Tool {
 				 * 										\tDescription))]
 				 */
 				// @formatter:on
-				aContext.write(aKey, myValue);
+				if (xYearOutputs != null) {
+					xYearOutputs.write(aKey, myValue, IncrementalOutputFormat.yearPath(
+							IncrementalOutputFormat.yearOf(myValue.toString()), "part"));
+				} else {
+					aContext.write(aKey, myValue);
+				}
+			}
+		}
+
+		/**
+		 * Close the year partitioned output files (if any) that were opened by this reducer.
+		 * 
+		 * @param aContext the context object associated with this process
+		 **/
+		@Override
+		protected void cleanup(Context aContext) throws IOException, InterruptedException {
+			if (xYearOutputs != null) {
+				xYearOutputs.close();
 			}
 		}
 	}
@@ -185,14 +243,31 @@ public class SortByYearCaseNbr extends Configured implements Tool {
 	 * @param aArguments the arguments that were passed into the program
 	 **/
 	@Override
-	public int run(String[] aArguments) throws Exception {
+	public Job createJob(String[] aArguments) throws Exception {
+		xUpToDate = false;
 
 		if (aArguments.length < 2) {
-			System.out.printf("Usage: SortByYearCaseNbr <input_dir> <output_dir>\n");
-			return -1;
+			System.out.printf("Usage: SortByYearCaseNbr <input_dir> <output_dir> [-incremental] [-dedup]\n");
+			return null;
 		}
 
 		Job job = new Job(getConf());
+		boolean incremental = false;
+
+		/*
+		 * Process any additional arguments passed in...
+		 */
+		for (int i = 2; i < aArguments.length; i++) {
+			if ("-incremental".equals(aArguments[i])) {
+				incremental = true;
+			} else if ("-dedup".equals(aArguments[i])) {
+				job.getConfiguration().setBoolean(DEDUP_KEY, true);
+			} else {
+				System.out.printf("Usage: SortByYearCaseNbr <input_dir> <output_dir> [-incremental] [-dedup]\n");
+				return null;
+			}
+		}
+
 		job.setJarByClass(SortByYearCaseNbr.class);
 		job.setJobName("Sort Filtered NEISS Data by Year & CaseNbr");
 
@@ -211,10 +286,41 @@ public class SortByYearCaseNbr extends Configured implements Tool {
 
 		job.setNumReduceTasks(TOTAL_NUMBER_YEARS_OF_DATA.intValue());
 
+		/*
+		 * Only process the year=YYYY directories of the input that are new or changed and replace the matching
+		 * directories of the output when refreshing it incrementally.
+		 */
+		if (incremental
+				&& !IncrementalOutputFormat.configure(job, new Path(aArguments[0]), new Path(aArguments[1]),
+						IncrementalOutputFormat.Mode.BY_YEAR)) {
+			xUpToDate = true;
+			return null;
+		}
+
+		CompressionSettings.configure(job, SortByYearCaseNbr.class);
+
+		return job;
+	}
+
+	/**
+	 * Build the job from the arguments that were passed in and run it, waiting for it to be completed.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		Job job = createJob(aArguments);
+		if (job == null) {
+			return xUpToDate ? 0 : -1;
+		}
+
 		/*
 		 * Run the job and wait for it to be completed.
 		 */
 		boolean success = job.waitForCompletion(true);
+		CompressionSettings.report(job);
+		JobInstrumentation.report(job);
+
 		return success ? 0 : 1;
 	}
 
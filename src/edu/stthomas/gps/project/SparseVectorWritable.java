@@ -0,0 +1,208 @@
+package edu.stthomas.gps.project;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * A sparse vector of float weights indexed by int term ids (e.g. the TF-IDF scores of the terms of an incident
+ * Description), kept as a pair of primitive arrays rather than a map so that the dot product with a dense vector is a
+ * single tight loop.
+ * <p>
+ * 
+ * Once compacted the ids are sorted and distinct, which lets them be written as the variable length differences from
+ * the previous id (most of them a single byte) followed by the weights.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class SparseVectorWritable implements Writable {
+	private int[] xIds = new int[16];
+	private float[] xWeights = new float[16];
+	private int xSize = 0;
+
+	/**
+	 * Remove every entry from the vector so this object can be reused.
+	 **/
+	public void clear() {
+		xSize = 0;
+	}
+
+	/**
+	 * @return the number of entries of the vector
+	 **/
+	public int getSize() {
+		return xSize;
+	}
+
+	public int getId(int aIndex) {
+		return xIds[aIndex];
+	}
+
+	public float getWeight(int aIndex) {
+		return xWeights[aIndex];
+	}
+
+	/**
+	 * Append an entry to the vector (compact() sorts the entries and merges those with the same id).
+	 * 
+	 * @param aId the term id
+	 * @param aWeight the weight of the term
+	 **/
+	public void add(int aId, float aWeight) {
+		if (xSize == xIds.length) {
+			xIds = Arrays.copyOf(xIds, xSize * 2);
+			xWeights = Arrays.copyOf(xWeights, xSize * 2);
+		}
+		xIds[xSize] = aId;
+		xWeights[xSize++] = aWeight;
+	}
+
+	/**
+	 * Append every entry of another vector to this vector.
+	 * 
+	 * @param aOther the other vector
+	 **/
+	public void addAll(SparseVectorWritable aOther) {
+		for (int i = 0; i < aOther.xSize; i++) {
+			add(aOther.xIds[i], aOther.xWeights[i]);
+		}
+	}
+
+	/**
+	 * Sort the entries by their id, adding together the weights of the entries that share an id and dropping the
+	 * entries whose weight is zero.
+	 **/
+	public void compact() {
+		boolean sorted = true;
+		for (int i = 1; i < xSize && sorted; i++) {
+			sorted = xIds[i - 1] < xIds[i];
+		}
+		if (!sorted) {
+			/*
+			 * The ids are never negative, so packing each id above the bits of its weight sorts the entries by id.
+			 */
+			long[] allEntries = new long[xSize];
+			for (int i = 0; i < xSize; i++) {
+				allEntries[i] = ((long) xIds[i] << 32) | (Float.floatToIntBits(xWeights[i]) & 0xffffffffL);
+			}
+			Arrays.sort(allEntries);
+			for (int i = 0; i < xSize; i++) {
+				xIds[i] = (int) (allEntries[i] >>> 32);
+				xWeights[i] = Float.intBitsToFloat((int) allEntries[i]);
+			}
+		}
+
+		int size = 0;
+		for (int i = 0; i < xSize; i++) {
+			if (size > 0 && xIds[size - 1] == xIds[i]) {
+				xWeights[size - 1] += xWeights[i];
+			} else {
+				xIds[size] = xIds[i];
+				xWeights[size++] = xWeights[i];
+			}
+		}
+		int nonZero = 0;
+		for (int i = 0; i < size; i++) {
+			if (xWeights[i] != 0.0f) {
+				xIds[nonZero] = xIds[i];
+				xWeights[nonZero++] = xWeights[i];
+			}
+		}
+		xSize = nonZero;
+	}
+
+	/**
+	 * @return the Euclidean (L2) length of the vector
+	 **/
+	public double norm() {
+		double sumOfSquares = 0.0;
+		for (int i = 0; i < xSize; i++) {
+			sumOfSquares += (double) xWeights[i] * xWeights[i];
+		}
+		return Math.sqrt(sumOfSquares);
+	}
+
+	/**
+	 * Scale the vector to a unit length (an empty vector is left as it is).
+	 **/
+	public void normalize() {
+		double norm = norm();
+		if (norm > 0.0) {
+			for (int i = 0; i < xSize; i++) {
+				xWeights[i] = (float) (xWeights[i] / norm);
+			}
+		}
+	}
+
+	/**
+	 * @param aDense a dense vector indexed by the term ids
+	 * @return the dot product of this vector with the dense vector
+	 **/
+	public double dot(float[] aDense) {
+		double product = 0.0;
+		for (int i = 0; i < xSize; i++) {
+			product += xWeights[i] * aDense[xIds[i]];
+		}
+		return product;
+	}
+
+	/**
+	 * Add the weights of this vector into a dense vector.
+	 * 
+	 * @param aDense a dense vector indexed by the term ids
+	 **/
+	public void addTo(double[] aDense) {
+		for (int i = 0; i < xSize; i++) {
+			aDense[xIds[i]] += xWeights[i];
+		}
+	}
+
+	/**
+	 * Replace the entries of this vector with the non-zero entries of a dense vector.
+	 * 
+	 * @param aDense a dense vector indexed by the term ids
+	 **/
+	public void set(double[] aDense) {
+		xSize = 0;
+		for (int i = 0; i < aDense.length; i++) {
+			if (aDense[i] != 0.0) {
+				add(i, (float) aDense[i]);
+			}
+		}
+	}
+
+	@Override
+	public void write(DataOutput aOut) throws IOException {
+		WritableUtils.writeVInt(aOut, xSize);
+		int previousId = 0;
+		for (int i = 0; i < xSize; i++) {
+			WritableUtils.writeVInt(aOut, xIds[i] - previousId);
+			previousId = xIds[i];
+		}
+		for (int i = 0; i < xSize; i++) {
+			aOut.writeFloat(xWeights[i]);
+		}
+	}
+
+	@Override
+	public void readFields(DataInput aIn) throws IOException {
+		xSize = WritableUtils.readVInt(aIn);
+		if (xIds.length < xSize) {
+			xIds = new int[xSize];
+			xWeights = new float[xSize];
+		}
+		int previousId = 0;
+		for (int i = 0; i < xSize; i++) {
+			xIds[i] = previousId + WritableUtils.readVInt(aIn);
+			previousId = xIds[i];
+		}
+		for (int i = 0; i < xSize; i++) {
+			xWeights[i] = aIn.readFloat();
+		}
+	}
+}
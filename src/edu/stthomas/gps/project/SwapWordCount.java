@@ -10,8 +10,6 @@ import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.WritableComparator;
 import org.apache.hadoop.mapreduce.Job;
-import org.apache.hadoop.mapreduce.Mapper;
-import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
@@ -25,13 +23,13 @@ import org.apache.log4j.Logger;
  * @author Robert Driesch - UST Id# 101058113
  * @version 1.0, December 1, 2014
  **/
-public class SwapWordCount extends Configured implements Tool {
+public class SwapWordCount extends Configured implements Tool, JobFactory {
 	private static final Logger LOG = Logger.getLogger(SwapWordCount.class);
 
 	/**
 	 * @version 1.0, December 1, 2014
 	 **/
-	public static class SwapCountMapper extends Mapper<Text, IntWritable, IntWritable, Text> {
+	public static class SwapCountMapper extends InstrumentedMapper<Text, IntWritable, IntWritable, Text> {
 
 		/**
 		 * Read the <key, value> pair that represents the word counts from the incident description words and swap the
@@ -62,7 +60,7 @@ public class SwapWordCount extends Configured implements Tool {
 	/**
 	 * @version 1.0, December 1, 2014
 	 **/
-	public static class SimpleReducer extends Reducer<IntWritable, Text, IntWritable, Text> {
+	public static class SimpleReducer extends InstrumentedReducer<IntWritable, Text, IntWritable, Text> {
 
 		/**
 		 * Read all of the <key, List(values)> pairs generated by the Mapper<> and determine the frequency that a word
@@ -122,12 +120,12 @@ public class SwapWordCount extends Configured implements Tool {
 	 * @param aArguments the arguments that were passed into the program
 	 **/
 	@Override
-	public int run(String[] aArguments) throws Exception {
+	public Job createJob(String[] aArguments) throws Exception {
 		final String usageText = "Usage: SwapWordCount <input_dir> <output_dir> [-descending]";
 
 		if (aArguments.length < 2) {
 			LOG.info(usageText);
-			return -1;
+			return null;
 		}
 
 		Job job = new Job(getConf());
@@ -145,7 +143,7 @@ public class SwapWordCount extends Configured implements Tool {
 			} else {
 				System.err.println("ERROR: Invalid argument : '" + aArguments[i] + "'");
 				LOG.info(usageText);
-				return -1;
+				return null;
 			}
 		}
 
@@ -169,10 +167,30 @@ public class SwapWordCount extends Configured implements Tool {
 
 		job.setNumReduceTasks(1);
 
+		CompressionSettings.configure(job, SwapWordCount.class);
+
+		return job;
+	}
+
+	/**
+	 * Build the job from the arguments that were passed in and run it, waiting for it to be completed.
+	 * 
+	 * @param aArguments the arguments that were passed into the program
+	 **/
+	@Override
+	public int run(String[] aArguments) throws Exception {
+		Job job = createJob(aArguments);
+		if (job == null) {
+			return -1;
+		}
+
 		/*
 		 * Run the job and wait for it to be completed.
 		 */
 		boolean success = job.waitForCompletion(true);
+		CompressionSettings.report(job);
+		JobInstrumentation.report(job);
+
 		return success ? 0 : 1;
 	}
 
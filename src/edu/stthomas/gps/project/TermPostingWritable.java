@@ -0,0 +1,147 @@
+package edu.stthomas.gps.project;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * The occurrence of a term (by its id within the DescriptionTermDictionary) within the Description of an incident,
+ * along with the number of times the term occurs within the Description and the total number of terms of the
+ * Description. This replaces the "Description_Word \t CaseNbr@FileName" text keys and the "WordCount/AllWordCounts"
+ * text values of the TF-IDF chain when the terms are encoded by their ids.
+ * <p>
+ * 
+ * The ids and counts are written as variable length integers (the most frequent terms have the smallest ids and so
+ * take a single byte), and the postings are sorted by the id and then the CaseNbr@FileName directly upon their
+ * serialized bytes.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public class TermPostingWritable implements WritableComparable<TermPostingWritable> {
+	private int xTermId;
+	private Text xDocument = new Text();
+	private int xCount;
+	private int xTotal;
+
+	public int getTermId() {
+		return xTermId;
+	}
+
+	public Text getDocument() {
+		return xDocument;
+	}
+
+	public int getCount() {
+		return xCount;
+	}
+
+	public int getTotal() {
+		return xTotal;
+	}
+
+	/**
+	 * @param aTermId the id of the term
+	 * @param aDocument the CaseNbr@FileName of the incident
+	 **/
+	public void set(int aTermId, String aDocument) {
+		xTermId = aTermId;
+		xDocument.set(aDocument);
+		xCount = 0;
+		xTotal = 0;
+	}
+
+	/**
+	 * @param aTermId the id of the term
+	 * @param aDocument the CaseNbr@FileName of the incident
+	 * @param aCount the number of times the term occurs within the Description of the incident
+	 * @param aTotal the total number of terms within the Description of the incident
+	 **/
+	public void set(int aTermId, Text aDocument, int aCount, int aTotal) {
+		xTermId = aTermId;
+		xDocument.set(aDocument);
+		xCount = aCount;
+		xTotal = aTotal;
+	}
+
+	@Override
+	public void write(DataOutput aOut) throws IOException {
+		WritableUtils.writeVInt(aOut, xTermId);
+		xDocument.write(aOut);
+		WritableUtils.writeVInt(aOut, xCount);
+		WritableUtils.writeVInt(aOut, xTotal);
+	}
+
+	@Override
+	public void readFields(DataInput aIn) throws IOException {
+		xTermId = WritableUtils.readVInt(aIn);
+		xDocument.readFields(aIn);
+		xCount = WritableUtils.readVInt(aIn);
+		xTotal = WritableUtils.readVInt(aIn);
+	}
+
+	/**
+	 * Order the postings by the id of their term and then by their CaseNbr@FileName (the counts are not compared).
+	 **/
+	@Override
+	public int compareTo(TermPostingWritable aOther) {
+		if (xTermId != aOther.xTermId) {
+			return (xTermId < aOther.xTermId) ? -1 : 1;
+		}
+		return xDocument.compareTo(aOther.xDocument);
+	}
+
+	@Override
+	public boolean equals(Object aOther) {
+		return (aOther instanceof TermPostingWritable) && compareTo((TermPostingWritable) aOther) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return xTermId * 31 + xDocument.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return xTermId + "\t" + xDocument + "\t" + xCount + "/" + xTotal;
+	}
+
+	/**
+	 * Compares the serialized postings without deserializing them, in the same order as compareTo().
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class Comparator extends WritableComparator {
+		public Comparator() {
+			super(TermPostingWritable.class);
+		}
+
+		@Override
+		public int compare(byte[] aBytes1, int aStart1, int aLength1, byte[] aBytes2, int aStart2, int aLength2) {
+			try {
+				int termId1 = readVInt(aBytes1, aStart1);
+				int termId2 = readVInt(aBytes2, aStart2);
+				if (termId1 != termId2) {
+					return (termId1 < termId2) ? -1 : 1;
+				}
+				int document1 = aStart1 + WritableUtils.decodeVIntSize(aBytes1[aStart1]);
+				int document2 = aStart2 + WritableUtils.decodeVIntSize(aBytes2[aStart2]);
+				int prefix1 = WritableUtils.decodeVIntSize(aBytes1[document1]);
+				int prefix2 = WritableUtils.decodeVIntSize(aBytes2[document2]);
+				return compareBytes(aBytes1, document1 + prefix1, readVInt(aBytes1, document1), aBytes2, document2
+						+ prefix2, readVInt(aBytes2, document2));
+			} catch (IOException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+	}
+
+	static {
+		WritableComparator.define(TermPostingWritable.class, new Comparator());
+	}
+}
@@ -0,0 +1,113 @@
+package edu.stthomas.gps.project;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.log4j.Logger;
+
+/**
+ * A single stage of the normalization applied by the DescriptionTokenizer to each word of an incident Description
+ * after it has been accepted (e.g. lowercasing, expanding the NEISS abbreviations or stemming), so that the different
+ * forms of a word are counted as one term. The stages are chained in the order they are listed within the
+ * configuration of the job:
+ * 
+ * <pre>
+ * 		wordcount.normalizers	=	comma separated list of the classes of the stages
+ * </pre>
+ * 
+ * A stage is created once per task (through ReflectionUtils, so it may implement Configurable) and is only called
+ * from the thread of its tokenizer.
+ * 
+ * @author Robert Driesch - UST Id# 101058113
+ * @version 1.0, December 1, 2014
+ **/
+public interface TokenNormalizer {
+
+	/**
+	 * @param aToken the word (or the result of the previous stage)
+	 * @return the normalized form of the word (the same instance when the word was not changed)
+	 **/
+	String normalize(String aToken);
+
+	/**
+	 * Mono-case the words (which allows the rest of the stages to be used with -caseSensitive).
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class LowerCase implements TokenNormalizer {
+		@Override
+		public String normalize(String aToken) {
+			return aToken.toLowerCase();
+		}
+	}
+
+	/**
+	 * Expand the abbreviations commonly used within the NEISS incident narratives into the words they stand for (e.g.
+	 * "pt" becomes "patient" and "fx" becomes "fracture"). Further abbreviations may be added to the table through the
+	 * configuration of the job:
+	 * 
+	 * <pre>
+	 * 		wordcount.abbreviations	=	comma separated list of abbreviation=word pairs
+	 * </pre>
+	 * 
+	 * @version 1.0, December 1, 2014
+	 **/
+	public static class Abbreviations implements TokenNormalizer, Configurable {
+		private static final Logger LOG = Logger.getLogger(Abbreviations.class);
+
+		public static final String ABBREVIATIONS_KEY = new String("wordcount.abbreviations");
+
+		// @formatter:off
+		private static final String[][] NEISS_ABBREVIATIONS = {
+			{ "pt", "patient" },		{ "fx", "fracture" },		{ "lac", "laceration" },
+			{ "inj", "injury" },		{ "dx", "diagnosis" },		{ "hx", "history" },
+			{ "cont", "contusion" },	{ "abr", "abrasion" },		{ "str", "strain" },
+			{ "spr", "sprain" },		{ "hemat", "hematoma" },	{ "disl", "dislocation" },
+			{ "lt", "left" },		{ "rt", "right" },		{ "bilat", "bilateral" },
+			{ "abd", "abdomen" },		{ "acc", "accidentally" },	{ "sust", "sustained" },
+			{ "eval", "evaluation" },	{ "approx", "approximately" },	{ "unk", "unknown" },
+			{ "etoh", "alcohol" },		{ "dtr", "daughter" },		{ "bldg", "building" }
+		};
+		// @formatter:on
+
+		private final Map<String, String> xExpansions = new HashMap<String, String>();
+		private Configuration xConfig;
+
+		public Abbreviations() {
+			for (String[] myAbbreviation : NEISS_ABBREVIATIONS) {
+				xExpansions.put(myAbbreviation[0], myAbbreviation[1]);
+			}
+		}
+
+		@Override
+		public String normalize(String aToken) {
+			String expansion = xExpansions.get(aToken);
+			return (expansion != null) ? expansion : aToken;
+		}
+
+		@Override
+		public Configuration getConf() {
+			return xConfig;
+		}
+
+		/**
+		 * Add the abbreviations listed within the configuration to the table.
+		 * 
+		 * @param aConfig the configuration associated with this process
+		 **/
+		@Override
+		public void setConf(Configuration aConfig) {
+			xConfig = aConfig;
+			for (String myPair : aConfig.getTrimmedStrings(ABBREVIATIONS_KEY)) {
+				int separator = myPair.indexOf('=');
+				if (separator <= 0 || separator == myPair.length() - 1) {
+					LOG.warn("Ignoring the malformed abbreviation \"" + myPair + "\".");
+					continue;
+				}
+				xExpansions.put(myPair.substring(0, separator).trim(), myPair.substring(separator + 1).trim());
+			}
+		}
+	}
+}
@@ -0,0 +1,82 @@
+#!/bin/bash
+# =========================================================
+# This script will run the complete chain of MapReduce 
+# jobs for the NEISS data (product filter, keyword filter, 
+# reports and description word counts) as a single 
+# pipeline of dependent jobs.
+#
+# Any job whose output is already newer than its input is 
+# skipped, so the script can simply be run again to resume 
+# the pipeline after a failure. Use -force to run every job.
+#
+# Use -incremental when a new year of NEISS data is added to
+# the input directory to only filter & sort the new (or 
+# changed) year files into the year=YYYY output directories.
+# The descriptions of those years are tokenized into the
+# NEISS_TermStore and the TF-IDF is rescored from the store.
+#
+# USAGE:  NEISS_Pipeline.sh [-force] [-embedded] [-incremental]
+#
+# =========================================================
+
+# =========================================================
+#
+# Define & Initialize any Environment Variables
+#
+# =========================================================
+
+# ---------------------------------------------------------
+# Define Global Variables
+# ---------------------------------------------------------
+SCRIPT_NAME=`(basename ${0} .sh)`
+HADOOP="$( which hadoop )"
+LOCAL_PATH="/home/training/Project"
+HDFS_PATH="/user/training"
+LOG_FILE="${LOCAL_PATH}/Logs/${SCRIPT_NAME}_`date +%s`.log"
+
+# ---------------------------------------------------------
+# Define Jar File Definitions for the pipeline.
+# ---------------------------------------------------------
+MAPREDUCE_JAR="NEISSProductIncidents.jar"
+
+# ---------------------------------------------------------
+# Define the Driver Class Definitions for the Jar File.
+# ---------------------------------------------------------
+MAIN_CLASS="edu.stthomas.gps.project.NEISSPipeline"
+
+# ---------------------------------------------------------
+# Define the Directories needed for the pipeline.
+# ---------------------------------------------------------
+INPUT_DIRECTORY="${HDFS_PATH}/NEISS"
+BASE_DIRECTORY="${HDFS_PATH}"
+
+# ---------------------------------------------------------
+# Define the Execution Command for the pipeline.
+# ---------------------------------------------------------
+PIPELINE_CMD="${HADOOP} jar ${LOCAL_PATH}/${MAPREDUCE_JAR} ${MAIN_CLASS} ${INPUT_DIRECTORY} ${BASE_DIRECTORY} $@"
+
+# =========================================================
+#
+#  Start of the Main Body
+#
+# =========================================================
+{
+	# ---------------------------------------------------------
+	# Perform the pipeline of MapReduce jobs.
+	# ---------------------------------------------------------
+	echo "+  ${PIPELINE_CMD}"
+	${PIPELINE_CMD}
+	if [ $? -ne 0 ]; then
+		echo "ERROR OCCURRED DURING THE PIPELINE. SEE ${LOG_FILE}"
+		exit 1
+	fi
+
+	# ---------------------------------------------------------
+	# Exit this script with no errors!
+	# ---------------------------------------------------------
+	echo "FINAL OUTPUT GENERATED AND STORED UNDER ${BASE_DIRECTORY}"
+	echo "SEE ${LOG_FILE} FOR MORE DETAILS ABOUT THE MAPREDUCE JOBS"
+	exit 0
+
+
+} & > ${LOG_FILE}
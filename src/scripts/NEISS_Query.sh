@@ -0,0 +1,67 @@
+#!/bin/bash
+# =========================================================
+# This script will copy the filtered NEISS incidents (the
+# output of the ProductFilter) into a local column store
+# and then answer an ad-hoc query against it, or serve the
+# queries through a local HTTP server.
+#
+# Use -build to (re)build the local column store after the
+# filtered NEISS incidents have changed.
+#
+# USAGE:  NEISS_Query.sh [-build] -where "filters" [-groupBy column] [-count]
+#         NEISS_Query.sh [-build] -http port
+#
+# EXAMPLE: NEISS_Query.sh -where "product=1233; age<5; year=2012; disposition=HOSPITALIZED" -groupBy diagnosis
+#          NEISS_Query.sh -where "product=1233 | product=1200; gender!=MALE" -groupBy year -count
+#
+# =========================================================
+
+# =========================================================
+#
+# Define & Initialize any Environment Variables
+#
+# =========================================================
+
+# ---------------------------------------------------------
+# Define Global Variables
+# ---------------------------------------------------------
+HADOOP="$( which hadoop )"
+LOCAL_PATH="/home/training/Project"
+HDFS_PATH="/user/training"
+
+# ---------------------------------------------------------
+# Define Jar File Definitions for the query service.
+# ---------------------------------------------------------
+MAPREDUCE_JAR="NEISSProductIncidents.jar"
+
+# ---------------------------------------------------------
+# Define the Driver Class Definitions for the Jar File.
+# ---------------------------------------------------------
+BUILD_CLASS="edu.stthomas.gps.project.IncidentColumnStore"
+QUERY_CLASS="edu.stthomas.gps.project.IncidentQueryService"
+
+# ---------------------------------------------------------
+# Define the Directories needed for the query service.
+# ---------------------------------------------------------
+INPUT_DIRECTORY="${HDFS_PATH}/NEISS_ScratchPad"
+STORE_DIRECTORY="${LOCAL_PATH}/NEISS_ColumnStore"
+
+# =========================================================
+#
+#  Start of the Main Body
+#
+# =========================================================
+if [ "$1" == "-build" ] || [ ! -d ${STORE_DIRECTORY} ]; then
+	[ "$1" == "-build" ] && shift
+	BUILD_CMD="${HADOOP} jar ${LOCAL_PATH}/${MAPREDUCE_JAR} ${BUILD_CLASS} ${INPUT_DIRECTORY} ${STORE_DIRECTORY}"
+	echo "+  ${BUILD_CMD}"
+	${BUILD_CMD}
+	if [ $? -ne 0 ]; then
+		echo "ERROR OCCURRED WHILE BUILDING THE COLUMN STORE ${STORE_DIRECTORY}"
+		exit 1
+	fi
+fi
+
+echo "+  ${HADOOP} jar ${LOCAL_PATH}/${MAPREDUCE_JAR} ${QUERY_CLASS} ${STORE_DIRECTORY} $@"
+${HADOOP} jar ${LOCAL_PATH}/${MAPREDUCE_JAR} ${QUERY_CLASS} ${STORE_DIRECTORY} "$@"
+exit $?
@@ -7,6 +7,11 @@
 # This script depnd upon the NEISS data to already be 
 # filtered and pre-processed before this script is executed.
 #
+# The per year summaries of each report are kept within the
+# aggregate store directories, so when a new year of data is
+# added only that year is summarized and the percentages are
+# calculated from the totals kept within the store.
+#
 # USAGE:  NEISS_Reports.sh
 #
 # =========================================================
@@ -51,14 +56,15 @@ OUTPUT_DIRECTORY1="${HDFS_PATH}/NEISS_ReportByYear"
 OUTPUT_DIRECTORY2="${HDFS_PATH}/NEISS_ReportByMonth"
 OUTPUT_DIRECTORY3="${HDFS_PATH}/NEISS_ReportByAge"
 OUTPUT_DIRECTORY4="${HDFS_PATH}/NEISS_ReportByGender"
+AGGREGATE_DIRECTORY="${HDFS_PATH}/NEISS_Aggregates"
 
 # ---------------------------------------------------------
 # Define the Execution Commands for each job.
 # ---------------------------------------------------------
-JOB_1_CMD="${HADOOP} jar ${LOCAL_PATH}/${MAPREDUCE_JAR_JOB1} ${MAIN_CLASS_JOB1} ${INPUT_DIRECTORY} ${OUTPUT_DIRECTORY1} -totalIncidents 23828"
-JOB_2_CMD="${HADOOP} jar ${LOCAL_PATH}/${MAPREDUCE_JAR_JOB2} ${MAIN_CLASS_JOB2} ${INPUT_DIRECTORY} ${OUTPUT_DIRECTORY2} -totalIncidents 23828"
-JOB_3_CMD="${HADOOP} jar ${LOCAL_PATH}/${MAPREDUCE_JAR_JOB3} ${MAIN_CLASS_JOB3} ${INPUT_DIRECTORY} ${OUTPUT_DIRECTORY3} -totalIncidents 23828"
-JOB_4_CMD="${HADOOP} jar ${LOCAL_PATH}/${MAPREDUCE_JAR_JOB4} ${MAIN_CLASS_JOB4} ${INPUT_DIRECTORY} ${OUTPUT_DIRECTORY4} -totalIncidents 23828"
+JOB_1_CMD="${HADOOP} jar ${LOCAL_PATH}/${MAPREDUCE_JAR_JOB1} ${MAIN_CLASS_JOB1} ${INPUT_DIRECTORY} ${OUTPUT_DIRECTORY1} -aggregateStore ${AGGREGATE_DIRECTORY}/NEISS_ReportByYear"
+JOB_2_CMD="${HADOOP} jar ${LOCAL_PATH}/${MAPREDUCE_JAR_JOB2} ${MAIN_CLASS_JOB2} ${INPUT_DIRECTORY} ${OUTPUT_DIRECTORY2} -aggregateStore ${AGGREGATE_DIRECTORY}/NEISS_ReportByMonth"
+JOB_3_CMD="${HADOOP} jar ${LOCAL_PATH}/${MAPREDUCE_JAR_JOB3} ${MAIN_CLASS_JOB3} ${INPUT_DIRECTORY} ${OUTPUT_DIRECTORY3} -aggregateStore ${AGGREGATE_DIRECTORY}/NEISS_ReportByAge"
+JOB_4_CMD="${HADOOP} jar ${LOCAL_PATH}/${MAPREDUCE_JAR_JOB4} ${MAIN_CLASS_JOB4} ${INPUT_DIRECTORY} ${OUTPUT_DIRECTORY4} -aggregateStore ${AGGREGATE_DIRECTORY}/NEISS_ReportByGender"
 
 CLEANUP_CMD="${HADOOP} fs -rm -r ${INTERMEDIATE_DIRECTORY} ${OUTPUT_DIRECTORY1} ${OUTPUT_DIRECTORY2} ${OUTPUT_DIRECTORY3} ${OUTPUT_DIRECTORY4}"
 JOB_1_CAT_CMD="${HADOOP} fs -cat ${OUTPUT_DIRECTORY1}/part* | wc -l"